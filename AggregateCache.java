@@ -0,0 +1,125 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Results of aggregate queries, keyed by SQL text and bind values, so repeating a summary
+// does not run it again. An entry is dropped when any statement this process runs through
+// SqlMetrics writes to its table (INSERT, UPDATE, DELETE, MERGE, TRUNCATE, DROP, ALTER),
+// and in any case after the time-to-live, since other sessions change data too.
+// Least recently used entries go first once maxEntries is reached. A query that was
+// running when its table was written must not be cached, so callers take generation()
+// before running it and hand it to put(), which skips results that are already stale.
+public class AggregateCache implements AutoCloseable {
+
+    private static final Pattern WRITE = Pattern.compile(
+            "^\\s*(?:INSERT\\s+(?:/\\*.*?\\*/\\s*)?INTO|UPDATE|DELETE\\s+(?:FROM\\s+)?|MERGE\\s+INTO|TRUNCATE\\s+TABLE|DROP\\s+TABLE|ALTER\\s+TABLE)\\s*\"?([\\w$#.]+)\"?",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    public static final class Entry {
+        public final String table;
+        public final String[] columns;
+        public final List<Object[]> rows;
+        public final long millis;
+        public final long fetchedAtMillis;
+
+        Entry(String table, String[] columns, List<Object[]> rows, long millis, long fetchedAtMillis) {
+            this.table = table;
+            this.columns = columns;
+            this.rows = Collections.unmodifiableList(rows);
+            this.millis = millis;
+            this.fetchedAtMillis = fetchedAtMillis;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+    private final Map<String, Long> writes = new HashMap<>(); // Table -> invalidation number of its last write
+    private long invalidations;
+    private final Consumer<SqlMetrics.StatementRecord> listener = this::onStatement;
+
+    public AggregateCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > AggregateCache.this.maxEntries;
+            }
+        };
+        SqlMetrics.get().addListener(listener);
+    }
+
+    @Override
+    public void close() {
+        SqlMetrics.get().removeListener(listener);
+        clear();
+    }
+
+    public synchronized Entry get(AggregateQuery query) {
+        String key = key(query);
+        Entry entry = entries.get(key);
+        if (entry != null && System.currentTimeMillis() - entry.fetchedAtMillis > ttlMillis) {
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    // Changes whenever the table is written; compare before and after a query to see if it raced a write.
+    public synchronized long generation(String table) {
+        String upper = table.toUpperCase();
+        long generation = 0;
+        for (Map.Entry<String, Long> write : writes.entrySet()) {
+            if (sameTable(write.getKey(), upper)) generation = Math.max(generation, write.getValue());
+        }
+        return generation;
+    }
+
+    // Returns null (and caches nothing) when the table was written since generation was taken.
+    public synchronized Entry put(AggregateQuery query, long generation, String[] columns, List<Object[]> rows, long millis) {
+        if (generation(query.table()) != generation) return null;
+        Entry entry = new Entry(query.table().toUpperCase(), columns, new ArrayList<>(rows), millis, System.currentTimeMillis());
+        entries.put(key(query), entry);
+        return entry;
+    }
+
+    public synchronized void invalidate(String table) {
+        String upper = table.toUpperCase();
+        writes.put(upper, ++invalidations);
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            if (sameTable(it.next().table, upper)) it.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // SCOTT.EMP and EMP are the same table as far as we can tell here
+    private static boolean sameTable(String a, String b) {
+        return a.equals(b) || a.endsWith("." + b) || b.endsWith("." + a);
+    }
+
+    private static String key(AggregateQuery query) {
+        return query.sql() + "\n" + query.params();
+    }
+
+    // Statements that fail may still have changed rows (partial batches), so they count too.
+    private void onStatement(SqlMetrics.StatementRecord record) {
+        if (record.sql == null) return;
+        Matcher write = WRITE.matcher(record.sql);
+        if (write.find()) invalidate(write.group(1));
+    }
+}
@@ -0,0 +1,178 @@
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+// A GROUP BY query built from the aggregation panel's choices and run on the database, so
+// only one row per group comes back. Table and column names are checked against the table's
+// columns (and must be plain identifiers) before they go into the SQL; HAVING values are
+// always bind parameters. Equal queries produce equal sql() and params(), which is what
+// AggregateCache keys on.
+public final class AggregateQuery {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z][A-Za-z0-9_$#]*(\\.[A-Za-z][A-Za-z0-9_$#]*)?");
+
+    public enum Function { COUNT, SUM, AVG, MIN, MAX }
+
+    public enum Comparison {
+        EQ("="), NE("<>"), LT("<"), LE("<="), GT(">"), GE(">=");
+
+        public final String symbol;
+
+        Comparison(String symbol) {
+            this.symbol = symbol;
+        }
+
+        @Override
+        public String toString() {
+            return symbol;
+        }
+    }
+
+    // FUNCTION(column); a null column means COUNT(*).
+    public static final class Measure {
+        public final Function function;
+        public final String column;
+
+        public Measure(Function function, String column) {
+            this.function = function;
+            this.column = column;
+        }
+
+        public String expression() {
+            return function + "(" + (column == null ? "*" : column) + ")";
+        }
+
+        @Override
+        public String toString() {
+            return expression();
+        }
+    }
+
+    // HAVING <measure> <comparison> ?; the measure need not be one of the selected ones.
+    public static final class Having {
+        public final Measure measure;
+        public final Comparison comparison;
+        public final String value;
+
+        public Having(Measure measure, Comparison comparison, String value) {
+            this.measure = measure;
+            this.comparison = comparison;
+            this.value = value == null ? "" : value.trim();
+        }
+    }
+
+    private final String table;
+    private final List<String> groupBy;
+    private final List<Measure> measures;
+    private final String sql;
+    private final List<Object> params;
+
+    // Throws IllegalArgumentException (with a user-facing message) for anything that does not
+    // fit the table: unknown columns, SUM/AVG of non-numeric columns, unparseable HAVING values.
+    public AggregateQuery(String table, Map<String, String> columnTypes, List<String> groupBy,
+                          List<Measure> measures, List<Having> havings) {
+        if (!IDENTIFIER.matcher(table).matches()) throw new IllegalArgumentException("Invalid table name: " + table);
+        if (measures.isEmpty()) throw new IllegalArgumentException("Choose at least one aggregate.");
+        for (String column : groupBy) checkColumn(column, columnTypes);
+        for (Measure measure : measures) checkMeasure(measure, columnTypes);
+        this.table = table;
+        this.groupBy = Collections.unmodifiableList(new ArrayList<>(groupBy));
+        this.measures = Collections.unmodifiableList(new ArrayList<>(measures));
+
+        List<String> select = new ArrayList<>(groupBy);
+        for (Measure measure : measures) select.add(measure.expression());
+        StringBuilder sb = new StringBuilder("SELECT ").append(String.join(", ", select)).append(" FROM ").append(table);
+        if (!groupBy.isEmpty()) sb.append(" GROUP BY ").append(String.join(", ", groupBy));
+        List<Object> values = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        for (Having having : havings) {
+            Measure measure = having.measure;
+            checkMeasure(measure, columnTypes);
+            conditions.add(measure.expression() + " " + having.comparison.symbol + " ?");
+            values.add(havingValue(measure, having.value, columnTypes));
+        }
+        if (!conditions.isEmpty()) sb.append(" HAVING ").append(String.join(" AND ", conditions));
+        if (!groupBy.isEmpty()) sb.append(" ORDER BY ").append(String.join(", ", groupBy));
+        this.sql = sb.toString();
+        this.params = Collections.unmodifiableList(values);
+    }
+
+    public String table() {
+        return table;
+    }
+
+    public List<String> groupBy() {
+        return groupBy;
+    }
+
+    public List<Measure> measures() {
+        return measures;
+    }
+
+    public String sql() {
+        return sql;
+    }
+
+    public List<Object> params() {
+        return params;
+    }
+
+    // The SQL with the bind values written in, for display only.
+    public String describe() {
+        return params.isEmpty() ? sql : sql + "  -- binds: " + params;
+    }
+
+    private static void checkColumn(String column, Map<String, String> columnTypes) {
+        if (column == null || !IDENTIFIER.matcher(column).matches() || !columnTypes.containsKey(column)) {
+            throw new IllegalArgumentException("Unknown column: " + column);
+        }
+    }
+
+    private static void checkMeasure(Measure measure, Map<String, String> columnTypes) {
+        if (measure.column == null) {
+            if (measure.function != Function.COUNT) throw new IllegalArgumentException(measure.function + " needs a column.");
+            return;
+        }
+        checkColumn(measure.column, columnTypes);
+        if ((measure.function == Function.SUM || measure.function == Function.AVG) && !isNumeric(columnTypes.get(measure.column))) {
+            throw new IllegalArgumentException(measure.function + " needs a numeric column; " + measure.column
+                    + " is " + columnTypes.get(measure.column) + ".");
+        }
+    }
+
+    static boolean isNumeric(String type) {
+        if (type == null) return false;
+        String upper = type.toUpperCase();
+        return upper.startsWith("NUMBER") || upper.startsWith("FLOAT") || upper.startsWith("BINARY_")
+                || upper.startsWith("INT") || upper.startsWith("DEC") || upper.startsWith("NUMERIC")
+                || upper.startsWith("DOUBLE") || upper.startsWith("REAL") || upper.startsWith("SMALLINT");
+    }
+
+    // COUNT, SUM and AVG (and MIN/MAX of numbers) compare with numbers; MIN/MAX of dates with
+    // timestamps; anything else with text.
+    private static Object havingValue(Measure measure, String text, Map<String, String> columnTypes) {
+        String type = measure.column == null ? "NUMBER" : columnTypes.get(measure.column);
+        boolean numeric = measure.function == Function.COUNT || measure.function == Function.SUM
+                || measure.function == Function.AVG || isNumeric(type);
+        if (numeric) {
+            try {
+                return new BigDecimal(text);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("HAVING " + measure.expression() + ": '" + text + "' is not a number.");
+            }
+        }
+        String upper = type == null ? "" : type.toUpperCase();
+        if (upper.startsWith("DATE") || upper.startsWith("TIMESTAMP")) {
+            try {
+                return text.length() <= 10 ? new Timestamp(java.sql.Date.valueOf(text).getTime()) : Timestamp.valueOf(text);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("HAVING " + measure.expression() + ": '" + text + "' is not a date (yyyy-mm-dd [hh:mm:ss]).");
+            }
+        }
+        return text;
+    }
+}
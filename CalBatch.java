@@ -0,0 +1,152 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Evaluates one compiled cal expression over columnar inputs: columns[slot][row] holds the
+// value of variable `slot` for each row. Work is done a CHUNK of rows at a time, one
+// operator per pass, so every inner loop is a plain counted loop over double[] that C2 can
+// auto-vectorize. Batches larger than PARALLEL_THRESHOLD are split across the common
+// fork/join pool.
+public final class CalBatch {
+
+    static final int CHUNK = 1024;
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private CalBatch() {
+    }
+
+    public static double[] evaluate(CalCompiler.Expr expr, double[][] columns) {
+        int rows = rowCount(expr, columns);
+        double[] out = new double[rows];
+        evaluate(expr, columns, out, 0, rows);
+        return out;
+    }
+
+    // Writes rows [from, to) into out[from, to).
+    public static void evaluate(CalCompiler.Expr expr, double[][] columns, double[] out, int from, int to) {
+        rowCount(expr, columns);
+        if (to - from > PARALLEL_THRESHOLD) {
+            try {
+                ForkJoinPool.commonPool().invoke(new BatchTask(expr.tree(), columns, out, from, to));
+            } catch (ArithmeticException e) {
+                // Fork/join rethrows a copy without the message; surface the original
+                throw e.getCause() instanceof ArithmeticException ? (ArithmeticException) e.getCause() : e;
+            }
+        } else {
+            evaluateRange(expr.tree(), columns, out, from, to);
+        }
+    }
+
+    private static int rowCount(CalCompiler.Expr expr, double[][] columns) {
+        if (columns.length < expr.variableCount()) {
+            throw new IllegalArgumentException("No column given for variable: " + expr.variableNames()[columns.length]);
+        }
+        int rows = -1;
+        for (int slot = 0; slot < expr.variableCount(); slot++) {
+            if (rows == -1) rows = columns[slot].length;
+            else if (columns[slot].length != rows) {
+                throw new IllegalArgumentException("Column for '" + expr.variableNames()[slot] + "' has "
+                        + columns[slot].length + " rows, expected " + rows);
+            }
+        }
+        return rows == -1 ? (columns.length > 0 ? columns[0].length : 0) : rows;
+    }
+
+    private static final class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final CalCompiler.Node root;
+        private final double[][] columns;
+        private final double[] out;
+        private final int from;
+        private final int to;
+
+        BatchTask(CalCompiler.Node root, double[][] columns, double[] out, int from, int to) {
+            this.root = root;
+            this.columns = columns;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                evaluateRange(root, columns, out, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BatchTask(root, columns, out, from, mid), new BatchTask(root, columns, out, mid, to));
+        }
+    }
+
+    private static void evaluateRange(CalCompiler.Node root, double[][] columns, double[] out, int from, int to) {
+        double[][] scratch = new double[depth(root)][CHUNK];
+        double[] chunk = new double[CHUNK];
+        for (int offset = from; offset < to; offset += CHUNK) {
+            int length = Math.min(CHUNK, to - offset);
+            evalInto(root, columns, offset, length, chunk, scratch, 0);
+            System.arraycopy(chunk, 0, out, offset, length);
+        }
+    }
+
+    // Evaluates node for rows [offset, offset + length) into dst[0, length).
+    private static void evalInto(CalCompiler.Node node, double[][] columns, int offset, int length,
+                                 double[] dst, double[][] scratch, int depth) {
+        if (node instanceof CalCompiler.Num) {
+            Arrays.fill(dst, 0, length, ((CalCompiler.Num) node).value);
+        } else if (node instanceof CalCompiler.Var) {
+            System.arraycopy(columns[((CalCompiler.Var) node).slot], offset, dst, 0, length);
+        } else {
+            CalCompiler.BinOp bin = (CalCompiler.BinOp) node;
+            evalInto(bin.left, columns, offset, length, dst, scratch, depth);
+            if (bin.right instanceof CalCompiler.Num) {
+                applyScalar(bin.op, dst, ((CalCompiler.Num) bin.right).value, length, offset);
+            } else if (bin.right instanceof CalCompiler.Var) {
+                applyVector(bin.op, dst, columns[((CalCompiler.Var) bin.right).slot], offset, length, offset);
+            } else {
+                double[] rhs = scratch[depth];
+                evalInto(bin.right, columns, offset, length, rhs, scratch, depth + 1);
+                applyVector(bin.op, dst, rhs, 0, length, offset);
+            }
+        }
+    }
+
+    private static void applyScalar(char op, double[] dst, double b, int length, int rowOffset) {
+        switch (op) {
+            case '+': for (int i = 0; i < length; i++) dst[i] += b; break;
+            case '-': for (int i = 0; i < length; i++) dst[i] -= b; break;
+            case '*': for (int i = 0; i < length; i++) dst[i] *= b; break;
+            case '/':
+                if (b == 0) throw new ArithmeticException("Division by zero (row " + rowOffset + ")");
+                for (int i = 0; i < length; i++) dst[i] /= b;
+                break;
+            default: throw new IllegalArgumentException("Invalid operator: " + op);
+        }
+    }
+
+    // dst[i] = dst[i] op src[srcOffset + i]
+    private static void applyVector(char op, double[] dst, double[] src, int srcOffset, int length, int rowOffset) {
+        switch (op) {
+            case '+': for (int i = 0; i < length; i++) dst[i] += src[srcOffset + i]; break;
+            case '-': for (int i = 0; i < length; i++) dst[i] -= src[srcOffset + i]; break;
+            case '*': for (int i = 0; i < length; i++) dst[i] *= src[srcOffset + i]; break;
+            case '/':
+                // Separate check pass keeps the division loop branch-free
+                for (int i = 0; i < length; i++) {
+                    if (src[srcOffset + i] == 0) throw new ArithmeticException("Division by zero (row " + (rowOffset + i) + ")");
+                }
+                for (int i = 0; i < length; i++) dst[i] /= src[srcOffset + i];
+                break;
+            default: throw new IllegalArgumentException("Invalid operator: " + op);
+        }
+    }
+
+    // Number of scratch buffers needed: one per level of right-nested non-leaf operands.
+    private static int depth(CalCompiler.Node node) {
+        if (!(node instanceof CalCompiler.BinOp)) return 0;
+        CalCompiler.BinOp bin = (CalCompiler.BinOp) node;
+        int rightIsLeaf = bin.right instanceof CalCompiler.BinOp ? 1 : 0;
+        return Math.max(depth(bin.left), rightIsLeaf + depth(bin.right));
+    }
+}
@@ -0,0 +1,161 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+// Micro-benchmarks for cal's parsing/evaluation paths, reporting time and heap allocation
+// per operation (via com.sun.management.ThreadMXBean).
+//
+//   java CalBenchmark [expression]
+public class CalBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURE_ITERATIONS = 10;
+    private static final int OPS_PER_ITERATION = 200_000;
+
+    interface BenchmarkBody {
+        double run() throws Exception;
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static double sink;
+
+    public static void main(String[] args) throws Exception {
+        String expression = args.length > 0 ? args[0] : "((12.5 + 7) * 3 - 4 / 2) * (100 - 2.25) / (1 + 2 + 3 + 4)";
+
+        CalTokens tokens = new CalTokens();
+        CalEvaluator evaluator = new CalEvaluator();
+        CalCompiler.Expr compiled;
+        tokens.tokenize(expression);
+        compiled = CalCompiler.compile(tokens);
+        List<Number> even = new ArrayList<>();
+        List<Number> odd = new ArrayList<>();
+
+        run("boxed.tokenizeExpression", () -> cal.tokenizeExpression(expression, even, odd).size());
+        run("primitive.tokenize", () -> {
+            tokens.tokenize(expression);
+            return tokens.size();
+        });
+        tokens.tokenize(expression);
+        run("tree.compile+eval", () -> CalCompiler.compile(tokens).evaluate());
+        run("primitive.eval", () -> evaluator.evaluate(tokens));
+        run("compiled.eval", compiled::evaluate);
+
+        // (a*b-c)/d over a million rows: per-row compiled evaluation vs columnar CalBatch
+        int rows = 1_000_000;
+        tokens.tokenize("(a*b-c)/d");
+        CalCompiler.Expr formula = CalCompiler.compile(tokens);
+        double[][] columns = new double[4][rows];
+        java.util.Random random = new java.util.Random(42);
+        for (double[] column : columns) {
+            for (int i = 0; i < rows; i++) column[i] = 1 + random.nextDouble();
+        }
+        double[] out = new double[rows];
+        double[] row = new double[4];
+        runBatch("batch.perRowCompiled", rows, () -> {
+            for (int i = 0; i < rows; i++) {
+                for (int c = 0; c < 4; c++) row[c] = columns[c][i];
+                out[i] = formula.evaluate(row);
+            }
+            return out[rows - 1];
+        });
+        runBatch("batch.columnar", rows, () -> {
+            CalBatch.evaluate(formula, columns, out, 0, rows);
+            return out[rows - 1];
+        });
+
+        // Queue mode partitioning of a million numbers into capacity-64 queues: the old
+        // LinkedList<Queue<Double>> structure vs primitive rings and the ring pipeline
+        double[] numbers = new double[rows];
+        for (int i = 0; i < rows; i++) numbers[i] = random.nextInt(1000) + (i % 3 == 0 ? 0.5 : 0);
+        int capacity = 64;
+        runBatch("queues.linkedList", rows, () -> linkedListPartition(numbers, capacity));
+        runBatch("queues.spscRing", rows, () -> ringRoundTrip(new SpscDoubleRing(capacity), numbers));
+        runBatch("queues.mpmcRing", rows, () -> ringRoundTrip(new MpmcDoubleRing(capacity), numbers));
+        runBatch("queues.ringPipeline", rows, () -> CalPipeline.partition(numbers, capacity, capacity).input.size());
+
+        // Even/odd split of a million longs: one serial pass vs CalPartitioner's fork/join
+        long[] integers = new long[rows];
+        for (int i = 0; i < rows; i++) integers[i] = random.nextLong();
+        long[] evenOut = new long[rows];
+        long[] oddOut = new long[rows];
+        runBatch("partition.serial", rows, () -> {
+            int e = 0, o = 0;
+            for (long n : integers) {
+                if ((n & 1) == 0) evenOut[e++] = n;
+                else oddOut[o++] = n;
+            }
+            return e;
+        });
+        runBatch("partition.forkJoin", rows, () -> CalPartitioner.partition(integers).even.length);
+    }
+
+    // The structure cal's Queue mode used before CalPipeline, kept here as the baseline.
+    private static double linkedListPartition(double[] numbers, int capacity) {
+        java.util.LinkedList<java.util.Queue<Double>> input = new java.util.LinkedList<>();
+        java.util.LinkedList<java.util.Queue<Double>> even = new java.util.LinkedList<>();
+        java.util.LinkedList<java.util.Queue<Double>> odd = new java.util.LinkedList<>();
+        for (double num : numbers) {
+            addToQueueList(input, num, capacity);
+            int parity = cal.parity(num);
+            if (parity == 0) addToQueueList(even, num, capacity);
+            else if (parity == 1) addToQueueList(odd, num, capacity);
+        }
+        return input.size() + even.size() + odd.size();
+    }
+
+    private static void addToQueueList(java.util.LinkedList<java.util.Queue<Double>> list, double num, int capacity) {
+        if (list.isEmpty() || list.getLast().size() >= capacity) {
+            list.add(new java.util.LinkedList<>());
+        }
+        list.getLast().add(num);
+    }
+
+    // Single-threaded fill/drain through a ring, one capacity's worth at a time.
+    private static double ringRoundTrip(DoubleRing ring, double[] numbers) {
+        double[] drained = new double[ring.capacity()];
+        double acc = 0;
+        int i = 0;
+        while (i < numbers.length) {
+            while (i < numbers.length && ring.offer(numbers[i])) i++;
+            int n = ring.drain(drained, 0, drained.length);
+            for (int k = 0; k < n; k++) acc += drained[k];
+        }
+        return acc;
+    }
+
+    static void runBatch(String name, int rowsPerRun, BenchmarkBody body) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) sink += body.run();
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            sink += body.run();
+            best = Math.min(best, (double) (System.nanoTime() - start) / rowsPerRun);
+        }
+        System.out.printf("%-32s %10.2f ns/row%n", name, best);
+    }
+
+    static void run(String name, BenchmarkBody body) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) iterate(body);
+        double bestNanos = Double.MAX_VALUE;
+        double bestBytes = Double.MAX_VALUE;
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+            long bytesBefore = THREADS.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            iterate(body);
+            long elapsed = System.nanoTime() - start;
+            long bytes = THREADS.getThreadAllocatedBytes(threadId) - bytesBefore;
+            bestNanos = Math.min(bestNanos, (double) elapsed / OPS_PER_ITERATION);
+            bestBytes = Math.min(bestBytes, (double) bytes / OPS_PER_ITERATION);
+        }
+        System.out.printf("%-32s %10.1f ns/op %10.1f B/op%n", name, bestNanos, bestBytes);
+    }
+
+    private static void iterate(BenchmarkBody body) throws Exception {
+        double acc = 0;
+        for (int i = 0; i < OPS_PER_ITERATION; i++) acc += body.run();
+        sink += acc;
+    }
+}
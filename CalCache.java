@@ -0,0 +1,165 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bounded LRU cache from normalized expression text to its parsed form: the compiled
+// expression, the boxed token list, the exact integer literals and the even/odd classification. Safe for concurrent
+// callers; a miss is parsed outside the lock so slow parses never block cache hits.
+public final class CalCache {
+
+    private static final CalCache SHARED = new CalCache(Integer.getInteger("cal.cacheSize", 1024));
+
+    // Everything cal derives from one expression text; all parts are immutable.
+    public static final class Entry {
+        public final CalCompiler.Expr expr;
+        public final List<Object> tokens;
+        public final List<Number> even;
+        public final List<Number> odd;
+        // integerValue() of each NUMBER token in order (NOT_INTEGER for non-integers); the
+        // boxed tokens hold doubles, which are inexact beyond 2^53
+        private final long[] integers;
+
+        Entry(CalCompiler.Expr expr, List<Object> tokens, List<Number> even, List<Number> odd, long[] integers) {
+            this.expr = expr;
+            this.integers = integers;
+            this.tokens = Collections.unmodifiableList(tokens);
+            this.even = Collections.unmodifiableList(even);
+            this.odd = Collections.unmodifiableList(odd);
+        }
+
+        public long[] integers() {
+            return integers.clone();
+        }
+    }
+
+    private final int capacity;
+    private final Map<String, Entry> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CalCache(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Cache capacity must be at least 1");
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > CalCache.this.capacity) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static CalCache shared() {
+        return SHARED;
+    }
+
+    // Returns the cached parse of the expression, parsing and caching it on a miss.
+    // Invalid expressions are not cached; the exception is rethrown to the caller.
+    public Entry get(String expression) throws cal.InvalidExpressionException {
+        return get(expression, null);
+    }
+
+    // As get(expression), but parses misses through the caller's CalIncremental so an
+    // edited expression reuses the tokens and subtrees of the previous one.
+    public Entry get(String expression, CalIncremental parser) throws cal.InvalidExpressionException {
+        String key = normalize(expression);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        entry = parse(key, parser);
+        synchronized (entries) {
+            Entry raced = entries.putIfAbsent(key, entry);
+            return raced != null ? raced : entry;
+        }
+    }
+
+    private static Entry parse(String expression, CalIncremental parser) throws cal.InvalidExpressionException {
+        CalTokens scanned;
+        CalCompiler.Expr expr;
+        if (parser == null) {
+            scanned = new CalTokens();
+            scanned.tokenize(expression);
+            expr = CalCompiler.compile(scanned);
+        } else {
+            expr = parser.update(expression);
+            scanned = parser.tokens();
+        }
+        List<Number> even = new ArrayList<>();
+        List<Number> odd = new ArrayList<>();
+        List<Object> tokens = cal.toTokenList(scanned, even, odd);
+        long[] integers = new long[scanned.size()];
+        int numbers = 0;
+        for (int i = 0; i < scanned.size(); i++) {
+            if (scanned.kind(i) == CalTokens.NUMBER) integers[numbers++] = scanned.integerValue(i);
+        }
+        return new Entry(expr, tokens, even, odd, java.util.Arrays.copyOf(integers, numbers));
+    }
+
+    // Strips whitespace, except that a run of whitespace between two number/identifier
+    // characters becomes one space: "1 2" must stay two tokens, not turn into "12".
+    static String normalize(String expression) {
+        StringBuilder sb = new StringBuilder(expression.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = sb.length() > 0;
+                continue;
+            }
+            if (pendingSpace && isWordChar(sb.charAt(sb.length() - 1)) && isWordChar(c)) {
+                sb.append(' ');
+            }
+            pendingSpace = false;
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isDigit(c) || c == '.' || CalTokens.isIdentifierPart(c);
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public double hitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    public String stats() {
+        return String.format("entries=%d/%d hits=%d misses=%d evictions=%d hitRate=%.1f%%",
+                size(), capacity, hits.sum(), misses.sum(), evictions.sum(), hitRate() * 100);
+    }
+}
@@ -0,0 +1,326 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.LinkedList;
+
+// Compiles the tokens produced by CalTokens (see cal.tokenizeExpression) into an immutable,
+// constant-folded expression tree that can be evaluated any number of times.
+// Expressions evaluated more than HOT_THRESHOLD times are additionally compiled into a
+// MethodHandle tree, which the JIT can inline down to straight-line arithmetic.
+public class CalCompiler {
+
+    static final int HOT_THRESHOLD = 1_000;
+    static final double[] NO_VARIABLES = new double[0];
+
+    private static final MethodHandle ADD;
+    private static final MethodHandle SUBTRACT;
+    private static final MethodHandle MULTIPLY;
+    private static final MethodHandle DIVIDE;
+    private static final MethodHandle ELEMENT = MethodHandles.arrayElementGetter(double[].class);
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodType binary = MethodType.methodType(double.class, double.class, double.class);
+            ADD = lookup.findStatic(CalCompiler.class, "add", binary);
+            SUBTRACT = lookup.findStatic(CalCompiler.class, "subtract", binary);
+            MULTIPLY = lookup.findStatic(CalCompiler.class, "multiply", binary);
+            DIVIDE = lookup.findStatic(CalCompiler.class, "divide", binary);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private CalCompiler() {
+    }
+
+    // --- Expression tree ---
+
+    abstract static class Node {
+        abstract double eval(double[] variables);
+
+        // A (double[])double handle computing this node from the variable array.
+        abstract MethodHandle toHandle();
+    }
+
+    static final class Num extends Node {
+        final double value;
+        // Source text of a literal, for exact decimal evaluation; null for computed values
+        final String literal;
+
+        Num(double value) {
+            this(value, null);
+        }
+
+        Num(double value, String literal) {
+            this.value = value;
+            this.literal = literal;
+        }
+
+        @Override
+        double eval(double[] variables) {
+            return value;
+        }
+
+        @Override
+        MethodHandle toHandle() {
+            return MethodHandles.dropArguments(MethodHandles.constant(double.class, value), 0, double[].class);
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+
+    static final class Var extends Node {
+        final int slot;
+        final String name;
+
+        Var(int slot, String name) {
+            this.slot = slot;
+            this.name = name;
+        }
+
+        @Override
+        double eval(double[] variables) {
+            return variables[slot];
+        }
+
+        @Override
+        MethodHandle toHandle() {
+            return MethodHandles.insertArguments(ELEMENT, 1, slot);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    static final class BinOp extends Node {
+        final char op;
+        final Node left;
+        final Node right;
+
+        BinOp(char op, Node left, Node right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        double eval(double[] variables) {
+            return cal.applyOperation(left.eval(variables), right.eval(variables), op);
+        }
+
+        @Override
+        MethodHandle toHandle() {
+            // op(left(v), right(v)): (double[], double[])double, then merge both arrays into one
+            MethodHandle combined = MethodHandles.collectArguments(handleFor(op), 0, left.toHandle());
+            combined = MethodHandles.collectArguments(combined, 1, right.toHandle());
+            return MethodHandles.permuteArguments(combined,
+                    MethodType.methodType(double.class, double[].class), 0, 0);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " " + op + " " + right + ")";
+        }
+    }
+
+    // --- Compiled expression ---
+
+    public static final class Expr {
+        private final Node root;
+        private final Node source;
+        private final String[] variables;
+        private int evaluations;
+        private volatile MethodHandle compiled;
+
+        Expr(Node root, Node source, String[] variables) {
+            this.root = root;
+            this.source = source;
+            this.variables = variables;
+        }
+
+        public double evaluate() throws ArithmeticException {
+            return evaluate(NO_VARIABLES);
+        }
+
+        // values[slot] binds variableNames()[slot]; missing values are reported, not defaulted.
+        public double evaluate(double[] values) throws ArithmeticException {
+            if (values.length < variables.length) {
+                throw new IllegalArgumentException("No value given for variable: " + variables[values.length]);
+            }
+            MethodHandle handle = compiled;
+            if (handle != null) {
+                try {
+                    return (double) handle.invokeExact(values);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new IllegalStateException("Compiled expression failed", t);
+                }
+            }
+            if (++evaluations == HOT_THRESHOLD) {
+                compiled = root.toHandle();
+            }
+            return root.eval(values);
+        }
+
+        public String[] variableNames() {
+            return variables.clone();
+        }
+
+        public int variableCount() {
+            return variables.length;
+        }
+
+        // True once the expression has been promoted to the MethodHandle tier.
+        public boolean isCompiled() {
+            return compiled != null;
+        }
+
+        public boolean isConstant() {
+            return root instanceof Num;
+        }
+
+        // The folded tree, for evaluators that walk it themselves (e.g. CalBatch).
+        Node tree() {
+            return root;
+        }
+
+        // The tree before constant folding, for callers that need the original structure.
+        Node sourceTree() {
+            return source;
+        }
+
+        @Override
+        public String toString() {
+            return root.toString();
+        }
+    }
+
+    // How parse() creates nodes, so callers can share or intern them (see CalIncremental).
+    interface NodeFactory {
+        Node number(double value, String literal);
+
+        Node variable(int slot, String name);
+
+        Node binary(char op, Node left, Node right);
+    }
+
+    static final NodeFactory NEW_NODES = new NodeFactory() {
+        @Override
+        public Node number(double value, String literal) {
+            return new Num(value, literal);
+        }
+
+        @Override
+        public Node variable(int slot, String name) {
+            return new Var(slot, name);
+        }
+
+        @Override
+        public Node binary(char op, Node left, Node right) {
+            return new BinOp(op, left, right);
+        }
+    };
+
+    public static Expr compile(CalTokens tokens) throws cal.InvalidExpressionException {
+        Node source = parse(tokens, NEW_NODES);
+        return new Expr(fold(source), source, tokens.variableNames());
+    }
+
+    // Builds the unfolded tree with the same shunting-yard rules cal used to evaluate
+    // directly, including the implicit 0 before a unary '-'.
+    static Node parse(CalTokens tokens, NodeFactory nodes) throws cal.InvalidExpressionException {
+        LinkedList<Node> values = new LinkedList<>();
+        LinkedList<Character> ops = new LinkedList<>();
+        byte lastKind = -1;
+
+        for (int i = 0; i < tokens.size(); i++) {
+            byte kind = tokens.kind(i);
+            if (kind == CalTokens.NUMBER) {
+                values.push(nodes.number(tokens.value(i), tokens.text(i)));
+            } else if (kind == CalTokens.VARIABLE) {
+                int slot = (int) tokens.value(i);
+                values.push(nodes.variable(slot, tokens.variableName(slot)));
+            } else {
+                char op = CalTokens.symbol(kind);
+                if (op == '(') ops.push(op);
+                else if (op == ')') {
+                    while (!ops.isEmpty() && ops.peek() != '(') reduceTop(values, ops, nodes);
+                    if (ops.isEmpty()) throw new cal.InvalidExpressionException("Mismatched parentheses");
+                    ops.pop();
+                } else {
+                    if (op == '-' && (lastKind == -1 || (lastKind != CalTokens.NUMBER && "*/+(".indexOf(CalTokens.symbol(lastKind)) != -1))) {
+                        values.push(nodes.number(0.0, null));
+                    }
+                    while (!ops.isEmpty() && ops.peek() != '(' && cal.precedence(ops.peek()) >= cal.precedence(op)) {
+                        reduceTop(values, ops, nodes);
+                    }
+                    ops.push(op);
+                }
+            }
+            lastKind = kind;
+        }
+
+        while (!ops.isEmpty()) {
+            if (ops.peek() == '(') throw new cal.InvalidExpressionException("Mismatched parentheses");
+            reduceTop(values, ops, nodes);
+        }
+        if (values.size() != 1) {
+            throw new cal.InvalidExpressionException("Malformed expression. Check operators and operands");
+        }
+        return values.pop();
+    }
+
+    private static void reduceTop(LinkedList<Node> values, LinkedList<Character> ops, NodeFactory nodes) throws cal.InvalidExpressionException {
+        if (values.size() < 2) throw new cal.InvalidExpressionException("Missing operand for operator: " + ops.peek());
+        Node b = values.pop();
+        Node a = values.pop();
+        values.push(nodes.binary(ops.pop(), a, b));
+    }
+
+    // Collapses constant subtrees. Division by a constant zero is left in place so the
+    // ArithmeticException is raised on evaluation, exactly as before.
+    static Node fold(Node node) {
+        if (!(node instanceof BinOp)) return node;
+        BinOp bin = (BinOp) node;
+        Node left = fold(bin.left);
+        Node right = fold(bin.right);
+        if (left instanceof Num && right instanceof Num && !(bin.op == '/' && ((Num) right).value == 0)) {
+            return new Num(cal.applyOperation(((Num) left).value, ((Num) right).value, bin.op));
+        }
+        return left == bin.left && right == bin.right ? bin : new BinOp(bin.op, left, right);
+    }
+
+    private static MethodHandle handleFor(char op) {
+        switch (op) {
+            case '+': return ADD;
+            case '-': return SUBTRACT;
+            case '*': return MULTIPLY;
+            case '/': return DIVIDE;
+            default: throw new IllegalArgumentException("Invalid operator: " + op);
+        }
+    }
+
+    private static double add(double a, double b) {
+        return a + b;
+    }
+
+    private static double subtract(double a, double b) {
+        return a - b;
+    }
+
+    private static double multiply(double a, double b) {
+        return a * b;
+    }
+
+    private static double divide(double a, double b) {
+        if (b == 0) throw new ArithmeticException("Division by zero");
+        return a / b;
+    }
+}
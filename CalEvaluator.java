@@ -0,0 +1,78 @@
+// Allocation-free one-shot evaluator over CalTokens: the same shunting-yard rules as
+// CalCompiler, but on array-backed double/byte stacks instead of LinkedLists of boxes.
+// Not thread-safe; keep one instance per thread and reuse it.
+public final class CalEvaluator {
+
+    private double[] values = new double[16];
+    private byte[] ops = new byte[16];
+    private int valueTop;
+    private int opTop;
+
+    private static final double[] NO_VARIABLES = new double[0];
+
+    public double evaluate(CalTokens tokens) throws cal.InvalidExpressionException, ArithmeticException {
+        return evaluate(tokens, NO_VARIABLES);
+    }
+
+    // variables[slot] supplies the value of CalTokens.variableName(slot).
+    public double evaluate(CalTokens tokens, double[] variables) throws cal.InvalidExpressionException, ArithmeticException {
+        ensureCapacity(tokens.size() + 1);
+        valueTop = 0;
+        opTop = 0;
+        byte lastKind = -1;
+
+        for (int i = 0; i < tokens.size(); i++) {
+            byte kind = tokens.kinds[i];
+            if (kind == CalTokens.NUMBER) {
+                values[valueTop++] = tokens.values[i];
+            } else if (kind == CalTokens.VARIABLE) {
+                int slot = (int) tokens.values[i];
+                if (slot >= variables.length) {
+                    throw new cal.InvalidExpressionException("No value given for variable: " + tokens.variableName(slot));
+                }
+                values[valueTop++] = variables[slot];
+            } else if (kind == CalTokens.LPAREN) {
+                ops[opTop++] = kind;
+            } else if (kind == CalTokens.RPAREN) {
+                while (opTop > 0 && ops[opTop - 1] != CalTokens.LPAREN) reduceTop();
+                if (opTop == 0) throw new cal.InvalidExpressionException("Mismatched parentheses");
+                opTop--;
+            } else {
+                if (kind == CalTokens.MINUS && (lastKind == -1 || lastKind == CalTokens.TIMES || lastKind == CalTokens.DIVIDE
+                        || lastKind == CalTokens.PLUS || lastKind == CalTokens.LPAREN)) {
+                    values[valueTop++] = 0.0;
+                }
+                while (opTop > 0 && ops[opTop - 1] != CalTokens.LPAREN
+                        && CalTokens.precedence(ops[opTop - 1]) >= CalTokens.precedence(kind)) {
+                    reduceTop();
+                }
+                ops[opTop++] = kind;
+            }
+            lastKind = kind;
+        }
+
+        while (opTop > 0) {
+            if (ops[opTop - 1] == CalTokens.LPAREN) throw new cal.InvalidExpressionException("Mismatched parentheses");
+            reduceTop();
+        }
+        if (valueTop != 1) {
+            throw new cal.InvalidExpressionException("Malformed expression. Check operators and operands");
+        }
+        return values[0];
+    }
+
+    private void reduceTop() throws cal.InvalidExpressionException, ArithmeticException {
+        byte op = ops[--opTop];
+        if (valueTop < 2) throw new cal.InvalidExpressionException("Missing operand for operator: " + CalTokens.symbol(op));
+        double b = values[--valueTop];
+        double a = values[valueTop - 1];
+        values[valueTop - 1] = cal.applyOperation(a, b, CalTokens.symbol(op));
+    }
+
+    private void ensureCapacity(int capacity) {
+        // Each token pushes at most one value (plus an implicit 0 for unary minus)
+        int needed = capacity * 2;
+        if (values.length < needed) values = new double[needed];
+        if (ops.length < capacity) ops = new byte[capacity];
+    }
+}
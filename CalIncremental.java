@@ -0,0 +1,204 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+// Incremental parsing and evaluation for a sequence of edited expressions.
+//
+// update() diffs the new text against the previous one (common prefix and suffix),
+// re-scans only the changed span via CalTokens.splice, and rebuilds the tree through a
+// hash-consing node factory: a subtree that is structurally unchanged comes back as the
+// very same node object. Folded forms and evaluated values are memoized per node
+// identity, so after an edit only the subtrees on the path to the change are recomputed.
+//
+// Not thread-safe; one instance per interactive session.
+public final class CalIncremental {
+
+    // Interned nodes beyond this multiple of the live tree size are pruned
+    private static final int RETAIN_FACTOR = 4;
+    private static final int MIN_RETAINED = 1024;
+
+    private CalTokens current = new CalTokens();
+    private CalTokens spare = new CalTokens();
+    private String previousText;
+    private CalCompiler.Node root;
+
+    private final Map<NodeKey, CalCompiler.Node> interned = new HashMap<>();
+    private final Map<CalCompiler.Node, CalCompiler.Node> folded = new IdentityHashMap<>();
+    private final Map<CalCompiler.Node, Double> values = new IdentityHashMap<>();
+    private double[] valuesFor;
+
+    private long charsScanned;
+    private long nodesCreated;
+    private long nodesReused;
+    private long valuesComputed;
+    private long valuesReused;
+
+    // Structural identity of a node: children compare by identity, since they are interned.
+    private static final class NodeKey {
+        final char op; // 'n' number, 'v' variable, else the operator
+        final long bits;
+        final String text;
+        final CalCompiler.Node left;
+        final CalCompiler.Node right;
+
+        NodeKey(char op, long bits, String text, CalCompiler.Node left, CalCompiler.Node right) {
+            this.op = op;
+            this.bits = bits;
+            this.text = text;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof NodeKey)) return false;
+            NodeKey k = (NodeKey) o;
+            return op == k.op && bits == k.bits && left == k.left && right == k.right && Objects.equals(text, k.text);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = op * 31 + Long.hashCode(bits);
+            h = h * 31 + (text == null ? 0 : text.hashCode());
+            h = h * 31 + System.identityHashCode(left);
+            return h * 31 + System.identityHashCode(right);
+        }
+    }
+
+    private final CalCompiler.NodeFactory internedNodes = new CalCompiler.NodeFactory() {
+        @Override
+        public CalCompiler.Node number(double value, String literal) {
+            return intern(new NodeKey('n', Double.doubleToLongBits(value), literal, null, null));
+        }
+
+        @Override
+        public CalCompiler.Node variable(int slot, String name) {
+            return intern(new NodeKey('v', slot, name, null, null));
+        }
+
+        @Override
+        public CalCompiler.Node binary(char op, CalCompiler.Node left, CalCompiler.Node right) {
+            return intern(new NodeKey(op, 0, null, left, right));
+        }
+    };
+
+    private CalCompiler.Node intern(NodeKey key) {
+        CalCompiler.Node node = interned.get(key);
+        if (node != null) {
+            nodesReused++;
+            return node;
+        }
+        nodesCreated++;
+        if (key.op == 'n') node = new CalCompiler.Num(Double.longBitsToDouble(key.bits), key.text);
+        else if (key.op == 'v') node = new CalCompiler.Var((int) key.bits, key.text);
+        else node = new CalCompiler.BinOp(key.op, key.left, key.right);
+        interned.put(key, node);
+        return node;
+    }
+
+    // Parses text, reusing whatever the previous update left behind. On error the previous
+    // state is kept, so the next edit is still diffed against the last valid expression.
+    public CalCompiler.Expr update(String text) throws cal.InvalidExpressionException {
+        if (previousText == null) {
+            spare.tokenize(text);
+            charsScanned += text.length();
+        } else {
+            int prefix = 0;
+            int limit = Math.min(previousText.length(), text.length());
+            while (prefix < limit && previousText.charAt(prefix) == text.charAt(prefix)) prefix++;
+            int suffix = 0;
+            while (suffix < limit - prefix
+                    && previousText.charAt(previousText.length() - 1 - suffix) == text.charAt(text.length() - 1 - suffix)) {
+                suffix++;
+            }
+            charsScanned += spare.splice(current, text, prefix, previousText.length() - suffix, text.length() - suffix);
+        }
+        CalCompiler.Node source = CalCompiler.parse(spare, internedNodes);
+
+        CalTokens swap = current;
+        current = spare;
+        spare = swap;
+        previousText = text;
+        root = source;
+        prune();
+        return new CalCompiler.Expr(fold(source), source, current.variableNames());
+    }
+
+    // Tokens of the last successful update.
+    public CalTokens tokens() {
+        return current;
+    }
+
+    // Evaluates expr with memoized subtree values. The memo is dropped when the bindings
+    // change; within the same bindings, untouched subtrees of an edited expression are free.
+    public double evaluate(CalCompiler.Expr expr, double[] bindings) throws ArithmeticException {
+        if (bindings.length < expr.variableCount()) {
+            throw new IllegalArgumentException("No value given for variable: " + expr.variableNames()[bindings.length]);
+        }
+        if (valuesFor == null || !Arrays.equals(valuesFor, bindings)) {
+            values.clear();
+            valuesFor = bindings.clone();
+        }
+        return eval(expr.tree(), bindings);
+    }
+
+    private double eval(CalCompiler.Node node, double[] bindings) {
+        if (node instanceof CalCompiler.Num) return ((CalCompiler.Num) node).value;
+        if (node instanceof CalCompiler.Var) return bindings[((CalCompiler.Var) node).slot];
+        Double memo = values.get(node);
+        if (memo != null) {
+            valuesReused++;
+            return memo;
+        }
+        CalCompiler.BinOp bin = (CalCompiler.BinOp) node;
+        double value = cal.applyOperation(eval(bin.left, bindings), eval(bin.right, bindings), bin.op);
+        values.put(node, value);
+        valuesComputed++;
+        return value;
+    }
+
+    // CalCompiler.fold, memoized per interned node so unchanged subtrees fold in O(1).
+    private CalCompiler.Node fold(CalCompiler.Node node) {
+        if (!(node instanceof CalCompiler.BinOp)) return node;
+        CalCompiler.Node done = folded.get(node);
+        if (done != null) return done;
+        CalCompiler.BinOp bin = (CalCompiler.BinOp) node;
+        CalCompiler.Node left = fold(bin.left);
+        CalCompiler.Node right = fold(bin.right);
+        if (left instanceof CalCompiler.Num && right instanceof CalCompiler.Num
+                && !(bin.op == '/' && ((CalCompiler.Num) right).value == 0)) {
+            done = new CalCompiler.Num(cal.applyOperation(((CalCompiler.Num) left).value, ((CalCompiler.Num) right).value, bin.op));
+        } else {
+            done = left == bin.left && right == bin.right ? bin : new CalCompiler.BinOp(bin.op, left, right);
+        }
+        folded.put(node, done);
+        return done;
+    }
+
+    // Drops everything not reachable from the current tree once the tables outgrow it.
+    private void prune() {
+        int live = current.size();
+        if (interned.size() <= Math.max(MIN_RETAINED, live * RETAIN_FACTOR)) return;
+        Map<CalCompiler.Node, Boolean> reachable = new IdentityHashMap<>();
+        mark(root, reachable);
+        interned.values().removeIf(node -> !reachable.containsKey(node));
+        folded.keySet().removeIf(node -> !reachable.containsKey(node));
+        values.clear();
+    }
+
+    private static void mark(CalCompiler.Node node, Map<CalCompiler.Node, Boolean> reachable) {
+        // Loops down the left spine, which is the long one for chains like a + b + c + ...
+        while (node != null && reachable.put(node, Boolean.TRUE) == null) {
+            if (!(node instanceof CalCompiler.BinOp)) return;
+            mark(((CalCompiler.BinOp) node).right, reachable);
+            node = ((CalCompiler.BinOp) node).left;
+        }
+    }
+
+    public String stats() {
+        return String.format("scanned=%d chars, nodes created=%d reused=%d, values computed=%d reused=%d, interned=%d",
+                charsScanned, nodesCreated, nodesReused, valuesComputed, valuesReused, interned.size());
+    }
+}
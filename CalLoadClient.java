@@ -0,0 +1,152 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Load generator for CalServer: N connections, each sending pipelined batches of requests
+// for a fixed duration, then a throughput/latency report and the server's own STATS.
+//
+//   java CalLoadClient [--host 127.0.0.1] [--port 7878] [--unix /tmp/cal.sock]
+//        [--connections 16] [--duration 10] [--pipeline 32] [--expression "(x + 1) * y / 3"]
+//
+// Variables in the expression are bound to random values per request, so the server
+// parses once but evaluates every request.
+public class CalLoadClient {
+
+    private final String host;
+    private final int port;
+    private final Path unixPath;
+    private final String expression;
+    private final int pipeline;
+    private final LatencyHistogram batchLatency = new LatencyHistogram();
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder failedConnections = new LongAdder();
+
+    CalLoadClient(String host, int port, Path unixPath, String expression, int pipeline) {
+        this.host = host;
+        this.port = port;
+        this.unixPath = unixPath;
+        this.expression = expression;
+        this.pipeline = pipeline;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = "127.0.0.1";
+        int port = CalServer.DEFAULT_PORT;
+        Path unixPath = null;
+        int connections = 16;
+        int durationSeconds = 10;
+        int pipeline = 32;
+        String expression = "(x + 1) * y / 3";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host": host = args[++i]; break;
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--unix": unixPath = Path.of(args[++i]); break;
+                case "--connections": connections = Integer.parseInt(args[++i]); break;
+                case "--duration": durationSeconds = Integer.parseInt(args[++i]); break;
+                case "--pipeline": pipeline = Integer.parseInt(args[++i]); break;
+                case "--expression": expression = args[++i]; break;
+                default:
+                    System.err.println("Unknown argument: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        CalLoadClient client = new CalLoadClient(host, port, unixPath, expression, Math.max(1, pipeline));
+        client.run(connections, durationSeconds);
+    }
+
+    SocketChannel connect() throws IOException {
+        if (unixPath != null) {
+            SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            channel.connect(UnixDomainSocketAddress.of(unixPath));
+            return channel;
+        }
+        return SocketChannel.open(new InetSocketAddress(host, port));
+    }
+
+    void run(int connections, int durationSeconds) throws Exception {
+        String target = unixPath != null ? "unix " + unixPath : "tcp " + host + ":" + port;
+        System.out.printf("%d connections x pipeline %d for %d s against %s%n", connections, pipeline, durationSeconds, target);
+        String[] variables = variablesOf(expression);
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        ExecutorService executor = VirtualThreads.newPerTaskExecutor("cal-load");
+        for (int c = 0; c < connections; c++) {
+            executor.submit(() -> connectionLoop(deadline, variables));
+        }
+        executor.shutdown();
+        while (!executor.awaitTermination(2, TimeUnit.SECONDS)) {
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            System.out.printf("  %5.0f s: %d responses (%.0f/s)%n", elapsed, responses.sum(), responses.sum() / elapsed);
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        System.out.println();
+        System.out.printf("responses   %d%n", responses.sum());
+        System.out.printf("errors      %d%n", errors.sum());
+        System.out.printf("failed conn %d%n", failedConnections.sum());
+        System.out.printf("throughput  %.0f evaluations/s%n", responses.sum() / elapsed);
+        System.out.printf("batch of %d %s%n", pipeline, batchLatency.summary());
+        System.out.printf("per request %.2f us mean%n", batchLatency.getMeanNanos() / pipeline / 1e3);
+        try (SocketChannel channel = connect();
+             BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8))) {
+            out.write("STATS\n");
+            out.flush();
+            System.out.println("server      " + in.readLine());
+        }
+    }
+
+    private void connectionLoop(long deadline, String[] variables) {
+        try (SocketChannel channel = connect();
+             BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8))) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            StringBuilder request = new StringBuilder();
+            while (System.nanoTime() < deadline) {
+                long t0 = System.nanoTime();
+                for (int i = 0; i < pipeline; i++) {
+                    request.setLength(0);
+                    request.append(expression);
+                    for (int v = 0; v < variables.length; v++) {
+                        request.append(v == 0 ? " | " : ", ").append(variables[v]).append('=').append(random.nextInt(1, 1000));
+                    }
+                    out.write(request.append('\n').toString());
+                }
+                out.flush();
+                for (int i = 0; i < pipeline; i++) {
+                    String response = in.readLine();
+                    if (response == null) throw new IOException("Server closed the connection");
+                    if (!response.startsWith("OK ")) errors.increment();
+                    responses.increment();
+                }
+                batchLatency.record(System.nanoTime() - t0);
+            }
+        } catch (IOException e) {
+            failedConnections.increment();
+            System.err.println("Connection failed: " + e.getMessage());
+        }
+    }
+
+    private static String[] variablesOf(String expression) throws cal.InvalidExpressionException {
+        CalTokens tokens = new CalTokens();
+        tokens.tokenize(expression);
+        return tokens.variableNames();
+    }
+}
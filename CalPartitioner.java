@@ -0,0 +1,176 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Even/odd partitioning for large numeric inputs. The input is cut into CHUNK-sized
+// pieces that are classified in parallel on the common fork/join pool into primitive
+// buffers; the pieces are then concatenated in input order, so the result is identical to
+// a serial left-to-right pass. Parity is decided on exact long values, never through an
+// int cast, so it is correct across the whole long range.
+public final class CalPartitioner {
+
+    static final int CHUNK = 1 << 13;
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private static final double TWO_POW_63 = 0x1p63;
+
+    private CalPartitioner() {
+    }
+
+    public static final class Result {
+        public final long[] even;
+        public final long[] odd;
+        // Numbers with a fractional part
+        public final double[] fractional;
+        // Integral doubles of magnitude >= 2^63: even, but not representable as a long
+        public final double[] outOfRange;
+
+        Result(long[] even, long[] odd, double[] fractional, double[] outOfRange) {
+            this.even = even;
+            this.odd = odd;
+            this.fractional = fractional;
+            this.outOfRange = outOfRange;
+        }
+    }
+
+    public static Result partition(long[] numbers) {
+        return partition(numbers, null, numbers.length);
+    }
+
+    public static Result partition(double[] numbers) {
+        return partition(null, numbers, numbers.length);
+    }
+
+    // Every NUMBER token, using the literal's exact integer value where it has one.
+    public static Result partition(CalTokens tokens) {
+        int count = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.kind(i) == CalTokens.NUMBER) count++;
+        }
+        long[] exact = new long[count];
+        double[] values = new double[count];
+        for (int i = 0, n = 0; i < tokens.size(); i++) {
+            if (tokens.kind(i) == CalTokens.NUMBER) {
+                exact[n] = tokens.integerValue(i);
+                values[n++] = tokens.value(i);
+            }
+        }
+        return partition(exact, values, count);
+    }
+
+    // With values == null every exact[i] is the number. Otherwise exact[i] is used when
+    // exact != null and exact[i] >= 0 (token literals are never negative), else values[i].
+    private static Result partition(long[] exact, double[] values, int count) {
+        int chunks = (count + CHUNK - 1) / CHUNK;
+        Chunk[] pieces = new Chunk[chunks];
+        if (count >= PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new ClassifyTask(exact, values, count, pieces, 0, chunks));
+        } else {
+            for (int c = 0; c < chunks; c++) pieces[c] = classify(exact, values, count, c);
+        }
+        return merge(pieces);
+    }
+
+    private static final class ClassifyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] exact;
+        private final double[] values;
+        private final int count;
+        private final Chunk[] pieces;
+        private final int from;
+        private final int to;
+
+        ClassifyTask(long[] exact, double[] values, int count, Chunk[] pieces, int from, int to) {
+            this.exact = exact;
+            this.values = values;
+            this.count = count;
+            this.pieces = pieces;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                pieces[from] = classify(exact, values, count, from);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ClassifyTask(exact, values, count, pieces, from, mid),
+                    new ClassifyTask(exact, values, count, pieces, mid, to));
+        }
+    }
+
+    // Classification of one chunk; buffers are sized for the worst case and trimmed on merge.
+    private static final class Chunk {
+        final long[] even;
+        final long[] odd;
+        final double[] fractional;
+        double[] outOfRange = new double[0];
+        int evenCount;
+        int oddCount;
+        int fractionalCount;
+        int outOfRangeCount;
+
+        Chunk(int size) {
+            even = new long[size];
+            odd = new long[size];
+            fractional = new double[size];
+        }
+    }
+
+    private static Chunk classify(long[] exact, double[] values, int count, int chunk) {
+        int from = chunk * CHUNK;
+        int to = Math.min(count, from + CHUNK);
+        Chunk out = new Chunk(to - from);
+        for (int i = from; i < to; i++) {
+            if (values == null || (exact != null && exact[i] >= 0)) {
+                addInteger(out, exact[i]);
+                continue;
+            }
+            double num = values[i];
+            if (num % 1 != 0) { // Also NaN and infinities
+                out.fractional[out.fractionalCount++] = num;
+            } else if (Math.abs(num) >= TWO_POW_63) {
+                if (out.outOfRangeCount == out.outOfRange.length) {
+                    out.outOfRange = java.util.Arrays.copyOf(out.outOfRange, Math.max(4, out.outOfRangeCount * 2));
+                }
+                out.outOfRange[out.outOfRangeCount++] = num;
+            } else {
+                addInteger(out, (long) num);
+            }
+        }
+        return out;
+    }
+
+    private static void addInteger(Chunk out, long value) {
+        if ((value & 1) == 0) out.even[out.evenCount++] = value;
+        else out.odd[out.oddCount++] = value;
+    }
+
+    private static Result merge(Chunk[] pieces) {
+        int evens = 0, odds = 0, fractions = 0, outOfRange = 0;
+        for (Chunk piece : pieces) {
+            evens += piece.evenCount;
+            odds += piece.oddCount;
+            fractions += piece.fractionalCount;
+            outOfRange += piece.outOfRangeCount;
+        }
+        long[] even = new long[evens];
+        long[] odd = new long[odds];
+        double[] fractional = new double[fractions];
+        double[] large = new double[outOfRange];
+        evens = odds = fractions = outOfRange = 0;
+        for (Chunk piece : pieces) {
+            System.arraycopy(piece.even, 0, even, evens, piece.evenCount);
+            System.arraycopy(piece.odd, 0, odd, odds, piece.oddCount);
+            System.arraycopy(piece.fractional, 0, fractional, fractions, piece.fractionalCount);
+            System.arraycopy(piece.outOfRange, 0, large, outOfRange, piece.outOfRangeCount);
+            evens += piece.evenCount;
+            odds += piece.oddCount;
+            fractions += piece.fractionalCount;
+            outOfRange += piece.outOfRangeCount;
+        }
+        return new Result(even, odd, fractional, large);
+    }
+}
@@ -0,0 +1,156 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+// cal's Queue mode partitioning as a concurrent pipeline over DoubleRings:
+//
+//   caller (producer) -> input ring -> classifier -> even ring -> even consumer
+//                                                 -> odd ring  -> odd consumer
+//
+// Ring sizes follow the requested queue capacities (capped at MAX_RING), so a slow stage
+// back-pressures the ones before it instead of letting work pile up. Consumers cut the
+// values into fixed-capacity double[] segments, one per displayed queue. A stage that fails
+// aborts every ring, which stops the producer and the other stages, and its exception is
+// rethrown from partition().
+public final class CalPipeline {
+
+    static final int MAX_RING = 1024;
+    private static final int BATCH = 64;
+
+    private static final ExecutorService STAGES = VirtualThreads.newPerTaskExecutor("cal-pipeline");
+
+    private CalPipeline() {
+    }
+
+    public static final class Partitions {
+        public final List<double[]> input;
+        public final List<double[]> even;
+        public final List<double[]> odd;
+
+        Partitions(List<double[]> input, List<double[]> even, List<double[]> odd) {
+            this.input = input;
+            this.even = even;
+            this.odd = odd;
+        }
+    }
+
+    // Appends values into consecutive segments of at most capacity values each.
+    static final class Segments {
+        private final int capacity;
+        private final List<double[]> full = new ArrayList<>();
+        private double[] current;
+        private int count;
+
+        Segments(int capacity) {
+            this.capacity = Math.max(1, capacity);
+        }
+
+        void add(double value) {
+            if (current == null) current = new double[capacity];
+            current[count++] = value;
+            if (count == capacity) {
+                full.add(current);
+                current = null;
+                count = 0;
+            }
+        }
+
+        List<double[]> finish() {
+            if (count > 0) full.add(Arrays.copyOf(current, count));
+            current = null;
+            count = 0;
+            return full;
+        }
+    }
+
+    public static Partitions partition(double[] numbers, int inCap, int eoCap) throws InterruptedException {
+        return partition(numbers, null, inCap, eoCap);
+    }
+
+    // exact[i], when given and not CalTokens.NOT_INTEGER, is the exact value of numbers[i]
+    // and decides its parity; the double is rounded beyond 2^53 and could flip it.
+    public static Partitions partition(double[] numbers, long[] exact, int inCap, int eoCap) throws InterruptedException {
+        if (exact != null && exact.length != numbers.length) throw new IllegalArgumentException("exact must match numbers");
+        DoubleRing input = new SpscDoubleRing(ringSize(inCap));
+        DoubleRing even = new SpscDoubleRing(ringSize(eoCap));
+        DoubleRing odd = new SpscDoubleRing(ringSize(eoCap));
+        DoubleRing[] rings = {input, even, odd};
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Future<List<double[]>> classifier = STAGES.submit(() -> stage(failure, rings, () -> {
+            Segments segments = new Segments(inCap);
+            double[] batch = new double[BATCH];
+            int index = 0; // The input ring is FIFO, so this is the value's position in numbers
+            try {
+                for (int n = input.take(batch, 0, BATCH); n >= 0; n = input.take(batch, 0, BATCH)) {
+                    for (int i = 0; i < n; i++, index++) {
+                        double num = batch[i];
+                        segments.add(num);
+                        long integer = exact == null ? CalTokens.NOT_INTEGER : exact[index];
+                        int parity = integer != CalTokens.NOT_INTEGER ? (int) (integer & 1) : cal.parity(num);
+                        if (parity == 0) even.put(num);
+                        else if (parity == 1) odd.put(num);
+                    }
+                }
+            } finally {
+                even.close();
+                odd.close();
+            }
+            return segments.finish();
+        }));
+        Future<List<double[]>> evenConsumer = STAGES.submit(() -> stage(failure, rings, () -> collect(even, eoCap)));
+        Future<List<double[]>> oddConsumer = STAGES.submit(() -> stage(failure, rings, () -> collect(odd, eoCap)));
+        List<Future<List<double[]>>> stages = Arrays.asList(classifier, evenConsumer, oddConsumer);
+
+        try {
+            for (double num : numbers) input.put(num);
+            input.close();
+        } catch (IllegalStateException e) {
+            if (!input.isAborted()) throw e; // Otherwise a stage failed; reported below
+        } catch (InterruptedException | RuntimeException | Error e) {
+            for (DoubleRing ring : rings) ring.abort();
+            for (Future<?> stage : stages) stage.cancel(true);
+            throw e;
+        }
+        try {
+            return new Partitions(classifier.get(), evenConsumer.get(), oddConsumer.get());
+        } catch (ExecutionException e) {
+            for (Future<?> stage : stages) stage.cancel(true);
+            Throwable cause = failure.get() != null ? failure.get() : e.getCause();
+            throw new IllegalStateException("Queue pipeline stage failed", cause);
+        }
+    }
+
+    private interface Stage {
+        List<double[]> run() throws Exception;
+    }
+
+    // The first stage to fail records its exception and aborts all rings, so nobody waits
+    // on a ring the failed stage will never drain or close.
+    private static List<double[]> stage(AtomicReference<Throwable> failure, DoubleRing[] rings, Stage body) throws Exception {
+        try {
+            return body.run();
+        } catch (Exception | Error e) {
+            failure.compareAndSet(null, e);
+            for (DoubleRing ring : rings) ring.abort();
+            throw e;
+        }
+    }
+
+    private static List<double[]> collect(DoubleRing ring, int capacity) throws InterruptedException {
+        Segments segments = new Segments(capacity);
+        double[] batch = new double[BATCH];
+        for (int n = ring.take(batch, 0, BATCH); n >= 0; n = ring.take(batch, 0, BATCH)) {
+            for (int i = 0; i < n; i++) segments.add(batch[i]);
+        }
+        return segments.finish();
+    }
+
+    private static int ringSize(int capacity) {
+        return Math.min(Math.max(1, capacity), MAX_RING);
+    }
+}
@@ -0,0 +1,185 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+// Precision modes for cal results.
+//
+//   DOUBLE   - plain binary floating point, as cal always did.
+//   EXACT    - BigDecimal over the literals' decimal text: +, - and * are exact, division
+//              is exact when it terminates and otherwise rounded to CONTEXT.
+//   ADAPTIVE - evaluates in double while tracking a bound on the accumulated error; if the
+//              bound proves the result's first DISPLAY_DIGITS significant digits, those are
+//              returned, otherwise the expression is re-evaluated in EXACT mode.
+public final class CalPrecision {
+
+    public enum Mode { DOUBLE, EXACT, ADAPTIVE }
+
+    static final MathContext CONTEXT = MathContext.DECIMAL128;
+    static final int DISPLAY_DIGITS = 15;
+    private static final MathContext DISPLAY = new MathContext(DISPLAY_DIGITS, RoundingMode.HALF_EVEN);
+    private static final double MAX_EXACT_INTEGER = 0x1p53;
+
+    private CalPrecision() {
+    }
+
+    public static final class Result {
+        public final BigDecimal value;
+        // False when the value had to be rounded (non-terminating division, display digits)
+        public final boolean exact;
+        // True when ADAPTIVE could answer from the double evaluation alone
+        public final boolean fastPath;
+
+        Result(BigDecimal value, boolean exact, boolean fastPath) {
+            this.value = value;
+            this.exact = exact;
+            this.fastPath = fastPath;
+        }
+
+        public double doubleValue() {
+            return value.doubleValue();
+        }
+
+        @Override
+        public String toString() {
+            return value.stripTrailingZeros().toPlainString();
+        }
+    }
+
+    public static Mode parseMode(String text) {
+        return Mode.valueOf(text.trim().toUpperCase());
+    }
+
+    public static Result evaluate(CalCompiler.Expr expr, double[] bindings, Mode mode) throws ArithmeticException {
+        switch (mode) {
+            case DOUBLE:
+                double value = expr.evaluate(bindings);
+                if (Double.isNaN(value) || Double.isInfinite(value)) throw new ArithmeticException("Result is not finite: " + value);
+                return new Result(BigDecimal.valueOf(value), false, true);
+            case EXACT:
+                return exact(expr, bindings);
+            default:
+                return adaptive(expr, bindings);
+        }
+    }
+
+    // --- EXACT ---
+
+    static Result exact(CalCompiler.Expr expr, double[] bindings) {
+        if (bindings.length < expr.variableCount()) {
+            throw new IllegalArgumentException("No value given for variable: " + expr.variableNames()[bindings.length]);
+        }
+        boolean[] rounded = new boolean[1];
+        BigDecimal value = exact(expr.sourceTree(), bindings, rounded);
+        return new Result(value, !rounded[0], false);
+    }
+
+    // Walks the unfolded tree: folding happened in double, which would defeat the point.
+    private static BigDecimal exact(CalCompiler.Node node, double[] bindings, boolean[] rounded) {
+        if (node instanceof CalCompiler.Num) {
+            CalCompiler.Num num = (CalCompiler.Num) node;
+            return num.literal != null ? new BigDecimal(num.literal) : new BigDecimal(num.value);
+        }
+        if (node instanceof CalCompiler.Var) {
+            // Values were typed as decimals; the shortest repr gives back what was entered
+            return BigDecimal.valueOf(bindings[((CalCompiler.Var) node).slot]);
+        }
+        CalCompiler.BinOp bin = (CalCompiler.BinOp) node;
+        BigDecimal a = exact(bin.left, bindings, rounded);
+        BigDecimal b = exact(bin.right, bindings, rounded);
+        switch (bin.op) {
+            case '+': return a.add(b);
+            case '-': return a.subtract(b);
+            case '*': return a.multiply(b);
+            case '/':
+                if (b.signum() == 0) throw new ArithmeticException("Division by zero");
+                try {
+                    return a.divide(b);
+                } catch (ArithmeticException nonTerminating) {
+                    rounded[0] = true;
+                    return a.divide(b, CONTEXT);
+                }
+            default: throw new IllegalArgumentException("Invalid operator: " + bin.op);
+        }
+    }
+
+    // --- ADAPTIVE ---
+
+    static Result adaptive(CalCompiler.Expr expr, double[] bindings) {
+        if (bindings.length < expr.variableCount()) {
+            throw new IllegalArgumentException("No value given for variable: " + expr.variableNames()[bindings.length]);
+        }
+        double[] error = new double[1];
+        double value = bounded(expr.sourceTree(), bindings, error);
+        double bound = error[0];
+        if (bound == 0 && Math.abs(value) <= MAX_EXACT_INTEGER) {
+            return new Result(new BigDecimal(value), true, true);
+        }
+        if (!Double.isInfinite(bound) && !Double.isNaN(value) && !Double.isInfinite(value)) {
+            // Every value within the bound rounds to the same digits, so those digits are right.
+            // The interval ends are computed exactly: value +/- bound in double could round inward.
+            BigDecimal center = new BigDecimal(value);
+            BigDecimal radius = new BigDecimal(bound);
+            BigDecimal low = center.subtract(radius).round(DISPLAY);
+            BigDecimal high = center.add(radius).round(DISPLAY);
+            if (low.compareTo(high) == 0) return new Result(low, false, true);
+        }
+        return exact(expr, bindings);
+    }
+
+    // Returns the double value of node and stores into error[0] a bound on |value - exact|,
+    // using |fl(x op y) - (x op y)| <= ulp/2 per operation plus the propagated input error.
+    private static double bounded(CalCompiler.Node node, double[] bindings, double[] error) {
+        if (node instanceof CalCompiler.Num) {
+            CalCompiler.Num num = (CalCompiler.Num) node;
+            error[0] = literalError(num.value, num.literal);
+            return num.value;
+        }
+        if (node instanceof CalCompiler.Var) {
+            double v = bindings[((CalCompiler.Var) node).slot];
+            error[0] = literalError(v, null);
+            return v;
+        }
+        CalCompiler.BinOp bin = (CalCompiler.BinOp) node;
+        double a = bounded(bin.left, bindings, error);
+        double ea = error[0];
+        double b = bounded(bin.right, bindings, error);
+        double eb = error[0];
+        double r;
+        double e;
+        switch (bin.op) {
+            case '+': r = a + b; e = ea + eb; break;
+            case '-': r = a - b; e = ea + eb; break;
+            case '*': r = a * b; e = Math.abs(a) * eb + Math.abs(b) * ea + ea * eb; break;
+            case '/':
+                if (b == 0) throw new ArithmeticException("Division by zero");
+                r = a / b;
+                e = Math.abs(b) > eb ? (ea + Math.abs(r) * eb) / (Math.abs(b) - eb) : Double.POSITIVE_INFINITY;
+                break;
+            default: throw new IllegalArgumentException("Invalid operator: " + bin.op);
+        }
+        error[0] = e + roundingError(r, e == 0 && bin.op != '/' && isSmallInteger(a) && isSmallInteger(b));
+        return r;
+    }
+
+    // Integers up to 2^53 are exact doubles, and +, -, * of them is exact while the result
+    // also stays in that range.
+    private static double roundingError(double r, boolean exactIntegerOp) {
+        if (exactIntegerOp && isSmallInteger(r)) return 0;
+        return Math.ulp(r) / 2;
+    }
+
+    // Zero only when the double is exactly the decimal that was written (or typed).
+    private static double literalError(double value, String literal) {
+        if (literal == null) {
+            if (isSmallInteger(value)) return 0;
+        } else {
+            long exact = CalTokens.parseInteger(literal, 0, literal.length());
+            if (exact != CalTokens.NOT_INTEGER && exact <= 1L << 53) return 0;
+        }
+        return Math.ulp(value) / 2;
+    }
+
+    private static boolean isSmallInteger(double v) {
+        return v % 1 == 0 && Math.abs(v) <= MAX_EXACT_INTEGER;
+    }
+}
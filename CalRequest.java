@@ -0,0 +1,75 @@
+// One line of headless cal input: an expression, optionally followed by variable
+// bindings after a '|', e.g. "rate * (x + 2) | rate=1.5, x=4". Shared by every
+// line-oriented front end so they all accept exactly the same syntax.
+public final class CalRequest {
+
+    private static final String[] NO_NAMES = new String[0];
+    private static final double[] NO_VALUES = new double[0];
+
+    public final String expression;
+    private final String[] names;
+    private final double[] values;
+
+    private CalRequest(String expression, String[] names, double[] values) {
+        this.expression = expression;
+        this.names = names;
+        this.values = values;
+    }
+
+    public static CalRequest parse(String line) throws cal.InvalidExpressionException {
+        int bar = line.indexOf('|');
+        if (bar < 0) return new CalRequest(line, NO_NAMES, NO_VALUES);
+
+        String expression = line.substring(0, bar);
+        String bindings = line.substring(bar + 1).trim();
+        if (bindings.isEmpty()) return new CalRequest(expression, NO_NAMES, NO_VALUES);
+
+        String[] parts = bindings.split(",");
+        String[] names = new String[parts.length];
+        double[] values = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            String part = parts[i];
+            int eq = part.indexOf('=');
+            if (eq < 0) throw new cal.InvalidExpressionException("Binding must be name=value: " + part.trim());
+            names[i] = part.substring(0, eq).trim();
+            String value = part.substring(eq + 1).trim();
+            try {
+                values[i] = Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                throw new cal.InvalidExpressionException("Invalid value for " + names[i] + ": " + value);
+            }
+        }
+        return new CalRequest(expression, names, values);
+    }
+
+    public int bindingCount() {
+        return names.length;
+    }
+
+    // Orders the bound values by the variable slots of the tokenized expression, ready
+    // for CalEvaluator / CalCompiler.Expr. Later bindings of the same name win.
+    public double[] bind(CalTokens tokens) throws cal.InvalidExpressionException {
+        int count = tokens.variableCount();
+        if (count == 0) return NO_VALUES;
+        double[] slots = new double[count];
+        for (int slot = 0; slot < count; slot++) {
+            slots[slot] = valueOf(tokens.variableName(slot));
+        }
+        return slots;
+    }
+
+    public double[] bind(String[] variableNames) throws cal.InvalidExpressionException {
+        double[] slots = new double[variableNames.length];
+        for (int slot = 0; slot < variableNames.length; slot++) {
+            slots[slot] = valueOf(variableNames[slot]);
+        }
+        return slots;
+    }
+
+    private double valueOf(String name) throws cal.InvalidExpressionException {
+        for (int i = names.length - 1; i >= 0; i--) {
+            if (names[i].equals(name)) return values[i];
+        }
+        throw new cal.InvalidExpressionException("No value given for variable: " + name);
+    }
+}
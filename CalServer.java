@@ -0,0 +1,186 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Local evaluation service for cal expressions over TCP and/or a Unix domain socket.
+//
+//   java CalServer [--port 7878] [--host 127.0.0.1] [--unix /tmp/cal.sock]
+//
+// Line protocol, one request per line (UTF-8), one response line per request:
+//
+//   <expression>[ | name=value, ...]   ->  OK <value>  |  ERR <message>
+//   STATS                              ->  OK requests=... errors=... rate=.../s ...
+//   QUIT                               ->  connection closed
+//
+// Each connection is served on its own virtual thread (platform threads before JDK 21).
+// Requests go through the shared CalCache, so repeated expressions skip parsing and hot
+// ones run on the MethodHandle tier. Clients may pipeline: responses are flushed once the
+// connection has no further buffered input.
+public class CalServer implements AutoCloseable {
+
+    static final int DEFAULT_PORT = 7878;
+
+    private final CalCache cache = CalCache.shared();
+    private final ExecutorService connections = VirtualThreads.newPerTaskExecutor("cal-connection");
+    private final List<ServerSocketChannel> listeners = new ArrayList<>();
+    private final List<Path> socketFiles = new ArrayList<>();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final LongAdder totalConnections = new LongAdder();
+    private final long startNanos = System.nanoTime();
+    private volatile boolean closed;
+
+    public static void main(String[] args) throws IOException {
+        String host = "127.0.0.1";
+        int port = DEFAULT_PORT;
+        boolean tcp = true;
+        String unixPath = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host": host = args[++i]; break;
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--unix": unixPath = args[++i]; break;
+                case "--no-tcp": tcp = false; break;
+                default:
+                    System.err.println("Usage: CalServer [--port N] [--host ADDR] [--unix PATH] [--no-tcp]");
+                    System.exit(2);
+            }
+        }
+
+        CalServer server = new CalServer();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close, "cal-server-shutdown"));
+        if (tcp) {
+            SocketAddress address = server.listenTcp(host, port);
+            System.out.println("Listening on tcp " + address);
+        }
+        if (unixPath != null) {
+            server.listenUnix(Path.of(unixPath));
+            System.out.println("Listening on unix " + unixPath);
+        }
+        if (server.listeners.isEmpty()) {
+            System.err.println("Nothing to listen on: give --unix when using --no-tcp");
+            System.exit(2);
+        }
+        System.out.println("Evaluating on " + (VirtualThreads.available() ? "virtual" : "platform") + " threads; Ctrl+C to stop");
+    }
+
+    public SocketAddress listenTcp(String host, int port) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        channel.bind(new InetSocketAddress(host, port));
+        startAccepting(channel, "tcp");
+        return channel.getLocalAddress();
+    }
+
+    public void listenUnix(Path path) throws IOException {
+        Files.deleteIfExists(path); // Left behind by an earlier run that was killed
+        ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        channel.bind(UnixDomainSocketAddress.of(path));
+        socketFiles.add(path);
+        startAccepting(channel, "unix");
+    }
+
+    private void startAccepting(ServerSocketChannel channel, String name) {
+        listeners.add(channel);
+        Thread acceptor = new Thread(() -> acceptLoop(channel), "cal-accept-" + name);
+        acceptor.start();
+    }
+
+    private void acceptLoop(ServerSocketChannel channel) {
+        while (!closed) {
+            try {
+                SocketChannel client = channel.accept();
+                totalConnections.increment();
+                connections.execute(() -> serve(client));
+            } catch (IOException e) {
+                if (!closed) System.err.println("Accept failed: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void serve(SocketChannel client) {
+        openConnections.incrementAndGet();
+        try (SocketChannel channel = client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String request = line.trim();
+                if (request.isEmpty()) continue;
+                if (request.equalsIgnoreCase("QUIT")) break;
+                out.write(request.equalsIgnoreCase("STATS") ? "OK " + stats() : handle(request));
+                out.write('\n');
+                if (!in.ready()) out.flush(); // Batch responses to pipelined requests
+            }
+            out.flush();
+        } catch (IOException e) {
+            // Client went away mid-request; nothing to answer
+        } finally {
+            openConnections.decrementAndGet();
+        }
+    }
+
+    // Evaluates one request line; never throws, errors become "ERR ..." responses.
+    String handle(String line) {
+        long start = System.nanoTime();
+        String response;
+        try {
+            CalRequest request = CalRequest.parse(line);
+            CalCompiler.Expr expr = cache.get(request.expression).expr;
+            response = "OK " + expr.evaluate(request.bind(expr.variableNames()));
+        } catch (cal.InvalidExpressionException | ArithmeticException | IllegalArgumentException e) {
+            errors.increment();
+            response = "ERR " + e.getMessage();
+        }
+        requests.increment();
+        latency.record(System.nanoTime() - start);
+        return response;
+    }
+
+    public String stats() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        long count = requests.sum();
+        return String.format("requests=%d errors=%d rate=%.0f/s connections=%d/%d p50=%.1fus p99=%.1fus max=%.1fus cache=[%s]",
+                count, errors.sum(), seconds > 0 ? count / seconds : 0.0, openConnections.get(), totalConnections.sum(),
+                latency.percentile(50) / 1e3, latency.percentile(99) / 1e3, latency.getMaxNanos() / 1e3, cache.stats());
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        for (ServerSocketChannel listener : listeners) {
+            try {
+                listener.close();
+            } catch (IOException ignored) {
+            }
+        }
+        connections.shutdownNow();
+        for (Path path : socketFiles) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
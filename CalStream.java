@@ -0,0 +1,253 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Headless cal: evaluates one expression per input line on a pool of worker threads.
+//
+//   java cal --stream [file|-] [--threads N] [--unordered]
+//
+// Each line is "expression" or "expression | name=value, ...". Lines are read in chunks
+// and each chunk is evaluated by one worker with its own CalTokens/CalEvaluator, so the
+// per-line cost is a tokenize plus an allocation-free evaluation.
+//
+// Ordered (default): one output line per input line, in input order; blank input lines
+// give blank output lines. Unordered: chunks are written as soon as they finish and each
+// line is prefixed with its 1-based input line number and a tab. Failed lines are written
+// inline as "ERROR <message>". A summary goes to stderr.
+public final class CalStream {
+
+    static final int CHUNK = 4096;
+    private static final int OUTPUT_BUFFER = 1 << 16;
+
+    private final int threads;
+    private final boolean ordered;
+    private final AtomicLong evaluated = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    public CalStream(int threads, boolean ordered) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+        this.threads = threads;
+        this.ordered = ordered;
+    }
+
+    public static void main(String[] args) {
+        String file = "-";
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean ordered = true;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--threads": threads = Integer.parseInt(args[++i]); break;
+                    case "--unordered": ordered = false; break;
+                    case "--ordered": ordered = true; break;
+                    default:
+                        if (args[i].startsWith("--")) throw new IllegalArgumentException("Unknown option: " + args[i]);
+                        file = args[i];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println("Usage: cal --stream [file|-] [--threads N] [--unordered]");
+            if (e.getMessage() != null) System.err.println(e.getMessage());
+            System.exit(2);
+        }
+
+        CalStream stream = new CalStream(threads, ordered);
+        long start = System.nanoTime();
+        try (InputStream in = file.equals("-") ? System.in : new FileInputStream(file)) {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), OUTPUT_BUFFER);
+            stream.run(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), OUTPUT_BUFFER), out);
+        } catch (IOException e) {
+            System.err.println("Stream failed: " + e.getMessage());
+            System.exit(1);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("Evaluated %d expressions (%d errors) in %.2f s, %.0f per minute, %d threads, %s%n",
+                stream.evaluated.get(), stream.errors.get(), seconds,
+                seconds > 0 ? stream.evaluated.get() * 60 / seconds : 0.0,
+                threads, ordered ? "ordered" : "unordered");
+    }
+
+    public long evaluatedCount() {
+        return evaluated.get();
+    }
+
+    public long errorCount() {
+        return errors.get();
+    }
+
+    // Reads until end of input, writes every result and flushes; does not close either side.
+    public void run(BufferedReader in, Writer out) throws IOException {
+        AtomicInteger workerIds = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "cal-stream-" + workerIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            if (ordered) runOrdered(in, out, workers);
+            else runUnordered(in, out, workers);
+            out.flush();
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    // Futures go into a bounded queue in submission order; a writer thread drains it, so
+    // output order matches input and the reader blocks when workers fall behind. If the
+    // writer stops (write error, failed worker) the reader stops too and queued chunks are
+    // cancelled rather than left for a writer that will never take them.
+    private void runOrdered(BufferedReader in, Writer out, ExecutorService workers) throws IOException {
+        FutureTask<String> end = new FutureTask<>(() -> null);
+        BlockingQueue<Future<String>> pending = new ArrayBlockingQueue<>(threads * 4);
+        AtomicReference<IOException> writeFailure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                for (Future<String> next = pending.take(); next != end; next = pending.take()) {
+                    out.write(next.get());
+                }
+            } catch (IOException e) {
+                writeFailure.compareAndSet(null, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                writeFailure.compareAndSet(null, new IOException("Worker failed", e.getCause()));
+            } catch (RuntimeException e) {
+                writeFailure.compareAndSet(null, new IOException("Writer failed", e));
+            } finally {
+                cancelPending(pending);
+            }
+        }, "cal-stream-writer");
+        writer.start();
+
+        try {
+            long firstLine = 1;
+            for (String[] chunk = readChunk(in); chunk != null; chunk = readChunk(in)) {
+                final String[] lines = chunk;
+                final long lineNumber = firstLine;
+                if (!enqueue(pending, workers.submit(() -> evaluateChunk(lines, lineNumber)), writer, writeFailure)) break;
+                firstLine += chunk.length;
+            }
+            enqueue(pending, end, writer, writeFailure);
+            writer.join();
+        } catch (InterruptedException e) {
+            writer.interrupt();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while streaming", e);
+        } finally {
+            if (writeFailure.get() != null || !writer.isAlive()) cancelPending(pending);
+        }
+        if (writeFailure.get() != null) throw writeFailure.get();
+    }
+
+    // Waits for queue space while the writer is still taking; false (and the future
+    // cancelled) once it has stopped.
+    private static boolean enqueue(BlockingQueue<Future<String>> pending, Future<String> future, Thread writer,
+                                   AtomicReference<IOException> writeFailure) throws InterruptedException {
+        while (writeFailure.get() == null && writer.isAlive()) {
+            if (pending.offer(future, 100, TimeUnit.MILLISECONDS)) return true;
+        }
+        future.cancel(true);
+        return false;
+    }
+
+    private static void cancelPending(BlockingQueue<Future<String>> pending) {
+        for (Future<String> future = pending.poll(); future != null; future = pending.poll()) {
+            future.cancel(true);
+        }
+    }
+
+    // At most threads * 4 chunks in flight; whichever finishes first is written first. The
+    // first write error or worker exception stops reading and is rethrown.
+    private void runUnordered(BufferedReader in, Writer out, ExecutorService workers) throws IOException {
+        int maxInFlight = threads * 4;
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        try {
+            long firstLine = 1;
+            for (String[] chunk = readChunk(in); chunk != null && failure.get() == null; chunk = readChunk(in)) {
+                inFlight.acquire();
+                final String[] lines = chunk;
+                final long lineNumber = firstLine;
+                workers.execute(() -> {
+                    try {
+                        String text = evaluateChunk(lines, lineNumber);
+                        synchronized (out) {
+                            out.write(text);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+                firstLine += chunk.length;
+            }
+            inFlight.acquire(maxInFlight);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while streaming", e);
+        }
+        Exception failed = failure.get();
+        if (failed instanceof IOException) throw (IOException) failed;
+        if (failed != null) throw (RuntimeException) failed;
+    }
+
+    private static String[] readChunk(BufferedReader in) throws IOException {
+        String[] lines = new String[CHUNK];
+        int count = 0;
+        String line;
+        while (count < CHUNK && (line = in.readLine()) != null) {
+            lines[count++] = line;
+        }
+        if (count == 0) return null;
+        return count == CHUNK ? lines : java.util.Arrays.copyOf(lines, count);
+    }
+
+    // Runs on a worker thread; the scanner and evaluator are reused for the whole chunk.
+    private String evaluateChunk(String[] lines, long firstLine) {
+        CalTokens tokens = new CalTokens();
+        CalEvaluator evaluator = new CalEvaluator();
+        StringBuilder sb = new StringBuilder(lines.length * 12);
+        long done = 0;
+        long failed = 0;
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            boolean blank = line.trim().isEmpty();
+            if (blank && !ordered) continue;
+            if (!ordered) sb.append(firstLine + i).append('\t');
+            if (!blank) {
+                done++;
+                try {
+                    CalRequest request = CalRequest.parse(line);
+                    tokens.tokenize(request.expression);
+                    sb.append(evaluator.evaluate(tokens, request.bind(tokens)));
+                } catch (cal.InvalidExpressionException | ArithmeticException e) {
+                    failed++;
+                    sb.append("ERROR ").append(e.getMessage());
+                }
+            }
+            sb.append('\n');
+        }
+        evaluated.addAndGet(done);
+        errors.addAndGet(failed);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,296 @@
+// Primitive token buffer for cal expressions: parallel kind/value/offset arrays instead of
+// a List<Object> of boxed Doubles and Characters. A CalTokens instance is reusable; once its
+// arrays have grown to fit the longest expression, tokenize() allocates nothing.
+public final class CalTokens {
+
+    static final byte NUMBER = 0;
+    static final byte PLUS = 1;
+    static final byte MINUS = 2;
+    static final byte TIMES = 3;
+    static final byte DIVIDE = 4;
+    static final byte LPAREN = 5;
+    static final byte RPAREN = 6;
+    static final byte VARIABLE = 7;
+
+    // integerValue() of a literal that is not an integer or does not fit in a long
+    public static final long NOT_INTEGER = -1;
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    byte[] kinds = new byte[16];
+    double[] values = new double[16];
+    long[] integers = new long[16];
+    int[] starts = new int[16];
+    int[] ends = new int[16];
+    int size;
+    private CharSequence source = "";
+    // Variable names in order of first appearance; a VARIABLE token's value is its slot
+    private String[] variableNames = new String[4];
+    private int variableCount;
+
+    public int size() {
+        return size;
+    }
+
+    public byte kind(int i) {
+        return kinds[i];
+    }
+
+    public double value(int i) {
+        return values[i];
+    }
+
+    // Exact value of an integral NUMBER literal ("42", "42.000"), or NOT_INTEGER. Unlike
+    // value(i) this stays exact beyond 2^53, up to Long.MAX_VALUE.
+    public long integerValue(int i) {
+        return integers[i];
+    }
+
+    public CharSequence source() {
+        return source;
+    }
+
+    public int variableCount() {
+        return variableCount;
+    }
+
+    public String variableName(int slot) {
+        return variableNames[slot];
+    }
+
+    public String[] variableNames() {
+        return java.util.Arrays.copyOf(variableNames, variableCount);
+    }
+
+    // Source text of token i (allocates; meant for messages and display).
+    public String text(int i) {
+        return source.subSequence(starts[i], ends[i]).toString();
+    }
+
+    public void tokenize(CharSequence expr) throws cal.InvalidExpressionException {
+        source = expr;
+        size = 0;
+        variableCount = 0;
+        checkClosed(scan(expr, 0, expr.length(), 0));
+    }
+
+    // Tokenizes expr, an edit of previous.source() in which the old text [from, oldTo) was
+    // replaced by expr[from, newTo). Tokens clear of the edit are copied from previous (with
+    // shifted offsets and re-resolved variable slots) instead of being scanned again; only
+    // the span between them is scanned. Returns the number of characters scanned.
+    int splice(CalTokens previous, CharSequence expr, int from, int oldTo, int newTo) throws cal.InvalidExpressionException {
+        CharSequence old = previous.source;
+        int delta = newTo - oldTo;
+        // Keep tokens that were terminated before the edit: the same characters end them now
+        int keep = 0;
+        while (keep < previous.size && previous.ends[keep] < from) keep++;
+        // Resume copying at a token that starts after the edit behind a separator, so the
+        // scanner would be between tokens there in the new text as well
+        int resume = keep;
+        while (resume < previous.size && !(previous.starts[resume] - 1 >= oldTo
+                && isSeparator(old.charAt(previous.starts[resume] - 1)))) {
+            resume++;
+        }
+        int scanFrom = keep > 0 ? previous.ends[keep - 1] : 0;
+        int scanTo = resume < previous.size ? previous.starts[resume] + delta : expr.length();
+
+        source = expr;
+        size = 0;
+        variableCount = 0;
+        int balance = copy(previous, 0, keep, expr, 0, 0);
+        balance = scan(expr, scanFrom, scanTo, balance);
+        balance = copy(previous, resume, previous.size, expr, delta, balance);
+        checkClosed(balance);
+        return scanTo - scanFrom;
+    }
+
+    private static boolean isSeparator(char c) {
+        return Character.isWhitespace(c) || kindOf(c) >= 0;
+    }
+
+    // Appends previous's tokens [from, to), shifted by delta, to this buffer.
+    private int copy(CalTokens previous, int from, int to, CharSequence expr, int delta, int balance) throws cal.InvalidExpressionException {
+        for (int t = from; t < to; t++) {
+            byte kind = previous.kinds[t];
+            int start = previous.starts[t] + delta;
+            int end = previous.ends[t] + delta;
+            double value = kind == VARIABLE ? slotOf(expr, start, end) : previous.values[t];
+            add(kind, value, start, end);
+            integers[size - 1] = previous.integers[t];
+            balance = track(kind, balance);
+        }
+        return balance;
+    }
+
+    private int scan(CharSequence expr, int from, int to, int balance) throws cal.InvalidExpressionException {
+        for (int i = from; i < to; i++) {
+            char c = expr.charAt(i);
+            if (Character.isWhitespace(c)) continue;
+
+            if (Character.isDigit(c) || c == '.') {
+                int start = i;
+                while (i < to && (Character.isDigit(expr.charAt(i)) || expr.charAt(i) == '.')) {
+                    i++;
+                }
+                add(NUMBER, parseNumber(expr, start, i), start, i);
+                integers[size - 1] = parseInteger(expr, start, i);
+                i--;
+            } else if (isIdentifierStart(c)) {
+                int start = i;
+                while (i < to && isIdentifierPart(expr.charAt(i))) {
+                    i++;
+                }
+                add(VARIABLE, slotOf(expr, start, i), start, i);
+                i--;
+            } else {
+                byte kind = kindOf(c);
+                if (kind < 0) {
+                    throw new cal.InvalidExpressionException("Invalid character in expression: " + c);
+                }
+                add(kind, 0, i, i + 1);
+                balance = track(kind, balance);
+            }
+        }
+        return balance;
+    }
+
+    private static int track(byte kind, int balance) throws cal.InvalidExpressionException {
+        if (kind == LPAREN) balance++;
+        else if (kind == RPAREN) balance--;
+        if (balance < 0) throw new cal.InvalidExpressionException("Unbalanced parentheses: Extra ')' detected");
+        return balance;
+    }
+
+    private static void checkClosed(int balance) throws cal.InvalidExpressionException {
+        if (balance != 0) {
+            throw new cal.InvalidExpressionException("Unbalanced parentheses: Mismatch in '(' and ')' count");
+        }
+    }
+
+    // Parses [start, end) which holds only digits and '.'. While the digits fit in 2^53 and there
+    // are at most 22 fraction digits, the result is mantissa / 10^scale: both operands are exact
+    // doubles, so the single division is correctly rounded, matching Double.parseDouble.
+    // Longer literals fall back to Double.parseDouble.
+    static double parseNumber(CharSequence expr, int start, int end) throws cal.InvalidExpressionException {
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean seenDot = false;
+        for (int i = start; i < end; i++) {
+            char c = expr.charAt(i);
+            if (c == '.') {
+                if (seenDot) throw invalidNumber(expr, start, end);
+                seenDot = true;
+                continue;
+            }
+            digits++;
+            if (seenDot) fractionDigits++;
+            if (mantissa < MAX_EXACT_MANTISSA) {
+                mantissa = mantissa * 10 + (c - '0');
+            } else {
+                mantissa = Long.MAX_VALUE; // Beyond the exact range, use the slow path
+            }
+        }
+        if (digits == 0) throw invalidNumber(expr, start, end);
+        if (mantissa <= MAX_EXACT_MANTISSA && fractionDigits < POW10.length) {
+            return fractionDigits == 0 ? mantissa : mantissa / POW10[fractionDigits];
+        }
+        try {
+            return Double.parseDouble(expr.subSequence(start, end).toString());
+        } catch (NumberFormatException e) {
+            throw invalidNumber(expr, start, end);
+        }
+    }
+
+    // Exact long value of a well-formed literal in [start, end) whose fraction digits are all
+    // zero, or NOT_INTEGER if it has a non-zero fraction or overflows a long.
+    static long parseInteger(CharSequence expr, int start, int end) {
+        long value = 0;
+        int i = start;
+        for (; i < end && expr.charAt(i) != '.'; i++) {
+            int digit = expr.charAt(i) - '0';
+            if (value > (Long.MAX_VALUE - digit) / 10) return NOT_INTEGER;
+            value = value * 10 + digit;
+        }
+        for (i++; i < end; i++) {
+            if (expr.charAt(i) != '0') return NOT_INTEGER;
+        }
+        return value;
+    }
+
+    private static cal.InvalidExpressionException invalidNumber(CharSequence expr, int start, int end) {
+        return new cal.InvalidExpressionException("Invalid number format: " + expr.subSequence(start, end));
+    }
+
+    static boolean isIdentifierStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || (c >= '0' && c <= '9');
+    }
+
+    // Slot for the identifier in [start, end); only a name seen for the first time allocates.
+    private int slotOf(CharSequence expr, int start, int end) {
+        int length = end - start;
+        for (int slot = 0; slot < variableCount; slot++) {
+            String name = variableNames[slot];
+            if (name.length() == length && regionEquals(name, expr, start)) return slot;
+        }
+        if (variableCount == variableNames.length) {
+            variableNames = java.util.Arrays.copyOf(variableNames, variableCount * 2);
+        }
+        variableNames[variableCount] = expr.subSequence(start, end).toString();
+        return variableCount++;
+    }
+
+    private static boolean regionEquals(String name, CharSequence expr, int start) {
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != expr.charAt(start + i)) return false;
+        }
+        return true;
+    }
+
+    static byte kindOf(char c) {
+        switch (c) {
+            case '+': return PLUS;
+            case '-': return MINUS;
+            case '*': return TIMES;
+            case '/': return DIVIDE;
+            case '(': return LPAREN;
+            case ')': return RPAREN;
+            default: return -1;
+        }
+    }
+
+    static char symbol(byte kind) {
+        return "?+-*/()$".charAt(kind);
+    }
+
+    static int precedence(byte kind) {
+        if (kind == PLUS || kind == MINUS) return 1;
+        if (kind == TIMES || kind == DIVIDE) return 2;
+        return 0;
+    }
+
+    private void add(byte kind, double value, int start, int end) {
+        if (size == kinds.length) {
+            int capacity = size * 2;
+            kinds = java.util.Arrays.copyOf(kinds, capacity);
+            values = java.util.Arrays.copyOf(values, capacity);
+            integers = java.util.Arrays.copyOf(integers, capacity);
+            starts = java.util.Arrays.copyOf(starts, capacity);
+            ends = java.util.Arrays.copyOf(ends, capacity);
+        }
+        kinds[size] = kind;
+        values[size] = value;
+        integers[size] = NOT_INTEGER;
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+}
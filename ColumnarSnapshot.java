@@ -0,0 +1,1247 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.LongConsumer;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// A table copied to a local file, column by column, for browsing without the database.
+// Rows are cut into blocks of blockRows; within a block every column is one Deflate-
+// compressed chunk in the most compact encoding its values allow (longs, decimals as
+// unscaled longs with one scale, decimals too wide for a long, doubles, timestamps, dates
+// or UTF-8 text). The footer
+// keeps each chunk's offset, null count and min/max (zone map), so a filter skips whole
+// blocks without reading them and evaluates the rest over primitive arrays, decoding
+// only the columns it needs. Selected rows are then assembled, sorted (top-N) or
+// aggregated.
+//
+// Files are written to a temporary name and moved into place, so a refresh that fails
+// leaves the previous snapshot intact. Reads are positional and safe from any thread.
+public final class ColumnarSnapshot implements AutoCloseable {
+
+    private static final int MAGIC = 0x44474353; // "DGCS"
+    private static final int VERSION = 2; // 2 added DECIMALS; version 1 files still read
+    static final int DEFAULT_BLOCK_ROWS = 65_536;
+    private static final int ZONE_TEXT_LIMIT = 256; // Longer strings get no zone map
+
+    // Chunk encodings
+    private static final byte EMPTY = 0;   // All null
+    private static final byte LONGS = 1;   // Integral numbers
+    private static final byte SCALED = 2;  // Decimals as unscaled longs with the chunk's scale
+    private static final byte DOUBLES = 3;
+    private static final byte TIMES = 4;   // Timestamp: epoch millis + nanos
+    private static final byte DATES = 5;   // java.sql.Date: epoch millis
+    private static final byte STRINGS = 6; // Anything else, as toString()
+    private static final byte DECIMALS = 7; // Numbers too wide for SCALED, as BigDecimal text
+
+    public enum Op {
+        EQ("="), NE("<>"), LT("<"), LE("<="), GT(">"), GE(">="), LIKE("LIKE"), IS_NULL("IS NULL"), NOT_NULL("IS NOT NULL");
+
+        public final String symbol;
+
+        Op(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public boolean takesValue() {
+            return this != IS_NULL && this != NOT_NULL;
+        }
+
+        @Override
+        public String toString() {
+            return symbol;
+        }
+    }
+
+    // column <op> text; the text is read as a number, timestamp ("yyyy-mm-dd[ hh:mm:ss]") or
+    // string according to how each block stores the column.
+    public static final class Filter {
+        public final int column;
+        public final Op op;
+        public final String text;
+        private final Pattern like;
+
+        public Filter(int column, Op op, String text) {
+            this.column = column;
+            this.op = op;
+            this.text = text == null ? "" : text.trim();
+            this.like = op == Op.LIKE ? likePattern(this.text) : null;
+        }
+    }
+
+    public static final class Result {
+        public final String[] columns;
+        public final List<Object[]> rows;
+        public final long matched;
+        public final int blocksScanned;
+        public final int blocksSkipped;
+        public final long millis;
+
+        Result(String[] columns, List<Object[]> rows, long matched, int blocksScanned, int blocksSkipped, long millis) {
+            this.columns = columns;
+            this.rows = rows;
+            this.matched = matched;
+            this.blocksScanned = blocksScanned;
+            this.blocksSkipped = blocksSkipped;
+            this.millis = millis;
+        }
+    }
+
+    private static final class Chunk {
+        long offset;
+        int length;
+        byte encoding;
+        int scale;
+        int nullCount;
+        boolean zone;
+        Object min; // Long (unscaled), Double, Timestamp or String, per encoding
+        Object max;
+    }
+
+    private static final class Block {
+        final int rows;
+        final Chunk[] chunks;
+
+        Block(int rows, Chunk[] chunks) {
+            this.rows = rows;
+            this.chunks = chunks;
+        }
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final String table;
+    private final String source;
+    private final long createdMillis;
+    private final String[] columnNames;
+    private final String[] typeNames;
+    private final long rowCount;
+    private final List<Block> blocks;
+
+    private ColumnarSnapshot(Path path, FileChannel channel, String table, String source, long createdMillis,
+                             String[] columnNames, String[] typeNames, long rowCount, List<Block> blocks) {
+        this.path = path;
+        this.channel = channel;
+        this.table = table;
+        this.source = source;
+        this.createdMillis = createdMillis;
+        this.columnNames = columnNames;
+        this.typeNames = typeNames;
+        this.rowCount = rowCount;
+        this.blocks = blocks;
+    }
+
+    // Snapshots live in -Ddgfx8.snapshotDir (default ~/.dgfx8/snapshots), one file per table and
+    // source (URL + user), so the same table from two databases does not collide.
+    public static Path pathFor(String source, String table) {
+        Path directory = Paths.get(System.getProperty("dgfx8.snapshotDir",
+                Paths.get(System.getProperty("user.home"), ".dgfx8", "snapshots").toString()));
+        return directory.resolve(table + "-" + Integer.toHexString(source.hashCode()) + ".dgcs");
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public String table() {
+        return table;
+    }
+
+    public String source() {
+        return source;
+    }
+
+    public long createdMillis() {
+        return createdMillis;
+    }
+
+    public String[] columnNames() {
+        return columnNames;
+    }
+
+    public String[] typeNames() {
+        return typeNames;
+    }
+
+    public long size() {
+        return rowCount;
+    }
+
+    public int blockCount() {
+        return blocks.size();
+    }
+
+    public long fileBytes() {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // --- Writing ---
+
+    // Copies the table into a new snapshot at path (replacing any previous one) and opens it.
+    // The copy fails rather than keeping a partial table when a governor budget trips.
+    public static ColumnarSnapshot build(SqlEngine engine, String table, String source, Path path,
+                                         QueryGovernor.Ticket ticket, LongConsumer progress) throws SQLException, IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), table + "-", ".tmp");
+        try {
+            Writer writer = new Writer(temp, table, source, DEFAULT_BLOCK_ROWS);
+            try {
+                SqlEngine.ExecutionResult result = engine.query(ticket, "snapshot.refresh", "SELECT * FROM " + table,
+                        new SqlEngine.RowHandler() {
+                            @Override
+                            public void columns(String[] names, String[] typeNames) {
+                                writer.columns(names, typeNames);
+                            }
+
+                            @Override
+                            public boolean row(Object[] values) throws SQLException {
+                                try {
+                                    writer.append(values);
+                                } catch (IOException e) {
+                                    throw new SQLException("Could not write snapshot: " + e.getMessage(), e);
+                                }
+                                if (progress != null && writer.rows % 10_000 == 0) progress.accept(writer.rows);
+                                return true;
+                            }
+                        });
+                if (result.trip != null) throw new SQLException("Snapshot of " + table + " stopped: " + result.trip.describe());
+                writer.finish();
+            } finally {
+                writer.close();
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return open(path);
+    }
+
+    private static final class Writer {
+        private final DataOutputStream out;
+        private final FileChannel file;
+        private final String table;
+        private final String source;
+        private final int blockRows;
+        private final List<Block> blocks = new ArrayList<>();
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private String[] names;
+        private String[] types;
+        private Object[][] buffer; // [column][row] of the block being filled
+        private int buffered;
+        private long rows;
+        private long position;
+
+        Writer(Path path, String table, String source, int blockRows) throws IOException {
+            this.file = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(file), 1 << 16));
+            this.table = table;
+            this.source = source;
+            this.blockRows = blockRows;
+        }
+
+        void columns(String[] names, String[] types) {
+            this.names = names;
+            this.types = types;
+            buffer = new Object[names.length][blockRows];
+        }
+
+        void append(Object[] values) throws IOException {
+            for (int c = 0; c < values.length; c++) buffer[c][buffered] = values[c];
+            buffered++;
+            rows++;
+            if (buffered == blockRows) flushBlock();
+        }
+
+        private void flushBlock() throws IOException {
+            if (buffered == 0) return;
+            Chunk[] chunks = new Chunk[names.length];
+            for (int c = 0; c < names.length; c++) {
+                Chunk chunk = new Chunk();
+                byte[] compressed = compress(encode(buffer[c], buffered, chunk));
+                chunk.offset = position;
+                chunk.length = compressed.length;
+                out.write(compressed);
+                position += compressed.length;
+                chunks[c] = chunk;
+                Arrays.fill(buffer[c], 0, buffered, null);
+            }
+            blocks.add(new Block(buffered, chunks));
+            buffered = 0;
+        }
+
+        private byte[] compress(byte[] raw) {
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] step = new byte[1 << 16];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(step);
+                compressed.write(step, 0, n);
+            }
+            return compressed.toByteArray();
+        }
+
+        void finish() throws IOException {
+            if (names == null) throw new IOException("No columns for " + table);
+            flushBlock();
+            long footer = position;
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(table);
+            out.writeUTF(source);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(names.length);
+            for (int c = 0; c < names.length; c++) {
+                out.writeUTF(names[c]);
+                out.writeUTF(types[c] == null ? "" : types[c]);
+            }
+            out.writeLong(rows);
+            out.writeInt(blocks.size());
+            for (Block block : blocks) {
+                out.writeInt(block.rows);
+                for (Chunk chunk : block.chunks) writeChunk(out, chunk);
+            }
+            out.writeLong(footer);
+            out.writeInt(MAGIC);
+            out.flush();
+            file.force(true);
+        }
+
+        void close() throws IOException {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    // Picks the encoding for one column of one block and serializes it (uncompressed); fills
+    // the chunk's encoding, scale, null count and zone map.
+    private static byte[] encode(Object[] values, int rows, Chunk chunk) throws IOException {
+        byte encoding = EMPTY;
+        int scale = 0;
+        int nulls = 0;
+        for (int i = 0; i < rows; i++) {
+            Object value = values[i];
+            if (value == null) {
+                nulls++;
+                continue;
+            }
+            byte kind;
+            if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                kind = LONGS;
+            } else if (value instanceof BigDecimal) {
+                BigDecimal decimal = ((BigDecimal) value).stripTrailingZeros();
+                kind = decimal.scale() <= 0 ? LONGS : SCALED;
+                scale = Math.max(scale, decimal.scale());
+                if (decimal.precision() - decimal.scale() > 18 || decimal.scale() > 18) kind = DECIMALS; // Not a long at any scale
+            } else if (value instanceof Double || value instanceof Float) {
+                kind = DOUBLES;
+            } else if (value instanceof Timestamp) {
+                kind = TIMES;
+            } else if (value instanceof java.sql.Date) {
+                kind = DATES;
+            } else {
+                kind = STRINGS;
+            }
+            encoding = encoding == EMPTY ? kind : merge(encoding, kind);
+        }
+        if (encoding == SCALED || encoding == LONGS) {
+            // All values must fit an unscaled long at the common scale
+            for (int i = 0; i < rows && encoding != DECIMALS; i++) {
+                if (values[i] == null) continue;
+                if (decimal(values[i]).setScale(encoding == SCALED ? scale : 0, RoundingMode.UNNECESSARY).unscaledValue().bitLength() > 63) encoding = DECIMALS;
+            }
+        }
+        if (encoding != SCALED) scale = 0;
+
+        chunk.encoding = encoding;
+        chunk.scale = scale;
+        chunk.nullCount = encoding == EMPTY ? rows : nulls;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(rows * 9 + 16);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(encoding);
+        if (encoding == EMPTY) return bytes.toByteArray();
+        byte[] nullMap = new byte[(rows + 7) / 8];
+        for (int i = 0; i < rows; i++) {
+            if (values[i] == null) nullMap[i >>> 3] |= 1 << (i & 7);
+        }
+        out.write(nullMap);
+        switch (encoding) {
+            case LONGS:
+            case SCALED: {
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                for (int i = 0; i < rows; i++) {
+                    long v = values[i] == null ? 0 : unscaled(values[i], scale);
+                    out.writeLong(v);
+                    if (values[i] != null) {
+                        min = Math.min(min, v);
+                        max = Math.max(max, v);
+                    }
+                }
+                zone(chunk, min, max);
+                break;
+            }
+            case DOUBLES: {
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                for (int i = 0; i < rows; i++) {
+                    double v = values[i] == null ? 0 : ((Number) values[i]).doubleValue();
+                    out.writeDouble(v);
+                    if (values[i] != null && !Double.isNaN(v)) {
+                        min = Math.min(min, v);
+                        max = Math.max(max, v);
+                    }
+                }
+                if (min <= max) zone(chunk, min, max);
+                break;
+            }
+            case DECIMALS: {
+                BigDecimal min = null;
+                BigDecimal max = null;
+                boolean zone = true;
+                for (int i = 0; i < rows; i++) {
+                    if (values[i] == null) {
+                        out.writeInt(-1);
+                        continue;
+                    }
+                    BigDecimal v = decimal(values[i]);
+                    byte[] utf8 = v.toString().getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(utf8.length);
+                    out.write(utf8);
+                    if (utf8.length > ZONE_TEXT_LIMIT) zone = false;
+                    if (min == null || v.compareTo(min) < 0) min = v;
+                    if (max == null || v.compareTo(max) > 0) max = v;
+                }
+                if (zone) zone(chunk, min, max);
+                break;
+            }
+            case TIMES:
+            case DATES: {
+                Timestamp min = null;
+                Timestamp max = null;
+                for (int i = 0; i < rows; i++) {
+                    Timestamp v = values[i] == null ? null : asTimestamp(values[i]);
+                    out.writeLong(v == null ? 0 : v.getTime());
+                    if (encoding == TIMES) out.writeInt(v == null ? 0 : v.getNanos());
+                    if (v != null) {
+                        if (min == null || v.compareTo(min) < 0) min = v;
+                        if (max == null || v.compareTo(max) > 0) max = v;
+                    }
+                }
+                zone(chunk, min, max);
+                break;
+            }
+            default: {
+                String min = null;
+                String max = null;
+                boolean zone = true;
+                for (int i = 0; i < rows; i++) {
+                    if (values[i] == null) {
+                        out.writeInt(-1);
+                        continue;
+                    }
+                    String v = values[i].toString();
+                    byte[] utf8 = v.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(utf8.length);
+                    out.write(utf8);
+                    if (v.length() > ZONE_TEXT_LIMIT) zone = false;
+                    if (min == null || v.compareTo(min) < 0) min = v;
+                    if (max == null || v.compareTo(max) > 0) max = v;
+                }
+                if (zone) zone(chunk, min, max);
+                break;
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static byte merge(byte a, byte b) {
+        if (a == b) return a;
+        if ((a == LONGS && b == SCALED) || (a == SCALED && b == LONGS)) return SCALED;
+        if ((a == LONGS || a == SCALED || a == DECIMALS) && (b == LONGS || b == SCALED || b == DECIMALS)) return DECIMALS;
+        return STRINGS; // Mixed types: keep them as text
+    }
+
+    private static BigDecimal decimal(Object value) {
+        return value instanceof BigDecimal ? (BigDecimal) value : BigDecimal.valueOf(((Number) value).longValue());
+    }
+
+    private static long unscaled(Object value, int scale) {
+        if (value instanceof BigDecimal) return ((BigDecimal) value).setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValue();
+        return BigDecimal.valueOf(((Number) value).longValue()).setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValue();
+    }
+
+    private static Timestamp asTimestamp(Object value) {
+        return value instanceof Timestamp ? (Timestamp) value : new Timestamp(((java.util.Date) value).getTime());
+    }
+
+    private static void zone(Chunk chunk, Object min, Object max) {
+        if (min == null) return;
+        chunk.zone = true;
+        chunk.min = min;
+        chunk.max = max;
+    }
+
+    private static void writeChunk(DataOutputStream out, Chunk chunk) throws IOException {
+        out.writeLong(chunk.offset);
+        out.writeInt(chunk.length);
+        out.writeByte(chunk.encoding);
+        out.writeInt(chunk.scale);
+        out.writeInt(chunk.nullCount);
+        out.writeBoolean(chunk.zone);
+        if (!chunk.zone) return;
+        for (Object bound : new Object[]{chunk.min, chunk.max}) {
+            switch (chunk.encoding) {
+                case LONGS:
+                case SCALED:
+                    out.writeLong((Long) bound);
+                    break;
+                case DOUBLES:
+                    out.writeDouble((Double) bound);
+                    break;
+                case DECIMALS:
+                    out.writeUTF(bound.toString());
+                    break;
+                case TIMES:
+                case DATES:
+                    out.writeLong(((Timestamp) bound).getTime());
+                    out.writeInt(((Timestamp) bound).getNanos());
+                    break;
+                default:
+                    out.writeUTF((String) bound);
+            }
+        }
+    }
+
+    private static Chunk readChunk(DataInputStream in) throws IOException {
+        Chunk chunk = new Chunk();
+        chunk.offset = in.readLong();
+        chunk.length = in.readInt();
+        chunk.encoding = in.readByte();
+        chunk.scale = in.readInt();
+        chunk.nullCount = in.readInt();
+        chunk.zone = in.readBoolean();
+        if (!chunk.zone) return chunk;
+        Object[] bounds = new Object[2];
+        for (int b = 0; b < 2; b++) {
+            switch (chunk.encoding) {
+                case LONGS:
+                case SCALED:
+                    bounds[b] = in.readLong();
+                    break;
+                case DOUBLES:
+                    bounds[b] = in.readDouble();
+                    break;
+                case DECIMALS:
+                    bounds[b] = new BigDecimal(in.readUTF());
+                    break;
+                case TIMES:
+                case DATES: {
+                    Timestamp timestamp = new Timestamp(in.readLong());
+                    timestamp.setNanos(in.readInt());
+                    bounds[b] = timestamp;
+                    break;
+                }
+                default:
+                    bounds[b] = in.readUTF();
+            }
+        }
+        chunk.min = bounds[0];
+        chunk.max = bounds[1];
+        return chunk;
+    }
+
+    // --- Reading ---
+
+    private static boolean supported(int version) {
+        return version == 1 || version == VERSION;
+    }
+
+    public static ColumnarSnapshot open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < 12) throw new IOException("Not a snapshot file: " + path);
+            ByteBuffer tail = ByteBuffer.allocate(12);
+            channel.read(tail, size - 12);
+            tail.flip();
+            long footer = tail.getLong();
+            if (tail.getInt() != MAGIC || footer < 0 || footer > size - 12) throw new IOException("Not a snapshot file: " + path);
+            ByteBuffer footerBytes = ByteBuffer.allocate((int) (size - 12 - footer));
+            while (footerBytes.hasRemaining() && channel.read(footerBytes, footer + footerBytes.position()) > 0) {
+                // Positional reads until the footer is in
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(footerBytes.array()));
+            if (in.readInt() != MAGIC || !supported(in.readInt())) throw new IOException("Unsupported snapshot file: " + path);
+            String table = in.readUTF();
+            String source = in.readUTF();
+            long created = in.readLong();
+            String[] names = new String[in.readInt()];
+            String[] types = new String[names.length];
+            for (int c = 0; c < names.length; c++) {
+                names[c] = in.readUTF();
+                types[c] = in.readUTF();
+            }
+            long rows = in.readLong();
+            int blockCount = in.readInt();
+            List<Block> blocks = new ArrayList<>(blockCount);
+            for (int b = 0; b < blockCount; b++) {
+                int blockRows = in.readInt();
+                Chunk[] chunks = new Chunk[names.length];
+                for (int c = 0; c < names.length; c++) chunks[c] = readChunk(in);
+                blocks.add(new Block(blockRows, chunks));
+            }
+            return new ColumnarSnapshot(path, channel, table, source, created, names, types, rows, blocks);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // One decoded chunk: primitive arrays per encoding, nulls as a flag array.
+    private static final class Vector {
+        final byte encoding;
+        final int scale;
+        final boolean[] nulls;
+        long[] longs;
+        double[] doubles;
+        int[] nanos;
+        BigDecimal[] decimals;
+        String[] strings;
+
+        Vector(byte encoding, int scale, int rows) {
+            this.encoding = encoding;
+            this.scale = scale;
+            this.nulls = new boolean[rows];
+        }
+
+        Object value(int i) {
+            if (encoding == EMPTY || nulls[i]) return null;
+            switch (encoding) {
+                case LONGS:
+                    return BigDecimal.valueOf(longs[i]);
+                case SCALED:
+                    return normalize(BigDecimal.valueOf(longs[i], scale));
+                case DOUBLES:
+                    return doubles[i];
+                case DECIMALS:
+                    return normalize(decimals[i]);
+                case TIMES: {
+                    Timestamp timestamp = new Timestamp(longs[i]);
+                    timestamp.setNanos(nanos[i]);
+                    return timestamp;
+                }
+                case DATES:
+                    return new java.sql.Date(longs[i]);
+                default:
+                    return strings[i];
+            }
+        }
+    }
+
+    // 10.50 and 10.5 (and 1E+1 and 10) must be the same group and print as the database does.
+    private static BigDecimal normalize(BigDecimal decimal) {
+        BigDecimal stripped = decimal.stripTrailingZeros();
+        return stripped.scale() < 0 ? stripped.setScale(0) : stripped;
+    }
+
+    private Vector read(Block block, int column) throws IOException {
+        Chunk chunk = block.chunks[column];
+        int rows = block.rows;
+        Vector vector = new Vector(chunk.encoding, chunk.scale, rows);
+        if (chunk.encoding == EMPTY) {
+            Arrays.fill(vector.nulls, true);
+            return vector;
+        }
+        ByteBuffer compressed = ByteBuffer.allocate(chunk.length);
+        while (compressed.hasRemaining() && channel.read(compressed, chunk.offset + compressed.position()) > 0) {
+            // Positional reads until the chunk is in
+        }
+        byte[] raw = inflate(compressed.array(), rows);
+        ByteBuffer in = ByteBuffer.wrap(raw);
+        in.get(); // Encoding, already known from the footer
+        byte[] nullMap = new byte[(rows + 7) / 8];
+        in.get(nullMap);
+        for (int i = 0; i < rows; i++) vector.nulls[i] = (nullMap[i >>> 3] & (1 << (i & 7))) != 0;
+        switch (chunk.encoding) {
+            case LONGS:
+            case SCALED:
+            case DATES:
+                vector.longs = new long[rows];
+                in.asLongBuffer().get(vector.longs);
+                break;
+            case TIMES:
+                vector.longs = new long[rows];
+                vector.nanos = new int[rows];
+                for (int i = 0; i < rows; i++) {
+                    vector.longs[i] = in.getLong();
+                    vector.nanos[i] = in.getInt();
+                }
+                break;
+            case DOUBLES:
+                vector.doubles = new double[rows];
+                in.asDoubleBuffer().get(vector.doubles);
+                break;
+            case DECIMALS:
+                vector.decimals = new BigDecimal[rows];
+                for (int i = 0; i < rows; i++) {
+                    int length = in.getInt();
+                    if (length < 0) continue;
+                    vector.decimals[i] = new BigDecimal(new String(raw, in.position(), length, StandardCharsets.UTF_8));
+                    in.position(in.position() + length);
+                }
+                break;
+            default:
+                vector.strings = new String[rows];
+                for (int i = 0; i < rows; i++) {
+                    int length = in.getInt();
+                    if (length < 0) continue;
+                    vector.strings[i] = new String(raw, in.position(), length, StandardCharsets.UTF_8);
+                    in.position(in.position() + length);
+                }
+        }
+        return vector;
+    }
+
+    private static byte[] inflate(byte[] compressed, int rows) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream raw = new ByteArrayOutputStream(rows * 9 + 16);
+            byte[] step = new byte[1 << 16];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(step);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) throw new IOException("Truncated snapshot chunk");
+                raw.write(step, 0, n);
+            }
+            return raw.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt snapshot chunk: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // --- Filtering ---
+
+    // The filter value in one chunk's domain: an inclusive unscaled-long range for LONGS and
+    // SCALED (NE negates an exact match), or a comparable value for the other encodings.
+    private static final class Bound {
+        long lo = Long.MIN_VALUE;
+        long hi = Long.MAX_VALUE;
+        boolean none;
+        double number;
+        BigDecimal decimal;
+        Timestamp time;
+    }
+
+    private static Bound bound(Filter filter, Chunk chunk) {
+        Bound bound = new Bound();
+        if (!filter.op.takesValue() || filter.op == Op.LIKE) return bound;
+        switch (chunk.encoding) {
+            case LONGS:
+            case SCALED: {
+                BigDecimal t = number(filter).movePointRight(chunk.scale);
+                BigInteger floor = t.setScale(0, RoundingMode.FLOOR).toBigInteger();
+                BigInteger ceil = t.setScale(0, RoundingMode.CEILING).toBigInteger();
+                switch (filter.op) {
+                    case EQ:
+                    case NE:
+                        if (!floor.equals(ceil) || floor.bitLength() > 63) {
+                            bound.none = true; // Not representable here: nothing is equal
+                        } else {
+                            bound.lo = bound.hi = floor.longValue();
+                        }
+                        break;
+                    case LT:
+                        upper(bound, ceil.subtract(BigInteger.ONE));
+                        break;
+                    case LE:
+                        upper(bound, floor);
+                        break;
+                    case GT:
+                        lower(bound, floor.add(BigInteger.ONE));
+                        break;
+                    default:
+                        lower(bound, ceil);
+                }
+                break;
+            }
+            case DOUBLES:
+                bound.number = number(filter).doubleValue();
+                break;
+            case DECIMALS:
+                bound.decimal = number(filter);
+                break;
+            case TIMES:
+            case DATES:
+                bound.time = time(filter);
+                break;
+            default:
+                break;
+        }
+        return bound;
+    }
+
+    private static void upper(Bound bound, BigInteger value) {
+        if (value.compareTo(BigInteger.valueOf(Long.MIN_VALUE)) < 0) {
+            bound.none = true;
+        } else {
+            bound.hi = value.bitLength() > 63 ? Long.MAX_VALUE : value.longValue();
+        }
+    }
+
+    private static void lower(Bound bound, BigInteger value) {
+        if (value.compareTo(BigInteger.valueOf(Long.MAX_VALUE)) > 0) {
+            bound.none = true;
+        } else {
+            bound.lo = value.bitLength() > 63 ? Long.MIN_VALUE : value.longValue();
+        }
+    }
+
+    private static BigDecimal number(Filter filter) {
+        try {
+            return new BigDecimal(filter.text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("'" + filter.text + "' is not a number");
+        }
+    }
+
+    private static Timestamp time(Filter filter) {
+        try {
+            return filter.text.length() <= 10 ? new Timestamp(java.sql.Date.valueOf(filter.text).getTime()) : Timestamp.valueOf(filter.text);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("'" + filter.text + "' is not a date (yyyy-mm-dd [hh:mm:ss])");
+        }
+    }
+
+    // SQL LIKE: % is any run, _ is one character; everything else is literal.
+    private static Pattern likePattern(String text) {
+        StringBuilder regex = new StringBuilder();
+        for (char c : text.toCharArray()) {
+            if (c == '%') {
+                regex.append(".*");
+            } else if (c == '_') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    private static boolean test(Op op, int cmp) {
+        switch (op) {
+            case EQ: return cmp == 0;
+            case NE: return cmp != 0;
+            case LT: return cmp < 0;
+            case LE: return cmp <= 0;
+            case GT: return cmp > 0;
+            default: return cmp >= 0;
+        }
+    }
+
+    // False when the zone map proves no row of the chunk can match.
+    private static boolean mayMatch(Filter filter, Chunk chunk, Bound bound, int rows) {
+        if (filter.op == Op.IS_NULL) return chunk.nullCount > 0;
+        if (chunk.nullCount == rows) return false; // Only nulls, and nothing else matches a null
+        if (filter.op == Op.NOT_NULL || filter.op == Op.LIKE || !chunk.zone) return true;
+        switch (chunk.encoding) {
+            case LONGS:
+            case SCALED: {
+                long min = (Long) chunk.min;
+                long max = (Long) chunk.max;
+                if (filter.op == Op.NE) return bound.none || min != max || min != bound.lo;
+                return !bound.none && min <= bound.hi && max >= bound.lo;
+            }
+            case DOUBLES:
+                return range(filter.op, Double.compare((Double) chunk.min, bound.number), Double.compare((Double) chunk.max, bound.number));
+            case DECIMALS:
+                return range(filter.op, ((BigDecimal) chunk.min).compareTo(bound.decimal), ((BigDecimal) chunk.max).compareTo(bound.decimal));
+            case TIMES:
+            case DATES:
+                return range(filter.op, ((Timestamp) chunk.min).compareTo(bound.time), ((Timestamp) chunk.max).compareTo(bound.time));
+            default:
+                return range(filter.op, ((String) chunk.min).compareTo(filter.text), ((String) chunk.max).compareTo(filter.text));
+        }
+    }
+
+    // Whether [min, max] can hold a value v with "v op bound", from min and max compared with the bound.
+    private static boolean range(Op op, int minCmp, int maxCmp) {
+        switch (op) {
+            case EQ: return minCmp <= 0 && maxCmp >= 0;
+            case NE: return !(minCmp == 0 && maxCmp == 0);
+            case LT: return minCmp < 0;
+            case LE: return minCmp <= 0;
+            case GT: return maxCmp > 0;
+            default: return maxCmp >= 0;
+        }
+    }
+
+    // Narrows selection[0..count) to the rows of the vector that pass the filter; returns the new count.
+    private static int refine(Filter filter, Vector v, Bound bound, int[] selection, int count) {
+        boolean[] nulls = v.nulls;
+        int kept = 0;
+        if (filter.op == Op.IS_NULL || filter.op == Op.NOT_NULL) {
+            boolean wantNull = filter.op == Op.IS_NULL;
+            for (int k = 0; k < count; k++) {
+                int i = selection[k];
+                if (nulls[i] == wantNull) selection[kept++] = i;
+            }
+            return kept;
+        }
+        if (v.encoding == EMPTY) return 0;
+        if (filter.op == Op.LIKE) {
+            for (int k = 0; k < count; k++) {
+                int i = selection[k];
+                if (!nulls[i] && filter.like.matcher(String.valueOf(v.value(i))).matches()) selection[kept++] = i;
+            }
+            return kept;
+        }
+        switch (v.encoding) {
+            case LONGS:
+            case SCALED: {
+                long[] longs = v.longs;
+                if (filter.op == Op.NE) {
+                    for (int k = 0; k < count; k++) {
+                        int i = selection[k];
+                        if (!nulls[i] && (bound.none || longs[i] != bound.lo)) selection[kept++] = i;
+                    }
+                    return kept;
+                }
+                if (bound.none) return 0;
+                long lo = bound.lo;
+                long hi = bound.hi;
+                for (int k = 0; k < count; k++) {
+                    int i = selection[k];
+                    long x = longs[i];
+                    if (!nulls[i] && x >= lo && x <= hi) selection[kept++] = i;
+                }
+                return kept;
+            }
+            case DOUBLES: {
+                double[] doubles = v.doubles;
+                for (int k = 0; k < count; k++) {
+                    int i = selection[k];
+                    if (!nulls[i] && test(filter.op, Double.compare(doubles[i], bound.number))) selection[kept++] = i;
+                }
+                return kept;
+            }
+            case DECIMALS: {
+                BigDecimal[] decimals = v.decimals;
+                for (int k = 0; k < count; k++) {
+                    int i = selection[k];
+                    if (!nulls[i] && test(filter.op, decimals[i].compareTo(bound.decimal))) selection[kept++] = i;
+                }
+                return kept;
+            }
+            case TIMES:
+            case DATES: {
+                long millis = bound.time.getTime();
+                int nanos = bound.time.getNanos();
+                for (int k = 0; k < count; k++) {
+                    int i = selection[k];
+                    if (nulls[i]) continue;
+                    int cmp = Long.compare(v.longs[i], millis);
+                    if (cmp == 0 && v.nanos != null) cmp = Integer.compare(v.nanos[i], nanos);
+                    if (test(filter.op, cmp)) selection[kept++] = i;
+                }
+                return kept;
+            }
+            default: {
+                String[] strings = v.strings;
+                for (int k = 0; k < count; k++) {
+                    int i = selection[k];
+                    if (!nulls[i] && test(filter.op, strings[i].compareTo(filter.text))) selection[kept++] = i;
+                }
+                return kept;
+            }
+        }
+    }
+
+    // Receives each block's surviving rows; vectors are decoded on demand and cached per block.
+    private interface BlockVisitor {
+        boolean visit(Block block, Map<Integer, Vector> vectors, int[] selection, int count) throws IOException;
+    }
+
+    private int[] scan(List<Filter> filters, BlockVisitor visitor) throws IOException {
+        int scanned = 0;
+        int skipped = 0;
+        for (Block block : blocks) {
+            Bound[] bounds = new Bound[filters.size()];
+            boolean possible = true;
+            for (int f = 0; f < filters.size() && possible; f++) {
+                Filter filter = filters.get(f);
+                checkComparable(filter, block.chunks[filter.column]);
+                bounds[f] = bound(filter, block.chunks[filter.column]);
+                possible = mayMatch(filter, block.chunks[filter.column], bounds[f], block.rows);
+            }
+            if (!possible) {
+                skipped++;
+                continue;
+            }
+            scanned++;
+            int[] selection = new int[block.rows];
+            for (int i = 0; i < selection.length; i++) selection[i] = i;
+            int count = selection.length;
+            Map<Integer, Vector> vectors = new HashMap<>();
+            for (int f = 0; f < filters.size() && count > 0; f++) {
+                Filter filter = filters.get(f);
+                Vector vector = vectors.get(filter.column);
+                if (vector == null) {
+                    vector = read(block, filter.column);
+                    vectors.put(filter.column, vector);
+                }
+                count = refine(filter, vector, bounds[f], selection, count);
+            }
+            if (count > 0 && !visitor.visit(block, vectors, selection, count)) break;
+        }
+        return new int[]{scanned, skipped};
+    }
+
+    // A numeric column whose block mixes value types was stored as text, where "10" < "9";
+    // comparing it with a number would quietly give wrong rows, so refuse instead.
+    private void checkComparable(Filter filter, Chunk chunk) {
+        if (chunk.encoding != STRINGS || !filter.op.takesValue() || filter.op == Op.LIKE) return;
+        if (AggregateQuery.isNumeric(typeNames[filter.column])) {
+            throw new IllegalArgumentException(columnNames[filter.column] + " has values stored as text in this snapshot; "
+                    + filter.op.symbol + " cannot compare them as numbers (use LIKE, or filter on the database)");
+        }
+    }
+
+    private Vector vector(Block block, Map<Integer, Vector> vectors, int column) throws IOException {
+        Vector vector = vectors.get(column);
+        if (vector == null) {
+            vector = read(block, column);
+            vectors.put(column, vector);
+        }
+        return vector;
+    }
+
+    // Rows passing every filter. Unsorted: the first `limit` in table order. Sorted: the first
+    // `limit` by the column (nulls first, as the table views sort), kept in a bounded heap.
+    public Result select(List<Filter> filters, int sortColumn, boolean ascending, int limit) throws IOException {
+        long start = System.nanoTime();
+        Comparator<Object[]> order = sortColumn < 0 ? null : SpillFile.byColumn(sortColumn, ascending);
+        List<Object[]> rows = new ArrayList<>();
+        PriorityQueue<Object[]> top = order == null ? null : new PriorityQueue<>(Math.max(1, Math.min(limit, 1 << 16)), order.reversed());
+        long[] matched = new long[1];
+        int[] blocksRead = scan(filters, (block, vectors, selection, count) -> {
+            matched[0] += count;
+            int take = order == null ? Math.min(count, Math.max(0, limit - rows.size())) : count;
+            if (take == 0) return true; // Keep counting matches
+            Vector[] columns = new Vector[columnNames.length];
+            for (int c = 0; c < columns.length; c++) columns[c] = vector(block, vectors, c);
+            for (int k = 0; k < take; k++) {
+                Object[] row = new Object[columns.length];
+                for (int c = 0; c < columns.length; c++) row[c] = columns[c].value(selection[k]);
+                if (top == null) {
+                    rows.add(row);
+                } else if (top.size() < limit) {
+                    top.add(row);
+                } else if (order.compare(row, top.peek()) < 0) {
+                    top.poll();
+                    top.add(row);
+                }
+            }
+            return true;
+        });
+        if (top != null) {
+            rows.addAll(top);
+            rows.sort(order);
+        }
+        return new Result(columnNames, rows, matched[0], blocksRead[0], blocksRead[1], (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // --- Aggregation ---
+
+    // Per-group totals within one block, where all values share one encoding (and scale), so
+    // sums stay in primitives and min/max are row indexes.
+    private static final class BlockTotals {
+        long count;
+        long longSum;
+        BigInteger overflow;
+        BigDecimal decimalSum = BigDecimal.ZERO;
+        double doubleSum;
+        int minRow = -1;
+        int maxRow = -1;
+
+        void add(Vector v, int i) {
+            count++;
+            switch (v.encoding) {
+                case LONGS:
+                case SCALED: {
+                    long x = v.longs[i];
+                    try {
+                        longSum = Math.addExact(longSum, x);
+                    } catch (ArithmeticException e) {
+                        overflow = (overflow == null ? BigInteger.ZERO : overflow).add(BigInteger.valueOf(longSum)).add(BigInteger.valueOf(x));
+                        longSum = 0;
+                    }
+                    if (minRow < 0 || x < v.longs[minRow]) minRow = i;
+                    if (maxRow < 0 || x > v.longs[maxRow]) maxRow = i;
+                    break;
+                }
+                case DOUBLES: {
+                    double x = v.doubles[i];
+                    doubleSum += x;
+                    if (minRow < 0 || x < v.doubles[minRow]) minRow = i;
+                    if (maxRow < 0 || x > v.doubles[maxRow]) maxRow = i;
+                    break;
+                }
+                case DECIMALS: {
+                    BigDecimal x = v.decimals[i];
+                    decimalSum = decimalSum.add(x);
+                    if (minRow < 0 || x.compareTo(v.decimals[minRow]) < 0) minRow = i;
+                    if (maxRow < 0 || x.compareTo(v.decimals[maxRow]) > 0) maxRow = i;
+                    break;
+                }
+                default: {
+                    Object x = v.value(i);
+                    if (minRow < 0 || RowCells.compareValues(x, v.value(minRow)) < 0) minRow = i;
+                    if (maxRow < 0 || RowCells.compareValues(x, v.value(maxRow)) > 0) maxRow = i;
+                }
+            }
+        }
+    }
+
+    private static final class Totals {
+        long rows;
+        long count;
+        BigDecimal decimalSum;
+        Double doubleSum;
+        boolean summable = true;
+        Object min;
+        Object max;
+
+        void merge(BlockTotals block, Vector v, long blockRows) {
+            rows += blockRows;
+            if (block.count == 0) return;
+            count += block.count;
+            if (v.encoding == LONGS || v.encoding == SCALED) {
+                BigInteger unscaled = BigInteger.valueOf(block.longSum);
+                if (block.overflow != null) unscaled = unscaled.add(block.overflow);
+                BigDecimal sum = new BigDecimal(unscaled, v.scale);
+                decimalSum = decimalSum == null ? sum : decimalSum.add(sum);
+            } else if (v.encoding == DECIMALS) {
+                decimalSum = decimalSum == null ? block.decimalSum : decimalSum.add(block.decimalSum);
+            } else if (v.encoding == DOUBLES) {
+                doubleSum = (doubleSum == null ? 0 : doubleSum) + block.doubleSum;
+            } else {
+                summable = false;
+            }
+            Object blockMin = v.value(block.minRow);
+            Object blockMax = v.value(block.maxRow);
+            if (min == null || RowCells.compareValues(blockMin, min) < 0) min = blockMin;
+            if (max == null || RowCells.compareValues(blockMax, max) > 0) max = blockMax;
+        }
+
+        Object sum() {
+            if (!summable || count == 0) return null;
+            if (doubleSum != null) return doubleSum + (decimalSum == null ? 0 : decimalSum.doubleValue());
+            return normalize(decimalSum);
+        }
+
+        Object average() {
+            Object sum = sum();
+            if (sum instanceof Double) return (Double) sum / count;
+            if (sum instanceof BigDecimal) return normalize(((BigDecimal) sum).divide(BigDecimal.valueOf(count), MathContext.DECIMAL64));
+            return null;
+        }
+    }
+
+    // ROWS, COUNT (non-null values), SUM, AVG, MIN and MAX of valueColumn over the rows passing
+    // the filters, per distinct groupColumn value (or one row overall when groupColumn < 0).
+    // Groups come out in the order of their first row.
+    public Result aggregate(List<Filter> filters, int groupColumn, int valueColumn) throws IOException {
+        long start = System.nanoTime();
+        Map<Object, Totals> totals = new LinkedHashMap<>();
+        long[] matched = new long[1];
+        int[] blocksRead = scan(filters, (block, vectors, selection, count) -> {
+            matched[0] += count;
+            Vector values = vector(block, vectors, valueColumn);
+            Vector groups = groupColumn < 0 ? null : vector(block, vectors, groupColumn);
+            Map<Object, BlockTotals> blockTotals = new LinkedHashMap<>();
+            Map<Object, long[]> blockRows = new HashMap<>();
+            BlockTotals all = groups == null ? new BlockTotals() : null;
+            for (int k = 0; k < count; k++) {
+                int i = selection[k];
+                BlockTotals target = all;
+                if (groups != null) {
+                    Object key = groups.value(i);
+                    target = blockTotals.computeIfAbsent(key, g -> new BlockTotals());
+                    blockRows.computeIfAbsent(key, g -> new long[1])[0]++;
+                }
+                if (!values.nulls[i] && values.encoding != EMPTY) target.add(values, i);
+            }
+            if (all != null) {
+                totals.computeIfAbsent(null, g -> new Totals()).merge(all, values, count);
+            } else {
+                for (Map.Entry<Object, BlockTotals> entry : blockTotals.entrySet()) {
+                    totals.computeIfAbsent(entry.getKey(), g -> new Totals())
+                            .merge(entry.getValue(), values, blockRows.get(entry.getKey())[0]);
+                }
+            }
+            return true;
+        });
+        String value = columnNames[valueColumn];
+        List<String> names = new ArrayList<>();
+        if (groupColumn >= 0) names.add(columnNames[groupColumn]);
+        Collections.addAll(names, "ROWS", "COUNT(" + value + ")", "SUM(" + value + ")", "AVG(" + value + ")",
+                "MIN(" + value + ")", "MAX(" + value + ")");
+        List<Object[]> rows = new ArrayList<>();
+        if (groupColumn < 0 && totals.isEmpty()) totals.put(null, new Totals());
+        for (Map.Entry<Object, Totals> entry : totals.entrySet()) {
+            Totals t = entry.getValue();
+            List<Object> row = new ArrayList<>();
+            if (groupColumn >= 0) row.add(entry.getKey());
+            Collections.addAll(row, t.rows, t.count, t.sum(), t.average(), t.min, t.max);
+            rows.add(row.toArray());
+        }
+        return new Result(names.toArray(new String[0]), rows, matched[0], blocksRead[0], blocksRead[1],
+                (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,164 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Small bounded JDBC connection pool. Connections are opened lazily up to maxSize and
+// handed out as Leases; time spent waiting for a free connection is recorded in SqlMetrics
+// under "pool.wait" so that contention shows up next to statement latency.
+public class ConnectionPool implements AutoCloseable {
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final Semaphore permits;
+    private final ArrayDeque<Connection> idle = new ArrayDeque<>();
+    private final List<Connection> all = new ArrayList<>();
+    private volatile boolean closed;
+
+    public ConnectionPool(String url, String user, String password, int maxSize) {
+        this(url, user, password, maxSize, 30_000L);
+    }
+
+    public ConnectionPool(String url, String user, String password, int maxSize, long borrowTimeoutMillis) {
+        if (maxSize < 1) throw new IllegalArgumentException("Pool size must be at least 1");
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public Lease lease() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + borrowTimeoutMillis + " ms waiting for a pooled connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection", e);
+        }
+        SqlMetrics.get().histogram("pool.wait").record(System.nanoTime() - start);
+
+        try {
+            Connection connection;
+            synchronized (this) {
+                connection = idle.pollFirst();
+            }
+            if (connection == null || connection.isClosed()) {
+                connection = open();
+            }
+            return new Lease(connection);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private Connection open() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, user, password);
+        synchronized (this) {
+            all.add(connection);
+        }
+        return connection;
+    }
+
+    private void release(Connection connection, boolean broken) {
+        try {
+            if (!broken && !closed && !connection.isClosed()) {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                synchronized (this) {
+                    idle.addFirst(connection);
+                }
+            } else {
+                discard(connection);
+            }
+        } catch (SQLException e) {
+            discard(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(Connection connection) {
+        synchronized (this) {
+            all.remove(connection);
+        }
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // Already unusable
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        closed = true;
+        List<Connection> toClose;
+        synchronized (this) {
+            toClose = new ArrayList<>(all);
+            all.clear();
+            idle.clear();
+        }
+        SQLException first = null;
+        for (Connection connection : toClose) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                if (first == null) first = e;
+            }
+        }
+        if (first != null) throw first;
+    }
+
+    // A borrowed connection; closing the lease returns it to the pool.
+    public class Lease implements AutoCloseable {
+        private final Connection connection;
+        private boolean broken;
+        private boolean returned;
+
+        private Lease(Connection connection) {
+            this.connection = connection;
+        }
+
+        public Connection connection() {
+            return connection;
+        }
+
+        // Close the underlying connection instead of reusing it.
+        public void markBroken() {
+            broken = true;
+        }
+
+        @Override
+        public void close() {
+            if (returned) return;
+            returned = true;
+            release(connection, broken);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+import java.util.concurrent.locks.LockSupport;
+
+// Bounded queue of primitive doubles backed by a power-of-two ring. Subclasses supply the
+// non-blocking offer/poll for their producer/consumer discipline; this class adds the
+// blocking, back-pressured put/take on top (spin, then yield, then short parks), a close()
+// that lets consumers drain what is left and then see end of stream, and an abort() for
+// when the stage on the other side has failed.
+public abstract class DoubleRing {
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = 50_000;
+
+    protected final double[] values;
+    protected final int mask;
+    private volatile boolean closed;
+    private volatile boolean aborted;
+
+    protected DoubleRing(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Ring capacity must be at least 1");
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        if (size <= 0) throw new IllegalArgumentException("Ring capacity too large: " + capacity);
+        values = new double[size];
+        mask = size - 1;
+    }
+
+    // Adds the value if there is room; never blocks.
+    public abstract boolean offer(double value);
+
+    // Moves one value into out[index] if one is available; never blocks.
+    public abstract boolean poll(double[] out, int index);
+
+    public abstract int size();
+
+    public int capacity() {
+        return values.length;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // Blocks while the ring is full, which is what throttles a producer to its consumer.
+    public void put(double value) throws InterruptedException {
+        if (aborted) throw new IllegalStateException("Ring was aborted");
+        for (int attempt = 0; !offer(value); attempt++) {
+            if (closed) throw new IllegalStateException(aborted ? "Ring was aborted" : "Ring is closed");
+            backOff(attempt);
+        }
+    }
+
+    // Blocks until at least one value is available, then moves up to max values into out.
+    // Returns -1 once the ring is closed and fully drained, or as soon as it is aborted.
+    public int take(double[] out, int offset, int max) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            int n = drain(out, offset, max);
+            if (n > 0) return n;
+            if (closed) {
+                if (aborted) return -1;
+                // A producer may have published just before closing
+                n = drain(out, offset, max);
+                return n > 0 ? n : -1;
+            }
+            backOff(attempt);
+        }
+    }
+
+    // Non-blocking: moves up to max available values into out and returns how many.
+    public int drain(double[] out, int offset, int max) {
+        int n = 0;
+        while (n < max && poll(out, offset + n)) n++;
+        return n;
+    }
+
+    // No further puts; consumers get the remaining values and then -1 from take().
+    public void close() {
+        closed = true;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // Closes the ring because one side is gone: puts throw instead of waiting for room
+    // that will never come, and takes stop without draining.
+    public void abort() {
+        aborted = true;
+        closed = true;
+    }
+
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    private static void backOff(int attempt) throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+        if (attempt < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (attempt < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+}
@@ -1,4 +1,5 @@
 import java.sql.*;
+import java.util.List;
 import java.util.Scanner;
 import java.io.*;
 
@@ -7,7 +8,12 @@ public class ExecuteMultiSQL{
    static Scanner sc = new Scanner(System.in);
     static String operation;
     static String TableName;
+    // Budgets for console statements; Ctrl-C cancels the running statement instead of exiting
+    static final QueryGovernor governor = new QueryGovernor();
     public static void main(String[] args) {
+        governor.setBudget("ExecuteMultiSQL.check", QueryGovernor.Budget.fromProperties("ExecuteMultiSQL",
+                new QueryGovernor.Budget(60, 10_000, 64L << 20, 200)));
+        governor.installInterruptHandler();
         
         String url = "jdbc:oracle:thin:@localhost:1521:xe";
         String username = "system";
@@ -43,10 +49,11 @@ public class ExecuteMultiSQL{
                 continue;
         }
         String fileName = operation.trim() + ".txt";
-        try (Connection con = DriverManager.getConnection(url, username, password)) 
+        try (SqlEngine engine = SqlEngine.connect(url, username, password, 1)) 
         {
+            engine.setGovernor(governor);
             //System.out.println("Connected to Oracle DB!");
-             operations(con, fileName,operation);
+             operations(engine, fileName,operation);
             
         }
              catch (SQLException e) {
@@ -68,12 +75,12 @@ public class ExecuteMultiSQL{
    
 
     
-    public static void operations(Connection con,String fileName,String operation)
+    public static void operations(SqlEngine engine,String fileName,String operation)
     {
         try{
         String fullSQL = readSQLFromFile(fileName);
 
-            String[] statements = fullSQL.split(";");
+            List<String> statements = SqlEngine.splitStatements(fullSQL);
             System.out.println("AVailable Tables :");
             System.out.println(readSQLFromFile("Tables.txt"));
             System.out.println("select table Name : ");
@@ -92,7 +99,7 @@ public class ExecuteMultiSQL{
                     TableName="salgrade";
                 break;
             case '5':
-                    userquery(con,operation);
+                    userquery(engine,operation);
                 return;
 
             default :
@@ -105,21 +112,21 @@ public class ExecuteMultiSQL{
                 {
                     if(sql.toLowerCase().contains("insert into "+TableName.toLowerCase()))
                     {
-                        check(con,TableName,sql);
+                        check(engine,TableName,sql);
                     }
                 }
                 if(operation.equalsIgnoreCase("create"))
                 {
                     if(sql.toLowerCase().contains("table "+TableName.toLowerCase()))
                     {
-                        check(con,TableName,sql);
+                        check(engine,TableName,sql);
                     }
                 }
                 else
                 {
                     if(sql.toLowerCase().contains(TableName.toLowerCase()))
                     {
-                    check(con,TableName,sql);
+                    check(engine,TableName,sql);
                     }
                 }
             }
@@ -129,7 +136,7 @@ public class ExecuteMultiSQL{
             e.printStackTrace();
         }
     }
-    public static void userquery(Connection con,String operation)
+    public static void userquery(SqlEngine engine,String operation)
     {
         System.out.println("Enter the table name that you are wnated to perform :");
         TableName=sc.next();
@@ -137,37 +144,43 @@ public class ExecuteMultiSQL{
         System.out.println("Enter Query to perform "+operation.toUpperCase()+" operation on "+TableName.toUpperCase()+" table");
         String query=sc.nextLine();
         System.out.println("simple");
-        check(con,TableName,query);
+        check(engine,TableName,query);
     }
 
     
-    public static void check(Connection con,String TableName,String sql)
+    public static void check(SqlEngine engine,String TableName,String sql)
     {
                 sql = sql.trim();
                 if (!sql.isEmpty()) {
-                    try (Statement stmt = con.createStatement()) {
-                        if(sql.contains("select"))
-                        {
-                           ResultSet rs=stmt.executeQuery(sql);
-                           System.out.println("Executed: " + sql);
-                            ResultSetMetaData metaData = rs.getMetaData();
-            int columnCount = metaData.getColumnCount();
+                    String executed = sql;
+                    try {
+                        SqlEngine.ExecutionResult result = engine.execute("ExecuteMultiSQL.check", sql, new SqlEngine.RowHandler() {
+                            private String[] labels;
 
-            System.out.println("Fetched Data:");
-            System.out.println("-------------");
+                            @Override
+                            public void columns(String[] names, String[] typeNames) {
+                                labels = names;
+                                System.out.println("Executed: " + executed);
+                                System.out.println("Fetched Data:");
+                                System.out.println("-------------");
+                            }
 
-            while (rs.next()) {
-                for (int i = 1; i <= columnCount; i++) {
-                    System.out.print(metaData.getColumnLabel(i) + ": " + rs.getString(i) + "\t");
-                }
-                System.out.println();
-            }
-        }
-        else{
-            stmt.executeUpdate(sql);
+                            @Override
+                            public boolean row(Object[] values) {
+                                for (int i = 0; i < values.length; i++) {
+                                    System.out.print(labels[i] + ": " + values[i] + "\t");
+                                }
+                                System.out.println();
+                                return true;
+                            }
+                        });
+                        if (!result.query) {
                            System.out.println("Executed: " + sql);
-                    } 
-                }catch (SQLException e) {
+                        }
+                        if (!result.complete()) {
+                            System.out.println("-- Stopped after " + result.rows + " row(s): " + result.trip.describe() + " (partial result)");
+                        }
+                    } catch (SQLException e) {
                         System.out.println("Error executing: " + sql);
                         System.out.println(e.getMessage());
                     }
@@ -176,7 +189,7 @@ public class ExecuteMultiSQL{
                 {
                     System.out.println("you didn't entered the query, Enter somthing to perform ");
                     sql=sc.next();
-                    check(con,TableName,sql);
+                    check(engine,TableName,sql);
                 }
             }
        
@@ -184,16 +197,6 @@ public class ExecuteMultiSQL{
     
 
     private static String readSQLFromFile(String filename) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        try (BufferedReader br = new BufferedReader(new FileReader(filename))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                // Skip comments starting with --
-                if (!line.trim().startsWith("--")) {
-                    sb.append(line).append("\n");
-                }
-            }
-        }
-        return sb.toString().trim();
+        return SqlEngine.readScript(filename);
     }
 }
\ No newline at end of file
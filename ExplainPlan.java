@@ -0,0 +1,61 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Captures an Oracle execution plan via EXPLAIN PLAN + DBMS_XPLAN.DISPLAY.
+public class ExplainPlan {
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private ExplainPlan() {
+    }
+
+    public static List<String> explain(Connection connection, String sql) throws SQLException {
+        String statementId = "SQLCLIENT_" + SEQUENCE.incrementAndGet();
+        List<String> plan = new ArrayList<>();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("EXPLAIN PLAN SET STATEMENT_ID = '" + statementId + "' FOR " + toOracleBinds(sql));
+            try (ResultSet rs = statement.executeQuery(
+                    "SELECT PLAN_TABLE_OUTPUT FROM TABLE(DBMS_XPLAN.DISPLAY('PLAN_TABLE', '" + statementId + "', 'TYPICAL'))")) {
+                while (rs.next()) {
+                    plan.add(rs.getString(1));
+                }
+            }
+            statement.executeUpdate("DELETE FROM PLAN_TABLE WHERE STATEMENT_ID = '" + statementId + "'");
+        }
+        return plan;
+    }
+
+    // True when the plan reads the whole of the given table.
+    public static boolean hasFullScan(List<String> plan, String tableName) {
+        for (String line : plan) {
+            String upper = line.toUpperCase();
+            if (upper.contains("TABLE ACCESS FULL") && (tableName == null || upper.contains(tableName.toUpperCase()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // JDBC '?' placeholders are not valid in EXPLAIN PLAN; Oracle accepts unbound :n binds.
+    static String toOracleBinds(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length() + 8);
+        boolean inString = false;
+        int bind = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') inString = !inString;
+            if (c == '?' && !inString) {
+                sb.append(':').append(++bind);
+            } else {
+                sb.append(c);
+            }
+        }
+        String result = sb.toString().trim();
+        return result.endsWith(";") ? result.substring(0, result.length() - 1) : result;
+    }
+}
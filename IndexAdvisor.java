@@ -0,0 +1,342 @@
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Watches the statements SqlMetrics sees for WHERE-clause predicates (per table and column
+// set, with latencies) and turns the ones that scan whole tables into index proposals.
+// analyze() checks each predicate shape against the existing indexes (getIndexInfo) and its
+// EXPLAIN PLAN, picks the most selective columns from the optimizer's column statistics and
+// estimates the speedup as full-scan rows over index-lookup rows. create() builds a proposed
+// index and times a lookup with the same predicate before and after.
+public class IndexAdvisor implements AutoCloseable {
+
+    // Columns compared with =, <, >, <=, >=, LIKE, IN, BETWEEN or IS [NOT] NULL.
+    private static final Pattern PREDICATE = Pattern.compile(
+            "(?:^|[\\s(])(?:[A-Za-z][\\w$#]*\\.)?\"?([A-Za-z][\\w$#]*)\"?\\s*(?:=|<=|>=|<(?!>)|>|\\bLIKE\\b|\\bIN\\b|\\bBETWEEN\\b|\\bIS\\b)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern SINGLE_TABLE = Pattern.compile(
+            "^(?:DELETE\\s+(?:FROM\\s+)?|UPDATE\\s+|SELECT\\s.*?\\sFROM\\s+)\"?([\\w$#]+)\"?(?:\\s+(?!WHERE\\b|SET\\b)\\w+)?"
+                    + "(?:\\s+SET\\s.*?)?\\s+WHERE\\s+(.*)$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Set<String> KEYWORDS = new LinkedHashSet<>(Arrays.asList(
+            "AND", "OR", "NOT", "WHERE", "NULL", "ROWNUM", "SYSDATE", "EXISTS"));
+    private static final int MAX_INDEX_COLUMNS = 3;
+    private static final int TIMING_RUNS = 3;
+
+    // One predicate shape (table + columns) and what it has cost so far.
+    public static final class Usage {
+        public final String table;
+        public final List<String> columns;
+        public final String sql;
+        public final long executions;
+        public final long totalNanos;
+        public final long maxNanos;
+
+        Usage(String table, List<String> columns, String sql, long executions, long totalNanos, long maxNanos) {
+            this.table = table;
+            this.columns = columns;
+            this.sql = sql;
+            this.executions = executions;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public double meanMillis() {
+            return executions == 0 ? 0 : totalNanos / 1e6 / executions;
+        }
+
+        Usage plus(String sql, long executions, long nanos) {
+            return new Usage(table, columns, sql, this.executions + executions, totalNanos + nanos,
+                    Math.max(maxNanos, nanos / Math.max(1, executions)));
+        }
+    }
+
+    public static final class Proposal {
+        public final Usage usage;
+        public final List<String> indexColumns;  // empty when nothing is proposed
+        public final boolean recommended;
+        public final Boolean fullScan;           // null: plan not available
+        public final Long tableRows;             // null: no optimizer statistics
+        public final Long matchingRows;
+        public final Double estimatedSpeedup;
+        public final String ddl;
+        public final String reason;
+
+        Proposal(Usage usage, List<String> indexColumns, boolean recommended, Boolean fullScan, Long tableRows,
+                 Long matchingRows, Double estimatedSpeedup, String ddl, String reason) {
+            this.usage = usage;
+            this.indexColumns = indexColumns;
+            this.recommended = recommended;
+            this.fullScan = fullScan;
+            this.tableRows = tableRows;
+            this.matchingRows = matchingRows;
+            this.estimatedSpeedup = estimatedSpeedup;
+            this.ddl = ddl;
+            this.reason = reason;
+        }
+    }
+
+    // Lookup timings (best of TIMING_RUNS) with the proposal's predicate around CREATE INDEX.
+    public static final class Timing {
+        public final Proposal proposal;
+        public final String indexName;
+        public final long createMillis;
+        public final Long beforeNanos;  // null: table empty, nothing to look up
+        public final Long afterNanos;
+        public final Boolean fullScanAfter;
+
+        Timing(Proposal proposal, String indexName, long createMillis, Long beforeNanos, Long afterNanos, Boolean fullScanAfter) {
+            this.proposal = proposal;
+            this.indexName = indexName;
+            this.createMillis = createMillis;
+            this.beforeNanos = beforeNanos;
+            this.afterNanos = afterNanos;
+            this.fullScanAfter = fullScanAfter;
+        }
+
+        public Double speedup() {
+            return beforeNanos == null || afterNanos == null ? null : beforeNanos / (double) Math.max(1, afterNanos);
+        }
+    }
+
+    private final SqlEngine engine;
+    private final String operationPrefix;
+    private final Map<String, Usage> usage = new ConcurrentHashMap<>();
+    private final Consumer<SqlMetrics.StatementRecord> listener = this::onStatement;
+
+    // Records statements whose operation starts with the prefix (e.g. "dgfx8.").
+    public IndexAdvisor(SqlEngine engine, String operationPrefix) {
+        this.engine = engine;
+        this.operationPrefix = operationPrefix;
+        SqlMetrics.get().addListener(listener);
+    }
+
+    @Override
+    public void close() {
+        SqlMetrics.get().removeListener(listener);
+    }
+
+    // Most expensive shapes first.
+    public List<Usage> usage() {
+        List<Usage> shapes = new ArrayList<>(usage.values());
+        shapes.sort(Comparator.comparingLong((Usage u) -> u.totalNanos).reversed());
+        return shapes;
+    }
+
+    public void reset() {
+        usage.clear();
+    }
+
+    private void onStatement(SqlMetrics.StatementRecord record) {
+        if (!record.succeeded() || !record.operation.startsWith(operationPrefix)) return;
+        String sql = SqlMetrics.fingerprint(record.sql);
+        Map.Entry<String, List<String>> predicate = parse(sql);
+        if (predicate == null) return;
+        // A batch is one record for many executions of the same statement
+        long executions = record.operation.endsWith(".batch") ? Math.max(1, record.rows) : 1;
+        String key = predicate.getKey() + " " + predicate.getValue();
+        long nanos = record.totalNanos();
+        usage.merge(key, new Usage(predicate.getKey(), predicate.getValue(), sql, executions, nanos, nanos / executions),
+                (current, added) -> current.plus(sql, added.executions, added.totalNanos));
+    }
+
+    // Table and predicate columns (upper case, first-seen order) of a single-table statement
+    // with a WHERE clause; null for anything else (joins, no WHERE, unparseable).
+    static Map.Entry<String, List<String>> parse(String sql) {
+        Matcher statement = SINGLE_TABLE.matcher(sql.trim());
+        if (!statement.matches()) return null;
+        String where = statement.group(2);
+        if (where.toUpperCase().matches(".*\\b(JOIN|SELECT)\\b.*")) return null; // Subqueries and joins: leave to the optimizer
+        Set<String> columns = new LinkedHashSet<>();
+        Matcher predicate = PREDICATE.matcher(where);
+        while (predicate.find()) {
+            String column = predicate.group(1).toUpperCase();
+            if (!KEYWORDS.contains(column)) columns.add(column);
+        }
+        if (columns.isEmpty()) return null;
+        return new AbstractMap.SimpleImmutableEntry<>(statement.group(1).toUpperCase(), new ArrayList<>(columns));
+    }
+
+    // One proposal per recorded shape, most expensive first.
+    public List<Proposal> analyze() throws SQLException {
+        List<Proposal> proposals = new ArrayList<>();
+        Map<String, List<List<String>>> indexCache = new HashMap<>();
+        for (Usage shape : usage()) {
+            List<List<String>> indexes = indexCache.get(shape.table);
+            if (indexes == null) {
+                indexes = indexes(shape.table);
+                indexCache.put(shape.table, indexes);
+            }
+            proposals.add(analyze(shape, indexes));
+        }
+        return proposals;
+    }
+
+    private Proposal analyze(Usage shape, List<List<String>> indexes) throws SQLException {
+        Boolean fullScan = fullScan(shape.sql, shape.table);
+        Long tableRows = tableRows(shape.table);
+        Map<String, Long> distinct = distinctValues(shape.table);
+
+        List<String> leading = null;
+        for (List<String> index : indexes) {
+            if (shape.columns.contains(index.get(0))) {
+                leading = index;
+                break;
+            }
+        }
+        if (Boolean.FALSE.equals(fullScan)) {
+            return new Proposal(shape, Collections.emptyList(), false, false, tableRows, null, null, null,
+                    "Plan already avoids a full scan" + (leading == null ? "" : " (index on " + String.join(", ", leading) + ")"));
+        }
+        if (leading != null) {
+            return new Proposal(shape, Collections.emptyList(), false, fullScan, tableRows, null, null, null,
+                    "Index on " + String.join(", ", leading) + " exists" + (fullScan == null ? ""
+                            : " but is not used; its column may not be selective enough or statistics may be stale"));
+        }
+
+        // Most selective columns first, until they narrow a lookup to about one row
+        List<String> candidates = new ArrayList<>(shape.columns);
+        if (!distinct.isEmpty()) {
+            candidates.removeIf(column -> !distinct.containsKey(column)); // LOBs and the like have no statistics
+            candidates.sort(Comparator.comparingLong((String column) -> distinct.get(column)).reversed());
+        }
+        List<String> columns = new ArrayList<>();
+        Long matchingRows = tableRows;
+        for (String column : candidates) {
+            if (columns.size() == MAX_INDEX_COLUMNS) break;
+            if (!columns.isEmpty() && matchingRows != null && matchingRows <= 1) break;
+            columns.add(column);
+            Long values = distinct.get(column);
+            if (matchingRows != null && values != null && values > 0) matchingRows = Math.max(1, matchingRows / values);
+        }
+        if (columns.isEmpty()) {
+            return new Proposal(shape, columns, false, fullScan, tableRows, null, null, null,
+                    "No indexable predicate column");
+        }
+        // A full scan reads every row; an index lookup reads the matches plus a few branch blocks
+        Double speedup = tableRows == null || matchingRows == null || distinct.isEmpty() ? null
+                : tableRows / (double) (matchingRows + 3);
+        boolean worthIt = speedup == null || speedup >= 2;
+        String reason = (fullScan == null ? "No index on these columns (plan not available)" : "Full table scan")
+                + (worthIt ? "" : "; too few rows per value for an index to pay off");
+        return new Proposal(shape, columns, worthIt, fullScan, tableRows, distinct.isEmpty() ? null : matchingRows, speedup,
+                "CREATE INDEX " + indexName(shape.table, columns) + " ON " + shape.table + " (" + String.join(", ", columns) + ")",
+                reason);
+    }
+
+    // Creates the proposed index and times the same lookup before and after it.
+    public Timing create(Proposal proposal) throws SQLException {
+        if (proposal.ddl == null) throw new SQLException("Nothing to create for " + proposal.usage.table);
+        String table = proposal.usage.table;
+        String lookup = "SELECT COUNT(*) FROM " + table + " WHERE "
+                + String.join(" AND ", proposal.indexColumns.stream().map(c -> c + " = ?").toArray(String[]::new));
+        Object[] sample = sample(table, proposal.indexColumns);
+        Long before = sample == null ? null : time(lookup, sample);
+
+        long start = System.nanoTime();
+        engine.executeUpdate("indexAdvisor.create", proposal.ddl);
+        long createMillis = (System.nanoTime() - start) / 1_000_000;
+
+        Long after = sample == null ? null : time(lookup, sample);
+        Boolean fullScanAfter = fullScan(proposal.usage.sql, table);
+        // Start the shape's latencies afresh so later executions show the effect in usage()
+        usage.remove(table + " " + proposal.usage.columns);
+        String ddl = proposal.ddl;
+        return new Timing(proposal, ddl.substring("CREATE INDEX ".length(), ddl.indexOf(" ON ")), createMillis, before, after, fullScanAfter);
+    }
+
+    // Values of one existing row, so the timed lookup finds something.
+    private Object[] sample(String table, List<String> columns) throws SQLException {
+        Object[][] values = new Object[1][];
+        engine.query("indexAdvisor.sample", "SELECT " + String.join(", ", columns) + " FROM " + table
+                + " WHERE " + String.join(" IS NOT NULL AND ", columns) + " IS NOT NULL AND ROWNUM = 1",
+                SqlEngine.RowHandler.eachRow(row -> values[0] = row));
+        return values[0];
+    }
+
+    private long time(String sql, Object[] params) throws SQLException {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < TIMING_RUNS; run++) {
+            long start = System.nanoTime();
+            engine.query("indexAdvisor.time", sql, SqlEngine.RowHandler.eachRow(row -> { }), params);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    // Columns of every index on the table, in key order.
+    private List<List<String>> indexes(String table) throws SQLException {
+        return engine.withConnection(connection -> {
+            DatabaseMetaData md = connection.getMetaData();
+            Map<String, Map<Short, String>> byName = new LinkedHashMap<>();
+            try (ResultSet rs = md.getIndexInfo(null, connection.getSchema(), table, false, true)) {
+                while (rs.next()) {
+                    if (rs.getShort("TYPE") == DatabaseMetaData.tableIndexStatistic || rs.getString("COLUMN_NAME") == null) continue;
+                    byName.computeIfAbsent(rs.getString("INDEX_NAME"), name -> new TreeMap<>())
+                            .put(rs.getShort("ORDINAL_POSITION"), rs.getString("COLUMN_NAME").replace("\"", "").toUpperCase());
+                }
+            }
+            List<List<String>> indexes = new ArrayList<>();
+            for (Map<Short, String> columns : byName.values()) indexes.add(new ArrayList<>(columns.values()));
+            return indexes;
+        });
+    }
+
+    // From EXPLAIN PLAN; null where plans are not available (no PLAN_TABLE, not Oracle).
+    private Boolean fullScan(String sql, String table) {
+        try {
+            List<String> plan = engine.withConnection(connection -> ExplainPlan.explain(connection, sql));
+            return ExplainPlan.hasFullScan(plan, table);
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    private Long tableRows(String table) {
+        Long[] rows = new Long[1];
+        try {
+            engine.query("indexAdvisor.stats", "SELECT NUM_ROWS FROM USER_TABLES WHERE TABLE_NAME = ?",
+                    SqlEngine.RowHandler.eachRow(row -> rows[0] = row[0] instanceof Number ? ((Number) row[0]).longValue() : null), table);
+        } catch (SQLException e) {
+            return null;
+        }
+        return rows[0];
+    }
+
+    private Map<String, Long> distinctValues(String table) {
+        Map<String, Long> distinct = new HashMap<>();
+        try {
+            engine.query("indexAdvisor.stats", "SELECT COLUMN_NAME, NUM_DISTINCT FROM USER_TAB_COL_STATISTICS WHERE TABLE_NAME = ?",
+                    SqlEngine.RowHandler.eachRow(row -> {
+                        if (row[1] instanceof Number) distinct.put(String.valueOf(row[0]), ((Number) row[1]).longValue());
+                    }), table);
+        } catch (SQLException e) {
+            distinct.clear();
+        }
+        return distinct;
+    }
+
+    // IX_<table>_<columns>, cut to Oracle's 30-character limit with a hash to stay unique.
+    static String indexName(String table, List<String> columns) {
+        String name = "IX_" + table + "_" + String.join("_", columns);
+        if (name.length() <= 30) return name;
+        String hash = Integer.toHexString(name.hashCode() & 0xfffffff).toUpperCase();
+        return name.substring(0, 30 - hash.length() - 1) + "_" + hash;
+    }
+}
@@ -0,0 +1,229 @@
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Multi-user load generator for the operations dgfx8.handleOperation exposes
+// (select, insert, delete, truncate), driven through SqlEngine by N concurrent clients.
+//
+//   java -cp .:ojdbc.jar LoadHarness --url jdbc:oracle:thin:@localhost:1521:xe --user system --password ...
+//        [--clients 50] [--duration 60] [--pool 10] [--table LOAD_EMP]
+//        [--mix select=70,insert=20,delete=9,truncate=1] [--keep-table]
+//
+// Reports throughput, latency percentiles and error rates per operation, the time spent
+// waiting for a pooled connection, and how many statements failed on row/DDL locks.
+// A client that dies on an unexpected exception fails the whole run.
+public class LoadHarness {
+
+    private static final String[] OPERATIONS = {"select", "insert", "delete", "truncate"};
+
+    private final SqlEngine engine;
+    private final String table;
+    private final int[] cumulativeWeights = new int[OPERATIONS.length];
+    private final Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+    private final Map<String, LongAdder> errors = new LinkedHashMap<>();
+    private final LongAdder lockErrors = new LongAdder();
+
+    LoadHarness(SqlEngine engine, String table, Map<String, Integer> mix) {
+        this.engine = engine;
+        this.table = table;
+        int total = 0;
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            total += mix.getOrDefault(OPERATIONS[i], 0);
+            cumulativeWeights[i] = total;
+            latencies.put(OPERATIONS[i], new LatencyHistogram());
+            errors.put(OPERATIONS[i], new LongAdder());
+        }
+        if (total <= 0) throw new IllegalArgumentException("Operation mix must have a positive weight");
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = null;
+        String user = null;
+        String password = "";
+        String table = "LOAD_EMP";
+        int clients = 50;
+        int durationSeconds = 60;
+        int poolSize = 10;
+        boolean keepTable = false;
+        Map<String, Integer> mix = parseMix("select=70,insert=20,delete=9,truncate=1");
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--url": url = args[++i]; break;
+                case "--user": user = args[++i]; break;
+                case "--password": password = args[++i]; break;
+                case "--table": table = args[++i].toUpperCase(); break;
+                case "--clients": clients = Integer.parseInt(args[++i]); break;
+                case "--duration": durationSeconds = Integer.parseInt(args[++i]); break;
+                case "--pool": poolSize = Integer.parseInt(args[++i]); break;
+                case "--mix": mix = parseMix(args[++i]); break;
+                case "--keep-table": keepTable = true; break;
+                default:
+                    System.err.println("Unknown argument: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        if (url == null || user == null) {
+            System.err.println("Usage: LoadHarness --url <jdbc-url> --user <user> [--password <pw>] [--clients N] "
+                    + "[--duration seconds] [--pool N] [--table NAME] [--mix select=70,insert=20,delete=9,truncate=1]");
+            System.exit(2);
+        }
+
+        try (SqlEngine engine = SqlEngine.connect(url, user, password, poolSize)) {
+            LoadHarness harness = new LoadHarness(engine, table, mix);
+            harness.setUp();
+            try {
+                harness.run(clients, durationSeconds);
+            } finally {
+                if (!keepTable) harness.tearDown();
+            }
+        }
+    }
+
+    static Map<String, Integer> parseMix(String spec) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] kv = part.split("=");
+            if (kv.length != 2) throw new IllegalArgumentException("Invalid mix entry: " + part);
+            mix.put(kv[0].trim().toLowerCase(), Integer.parseInt(kv[1].trim()));
+        }
+        return mix;
+    }
+
+    void setUp() throws SQLException {
+        if (!engine.tableNames().contains(table)) {
+            engine.executeUpdate("load.setup", "CREATE TABLE " + table + " (EMPNO NUMBER(10) PRIMARY KEY, ENAME VARCHAR2(20), "
+                    + "JOB VARCHAR2(9), SAL NUMBER(7,2), DEPTNO NUMBER(2))");
+        }
+    }
+
+    void tearDown() throws SQLException {
+        engine.executeUpdate("load.teardown", "DROP TABLE " + table);
+    }
+
+    void run(int clients, int durationSeconds) throws InterruptedException, ExecutionException {
+        System.out.printf("Running %d clients for %d s against %s (pool %d, %s threads)%n", clients, durationSeconds,
+                table, engine.getPool().getMaxSize(), VirtualThreads.available() ? "virtual" : "platform");
+
+        LatencyHistogram poolWait = SqlMetrics.get().histogram("pool.wait");
+        long poolWaitBefore = poolWait.getTotalNanos();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        ExecutorService executor = VirtualThreads.newPerTaskExecutor("load-client");
+        List<Future<?>> clientFutures = new ArrayList<>(clients);
+        for (int c = 0; c < clients; c++) {
+            clientFutures.add(executor.submit(() -> clientLoop(deadline)));
+        }
+        executor.shutdown();
+        while (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            long done = 0;
+            for (LatencyHistogram h : latencies.values()) done += h.getCount();
+            System.out.printf("  %5.0f s: %d operations%n", (System.nanoTime() - start) / 1e9, done);
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        ExecutionException clientFailure = null;
+        int failedClients = 0;
+        for (Future<?> future : clientFutures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                failedClients++;
+                if (clientFailure == null) clientFailure = e;
+            }
+        }
+        report(elapsedSeconds, clients, poolWait.getTotalNanos() - poolWaitBefore);
+        if (clientFailure != null) {
+            System.out.printf("FAILED: %d of %d clients died%n", failedClients, clients);
+            throw clientFailure;
+        }
+    }
+
+    private void clientLoop(long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            String operation = pick(random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]));
+            long t0 = System.nanoTime();
+            try {
+                execute(operation, random);
+            } catch (SQLException e) {
+                errors.get(operation).increment();
+                if (isLockError(e)) lockErrors.increment();
+            }
+            latencies.get(operation).record(System.nanoTime() - t0);
+        }
+    }
+
+    private String pick(int roll) {
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (roll < cumulativeWeights[i]) return OPERATIONS[i];
+        }
+        return OPERATIONS[OPERATIONS.length - 1];
+    }
+
+    private void execute(String operation, ThreadLocalRandom random) throws SQLException {
+        switch (operation) {
+            case "select":
+                // Same full-table read createTableView performs
+                engine.query("load.select", "SELECT * FROM " + table, null);
+                break;
+            case "insert":
+                engine.executeUpdate("load.insert", "INSERT INTO " + table + " (EMPNO, ENAME, JOB, SAL, DEPTNO) VALUES (?, ?, ?, ?, ?)",
+                        random.nextInt(1, 1_000_000_000), "LOAD", "CLERK", random.nextInt(500, 5000), random.nextInt(1, 5) * 10);
+                break;
+            case "delete":
+                engine.executeUpdate("load.delete", "DELETE FROM " + table + " WHERE DEPTNO = ?", random.nextInt(1, 5) * 10);
+                break;
+            case "truncate":
+                engine.executeUpdate("load.truncate", "TRUNCATE TABLE " + table);
+                break;
+            default:
+                throw new IllegalStateException("Unknown operation " + operation);
+        }
+    }
+
+    // ORA-00054 resource busy, ORA-00060 deadlock, ORA-04021 timeout waiting for a lock,
+    // ORA-30006 wait timeout; H2's lock timeout (50200); SQLState 40001/40P01 serialization
+    // failure or deadlock on other drivers.
+    static boolean isLockError(SQLException e) {
+        int code = e.getErrorCode();
+        if (code == 54 || code == 60 || code == 4021 || code == 30006 || code == 50200) return true;
+        String state = e.getSQLState();
+        return "40001".equals(state) || "40P01".equals(state);
+    }
+
+    private void report(double elapsedSeconds, int clients, long poolWaitNanos) {
+        System.out.println();
+        System.out.printf("%-10s %10s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "ops/s", "errors", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        long totalOps = 0;
+        long totalErrors = 0;
+        List<String> rows = new ArrayList<>();
+        for (String operation : OPERATIONS) {
+            LatencyHistogram h = latencies.get(operation);
+            long count = h.getCount();
+            long err = errors.get(operation).sum();
+            totalOps += count;
+            totalErrors += err;
+            if (count == 0) continue;
+            rows.add(String.format("%-10s %10d %10.1f %10d %10.2f %10.2f %10.2f %10.2f", operation, count, count / elapsedSeconds,
+                    err, h.percentile(50) / 1e6, h.percentile(95) / 1e6, h.percentile(99) / 1e6, h.getMaxNanos() / 1e6));
+        }
+        rows.forEach(System.out::println);
+        System.out.println();
+        System.out.printf("Total: %d operations in %.1f s = %.1f ops/s with %d clients%n", totalOps, elapsedSeconds,
+                totalOps / elapsedSeconds, clients);
+        System.out.printf("Error rate: %.2f%% (%d errors, %d lock-related)%n",
+                totalOps == 0 ? 0.0 : 100.0 * totalErrors / totalOps, totalErrors, lockErrors.sum());
+        System.out.printf("Pool wait: %.1f ms total, %.3f ms per operation%n", poolWaitNanos / 1e6,
+                totalOps == 0 ? 0.0 : poolWaitNanos / 1e6 / totalOps);
+    }
+}
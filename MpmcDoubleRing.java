@@ -0,0 +1,65 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Multi-producer/multi-consumer DoubleRing (Vyukov's bounded queue): every slot carries a
+// sequence number that says whether it is ready to be written or read for a given lap, so
+// producers and consumers only contend on their own position counter.
+public final class MpmcDoubleRing extends DoubleRing {
+
+    private final AtomicLongArray sequence;
+    private final AtomicLong enqueuePos = new AtomicLong();
+    private final AtomicLong dequeuePos = new AtomicLong();
+
+    public MpmcDoubleRing(int capacity) {
+        super(capacity);
+        sequence = new AtomicLongArray(values.length);
+        for (int i = 0; i < values.length; i++) sequence.set(i, i);
+    }
+
+    @Override
+    public boolean offer(double value) {
+        long pos = enqueuePos.get();
+        while (true) {
+            int slot = (int) pos & mask;
+            long diff = sequence.get(slot) - pos;
+            if (diff == 0) {
+                if (enqueuePos.compareAndSet(pos, pos + 1)) {
+                    values[slot] = value;
+                    sequence.lazySet(slot, pos + 1);
+                    return true;
+                }
+                pos = enqueuePos.get();
+            } else if (diff < 0) {
+                return false; // Slot still holds last lap's value: full
+            } else {
+                pos = enqueuePos.get();
+            }
+        }
+    }
+
+    @Override
+    public boolean poll(double[] out, int index) {
+        long pos = dequeuePos.get();
+        while (true) {
+            int slot = (int) pos & mask;
+            long diff = sequence.get(slot) - (pos + 1);
+            if (diff == 0) {
+                if (dequeuePos.compareAndSet(pos, pos + 1)) {
+                    out[index] = values[slot];
+                    sequence.lazySet(slot, pos + values.length);
+                    return true;
+                }
+                pos = dequeuePos.get();
+            } else if (diff < 0) {
+                return false; // Nothing published in this slot yet: empty
+            } else {
+                pos = dequeuePos.get();
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.max(0, enqueuePos.get() - dequeuePos.get());
+    }
+}
@@ -0,0 +1,191 @@
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Time, row and byte budgets for statements run through SqlEngine, plus cooperative
+// cancellation. Budgets are chosen per operation name (longest matching prefix). The
+// time budget goes to Statement.setQueryTimeout and is also checked between fetched rows;
+// row and byte budgets stop the fetch. A tripped budget ends the statement with the rows
+// fetched so far (see SqlEngine.ExecutionResult.trip) and is counted in SqlMetrics as
+// "governor.<trip>" and "<operation>.trip.<trip>".
+public class QueryGovernor {
+
+    public enum Trip {
+        TIMEOUT, ROWS, BYTES, CANCELLED;
+
+        public String describe() {
+            switch (this) {
+                case TIMEOUT: return "time limit reached";
+                case ROWS: return "row limit reached";
+                case BYTES: return "byte limit reached";
+                default: return "cancelled";
+            }
+        }
+    }
+
+    // Zero means "no limit" (fetchSize 0: driver default).
+    public static final class Budget {
+        public static final Budget UNLIMITED = new Budget(0, 0, 0, 0);
+
+        public final int timeoutSeconds;
+        public final long maxRows;
+        public final long maxBytes;
+        public final int fetchSize;
+
+        public Budget(int timeoutSeconds, long maxRows, long maxBytes, int fetchSize) {
+            this.timeoutSeconds = Math.max(0, timeoutSeconds);
+            this.maxRows = Math.max(0, maxRows);
+            this.maxBytes = Math.max(0, maxBytes);
+            this.fetchSize = Math.max(0, fetchSize);
+        }
+
+        // -D<prefix>.timeoutSeconds / .maxRows / .maxBytes / .fetchSize override the defaults.
+        public static Budget fromProperties(String prefix, Budget defaults) {
+            return new Budget(Integer.getInteger(prefix + ".timeoutSeconds", defaults.timeoutSeconds),
+                    Long.getLong(prefix + ".maxRows", defaults.maxRows),
+                    Long.getLong(prefix + ".maxBytes", defaults.maxBytes),
+                    Integer.getInteger(prefix + ".fetchSize", defaults.fetchSize));
+        }
+
+        @Override
+        public String toString() {
+            return "timeout=" + timeoutSeconds + "s maxRows=" + maxRows + " maxBytes=" + maxBytes + " fetchSize=" + fetchSize;
+        }
+    }
+
+    // One governed statement. Cancel may be called from any thread, before or during execution.
+    public final class Ticket {
+        private volatile Statement statement;
+        private volatile boolean cancelled;
+
+        public void cancel() {
+            cancelled = true;
+            Statement current = statement;
+            if (current != null) {
+                try {
+                    current.cancel();
+                } catch (SQLException e) {
+                    // Statement finished or was closed meanwhile; the flag still stops the fetch
+                }
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        void attach(Statement statement) throws SQLException {
+            this.statement = statement;
+            active.add(this);
+            if (cancelled) {
+                detach();
+                throw new SQLException("Cancelled before execution");
+            }
+        }
+
+        void detach() {
+            statement = null;
+            active.remove(this);
+        }
+    }
+
+    private final Map<String, Budget> budgets = new ConcurrentHashMap<>();
+    private final Set<Ticket> active = ConcurrentHashMap.newKeySet();
+    private volatile Budget defaultBudget = Budget.fromProperties("governor", Budget.UNLIMITED);
+
+    public void setDefaultBudget(Budget budget) {
+        defaultBudget = budget;
+    }
+
+    public void setBudget(String operationPrefix, Budget budget) {
+        budgets.put(operationPrefix, budget);
+    }
+
+    public Budget budget(String operation) {
+        Budget best = defaultBudget;
+        int bestLength = -1;
+        for (Map.Entry<String, Budget> entry : budgets.entrySet()) {
+            String prefix = entry.getKey();
+            if (operation.startsWith(prefix) && prefix.length() > bestLength) {
+                best = entry.getValue();
+                bestLength = prefix.length();
+            }
+        }
+        return best;
+    }
+
+    public Ticket newTicket() {
+        return new Ticket();
+    }
+
+    public int activeCount() {
+        return active.size();
+    }
+
+    // Cancels every statement currently running under this governor; returns how many.
+    public int cancelAll() {
+        int count = 0;
+        for (Ticket ticket : active) {
+            ticket.cancel();
+            count++;
+        }
+        return count;
+    }
+
+    void configure(Statement statement, Budget budget) throws SQLException {
+        if (budget.timeoutSeconds > 0) statement.setQueryTimeout(budget.timeoutSeconds);
+        // One extra row so hitting the limit can be told apart from a result that fits exactly
+        if (budget.maxRows > 0 && budget.maxRows < Integer.MAX_VALUE) statement.setMaxRows((int) budget.maxRows + 1);
+        if (budget.fetchSize > 0) statement.setFetchSize(budget.fetchSize);
+    }
+
+    // The trip an execution or fetch error stands for, or null for a genuine error.
+    // Oracle reports both timeouts and cancels as ORA-01013.
+    static Trip tripFor(SQLException e, Ticket ticket, Budget budget) {
+        if (ticket.isCancelled()) return Trip.CANCELLED;
+        if (e instanceof SQLTimeoutException || (budget.timeoutSeconds > 0 && e.getErrorCode() == 1013)) return Trip.TIMEOUT;
+        return null;
+    }
+
+    // The trip for the next row, checked after `rows` rows and `bytes` bytes have been fetched.
+    static Trip check(Ticket ticket, Budget budget, long startNanos, long rows, long bytes) {
+        if (ticket.isCancelled()) return Trip.CANCELLED;
+        if (budget.maxRows > 0 && rows >= budget.maxRows) return Trip.ROWS;
+        if (budget.maxBytes > 0 && bytes >= budget.maxBytes) return Trip.BYTES;
+        if (budget.timeoutSeconds > 0 && System.nanoTime() - startNanos >= budget.timeoutSeconds * 1_000_000_000L) return Trip.TIMEOUT;
+        return null;
+    }
+
+    static void record(String operation, Trip trip) {
+        String name = trip.name().toLowerCase();
+        SqlMetrics.get().increment("governor." + name, 1);
+        SqlMetrics.get().increment(operation + ".trip." + name, 1);
+    }
+
+    // Ctrl-C cancels the statements running under this governor; with none running it exits
+    // as usual. Relies on sun.misc.Signal, looked up reflectively so the build does not
+    // depend on internal API; a no-op where that is unavailable.
+    public void installInterruptHandler() {
+        try {
+            Class<?> signalClass = Class.forName("sun.misc.Signal");
+            Class<?> handlerClass = Class.forName("sun.misc.SignalHandler");
+            Object handler = java.lang.reflect.Proxy.newProxyInstance(handlerClass.getClassLoader(), new Class<?>[]{handlerClass},
+                    (proxy, method, args) -> {
+                        if (!"handle".equals(method.getName())) return method.invoke(this, args); // Object methods
+                        int cancelled = cancelAll();
+                        if (cancelled == 0) {
+                            System.exit(130);
+                        }
+                        System.err.println("Cancelling " + cancelled + " running statement(s)...");
+                        return null;
+                    });
+            Object interrupt = signalClass.getConstructor(String.class).newInstance("INT");
+            signalClass.getMethod("handle", signalClass, handlerClass).invoke(null, interrupt, handler);
+        } catch (Throwable e) {
+            // No signal support on this runtime/platform; Ctrl-C keeps its default behaviour
+        }
+    }
+}
@@ -0,0 +1,137 @@
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.value.ObservableValue;
+
+// Scrolling benchmark for dgfx8's table cell path, run headless: it drives the exact
+// per-cell work the TableView cells do (value factory + text) over a viewport that scrolls
+// through the whole result, without a window or toolkit, and reports time and heap
+// allocation per frame for the old Map/SimpleStringProperty rows and for ResultRow.
+//
+//   java -Xmx2g -cp .:javafx-base.jar RenderBenchmark [--rows 1000000] [--columns 8]
+//        [--visible 40] [--step 3]
+//
+// Layout, CSS and painting are not included; those are the same for both row models.
+public class RenderBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final double FRAME_BUDGET_MS = 1000.0 / 60;
+
+    private static long sink;
+
+    interface FrameRenderer {
+        void render(int firstRow, int visibleRows);
+    }
+
+    public static void main(String[] args) {
+        int rows = 1_000_000;
+        int columns = 8;
+        int visible = 40;
+        int step = 3;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--rows": rows = Integer.parseInt(args[++i]); break;
+                case "--columns": columns = Integer.parseInt(args[++i]); break;
+                case "--visible": visible = Integer.parseInt(args[++i]); break;
+                case "--step": step = Integer.parseInt(args[++i]); break;
+                default:
+                    System.err.println("Unknown argument: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        String[] names = new String[columns];
+        for (int c = 0; c < columns; c++) names[c] = "COL_" + c;
+        Object[][] values = new Object[rows][];
+        for (int r = 0; r < rows; r++) values[r] = rowValues(r, columns);
+
+        System.out.printf("%d rows x %d columns, %d visible rows, scrolling %d rows per frame%n", rows, columns, visible, step);
+
+        // Before: one LinkedHashMap per row, a name lookup and a new property + toString per cell
+        List<Map<String, Object>> maps = mapRows(names, values);
+        run("map+SimpleStringProperty", rows, visible, step, (first, count) -> {
+            for (int r = first; r < first + count; r++) {
+                Map<String, Object> row = maps.get(r);
+                for (String name : names) {
+                    Object value = row.get(name);
+                    ObservableValue<String> cell = new SimpleStringProperty(value != null ? value.toString() : "NULL");
+                    sink += cell.getValue().length();
+                }
+            }
+        });
+        maps.clear();
+
+        // After: ResultRow with one shared observable per row and cached display strings
+        ResultRow[] resultRows = new ResultRow[rows];
+        for (int r = 0; r < rows; r++) resultRows[r] = new ResultRow(names, values[r]);
+        RowCells.DisplayCache cache = new RowCells.DisplayCache(RowCells.DEFAULT_CACHED_ROWS);
+        run("ResultRow+DisplayCache", rows, visible, step, (first, count) -> {
+            for (int r = first; r < first + count; r++) {
+                ResultRow row = resultRows[r].asValue().getValue();
+                for (int c = 0; c < row.size(); c++) {
+                    sink += cache.text(row, c).length();
+                }
+            }
+        });
+        if (sink == 42) System.out.println();
+    }
+
+    private static List<Map<String, Object>> mapRows(String[] names, Object[][] values) {
+        List<Map<String, Object>> maps = new ArrayList<>(values.length);
+        for (Object[] value : values) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int c = 0; c < names.length; c++) row.put(names[c], value[c]);
+            maps.add(row);
+        }
+        return maps;
+    }
+
+    private static Object[] rowValues(int r, int columns) {
+        Object[] row = new Object[columns];
+        for (int c = 0; c < columns; c++) {
+            switch (c % 4) {
+                case 0: row[c] = r; break;
+                case 1: row[c] = "NAME_" + (r % 1000); break;
+                case 2: row[c] = BigDecimal.valueOf(r % 100_000, 2); break;
+                default: row[c] = r % 7 == 0 ? null : new Timestamp(1_600_000_000_000L + r * 1000L);
+            }
+        }
+        return row;
+    }
+
+    // Scrolls top to bottom and back up (cells re-render rows seen recently), timing each frame.
+    private static void run(String name, int rows, int visible, int step, FrameRenderer renderer) {
+        int lastFirst = Math.max(0, rows - visible);
+        for (int warm = 0; warm < 20_000; warm++) renderer.render((warm * step) % (lastFirst + 1), Math.min(visible, rows));
+
+        LatencyHistogram frames = new LatencyHistogram();
+        long threadId = Thread.currentThread().getId();
+        long bytesBefore = THREADS.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long frameCount = 0;
+        long overBudget = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i * step <= lastFirst; i++) {
+                int first = pass == 0 ? i * step : lastFirst - i * step;
+                long t0 = System.nanoTime();
+                renderer.render(first, Math.min(visible, rows));
+                long elapsed = System.nanoTime() - t0;
+                frames.record(elapsed);
+                if (elapsed / 1e6 > FRAME_BUDGET_MS) overBudget++;
+                frameCount++;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long bytes = THREADS.getThreadAllocatedBytes(threadId) - bytesBefore;
+        System.out.printf("%-26s %8d frames  mean %7.2f us  p99 %7.2f us  max %8.2f us  %9.0f B/frame  %8.1f MB/s  %d over 16.7ms%n",
+                name, frameCount, frames.getMeanNanos() / 1e3, frames.percentile(99) / 1e3, frames.getMaxNanos() / 1e3,
+                (double) bytes / frameCount, bytes / seconds / 1e6, overBudget);
+    }
+}
@@ -0,0 +1,124 @@
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.value.ObservableValue;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+// One row of a query result as shown in dgfx8's TableViews: the raw column values by
+// index plus lazily created UI state. Column names are shared by all rows of a result.
+// Display strings are cached here but owned by a RowCells.DisplayCache, which bounds how
+// many rows keep them. In-place edits are kept beside the loaded values until RowEditor
+// has written them back, so a row always knows both what it shows and what the table had.
+public final class ResultRow {
+
+    private static final Object UNCHANGED = new Object();
+
+    final String[] columnNames;
+    final Object[] values;
+    String[] display; // Managed by RowCells.DisplayCache
+    private Object[] edits; // Pending values by column (UNCHANGED where not edited); null while clean
+    private BooleanProperty selected;
+    private ReadOnlyObjectWrapper<ResultRow> value;
+
+    public ResultRow(String[] columnNames, Object[] values) {
+        this.columnNames = columnNames;
+        this.values = values;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public Object get(int column) {
+        return values[column];
+    }
+
+    // By-name access for code that works from schema maps; cells use get(int).
+    public Object get(String columnName) {
+        for (int i = 0; i < columnNames.length; i++) {
+            if (columnNames[i].equals(columnName)) return values[i];
+        }
+        throw new IllegalArgumentException("No column " + columnName);
+    }
+
+    public String[] columnNames() {
+        return columnNames;
+    }
+
+    // The value shown for a column: the pending edit if there is one, else the loaded value.
+    public Object current(int column) {
+        return isEdited(column) ? edits[column] : values[column];
+    }
+
+    // Records a pending value; editing a column back to its loaded value clears the edit.
+    public void edit(int column, Object value) {
+        if (Objects.equals(value, values[column])) {
+            if (edits != null) edits[column] = UNCHANGED;
+            if (!isDirty()) edits = null;
+        } else {
+            if (edits == null) {
+                edits = new Object[values.length];
+                Arrays.fill(edits, UNCHANGED);
+            }
+            edits[column] = value;
+        }
+        if (display != null) display[column] = format(current(column));
+    }
+
+    public boolean isEdited(int column) {
+        return edits != null && edits[column] != UNCHANGED;
+    }
+
+    public boolean isDirty() {
+        if (edits == null) return false;
+        for (Object edit : edits) {
+            if (edit != UNCHANGED) return true;
+        }
+        return false;
+    }
+
+    public int[] editedColumns() {
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (isEdited(i)) count++;
+        }
+        int[] columns = new int[count];
+        for (int i = 0, j = 0; i < values.length; i++) {
+            if (isEdited(i)) columns[j++] = i;
+        }
+        return columns;
+    }
+
+    // Pending values become the loaded values, e.g. once they are committed.
+    void applyEdits() {
+        for (int column : editedColumns()) values[column] = edits[column];
+        edits = null;
+    }
+
+    public void discardEdits() {
+        edits = null;
+        display = null;
+    }
+
+    // Checkbox state, created the first time the select column shows this row.
+    public BooleanProperty selectedProperty() {
+        if (selected == null) selected = new SimpleBooleanProperty(false);
+        return selected;
+    }
+
+    public boolean isSelected() {
+        return selected != null && selected.get();
+    }
+
+    // The single observable every text column hands to its cells for this row.
+    ObservableValue<ResultRow> asValue() {
+        if (value == null) value = new ReadOnlyObjectWrapper<>(this);
+        return value.getReadOnlyProperty();
+    }
+
+    static String format(Object value) {
+        return value != null ? value.toString() : "NULL";
+    }
+}
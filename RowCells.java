@@ -0,0 +1,179 @@
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TextField;
+import javafx.scene.input.KeyCode;
+
+// Rendering helpers for ResultRow tables. Text columns read values by index and show
+// strings from a DisplayCache, so laying out a cell allocates nothing once its row has been
+// formatted: no per-cell property, no per-cell toString, no name lookup.
+public final class RowCells {
+
+    private RowCells() {
+    }
+
+    // Keeps formatted strings for the most recently displayed rows (a few screens' worth)
+    // and drops them from older rows in FIFO order, so memory stays flat while scrolling
+    // through millions of rows.
+    public static final class DisplayCache {
+        private final ResultRow[] recent;
+        private int next;
+
+        public DisplayCache(int rows) {
+            recent = new ResultRow[Math.max(1, rows)];
+        }
+
+        public String text(ResultRow row, int column) {
+            String[] display = row.display;
+            if (display == null) {
+                display = format(row);
+                ResultRow evicted = recent[next];
+                if (evicted != null) evicted.display = null;
+                recent[next] = row;
+                next = next + 1 == recent.length ? 0 : next + 1;
+            }
+            return display[column];
+        }
+
+        private static String[] format(ResultRow row) {
+            String[] display = new String[row.values.length];
+            for (int i = 0; i < display.length; i++) display[i] = ResultRow.format(row.current(i));
+            row.display = display;
+            return display;
+        }
+
+        // Forget cached strings, e.g. after rows were edited in place.
+        public void clear() {
+            for (int i = 0; i < recent.length; i++) {
+                if (recent[i] != null) recent[i].display = null;
+                recent[i] = null;
+            }
+            next = 0;
+        }
+    }
+
+    public static final int DEFAULT_CACHED_ROWS = 4096;
+
+    public static TableColumn<ResultRow, ResultRow> textColumn(String title, int index, DisplayCache cache) {
+        TableColumn<ResultRow, ResultRow> column = new TableColumn<>(title);
+        column.setCellValueFactory(cellData -> cellData.getValue().asValue());
+        column.setCellFactory(tc -> new TextCell(index, cache));
+        // Sort on the underlying values, not on their display strings
+        column.setComparator((a, b) -> compareValues(a == null ? null : a.get(index), b == null ? null : b.get(index)));
+        return column;
+    }
+
+    // Turns typed text into a column value and hears about every accepted edit.
+    public interface CellEditor {
+        // Throws IllegalArgumentException (with a user-facing message) to reject the text.
+        Object parse(int column, String text);
+
+        void edited(ResultRow row, int column, IllegalArgumentException rejected);
+    }
+
+    // A text column whose cells edit in place: Enter or leaving the cell commits, Escape
+    // cancels. Edited cells are highlighted until the row is saved or discarded.
+    public static TableColumn<ResultRow, ResultRow> editableTextColumn(String title, int index, DisplayCache cache, CellEditor editor) {
+        TableColumn<ResultRow, ResultRow> column = textColumn(title, index, cache);
+        column.setCellFactory(tc -> new EditableTextCell(index, cache, editor));
+        column.setEditable(true);
+        return column;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static int compareValues(Object a, Object b) {
+        if (a == b) return 0;
+        if (a == null) return -1;
+        if (b == null) return 1;
+        if (a instanceof Comparable && a.getClass() == b.getClass()) return ((Comparable) a).compareTo(b);
+        return a.toString().compareTo(b.toString());
+    }
+
+    private static class TextCell extends TableCell<ResultRow, ResultRow> {
+        final int index;
+        final DisplayCache cache;
+
+        TextCell(int index, DisplayCache cache) {
+            this.index = index;
+            this.cache = cache;
+        }
+
+        @Override
+        protected void updateItem(ResultRow row, boolean empty) {
+            super.updateItem(row, empty);
+            setText(empty || row == null ? null : cache.text(row, index));
+        }
+    }
+
+    private static final class EditableTextCell extends TextCell {
+        private static final String EDITED_STYLE = "-fx-background-color: #fff2b3;";
+        private final CellEditor editor;
+        private TextField field;
+
+        EditableTextCell(int index, DisplayCache cache, CellEditor editor) {
+            super(index, cache);
+            this.editor = editor;
+        }
+
+        @Override
+        public void startEdit() {
+            ResultRow row = getItem();
+            if (row == null) return;
+            super.startEdit();
+            if (!isEditing()) return;
+            if (field == null) {
+                field = new TextField();
+                field.setOnKeyPressed(event -> {
+                    if (event.getCode() == KeyCode.ENTER) {
+                        commitText();
+                    } else if (event.getCode() == KeyCode.ESCAPE) {
+                        cancelEdit();
+                    }
+                });
+                field.focusedProperty().addListener((obs, wasFocused, focused) -> {
+                    if (!focused && isEditing()) commitText();
+                });
+            }
+            field.setText(cache.text(row, index));
+            setText(null);
+            setGraphic(field);
+            field.selectAll();
+            field.requestFocus();
+        }
+
+        private void commitText() {
+            ResultRow row = getItem();
+            if (row == null) {
+                cancelEdit();
+                return;
+            }
+            try {
+                row.edit(index, editor.parse(index, field.getText()));
+                editor.edited(row, index, null);
+                commitEdit(row);
+            } catch (IllegalArgumentException e) {
+                editor.edited(row, index, e);
+                cancelEdit();
+            }
+        }
+
+        @Override
+        public void cancelEdit() {
+            super.cancelEdit();
+            setGraphic(null);
+            updateItem(getItem(), getItem() == null);
+        }
+
+        @Override
+        public void commitEdit(ResultRow row) {
+            super.commitEdit(row);
+            setGraphic(null);
+            updateItem(row, row == null);
+        }
+
+        @Override
+        protected void updateItem(ResultRow row, boolean empty) {
+            super.updateItem(row, empty);
+            setStyle(!empty && row != null && row.isEdited(index) ? EDITED_STYLE : "");
+        }
+    }
+}
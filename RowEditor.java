@@ -0,0 +1,323 @@
+import java.math.BigDecimal;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Writes in-place edits of ResultRows back to their table. Dirty rows are grouped by the
+// set of columns they changed, each group is one batched key-based UPDATE under its own
+// savepoint, and the whole flush is one transaction.
+//
+// Optimistic concurrency: a row is only updated if it has not changed since it was loaded.
+// With a version column (-Ddgfx8.versionColumn, default VERSION) the UPDATE matches and
+// bumps it; otherwise it matches the ORA_ROWSCN loaded with the row. ORA_ROWSCN is tracked
+// per block unless the table was created with ROWDEPENDENCIES, so a change to a neighbouring
+// row can also count as a conflict. A conflicting row updates nothing, stays dirty and is
+// reported; the rest of the flush still commits.
+public class RowEditor {
+
+    public static final String ROWSCN_COLUMN = "ORA_ROWSCN";
+    public static final String VERSION_COLUMN = System.getProperty("dgfx8.versionColumn", "VERSION");
+    private static final int REFRESH_CHUNK = 500;
+
+    // What a flush did. Rows in conflicts and errors keep their pending edits.
+    public static final class FlushResult {
+        public final List<ResultRow> updated = new ArrayList<>();
+        public final List<ResultRow> conflicts = new ArrayList<>();
+        public final Map<ResultRow, String> errors = new LinkedHashMap<>();
+        public final int statements;
+        public final long millis;
+        final Map<ResultRow, Object> newRowScns = new HashMap<>();
+
+        FlushResult(int statements, long millis) {
+            this.statements = statements;
+            this.millis = millis;
+        }
+    }
+
+    private final SqlEngine engine;
+    private final String tableName;
+    private final String[] columnNames;
+    private final String[] typeNames;
+    private final int[] keyColumns;
+    private final int versionColumn;
+    private final int rowScnColumn;
+
+    private RowEditor(SqlEngine engine, String tableName, String[] columnNames, String[] typeNames,
+                      int[] keyColumns, int versionColumn, int rowScnColumn) {
+        this.engine = engine;
+        this.tableName = tableName;
+        this.columnNames = columnNames;
+        this.typeNames = typeNames;
+        this.keyColumns = keyColumns;
+        this.versionColumn = versionColumn;
+        this.rowScnColumn = rowScnColumn;
+    }
+
+    // Null when the rows cannot be written back: no primary key, or a key column is missing.
+    public static RowEditor forTable(SqlEngine engine, String tableName, String[] columnNames, String[] typeNames) throws SQLException {
+        List<String> primaryKey = engine.primaryKey(tableName);
+        if (primaryKey.isEmpty()) return null;
+        List<String> names = Arrays.asList(columnNames);
+        int[] keyColumns = new int[primaryKey.size()];
+        for (int i = 0; i < keyColumns.length; i++) {
+            keyColumns[i] = names.indexOf(primaryKey.get(i));
+            if (keyColumns[i] < 0) return null;
+        }
+        return new RowEditor(engine, tableName, columnNames, typeNames, keyColumns,
+                indexOfIgnoreCase(columnNames, VERSION_COLUMN), indexOfIgnoreCase(columnNames, ROWSCN_COLUMN));
+    }
+
+    private static int indexOfIgnoreCase(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equalsIgnoreCase(name)) return i;
+        }
+        return -1;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    // Keys and the concurrency columns are maintained here, not typed in. Only character,
+    // numeric and date/timestamp columns are edited as text; LOB, RAW, LONG, BFILE and object
+    // columns would show (and save back) their Java toString().
+    public boolean isEditable(int column) {
+        if (column == versionColumn || column == rowScnColumn) return false;
+        for (int key : keyColumns) {
+            if (key == column) return false;
+        }
+        return isTextEditable(typeNames[column].toUpperCase());
+    }
+
+    private static boolean isTextEditable(String type) {
+        if (type.startsWith("LONG") || type.contains("LOB") || type.contains("RAW")
+                || type.contains("LARGE OBJECT") || type.contains("BINARY VARYING")) return false;
+        return isNumeric(type) || type.startsWith("DATE") || type.startsWith("TIMESTAMP")
+                || type.startsWith("VARCHAR") || type.startsWith("NVARCHAR") || type.startsWith("CHAR")
+                || type.startsWith("NCHAR") || type.startsWith("CHARACTER");
+    }
+
+    // Typed text -> column value. Empty text or NULL means SQL NULL.
+    public Object parse(int column, String text) {
+        String value = text == null ? "" : text.trim();
+        if (value.isEmpty() || value.equalsIgnoreCase("NULL")) return null;
+        String type = typeNames[column].toUpperCase();
+        try {
+            if (isNumeric(type)) return new BigDecimal(value);
+            if (type.startsWith("DATE") || type.startsWith("TIMESTAMP")) {
+                return Timestamp.valueOf(value.length() == 10 ? value + " 00:00:00" : value);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("'" + value + "' is not a valid " + typeNames[column] + " for " + columnNames[column]);
+        }
+        return text;
+    }
+
+    private static boolean isNumeric(String type) {
+        return type.startsWith("NUMBER") || type.startsWith("INT") || type.startsWith("DEC") || type.startsWith("FLOAT")
+                || type.startsWith("BINARY_") || type.startsWith("DOUBLE") || type.startsWith("NUMERIC")
+                || type.startsWith("SMALLINT") || type.startsWith("BIGINT") || type.startsWith("REAL");
+    }
+
+    // Writes the rows' pending edits in one transaction. Does not touch the rows; call
+    // apply() on the UI thread with the result.
+    public FlushResult flush(Collection<ResultRow> rows) throws SQLException {
+        long start = System.nanoTime();
+        Map<String, List<ResultRow>> groups = new LinkedHashMap<>();
+        for (ResultRow row : rows) {
+            if (row.isDirty()) groups.computeIfAbsent(Arrays.toString(row.editedColumns()), k -> new ArrayList<>()).add(row);
+        }
+        List<ResultRow> updated = new ArrayList<>();
+        List<ResultRow> conflicts = new ArrayList<>();
+        Map<ResultRow, String> errors = new LinkedHashMap<>();
+        Map<ResultRow, Object> newRowScns = new HashMap<>();
+
+        engine.withConnection(connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                for (List<ResultRow> group : groups.values()) {
+                    updateGroup(connection, group, updated, conflicts, errors);
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            if (versionColumn < 0 && rowScnColumn >= 0) readRowScns(connection, updated, newRowScns);
+            return null;
+        });
+
+        FlushResult result = new FlushResult(groups.size(), (System.nanoTime() - start) / 1_000_000);
+        result.updated.addAll(updated);
+        result.conflicts.addAll(conflicts);
+        result.errors.putAll(errors);
+        result.newRowScns.putAll(newRowScns);
+        return result;
+    }
+
+    // Makes committed edits the rows' loaded values and advances their concurrency tokens.
+    public void apply(FlushResult result) {
+        for (ResultRow row : result.updated) {
+            row.applyEdits();
+            if (versionColumn >= 0) {
+                Object version = row.values[versionColumn];
+                BigDecimal current = version instanceof Number ? new BigDecimal(version.toString()) : BigDecimal.ZERO;
+                row.values[versionColumn] = current.add(BigDecimal.ONE);
+            } else if (rowScnColumn >= 0 && result.newRowScns.containsKey(row)) {
+                row.values[rowScnColumn] = result.newRowScns.get(row);
+            }
+            row.display = null;
+        }
+    }
+
+    private void updateGroup(Connection connection, List<ResultRow> group, List<ResultRow> updated,
+                             List<ResultRow> conflicts, Map<ResultRow, String> errors) throws SQLException {
+        int[] columns = group.get(0).editedColumns();
+        String sql = updateSql(columns);
+        Savepoint savepoint = connection.setSavepoint();
+        SqlMetrics.Probe probe = SqlMetrics.begin("dgfx8.saveEdits.batch", sql);
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try {
+                for (ResultRow row : group) {
+                    SqlEngine.bind(pstmt, parameters(row, columns));
+                    pstmt.addBatch();
+                }
+                int[] counts = pstmt.executeBatch();
+                probe.executed();
+                if (counts.length == group.size() && Arrays.stream(counts).noneMatch(c -> c == Statement.SUCCESS_NO_INFO)) {
+                    int rowsUpdated = 0;
+                    for (int i = 0; i < counts.length; i++) {
+                        if (counts[i] > 0) rowsUpdated++;
+                        (counts[i] > 0 ? updated : conflicts).add(group.get(i));
+                    }
+                    probe.end(rowsUpdated);
+                    return;
+                }
+                // No per-row counts from this driver: conflicts can only be told apart row by row
+                connection.rollback(savepoint);
+                probe.end();
+            } catch (BatchUpdateException e) {
+                probe.fail(e);
+                connection.rollback(savepoint);
+                pstmt.clearBatch();
+            }
+
+            // Redo the group one row at a time, each under its own savepoint, so a failing row
+            // is reported on its own and does not undo the others
+            for (ResultRow row : group) {
+                Savepoint rowSavepoint = connection.setSavepoint();
+                SqlMetrics.Probe rowProbe = SqlMetrics.begin("dgfx8.saveEdits", sql);
+                try {
+                    SqlEngine.bind(pstmt, parameters(row, columns));
+                    int count = pstmt.executeUpdate();
+                    rowProbe.end(count);
+                    (count > 0 ? updated : conflicts).add(row);
+                } catch (SQLException ex) {
+                    rowProbe.fail(ex);
+                    connection.rollback(rowSavepoint);
+                    errors.put(row, ex.getMessage());
+                }
+            }
+        }
+    }
+
+    private String updateSql(int[] columns) {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(tableName).append(" SET ");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(columnNames[columns[i]]).append(" = ?");
+        }
+        if (versionColumn >= 0) {
+            String version = columnNames[versionColumn];
+            sql.append(", ").append(version).append(" = NVL(").append(version).append(", 0) + 1");
+        }
+        sql.append(" WHERE ");
+        for (int i = 0; i < keyColumns.length; i++) {
+            if (i > 0) sql.append(" AND ");
+            sql.append(columnNames[keyColumns[i]]).append(" = ?");
+        }
+        if (versionColumn >= 0) {
+            // DECODE treats two NULLs as equal, so an unset version still matches
+            sql.append(" AND DECODE(").append(columnNames[versionColumn]).append(", ?, 1, 0) = 1");
+        } else if (rowScnColumn >= 0) {
+            sql.append(" AND ORA_ROWSCN = ?");
+        }
+        return sql.toString();
+    }
+
+    private Object[] parameters(ResultRow row, int[] columns) {
+        List<Object> params = new ArrayList<>();
+        for (int column : columns) params.add(bindable(row.current(column), column));
+        for (int key : keyColumns) params.add(row.values[key]);
+        if (versionColumn >= 0) {
+            params.add(bindable(row.values[versionColumn], versionColumn));
+        } else if (rowScnColumn >= 0) {
+            params.add(row.values[rowScnColumn]);
+        }
+        return params.toArray();
+    }
+
+    private Object bindable(Object value, int column) {
+        if (value != null) return value;
+        String type = typeNames[column].toUpperCase();
+        if (isNumeric(type)) return SqlEngine.nullOf(Types.NUMERIC);
+        if (type.startsWith("DATE") || type.startsWith("TIMESTAMP")) return SqlEngine.nullOf(Types.TIMESTAMP);
+        return SqlEngine.nullOf(Types.VARCHAR);
+    }
+
+    // Committed rows have a new ORA_ROWSCN; read it back so the next edit of the same row
+    // does not look like a conflict. One query per REFRESH_CHUNK rows.
+    private void readRowScns(Connection connection, List<ResultRow> rows, Map<ResultRow, Object> newRowScns) throws SQLException {
+        StringBuilder keyList = new StringBuilder();
+        for (int i = 0; i < keyColumns.length; i++) {
+            if (i > 0) keyList.append(", ");
+            keyList.append(columnNames[keyColumns[i]]);
+        }
+        String tuple = "(" + String.join(", ", Collections.nCopies(keyColumns.length, "?")) + ")";
+        for (int from = 0; from < rows.size(); from += REFRESH_CHUNK) {
+            List<ResultRow> chunk = rows.subList(from, Math.min(rows.size(), from + REFRESH_CHUNK));
+            Map<String, ResultRow> byKey = new HashMap<>();
+            List<Object> params = new ArrayList<>();
+            for (ResultRow row : chunk) {
+                byKey.put(keyOf(row.values), row);
+                for (int key : keyColumns) params.add(row.values[key]);
+            }
+            String sql = "SELECT " + keyList + ", ORA_ROWSCN FROM " + tableName + " WHERE (" + keyList + ") IN ("
+                    + String.join(", ", Collections.nCopies(chunk.size(), tuple)) + ")";
+            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                SqlEngine.bind(pstmt, params.toArray());
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        Object[] keyValues = new Object[columnNames.length];
+                        for (int i = 0; i < keyColumns.length; i++) keyValues[keyColumns[i]] = rs.getObject(i + 1);
+                        ResultRow row = byKey.get(keyOf(keyValues));
+                        if (row != null) newRowScns.put(row, rs.getObject(keyColumns.length + 1));
+                    }
+                }
+            }
+        }
+    }
+
+    private String keyOf(Object[] values) {
+        StringBuilder key = new StringBuilder();
+        for (int column : keyColumns) key.append(values[column]).append('\u0001');
+        return key.toString();
+    }
+}
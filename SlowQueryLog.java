@@ -0,0 +1,95 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Appends every statement slower than the threshold to a log file.
+// Threshold and file come from -Dsqlclient.slowQueryMillis (default 500) and
+// -Dsqlclient.slowQueryLog (default slow-query.log) and can be changed at runtime.
+// Entries are written on a background thread, in order, so a statement run on the FX
+// thread does not wait for the disk.
+public class SlowQueryLog {
+
+    private static final SlowQueryLog INSTANCE = new SlowQueryLog();
+
+    private volatile long thresholdNanos = Long.getLong("sqlclient.slowQueryMillis", 500L) * 1_000_000L;
+    private final Path file = Paths.get(System.getProperty("sqlclient.slowQueryLog", "slow-query.log"));
+    private boolean installed;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "slow-query-log");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private SlowQueryLog() {
+    }
+
+    // Hooks the log into SqlMetrics; safe to call more than once.
+    public static synchronized SlowQueryLog install() {
+        if (!INSTANCE.installed) {
+            SqlMetrics.get().addListener(INSTANCE::onStatement);
+            INSTANCE.installed = true;
+        }
+        return INSTANCE;
+    }
+
+    public long getThresholdMillis() {
+        return thresholdNanos / 1_000_000L;
+    }
+
+    public void setThresholdMillis(long millis) {
+        thresholdNanos = Math.max(0, millis) * 1_000_000L;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public boolean isSlow(SqlMetrics.StatementRecord record) {
+        return record.totalNanos() >= thresholdNanos;
+    }
+
+    private void onStatement(SqlMetrics.StatementRecord record) {
+        if (!isSlow(record)) return;
+        append(String.format("%s slow %s execute=%.3fms fetch=%.3fms rows=%d bytes=%d%s%n  %s",
+                timestamp(record.timestampMillis), record.operation, record.executeNanos / 1e6,
+                record.fetchNanos / 1e6, record.rows, record.bytes,
+                record.succeeded() ? "" : " error=" + record.error, SqlMetrics.fingerprint(record.sql)));
+    }
+
+    // Records a captured execution plan next to the statement it belongs to.
+    public void appendPlan(String sql, List<String> plan) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(timestamp(System.currentTimeMillis())).append(" plan ").append(SqlMetrics.fingerprint(sql));
+        for (String line : plan) {
+            sb.append(System.lineSeparator()).append("  ").append(line);
+        }
+        append(sb.toString());
+    }
+
+    private void append(String entry) {
+        writer.execute(() -> write(entry));
+    }
+
+    private void write(String entry) {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(entry);
+            writer.newLine();
+        } catch (IOException e) {
+            System.err.println("Could not write slow query log " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static String timestamp(long millis) {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(millis));
+    }
+}
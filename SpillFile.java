@@ -0,0 +1,355 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+// Disk-backed result rows for results larger than the heap. Rows are appended once in a
+// compact tagged binary format to a data file, with each row's start offset written to an
+// index file; finish() then memory-maps both, and row(i) decodes straight from the mapping.
+// Heap use is independent of the row count.
+//
+// Values are stored as null, long, double, UTF-8 string, BigDecimal, timestamp or date;
+// any other type (e.g. driver-specific LOB or TIMESTAMP classes) is stored as its
+// toString(), which is what the table views display anyway.
+//
+// Writing is single-threaded; after finish() reads are safe from any thread.
+public final class SpillFile implements AutoCloseable {
+
+    private static final byte NULL = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte STRING = 3;
+    private static final byte DECIMAL = 4;
+    private static final byte TIMESTAMP = 5;
+    private static final byte DATE = 6;
+
+    // Mappings are split into 1 GiB segments; data segments overlap by the longest row so a
+    // row that starts in a segment can always be decoded from that segment alone.
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+    static final int DEFAULT_RUN_ROWS = 200_000;
+    private static final int MERGE_FAN_IN = 64;
+
+    // Files whose delete failed because a mapping was still live (Windows refuses to delete a
+    // mapped file). Retried each time a spill file is created or closed, by which time the
+    // closed files' mappings have usually been collected.
+    private static final Set<Path> undeleted = ConcurrentHashMap.newKeySet();
+
+    private final String[] columnNames;
+    private final Path dataPath;
+    private final Path indexPath;
+    private DataOutputStream data;
+    private DataOutputStream index;
+    private long position;
+    private long rows;
+    private int maxRowBytes;
+    private MappedByteBuffer[] dataSegments;
+    private MappedByteBuffer[] indexSegments;
+
+    private SpillFile(String[] columnNames) throws IOException {
+        this.columnNames = columnNames;
+        this.dataPath = Files.createTempFile("dgfx8-spill-", ".rows");
+        this.indexPath = Files.createTempFile("dgfx8-spill-", ".idx");
+        dataPath.toFile().deleteOnExit();
+        indexPath.toFile().deleteOnExit();
+        data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dataPath), 1 << 16));
+        index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexPath), 1 << 16));
+    }
+
+    public static SpillFile create(String[] columnNames) throws IOException {
+        retryDeletes();
+        return new SpillFile(columnNames);
+    }
+
+    public String[] columnNames() {
+        return columnNames;
+    }
+
+    public long size() {
+        return rows;
+    }
+
+    public long bytes() {
+        return position;
+    }
+
+    public void append(Object[] values) throws IOException {
+        if (data == null) throw new IllegalStateException("Spill file is already finished");
+        index.writeLong(position);
+        long start = position;
+        for (Object value : values) write(value);
+        maxRowBytes = (int) Math.max(maxRowBytes, position - start);
+        rows++;
+    }
+
+    private void write(Object value) throws IOException {
+        if (value == null) {
+            data.writeByte(NULL);
+            position += 1;
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            data.writeByte(LONG);
+            data.writeLong(((Number) value).longValue());
+            position += 9;
+        } else if (value instanceof Double || value instanceof Float) {
+            data.writeByte(DOUBLE);
+            data.writeDouble(((Number) value).doubleValue());
+            position += 9;
+        } else if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            byte[] unscaled = decimal.unscaledValue().toByteArray();
+            data.writeByte(DECIMAL);
+            data.writeInt(decimal.scale());
+            data.writeShort(unscaled.length);
+            data.write(unscaled);
+            position += 7 + unscaled.length;
+        } else if (value instanceof Timestamp) {
+            Timestamp timestamp = (Timestamp) value;
+            data.writeByte(TIMESTAMP);
+            data.writeLong(timestamp.getTime());
+            data.writeInt(timestamp.getNanos());
+            position += 13;
+        } else if (value instanceof java.sql.Date) {
+            data.writeByte(DATE);
+            data.writeLong(((java.sql.Date) value).getTime());
+            position += 9;
+        } else {
+            byte[] utf8 = value.toString().getBytes(StandardCharsets.UTF_8);
+            data.writeByte(STRING);
+            data.writeInt(utf8.length);
+            data.write(utf8);
+            position += 5 + utf8.length;
+        }
+    }
+
+    // Ends the write phase and maps the files for reading.
+    public SpillFile finish() throws IOException {
+        if (data == null) return this;
+        data.close();
+        index.close();
+        data = null;
+        index = null;
+        dataSegments = map(dataPath, position, maxRowBytes);
+        indexSegments = map(indexPath, rows * 8, 0);
+        return this;
+    }
+
+    private static MappedByteBuffer[] map(Path path, long length, int overlap) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            int count = (int) Math.max(1, (length + SEGMENT_SIZE - 1) >>> SEGMENT_BITS);
+            MappedByteBuffer[] segments = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long start = (long) i << SEGMENT_BITS;
+                long size = Math.min(length - start, SEGMENT_SIZE + overlap);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.max(0, size));
+            }
+            return segments; // The mappings stay valid after the channel is closed
+        }
+    }
+
+    public Object[] row(long i) {
+        if (dataSegments == null) throw new IllegalStateException("Spill file is not finished");
+        if (i < 0 || i >= rows) throw new IndexOutOfBoundsException("Row " + i + " of " + rows);
+        long indexOffset = i * 8;
+        long offset = indexSegments[(int) (indexOffset >>> SEGMENT_BITS)].getLong((int) (indexOffset & (SEGMENT_SIZE - 1)));
+        ByteBuffer buffer = dataSegments[(int) (offset >>> SEGMENT_BITS)];
+        int pos = (int) (offset & (SEGMENT_SIZE - 1));
+        Object[] values = new Object[columnNames.length];
+        for (int c = 0; c < values.length; c++) {
+            byte tag = buffer.get(pos++);
+            switch (tag) {
+                case NULL:
+                    break;
+                case LONG:
+                    values[c] = buffer.getLong(pos);
+                    pos += 8;
+                    break;
+                case DOUBLE:
+                    values[c] = buffer.getDouble(pos);
+                    pos += 8;
+                    break;
+                case DECIMAL: {
+                    int scale = buffer.getInt(pos);
+                    byte[] unscaled = new byte[buffer.getShort(pos + 4)];
+                    buffer.get(pos + 6, unscaled);
+                    values[c] = new BigDecimal(new BigInteger(unscaled), scale);
+                    pos += 6 + unscaled.length;
+                    break;
+                }
+                case TIMESTAMP: {
+                    Timestamp timestamp = new Timestamp(buffer.getLong(pos));
+                    timestamp.setNanos(buffer.getInt(pos + 8));
+                    values[c] = timestamp;
+                    pos += 12;
+                    break;
+                }
+                case DATE:
+                    values[c] = new java.sql.Date(buffer.getLong(pos));
+                    pos += 8;
+                    break;
+                case STRING: {
+                    byte[] utf8 = new byte[buffer.getInt(pos)];
+                    buffer.get(pos + 4, utf8);
+                    values[c] = new String(utf8, StandardCharsets.UTF_8);
+                    pos += 4 + utf8.length;
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Corrupt spill file: tag " + tag + " at row " + i);
+            }
+        }
+        return values;
+    }
+
+    // Rows matching the predicate, in order, as a new finished spill file.
+    public SpillFile filter(Predicate<Object[]> predicate) throws IOException {
+        SpillFile out = create(columnNames);
+        try {
+            for (long i = 0; i < rows; i++) {
+                Object[] row = row(i);
+                if (predicate.test(row)) out.append(row);
+            }
+            return out.finish();
+        } catch (IOException | RuntimeException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    // Orders rows by one column (nulls first, as RowCells sorts them on screen).
+    public static Comparator<Object[]> byColumn(int column, boolean ascending) {
+        Comparator<Object[]> comparator = (a, b) -> RowCells.compareValues(a[column], b[column]);
+        return ascending ? comparator : comparator.reversed();
+    }
+
+    public SpillFile sort(Comparator<Object[]> order) throws IOException {
+        return sort(order, DEFAULT_RUN_ROWS);
+    }
+
+    // External merge sort: sorted runs of runRows rows are spilled, then merged MERGE_FAN_IN
+    // at a time until one file remains. Heap use is bounded by runRows, not by size().
+    // The sort is stable, so equal keys keep their current order.
+    public SpillFile sort(Comparator<Object[]> order, int runRows) throws IOException {
+        List<SpillFile> runs = new ArrayList<>();
+        try {
+            List<Object[]> run = new ArrayList<>(Math.min(runRows, (int) Math.min(rows, Integer.MAX_VALUE)));
+            for (long i = 0; i < rows; i++) {
+                run.add(row(i));
+                if (run.size() == runRows) {
+                    runs.add(writeRun(run, order));
+                    run.clear();
+                }
+            }
+            if (!run.isEmpty() || runs.isEmpty()) runs.add(writeRun(run, order));
+            while (runs.size() > 1) {
+                List<SpillFile> merged = new ArrayList<>();
+                for (int from = 0; from < runs.size(); from += MERGE_FAN_IN) {
+                    List<SpillFile> group = runs.subList(from, Math.min(runs.size(), from + MERGE_FAN_IN));
+                    merged.add(group.size() == 1 ? group.get(0) : merge(group, order));
+                }
+                for (SpillFile r : runs) {
+                    if (!merged.contains(r)) r.close();
+                }
+                runs = merged;
+            }
+            return runs.get(0);
+        } catch (IOException | RuntimeException e) {
+            for (SpillFile r : runs) r.close();
+            throw e;
+        }
+    }
+
+    private SpillFile writeRun(List<Object[]> run, Comparator<Object[]> order) throws IOException {
+        run.sort(order);
+        SpillFile out = create(columnNames);
+        for (Object[] row : run) out.append(row);
+        return out.finish();
+    }
+
+    private static final class Cursor {
+        final SpillFile file;
+        final int order; // Run number, breaks ties so the merge stays stable
+        long next;
+        Object[] current;
+
+        Cursor(SpillFile file, int order) {
+            this.file = file;
+            this.order = order;
+        }
+
+        boolean advance() {
+            if (next >= file.size()) return false;
+            current = file.row(next++);
+            return true;
+        }
+    }
+
+    private SpillFile merge(List<SpillFile> group, Comparator<Object[]> order) throws IOException {
+        Comparator<Cursor> byRow = (a, b) -> {
+            int c = order.compare(a.current, b.current);
+            return c != 0 ? c : Integer.compare(a.order, b.order);
+        };
+        PriorityQueue<Cursor> heap = new PriorityQueue<>(group.size(), byRow);
+        for (int i = 0; i < group.size(); i++) {
+            Cursor cursor = new Cursor(group.get(i), i);
+            if (cursor.advance()) heap.add(cursor);
+        }
+        SpillFile out = create(columnNames);
+        try {
+            while (!heap.isEmpty()) {
+                Cursor smallest = heap.poll();
+                out.append(smallest.current);
+                if (smallest.advance()) heap.add(smallest);
+            }
+            return out.finish();
+        } catch (IOException | RuntimeException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (data != null) data.close();
+            if (index != null) index.close();
+        } catch (IOException ignored) {
+        }
+        data = null;
+        index = null;
+        dataSegments = null; // Unmapped when collected; until then only Unix lets us delete
+        indexSegments = null;
+        delete(dataPath);
+        delete(indexPath);
+        retryDeletes();
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+            undeleted.remove(path);
+        } catch (IOException e) {
+            undeleted.add(path); // Still mapped; retried later, and deleteOnExit is the last resort
+        }
+    }
+
+    private static void retryDeletes() {
+        for (Path path : undeleted) delete(path);
+    }
+}
@@ -0,0 +1,46 @@
+import javafx.collections.ObservableListBase;
+
+// Read-only ObservableList over a finished SpillFile, so a TableView can page through a
+// result without holding it in memory. Rows are decoded when a cell asks for them; the
+// most recent CACHED_ROWS decoded rows are kept so a visible row stays the same ResultRow
+// (and keeps its display strings) while the user scrolls around it.
+public final class SpillList extends ObservableListBase<ResultRow> {
+
+    private static final int CACHED_ROWS = 8192;
+
+    private final SpillFile file;
+    private final String sortKey;
+    private final ResultRow[] cache = new ResultRow[CACHED_ROWS];
+    private final int[] cachedIndex = new int[CACHED_ROWS];
+
+    public SpillList(SpillFile file, String sortKey) {
+        if (file.size() > Integer.MAX_VALUE) throw new IllegalArgumentException("Too many rows for a list: " + file.size());
+        this.file = file;
+        this.sortKey = sortKey;
+        java.util.Arrays.fill(cachedIndex, -1);
+    }
+
+    public SpillFile file() {
+        return file;
+    }
+
+    // Which ordering this list shows (null when in fetch order), so callers can skip re-sorting.
+    public String sortKey() {
+        return sortKey;
+    }
+
+    @Override
+    public ResultRow get(int index) {
+        int slot = index & (CACHED_ROWS - 1);
+        if (cachedIndex[slot] == index) return cache[slot];
+        ResultRow row = new ResultRow(file.columnNames(), file.row(index));
+        cache[slot] = row;
+        cachedIndex[slot] = index;
+        return row;
+    }
+
+    @Override
+    public int size() {
+        return (int) file.size();
+    }
+}
@@ -0,0 +1,45 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+// Single-producer/single-consumer DoubleRing. Each side owns one counter and publishes it
+// with a release store; the other side's counter is cached and only re-read when the
+// cached value says the ring looks full (producer) or empty (consumer).
+public final class SpscDoubleRing extends DoubleRing {
+
+    private final AtomicLong head = new AtomicLong(); // next slot to read, written by the consumer
+    private final AtomicLong tail = new AtomicLong(); // next slot to write, written by the producer
+    private long cachedHead; // producer's view of head
+    private long cachedTail; // consumer's view of tail
+
+    public SpscDoubleRing(int capacity) {
+        super(capacity);
+    }
+
+    @Override
+    public boolean offer(double value) {
+        long t = tail.get();
+        if (t - cachedHead >= values.length) {
+            cachedHead = head.get();
+            if (t - cachedHead >= values.length) return false;
+        }
+        values[(int) t & mask] = value;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    @Override
+    public boolean poll(double[] out, int index) {
+        long h = head.get();
+        if (h >= cachedTail) {
+            cachedTail = tail.get();
+            if (h >= cachedTail) return false;
+        }
+        out[index] = values[(int) h & mask];
+        head.lazySet(h + 1);
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+}
@@ -0,0 +1,326 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+// Micro-benchmarks for the SQL hot paths, run against an embedded in-memory database.
+//
+//   java -cp .:h2.jar SqlBenchmark [--url jdbc:h2:mem:bench;MODE=Oracle] [--forks 5] [--record] [--baseline file]
+//
+// The suite runs in --forks fresh JVMs one after another. In each, a benchmark is warmed up
+// in rounds until the last few rounds agree within 10% (the JIT and heap have settled), then
+// timed over MEASURE_ITERATIONS invocations, and the median ns/op is that fork's result. Two
+// settled JVMs can still differ by well over 20% on allocation-heavy code (heap layout,
+// neighbours on the host), and such noise only ever adds time, so the fastest fork is the
+// reported result. When comparing, a benchmark that looks more than 20% slower gets up to
+// twice as many extra forks to confirm it: a real regression stays slow in all of them, a
+// JVM that merely landed in a slow state does not. A benchmark that settles in no fork is
+// marked and does not fail the comparison. Setup that a benchmark needs before every invocation (putting deleted rows
+// back, say) runs outside the timed section. With --record the results are written to the
+// baseline file (default sql-benchmark-baseline.properties); otherwise they are compared
+// against it and anything more than 20% slower is flagged as a regression (non-zero exit code).
+public class SqlBenchmark {
+
+    private static final long WARMUP_ROUND_MILLIS = 250;
+    private static final int STABLE_ROUNDS = 4;
+    private static final double STABLE_SPREAD = 1.10;
+    private static final long WARMUP_MAX_MILLIS = Long.getLong("bench.warmupMaxMillis", 15_000L);
+    private static final int MEASURE_ITERATIONS = 31;
+    private static final double REGRESSION_TOLERANCE = 1.20;
+
+    private static final int TABLE_ROWS = 10_000;
+    private static final int BATCH_ROWS = 500;
+    private static final int DELETE_ROWS = 100;
+    private static final String FORK_RESULT = "@result ";
+
+    interface BenchmarkBody {
+        void run() throws Exception;
+    }
+
+    private final Map<String, Double> results = new LinkedHashMap<>();
+    private final List<String> unsettled = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        String url = "jdbc:h2:mem:bench;MODE=Oracle;DB_CLOSE_DELAY=-1";
+        Path baseline = Paths.get("sql-benchmark-baseline.properties");
+        boolean record = false;
+        boolean inFork = false;
+        int forks = 5;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--url": url = args[++i]; break;
+                case "--baseline": baseline = Paths.get(args[++i]); break;
+                case "--record": record = true; break;
+                case "--forks": forks = Math.max(1, Integer.parseInt(args[++i])); break;
+                case "--in-fork": inFork = true; break;
+                default:
+                    System.err.println("Unknown argument: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        SqlBenchmark benchmark = new SqlBenchmark();
+        if (inFork) {
+            try (SqlEngine engine = SqlEngine.connect(url, "sa", "", 2)) {
+                benchmark.runAll(engine);
+            }
+            for (Map.Entry<String, Double> result : benchmark.results.entrySet()) {
+                System.out.println(FORK_RESULT + result.getKey() + " " + format(result.getValue())
+                        + " " + !benchmark.unsettled.contains(result.getKey()));
+            }
+            return;
+        }
+
+        Properties base = !record && Files.exists(baseline) ? loadBaseline(baseline) : null;
+        Map<String, Boolean> settled = new LinkedHashMap<>();
+        int maxForks = base == null ? forks : forks * 3;
+        for (int fork = 1; fork <= maxForks; fork++) {
+            if (fork > forks) {
+                List<String> suspects = benchmark.slower(base);
+                if (suspects.isEmpty()) break;
+                System.out.println("--- extra fork " + fork + " to confirm " + suspects + " ---");
+            } else {
+                System.out.println("--- fork " + fork + " of " + forks + " ---");
+            }
+            benchmark.runFork(url, settled);
+        }
+        System.out.println("--- fastest fork ---");
+        for (Map.Entry<String, Double> result : benchmark.results.entrySet()) {
+            if (!settled.get(result.getKey())) benchmark.unsettled.add(result.getKey());
+            System.out.printf("%-28s %12.1f ns/op%s%n", result.getKey(), result.getValue(),
+                    settled.get(result.getKey()) ? "" : "  (did not settle)");
+        }
+
+        if (record) {
+            benchmark.writeBaseline(baseline);
+            System.out.println("Baseline written to " + baseline.toAbsolutePath());
+        } else if (base != null) {
+            if (!benchmark.compare(base)) System.exit(1);
+        }
+    }
+
+    // Runs the suite in a fresh JVM with this classpath, echoing its output; keeps the fastest
+    // result per benchmark and whether it settled in any fork.
+    private void runFork(String url, Map<String, Boolean> settled) throws IOException, InterruptedException {
+        Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+        Process process = new ProcessBuilder(java.toString(), "-cp", System.getProperty("java.class.path"),
+                "-Dbench.warmupMaxMillis=" + WARMUP_MAX_MILLIS, SqlBenchmark.class.getName(), "--in-fork", "--url", url)
+                .redirectErrorStream(true).start();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (!line.startsWith(FORK_RESULT)) {
+                    System.out.println(line);
+                    continue;
+                }
+                String[] parts = line.substring(FORK_RESULT.length()).split(" ");
+                results.merge(parts[0], Double.parseDouble(parts[1]), Math::min);
+                settled.merge(parts[0], Boolean.parseBoolean(parts[2]), Boolean::logicalOr);
+            }
+        }
+        int exit = process.waitFor();
+        if (exit != 0) throw new IOException("Benchmark fork exited with " + exit);
+    }
+
+    private static String format(double nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos);
+    }
+
+    private void runAll(SqlEngine engine) throws Exception {
+        // --- script parsing: readSQLFromFile + split ---
+        Path script = Files.createTempFile("bench", ".sql");
+        try {
+            StringBuilder sb = new StringBuilder("-- generated benchmark script\n");
+            for (int i = 0; i < 2_000; i++) {
+                sb.append("INSERT INTO EMP VALUES (").append(i).append(", 'NAME").append(i)
+                        .append("', 'CLERK', 7902, NULL, 800, NULL, 20);\n");
+            }
+            Files.write(script, sb.toString().getBytes(StandardCharsets.UTF_8));
+            run("script.readAndSplit", 2_000, () -> SqlEngine.splitStatements(SqlEngine.readScript(script.toString())));
+        } finally {
+            Files.deleteIfExists(script);
+        }
+
+        engine.executeUpdate("bench", "CREATE TABLE BENCH_EMP (EMPNO NUMBER(8) PRIMARY KEY, ENAME VARCHAR2(20), "
+                + "JOB VARCHAR2(9), SAL NUMBER(7,2), DEPTNO NUMBER(2))");
+        try {
+            // --- per-statement (check) vs batched (insertMultipleRecords) execution ---
+            // Every invocation inserts the same keys into an emptied table (untimed), so a long
+            // warm-up does not grow the table and change what is being measured
+            BenchmarkBody emptyTable = () -> engine.executeUpdate("bench", "DELETE FROM BENCH_EMP");
+            run("insert.perStatement", BATCH_ROWS, emptyTable, () -> {
+                for (int i = 0; i < BATCH_ROWS; i++) {
+                    int key = 1_000_000 + i;
+                    engine.execute("bench", "INSERT INTO BENCH_EMP VALUES (" + key + ", 'N" + key + "', 'CLERK', 1000, 10)", null);
+                }
+            });
+            run("insert.batched", BATCH_ROWS, emptyTable, () -> {
+                List<Object[]> rows = new ArrayList<>(BATCH_ROWS);
+                for (int i = 0; i < BATCH_ROWS; i++) {
+                    int key = 1_000_000 + i;
+                    rows.add(new Object[]{key, "N" + key, "CLERK", 1000, 10});
+                }
+                engine.executeBatch("bench", "INSERT INTO BENCH_EMP VALUES (?, ?, ?, ?, ?)", rows);
+            });
+
+            // --- result materialization (createTableView's row maps) ---
+            engine.executeUpdate("bench", "DELETE FROM BENCH_EMP");
+            List<Object[]> seed = new ArrayList<>(TABLE_ROWS);
+            for (int i = 0; i < TABLE_ROWS; i++) {
+                seed.add(new Object[]{i, "NAME" + i, i % 2 == 0 ? "CLERK" : "ANALYST", 1000 + i % 500, i % 4 * 10});
+            }
+            engine.executeBatch("bench", "INSERT INTO BENCH_EMP VALUES (?, ?, ?, ?, ?)", seed);
+            run("select.materializeMaps", TABLE_ROWS, () -> {
+                List<Map<String, Object>> rows = new ArrayList<>();
+                engine.query("bench", "SELECT * FROM BENCH_EMP", new SqlEngine.RowHandler() {
+                    private String[] names;
+
+                    @Override
+                    public void columns(String[] columnNames, String[] typeNames) {
+                        names = columnNames;
+                    }
+
+                    @Override
+                    public boolean row(Object[] values) {
+                        Map<String, Object> row = new LinkedHashMap<>();
+                        for (int i = 0; i < values.length; i++) row.put(names[i], values[i]);
+                        rows.add(row);
+                        return true;
+                    }
+                });
+            });
+            run("select.materializeArrays", TABLE_ROWS, () -> {
+                List<Object[]> rows = new ArrayList<>();
+                engine.query("bench", "SELECT * FROM BENCH_EMP", new SqlEngine.RowHandler() {
+                    @Override
+                    public void columns(String[] columnNames, String[] typeNames) {
+                    }
+
+                    @Override
+                    public boolean row(Object[] values) {
+                        rows.add(values);
+                        return true;
+                    }
+                });
+            });
+
+            // --- deleteRecordByCheckbox's all-column WHERE vs a key-only WHERE ---
+            List<Object[]> victims = new ArrayList<>(seed.subList(0, DELETE_ROWS));
+            List<Object[]> victimKeys = new ArrayList<>();
+            for (Object[] row : victims) victimKeys.add(new Object[]{row[0]});
+            // Puts the victims back (untimed) so every invocation deletes the same rows
+            BenchmarkBody restoreVictims = () -> {
+                engine.executeBatch("bench", "DELETE FROM BENCH_EMP WHERE EMPNO = ?", victimKeys);
+                engine.executeBatch("bench", "INSERT INTO BENCH_EMP VALUES (?, ?, ?, ?, ?)", victims);
+            };
+            run("delete.allColumnWhere", DELETE_ROWS, restoreVictims, () ->
+                    engine.executeBatch("bench", "DELETE FROM BENCH_EMP WHERE EMPNO = ? AND ENAME = ? AND JOB = ? AND SAL = ? AND DEPTNO = ?", victims));
+            run("delete.keyWhere", DELETE_ROWS, restoreVictims, () ->
+                    engine.executeBatch("bench", "DELETE FROM BENCH_EMP WHERE EMPNO = ?", victimKeys));
+        } finally {
+            engine.executeUpdate("bench", "DROP TABLE BENCH_EMP");
+        }
+    }
+
+    private void run(String name, int opsPerInvocation, BenchmarkBody body) throws Exception {
+        run(name, opsPerInvocation, null, body);
+    }
+
+    private void run(String name, int opsPerInvocation, BenchmarkBody setup, BenchmarkBody body) throws Exception {
+        System.gc(); // Start from a clean heap, not the previous benchmark's garbage
+        boolean settled = warmUp(setup, body);
+        if (!settled) unsettled.add(name);
+        double[] samples = new double[MEASURE_ITERATIONS];
+        for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+            if (setup != null) setup.run();
+            long start = System.nanoTime();
+            body.run();
+            samples[i] = (double) (System.nanoTime() - start) / opsPerInvocation;
+        }
+        Arrays.sort(samples);
+        double median = samples[MEASURE_ITERATIONS / 2];
+        results.put(name, median);
+        System.out.printf("%-28s %12.1f ns/op%s%n", name, median, settled ? "" : "  (did not settle)");
+    }
+
+    // Runs the body in rounds of WARMUP_ROUND_MILLIS until the mean time of the last
+    // STABLE_ROUNDS rounds agrees within STABLE_SPREAD; false if WARMUP_MAX_MILLIS runs out first.
+    private static boolean warmUp(BenchmarkBody setup, BenchmarkBody body) throws Exception {
+        long deadline = System.nanoTime() + WARMUP_MAX_MILLIS * 1_000_000;
+        Deque<Double> recent = new ArrayDeque<>();
+        while (System.nanoTime() < deadline) {
+            long roundEnd = System.nanoTime() + WARMUP_ROUND_MILLIS * 1_000_000;
+            long timed = 0;
+            int invocations = 0;
+            while (invocations < 2 || System.nanoTime() < roundEnd) {
+                if (setup != null) setup.run();
+                long start = System.nanoTime();
+                body.run();
+                timed += System.nanoTime() - start;
+                invocations++;
+            }
+            recent.addLast((double) timed / invocations);
+            if (recent.size() > STABLE_ROUNDS) recent.removeFirst();
+            if (recent.size() == STABLE_ROUNDS && Collections.max(recent) <= Collections.min(recent) * STABLE_SPREAD) return true;
+        }
+        return false;
+    }
+
+    private void writeBaseline(Path file) throws IOException {
+        Properties props = new Properties();
+        results.forEach((k, v) -> props.setProperty(k, format(v)));
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            props.store(writer, "SqlBenchmark baseline (ns/op, lower is better)");
+        }
+    }
+
+    private static Properties loadBaseline(Path file) throws IOException {
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            props.load(reader);
+        }
+        return props;
+    }
+
+    // Result / baseline, or NaN when the benchmark has no baseline entry.
+    private double ratio(Properties props, String name) {
+        String base = props.getProperty(name);
+        return base == null ? Double.NaN : results.get(name) / Double.parseDouble(base);
+    }
+
+    private List<String> slower(Properties props) {
+        List<String> names = new ArrayList<>();
+        for (String name : results.keySet()) {
+            if (ratio(props, name) > REGRESSION_TOLERANCE) names.add(name);
+        }
+        return names;
+    }
+
+    private boolean compare(Properties props) {
+        boolean ok = true;
+        for (Map.Entry<String, Double> result : results.entrySet()) {
+            double ratio = ratio(props, result.getKey());
+            if (Double.isNaN(ratio)) continue;
+            boolean noisy = unsettled.contains(result.getKey());
+            String verdict = ratio <= REGRESSION_TOLERANCE ? "ok" : noisy ? "slower, but did not settle (not counted)" : "REGRESSION";
+            if (ratio > REGRESSION_TOLERANCE && !noisy) ok = false;
+            System.out.printf("%-28s %6.2fx baseline  %s%n", result.getKey(), ratio, verdict);
+        }
+        return ok;
+    }
+}
@@ -0,0 +1,534 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+// UI-independent data-access engine shared by ExecuteMultiSQL and dgfx8.
+// It owns no per-caller state, borrows a pooled connection per call, and is safe to use
+// from several threads at once. Every statement is timed through SqlMetrics.
+public class SqlEngine implements AutoCloseable {
+
+    private final ConnectionPool pool;
+    private volatile QueryGovernor governor = new QueryGovernor();
+
+    public SqlEngine(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    public static SqlEngine connect(String url, String user, String password, int poolSize) throws SQLException {
+        SqlEngine engine = new SqlEngine(new ConnectionPool(url, user, password, poolSize));
+        // Fail fast on bad credentials instead of on first use
+        try (ConnectionPool.Lease lease = engine.pool.lease()) {
+            lease.connection().getMetaData();
+        } catch (SQLException e) {
+            engine.close();
+            throw e;
+        }
+        return engine;
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    public QueryGovernor getGovernor() {
+        return governor;
+    }
+
+    public void setGovernor(QueryGovernor governor) {
+        this.governor = governor;
+    }
+
+    // --- Statement execution ---
+
+    // Receives streamed query results. Returning false from row() stops the fetch.
+    public interface RowHandler {
+        void columns(String[] names, String[] typeNames) throws SQLException;
+
+        boolean row(Object[] values) throws SQLException;
+
+        // Hands every row to the consumer, ignoring the column metadata.
+        static RowHandler eachRow(Consumer<Object[]> row) {
+            return new RowHandler() {
+                @Override
+                public void columns(String[] names, String[] typeNames) {
+                }
+
+                @Override
+                public boolean row(Object[] values) {
+                    row.accept(values);
+                    return true;
+                }
+            };
+        }
+    }
+
+    public interface ConnectionCallback<T> {
+        T apply(Connection connection) throws SQLException;
+    }
+
+    // Outcome of execute(): either a query (rows = fetched rows) or an update count.
+    // trip is set when a governor budget ended the statement early; rows are then partial.
+    public static class ExecutionResult {
+        public final boolean query;
+        public final long rows;
+        public final QueryGovernor.Trip trip;
+
+        ExecutionResult(boolean query, long rows) {
+            this(query, rows, null);
+        }
+
+        ExecutionResult(boolean query, long rows, QueryGovernor.Trip trip) {
+            this.query = query;
+            this.rows = rows;
+            this.trip = trip;
+        }
+
+        public boolean complete() {
+            return trip == null;
+        }
+    }
+
+    // Per-row outcome of executeBatch(); errors are keyed by the 0-based row index.
+    // A count of Statement.SUCCESS_NO_INFO means the row ran but the driver did not say how
+    // many rows it affected.
+    public static class BatchResult {
+        public final int[] updateCounts;
+        public final Map<Integer, String> errors = new LinkedHashMap<>();
+
+        BatchResult(int size) {
+            updateCounts = new int[size];
+            Arrays.fill(updateCounts, Statement.EXECUTE_FAILED);
+        }
+
+        public int successCount() {
+            int ok = 0;
+            for (int count : updateCounts) {
+                if (count != Statement.EXECUTE_FAILED) ok++;
+            }
+            return ok;
+        }
+
+        public boolean isUnknown(int row) {
+            return updateCounts[row] == Statement.SUCCESS_NO_INFO;
+        }
+    }
+
+    // Typed SQL NULL for parameter binding (Oracle rejects untyped setNull).
+    public static final class NullValue {
+        public final int sqlType;
+
+        private NullValue(int sqlType) {
+            this.sqlType = sqlType;
+        }
+    }
+
+    public static NullValue nullOf(int sqlType) {
+        return new NullValue(sqlType);
+    }
+
+    public <T> T withConnection(ConnectionCallback<T> callback) throws SQLException {
+        try (ConnectionPool.Lease lease = pool.lease()) {
+            return callback.apply(lease.connection());
+        }
+    }
+
+    // Runs any single statement; result sets are streamed to the handler (may be null for DML).
+    public ExecutionResult execute(String operation, String sql, RowHandler handler) throws SQLException {
+        return execute(operation, sql, handler, governor.newTicket());
+    }
+
+    // As execute(), cancellable through the ticket. Budgets come from the governor.
+    public ExecutionResult execute(String operation, String sql, RowHandler handler, QueryGovernor.Ticket ticket) throws SQLException {
+        QueryGovernor.Budget budget = governor.budget(operation);
+        SqlMetrics.Probe probe = SqlMetrics.begin(operation, sql);
+        try (ConnectionPool.Lease lease = pool.lease();
+             Statement statement = lease.connection().createStatement()) {
+            governor.configure(statement, budget);
+            ticket.attach(statement);
+            boolean isQuery = false;
+            try {
+                isQuery = statement.execute(sql);
+                probe.executed();
+                if (isQuery) {
+                    ExecutionResult result;
+                    try (ResultSet rs = statement.getResultSet()) {
+                        result = stream(rs, handler, probe, ticket, budget, operation);
+                    }
+                    probe.end();
+                    return result;
+                }
+                int count = statement.getUpdateCount();
+                probe.end(count);
+                return new ExecutionResult(false, count);
+            } catch (SQLException e) {
+                if (!isQuery) { // DML or failed execution: nothing partial to return
+                    QueryGovernor.Trip trip = QueryGovernor.tripFor(e, ticket, budget);
+                    if (trip != null) QueryGovernor.record(operation, trip);
+                    throw e;
+                }
+                return tripped(operation, e, ticket, budget, probe);
+            } finally {
+                ticket.detach();
+            }
+        } catch (SQLException e) {
+            probe.fail(e);
+            throw e;
+        }
+    }
+
+    // Only the time budget applies to updates; a timeout is recorded and still thrown, since
+    // there is no partial result to return.
+    public int executeUpdate(String operation, String sql, Object... params) throws SQLException {
+        QueryGovernor.Budget budget = governor.budget(operation);
+        QueryGovernor.Ticket ticket = governor.newTicket();
+        SqlMetrics.Probe probe = SqlMetrics.begin(operation, sql);
+        try (ConnectionPool.Lease lease = pool.lease()) {
+            int count;
+            if (params.length == 0) {
+                try (Statement statement = lease.connection().createStatement()) {
+                    count = executeUpdate(statement, budget, ticket, () -> statement.executeUpdate(sql));
+                }
+            } else {
+                try (PreparedStatement pstmt = lease.connection().prepareStatement(sql)) {
+                    bind(pstmt, params);
+                    count = executeUpdate(pstmt, budget, ticket, pstmt::executeUpdate);
+                }
+            }
+            probe.end(count);
+            return count;
+        } catch (SQLException e) {
+            QueryGovernor.Trip trip = QueryGovernor.tripFor(e, ticket, budget);
+            if (trip != null) QueryGovernor.record(operation, trip);
+            probe.fail(e);
+            throw e;
+        }
+    }
+
+    private interface Update {
+        int run() throws SQLException;
+    }
+
+    private int executeUpdate(Statement statement, QueryGovernor.Budget budget, QueryGovernor.Ticket ticket, Update update) throws SQLException {
+        if (budget.timeoutSeconds > 0) statement.setQueryTimeout(budget.timeoutSeconds);
+        ticket.attach(statement);
+        try {
+            return update.run();
+        } finally {
+            ticket.detach();
+        }
+    }
+
+    // Streams a (parameterized) query to the handler and returns the number of rows fetched.
+    public long query(String operation, String sql, RowHandler handler, Object... params) throws SQLException {
+        return query(governor.newTicket(), operation, sql, handler, params).rows;
+    }
+
+    // As query(), cancellable through the ticket; the result says whether a budget tripped.
+    public ExecutionResult query(QueryGovernor.Ticket ticket, String operation, String sql, RowHandler handler, Object... params) throws SQLException {
+        QueryGovernor.Budget budget = governor.budget(operation);
+        SqlMetrics.Probe probe = SqlMetrics.begin(operation, sql);
+        try (ConnectionPool.Lease lease = pool.lease();
+             PreparedStatement pstmt = lease.connection().prepareStatement(sql)) {
+            bind(pstmt, params);
+            governor.configure(pstmt, budget);
+            ticket.attach(pstmt);
+            try {
+                ExecutionResult result;
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    probe.executed();
+                    result = stream(rs, handler, probe, ticket, budget, operation);
+                }
+                probe.end();
+                return result;
+            } catch (SQLException e) {
+                return tripped(operation, e, ticket, budget, probe);
+            } finally {
+                ticket.detach();
+            }
+        } catch (SQLException e) {
+            probe.fail(e);
+            throw e;
+        }
+    }
+
+    // Turns a query timeout or cancel into a partial result; any other error is rethrown.
+    private static ExecutionResult tripped(String operation, SQLException e, QueryGovernor.Ticket ticket,
+                                           QueryGovernor.Budget budget, SqlMetrics.Probe probe) throws SQLException {
+        QueryGovernor.Trip trip = QueryGovernor.tripFor(e, ticket, budget);
+        if (trip == null) throw e;
+        QueryGovernor.record(operation, trip);
+        probe.end();
+        return new ExecutionResult(true, probe.rows(), trip);
+    }
+
+    // Executes one parameterized statement for every row in a single JDBC batch. When the
+    // driver aborts the batch, the remaining rows are retried one by one so each failing row
+    // gets its own error message and the good rows still go through.
+    public BatchResult executeBatch(String operation, String sql, List<Object[]> rows) throws SQLException {
+        return executeBatch(governor.newTicket(), operation, sql, rows);
+    }
+
+    // As executeBatch(), under the operation's time budget and cancellable through the ticket.
+    // A timeout or cancel is recorded and thrown; the remaining rows are not retried.
+    public BatchResult executeBatch(QueryGovernor.Ticket ticket, String operation, String sql, List<Object[]> rows) throws SQLException {
+        BatchResult result = new BatchResult(rows.size());
+        if (rows.isEmpty()) return result;
+
+        QueryGovernor.Budget budget = governor.budget(operation);
+        try (ConnectionPool.Lease lease = pool.lease();
+             PreparedStatement pstmt = lease.connection().prepareStatement(sql)) {
+            if (budget.timeoutSeconds > 0) pstmt.setQueryTimeout(budget.timeoutSeconds);
+            ticket.attach(pstmt);
+            try {
+                SqlMetrics.Probe probe = SqlMetrics.begin(operation + ".batch", sql);
+                int done = 0;
+                try {
+                    for (Object[] params : rows) {
+                        bind(pstmt, params);
+                        pstmt.addBatch();
+                    }
+                    int[] counts = pstmt.executeBatch();
+                    copyCounts(counts, result, 0);
+                    done = rows.size();
+                    probe.end(result.successCount());
+                } catch (BatchUpdateException e) {
+                    throwIfTripped(operation, e, ticket, budget, probe);
+                    int[] counts = e.getUpdateCounts() != null ? e.getUpdateCounts() : new int[0];
+                    int processed = Math.min(counts.length, rows.size());
+                    copyCounts(counts, result, 0);
+                    for (int i = 0; i < processed; i++) {
+                        if (counts[i] == Statement.EXECUTE_FAILED) result.errors.put(i, e.getMessage());
+                    }
+                    // Drivers that stop at the first failure (Oracle) report only the rows before it
+                    if (processed < rows.size()) {
+                        result.errors.put(processed, e.getMessage());
+                        done = processed + 1;
+                    } else {
+                        done = processed;
+                    }
+                    probe.fail(e);
+                    pstmt.clearBatch();
+                } catch (SQLException e) {
+                    throwIfTripped(operation, e, ticket, budget, probe);
+                    probe.fail(e); // Lost the connection or similar: still a (failed) write
+                    throw e;
+                }
+
+                for (int i = done; i < rows.size(); i++) {
+                    if (result.updateCounts[i] != Statement.EXECUTE_FAILED || result.errors.containsKey(i)) continue;
+                    SqlMetrics.Probe rowProbe = SqlMetrics.begin(operation, sql);
+                    try {
+                        bind(pstmt, rows.get(i));
+                        result.updateCounts[i] = pstmt.executeUpdate();
+                        rowProbe.end(result.updateCounts[i]);
+                    } catch (SQLException ex) {
+                        throwIfTripped(operation, ex, ticket, budget, rowProbe);
+                        rowProbe.fail(ex);
+                        result.errors.put(i, ex.getMessage());
+                    }
+                }
+            } finally {
+                ticket.detach();
+            }
+        }
+        return result;
+    }
+
+    private static void throwIfTripped(String operation, SQLException e, QueryGovernor.Ticket ticket,
+                                       QueryGovernor.Budget budget, SqlMetrics.Probe probe) throws SQLException {
+        QueryGovernor.Trip trip = QueryGovernor.tripFor(e, ticket, budget);
+        if (trip == null) return;
+        QueryGovernor.record(operation, trip);
+        probe.fail(e);
+        throw e;
+    }
+
+    private static void copyCounts(int[] counts, BatchResult result, int offset) {
+        if (counts == null) return;
+        for (int i = 0; i < counts.length && offset + i < result.updateCounts.length; i++) {
+            if (counts[i] == Statement.EXECUTE_FAILED) continue;
+            result.updateCounts[offset + i] = counts[i]; // SUCCESS_NO_INFO is kept: the row went through, count unknown
+        }
+    }
+
+    private static ExecutionResult stream(ResultSet rs, RowHandler handler, SqlMetrics.Probe probe, QueryGovernor.Ticket ticket,
+                                          QueryGovernor.Budget budget, String operation) throws SQLException {
+        long startNanos = System.nanoTime();
+        ResultSetMetaData md = rs.getMetaData();
+        int columnCount = md.getColumnCount();
+        if (handler != null) {
+            String[] names = new String[columnCount];
+            String[] types = new String[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                names[i] = md.getColumnLabel(i + 1);
+                types[i] = md.getColumnTypeName(i + 1);
+            }
+            handler.columns(names, types);
+        }
+        long rows = 0;
+        long bytes = 0;
+        while (rs.next()) {
+            QueryGovernor.Trip trip = QueryGovernor.check(ticket, budget, startNanos, rows, bytes);
+            if (trip != null) {
+                QueryGovernor.record(operation, trip);
+                return new ExecutionResult(true, rows, trip);
+            }
+            Object[] values = new Object[columnCount];
+            long rowBytes = 0;
+            for (int i = 0; i < columnCount; i++) {
+                values[i] = rs.getObject(i + 1);
+                rowBytes += estimateBytes(values[i]);
+            }
+            probe.row(rowBytes);
+            rows++;
+            bytes += rowBytes;
+            if (handler != null && !handler.row(values)) break;
+        }
+        return new ExecutionResult(true, rows);
+    }
+
+    public static void bind(PreparedStatement pstmt, Object[] params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            Object value = params[i];
+            if (value instanceof NullValue) {
+                pstmt.setNull(i + 1, ((NullValue) value).sqlType);
+            } else if (value == null) {
+                pstmt.setNull(i + 1, Types.VARCHAR);
+            } else {
+                pstmt.setObject(i + 1, value);
+            }
+        }
+    }
+
+    // Rough wire size of a fetched value, used for the per-statement byte metrics
+    public static long estimateBytes(Object value) {
+        if (value == null) return 0;
+        if (value instanceof String) return ((String) value).length();
+        if (value instanceof Number) return 8;
+        return value.toString().length();
+    }
+
+    // --- Metadata ---
+
+    public List<String> tableNames() throws SQLException {
+        return withConnection(connection -> {
+            List<String> tableNames = new ArrayList<>();
+            try (ResultSet tables = connection.getMetaData().getTables(null, connection.getSchema(), null, new String[]{"TABLE"})) {
+                while (tables.next()) {
+                    tableNames.add(tables.getString("TABLE_NAME"));
+                }
+            }
+            return tableNames;
+        });
+    }
+
+    // Column name -> database type name, in table order.
+    public Map<String, String> columns(String tableName) throws SQLException {
+        return withConnection(connection -> {
+            Map<String, String> schema = new LinkedHashMap<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT * FROM " + tableName + " WHERE 1 = 0")) {
+                ResultSetMetaData rsmd = rs.getMetaData();
+                for (int i = 1; i <= rsmd.getColumnCount(); i++) {
+                    schema.put(rsmd.getColumnName(i), rsmd.getColumnTypeName(i));
+                }
+            }
+            return schema;
+        });
+    }
+
+    public List<String> primaryKey(String tableName) throws SQLException {
+        return withConnection(connection -> {
+            DatabaseMetaData md = connection.getMetaData();
+            Map<Short, String> ordered = new java.util.TreeMap<>();
+            try (ResultSet rs = md.getPrimaryKeys(null, connection.getSchema(), tableName)) {
+                while (rs.next()) {
+                    ordered.put(rs.getShort("KEY_SEQ"), rs.getString("COLUMN_NAME"));
+                }
+            }
+            return new ArrayList<>(ordered.values());
+        });
+    }
+
+    // Runs statements side by side (each task leases its own connection) and returns their
+    // results in task order. The first failure is rethrown as an SQLException; interrupting
+    // the caller cancels the tasks that have not started yet.
+    static <T> List<T> invokeAll(ExecutorService executor, List<? extends Callable<T>> tasks) throws SQLException {
+        try {
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : executor.invokeAll(tasks)) results.add(future.get());
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) throw (SQLException) cause;
+            throw new SQLException(cause.getMessage(), cause);
+        }
+    }
+
+    // --- Scripts ---
+
+    // Reads a script file, dropping whole-line "--" comments.
+    public static String readScript(String filename) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        try (BufferedReader br = new BufferedReader(new FileReader(filename))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                // Skip comments starting with --
+                if (!line.trim().startsWith("--")) {
+                    sb.append(line).append("\n");
+                }
+            }
+        }
+        return sb.toString().trim();
+    }
+
+    // Splits a script on ';' outside of string literals; blank statements are dropped.
+    public static List<String> splitStatements(String script) {
+        List<String> statements = new ArrayList<>();
+        int start = 0;
+        boolean inString = false;
+        for (int i = 0; i < script.length(); i++) {
+            char c = script.charAt(i);
+            if (c == '\'') {
+                inString = !inString;
+            } else if (c == ';' && !inString) {
+                addStatement(statements, script, start, i);
+                start = i + 1;
+            }
+        }
+        addStatement(statements, script, start, script.length());
+        return statements;
+    }
+
+    private static void addStatement(List<String> statements, String script, int from, int to) {
+        String sql = script.substring(from, to).trim();
+        if (!sql.isEmpty()) statements.add(sql);
+    }
+
+    @Override
+    public void close() throws SQLException {
+        pool.close();
+    }
+}
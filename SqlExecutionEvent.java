@@ -0,0 +1,43 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// Flight Recorder event emitted once per executed SQL statement (see SqlMetrics.begin).
+@Name("sqlclient.SqlExecution")
+@Label("SQL Execution")
+@Category({"SQL Client", "JDBC"})
+@Description("A single SQL statement executed by ExecuteMultiSQL or dgfx8")
+@StackTrace(false)
+public class SqlExecutionEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("SQL Fingerprint")
+    @Description("Statement text with literals replaced by '?'")
+    String fingerprint;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Bytes")
+    long bytes;
+
+    @Label("Execute Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long executeTime;
+
+    @Label("Fetch Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long fetchTime;
+
+    @Label("Succeeded")
+    boolean success;
+
+    @Label("Error")
+    String error;
+}
@@ -0,0 +1,265 @@
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// In-process metrics registry shared by ExecuteMultiSQL and dgfx8.
+// Every statement goes through begin(...) -> Probe, which records latency histograms and
+// counters here and emits a SqlExecutionEvent for JDK Flight Recorder.
+public class SqlMetrics implements SqlMetricsMXBean {
+
+    private static final SqlMetrics INSTANCE = new SqlMetrics();
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])[-+]?\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final int RECENT_CAPACITY = 500;
+
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final ArrayDeque<StatementRecord> recent = new ArrayDeque<>(RECENT_CAPACITY);
+    private final List<Consumer<StatementRecord>> listeners = new CopyOnWriteArrayList<>();
+
+    static {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("sqlclient:type=SqlMetrics");
+            if (!server.isRegistered(name)) {
+                server.registerMBean(INSTANCE, name);
+            }
+        } catch (JMException | SecurityException e) {
+            System.err.println("Could not register SqlMetrics MBean: " + e.getMessage());
+        }
+    }
+
+    private SqlMetrics() {
+    }
+
+    public static SqlMetrics get() {
+        return INSTANCE;
+    }
+
+    // Starts timing one statement. Call executed() once the driver returns, row() per fetched
+    // row, and finally end()/fail() exactly once.
+    public static Probe begin(String operation, String sql) {
+        return new Probe(INSTANCE, operation, sql);
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return latencies.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    public void increment(String name, long delta) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+    }
+
+    // Listeners are called on the thread that ran the statement.
+    public void addListener(Consumer<StatementRecord> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<StatementRecord> listener) {
+        listeners.remove(listener);
+    }
+
+    // Most recent statements, oldest first (bounded to RECENT_CAPACITY).
+    public List<StatementRecord> recentStatements() {
+        synchronized (recent) {
+            return new ArrayList<>(recent);
+        }
+    }
+
+    private void publish(StatementRecord record) {
+        synchronized (recent) {
+            if (recent.size() == RECENT_CAPACITY) recent.pollFirst();
+            recent.addLast(record);
+        }
+        for (Consumer<StatementRecord> listener : listeners) {
+            try {
+                listener.accept(record);
+            } catch (RuntimeException e) {
+                System.err.println("SqlMetrics listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    // Replaces string and numeric literals with '?' and collapses whitespace so that
+    // statements differing only in their values aggregate under one key.
+    public static String fingerprint(String sql) {
+        if (sql == null) return "";
+        String s = STRING_LITERAL.matcher(sql).replaceAll("?");
+        s = NUMBER_LITERAL.matcher(s).replaceAll("?");
+        s = WHITESPACE.matcher(s).replaceAll(" ").trim();
+        return s.length() > 512 ? s.substring(0, 512) : s;
+    }
+
+    @Override
+    public long getStatementCount() {
+        return statements.sum();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> result = new TreeMap<>();
+        counters.forEach((k, v) -> result.put(k, v.sum()));
+        return result;
+    }
+
+    @Override
+    public Map<String, String> getLatencies() {
+        Map<String, String> result = new TreeMap<>();
+        latencies.forEach((k, v) -> result.put(k, v.summary()));
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        latencies.values().forEach(LatencyHistogram::reset);
+        counters.values().forEach(LongAdder::reset);
+        statements.reset();
+        errors.reset();
+        synchronized (recent) {
+            recent.clear();
+        }
+    }
+
+    // Immutable summary of one finished statement.
+    public static class StatementRecord {
+        public final long timestampMillis;
+        public final String operation;
+        public final String sql;
+        public final long executeNanos;
+        public final long fetchNanos;
+        public final long rows;
+        public final long bytes;
+        public final String error;
+
+        StatementRecord(long timestampMillis, String operation, String sql, long executeNanos,
+                        long fetchNanos, long rows, long bytes, String error) {
+            this.timestampMillis = timestampMillis;
+            this.operation = operation;
+            this.sql = sql;
+            this.executeNanos = executeNanos;
+            this.fetchNanos = fetchNanos;
+            this.rows = rows;
+            this.bytes = bytes;
+            this.error = error;
+        }
+
+        public long totalNanos() {
+            return executeNanos + fetchNanos;
+        }
+
+        public boolean succeeded() {
+            return error == null;
+        }
+    }
+
+    public static class Probe {
+        private final SqlMetrics metrics;
+        private final String operation;
+        private final String sql;
+        private final SqlExecutionEvent event = new SqlExecutionEvent();
+        private final long startNanos;
+        private long executedNanos;
+        private long rows;
+        private long bytes;
+        private boolean finished;
+
+        private Probe(SqlMetrics metrics, String operation, String sql) {
+            this.metrics = metrics;
+            this.operation = operation;
+            this.sql = sql;
+            event.begin();
+            startNanos = System.nanoTime();
+        }
+
+        public void executed() {
+            if (executedNanos == 0) executedNanos = System.nanoTime();
+        }
+
+        public void row(long rowBytes) {
+            rows++;
+            bytes += rowBytes;
+        }
+
+        public long rows() {
+            return rows;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public void end(long affectedRows) {
+            rows += affectedRows;
+            finish(null);
+        }
+
+        public void end() {
+            finish(null);
+        }
+
+        public void fail(SQLException e) {
+            finish(e);
+        }
+
+        private void finish(SQLException error) {
+            if (finished) return;
+            finished = true;
+            long now = System.nanoTime();
+            if (executedNanos == 0) executedNanos = now;
+            long executeNanos = executedNanos - startNanos;
+            long fetchNanos = now - executedNanos;
+
+            metrics.statements.increment();
+            metrics.histogram(operation + ".execute").record(executeNanos);
+            metrics.histogram(operation + ".fetch").record(fetchNanos);
+            metrics.increment(operation + ".count", 1);
+            metrics.increment(operation + ".rows", rows);
+            metrics.increment(operation + ".bytes", bytes);
+            if (error != null) {
+                metrics.errors.increment();
+                metrics.increment(operation + ".errors", 1);
+            }
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = operation;
+                event.fingerprint = fingerprint(sql);
+                event.rows = rows;
+                event.bytes = bytes;
+                event.executeTime = executeNanos;
+                event.fetchTime = fetchNanos;
+                event.success = error == null;
+                event.error = error != null ? error.getMessage() : null;
+                event.commit();
+            }
+
+            metrics.publish(new StatementRecord(System.currentTimeMillis(), operation, sql, executeNanos,
+                    fetchNanos, rows, bytes, error != null ? error.getMessage() : null));
+        }
+    }
+}
@@ -0,0 +1,15 @@
+import java.util.Map;
+
+// JMX view of SqlMetrics, registered as "sqlclient:type=SqlMetrics".
+public interface SqlMetricsMXBean {
+
+    long getStatementCount();
+
+    long getErrorCount();
+
+    Map<String, Long> getCounters();
+
+    Map<String, String> getLatencies();
+
+    void reset();
+}
@@ -0,0 +1,399 @@
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Compares two tables (same schema, or the same table in two databases) without pulling
+// them across the network. The key range is split into chunks at NTILE boundaries taken
+// from the left table; each side returns COUNT(*) and SUM(row hash) per chunk, where the
+// row hash is ORA_HASH over per-column ORA_HASHes (seeded by column position, so swapped
+// values still differ). Matching chunks are done with; mismatching chunks are split again
+// until they hold at most leafRows rows, then only (key, row hash) pairs are fetched for
+// them, and full rows only for the keys that actually differ.
+//
+// Ranges are on the first primary key column; a chunk that cannot be split further (one
+// key value) is compared as a leaf whatever its size. Row hashes are 32 bits, so two
+// different rows can, very rarely, hash alike.
+public class TableCompare {
+
+    public enum Kind { ONLY_LEFT, ONLY_RIGHT, CHANGED }
+
+    public static final class Difference {
+        public final Kind kind;
+        public final List<Object> key;
+        public final Object[] left;  // null for ONLY_RIGHT
+        public final Object[] right; // null for ONLY_LEFT
+
+        Difference(Kind kind, List<Object> key, Object[] left, Object[] right) {
+            this.kind = kind;
+            this.key = key;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    public static final class Report {
+        public final List<String> columns = new ArrayList<>();
+        public final List<String> skippedColumns = new ArrayList<>();
+        public final List<Difference> differences = new ArrayList<>();
+        public int chunksCompared;
+        public int chunksMatched;
+        public int leafChunks;
+        public long keysFetched;
+        public long rowsFetched;
+        public long millis;
+    }
+
+    // (lo, hi] on the range column; null bounds are open.
+    private static final class Range {
+        final Object lo;
+        final Object hi;
+
+        Range(Object lo, Object hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+    }
+
+    private static final class Digest {
+        final long rows;
+        final String hash;
+
+        Digest(long rows, String hash) {
+            this.rows = rows;
+            this.hash = hash;
+        }
+
+        boolean matches(Digest other) {
+            return rows == other.rows && String.valueOf(hash).equals(String.valueOf(other.hash));
+        }
+    }
+
+    private final SqlEngine leftEngine;
+    private final String leftTable;
+    private final SqlEngine rightEngine;
+    private final String rightTable;
+    private int chunks = 16;
+    private long leafRows = 1000;
+
+    private List<String> keyColumns;
+    private String rowHash;
+    private String columnList;
+    private final AtomicLong keysFetched = new AtomicLong();
+    private final AtomicLong rowsFetched = new AtomicLong();
+    private final Set<QueryGovernor.Ticket> running = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+
+    public TableCompare(SqlEngine leftEngine, String leftTable, SqlEngine rightEngine, String rightTable) {
+        this.leftEngine = leftEngine;
+        this.leftTable = leftTable;
+        this.rightEngine = rightEngine;
+        this.rightTable = rightTable;
+    }
+
+    public TableCompare chunks(int chunks) {
+        this.chunks = Math.max(2, chunks);
+        return this;
+    }
+
+    public TableCompare leafRows(long leafRows) {
+        this.leafRows = Math.max(1, leafRows);
+        return this;
+    }
+
+    // Stops a running compare() from another thread; it then fails with "cancelled".
+    public void cancel() {
+        cancelled = true;
+        for (QueryGovernor.Ticket ticket : running) ticket.cancel();
+    }
+
+    public Report compare(Consumer<String> progress) throws SQLException {
+        long start = System.nanoTime();
+        Report report = new Report();
+        keyColumns = leftEngine.primaryKey(leftTable);
+        if (keyColumns.isEmpty()) throw new SQLException("Table " + leftTable + " has no primary key to compare by");
+        prepareColumns(report);
+
+        int parallelism = Math.max(1, Math.min(leftEngine.getPool().getMaxSize(), rightEngine.getPool().getMaxSize()));
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "table-compare-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Range> level = split(new Range(null, null));
+            int depth = 0;
+            List<Range> leaves = new ArrayList<>();
+            while (!level.isEmpty()) {
+                depth++;
+                List<Digest[]> digests = digests(executor, level);
+                List<Range> next = new ArrayList<>();
+                for (int i = 0; i < level.size(); i++) {
+                    Digest left = digests.get(i)[0];
+                    Digest right = digests.get(i)[1];
+                    report.chunksCompared++;
+                    if (left.matches(right)) {
+                        report.chunksMatched++;
+                    } else if (Math.max(left.rows, right.rows) <= leafRows) {
+                        leaves.add(level.get(i));
+                    } else {
+                        next.add(level.get(i));
+                    }
+                }
+                if (progress != null) {
+                    progress.accept(String.format("Level %d: %d chunk(s), %d differ", depth, level.size(),
+                            level.size() - countMatched(digests)));
+                }
+                List<Callable<List<Range>>> splits = new ArrayList<>();
+                for (Range range : next) splits.add(() -> split(range));
+                List<List<Range>> split = SqlEngine.invokeAll(executor, splits);
+                level = new ArrayList<>();
+                for (int i = 0; i < next.size(); i++) {
+                    if (split.get(i).size() <= 1) {
+                        leaves.add(next.get(i)); // One key value: nothing left to split
+                    } else {
+                        level.addAll(split.get(i));
+                    }
+                }
+            }
+            report.leafChunks = leaves.size();
+            if (progress != null) progress.accept("Comparing rows in " + leaves.size() + " chunk(s)");
+            compareLeaves(executor, leaves, report);
+        } finally {
+            executor.shutdownNow();
+        }
+        report.keysFetched = keysFetched.get();
+        report.rowsFetched = rowsFetched.get();
+        report.millis = (System.nanoTime() - start) / 1_000_000;
+        return report;
+    }
+
+    private static int countMatched(List<Digest[]> digests) {
+        int matched = 0;
+        for (Digest[] pair : digests) {
+            if (pair[0].matches(pair[1])) matched++;
+        }
+        return matched;
+    }
+
+    // Columns present on both sides, in left-table order, with one hash term each.
+    private void prepareColumns(Report report) throws SQLException {
+        Map<String, String> left = leftEngine.columns(leftTable);
+        Map<String, String> right = rightEngine.columns(rightTable);
+        StringBuilder hash = new StringBuilder("ORA_HASH(TO_CHAR(0");
+        int seed = 0;
+        for (Map.Entry<String, String> column : left.entrySet()) {
+            String name = column.getKey();
+            String type = column.getValue().toUpperCase();
+            String term = hashTerm(name, type);
+            if (!right.containsKey(name) || term == null) {
+                report.skippedColumns.add(name);
+                continue;
+            }
+            seed++;
+            report.columns.add(name);
+            hash.append(" + NVL(ORA_HASH(").append(term).append(", 4294967295, ").append(seed).append("), ").append(seed).append(")");
+        }
+        for (String key : keyColumns) {
+            if (!report.columns.contains(key)) throw new SQLException("Key column " + key + " is missing from " + rightTable);
+        }
+        rowHash = hash.append("))").toString();
+        columnList = String.join(", ", report.columns);
+    }
+
+    // Text form of a column that hashes the same in every session; null for LOB-like types.
+    private static String hashTerm(String name, String type) {
+        if (type.contains("LOB") || type.startsWith("LONG") || type.equals("BFILE")) return null;
+        if (type.equals("DATE")) return "TO_CHAR(" + name + ", 'YYYYMMDDHH24MISS')";
+        if (type.startsWith("TIMESTAMP")) return "TO_CHAR(" + name + ", 'YYYYMMDDHH24MISSFF9')";
+        if (type.equals("RAW")) return "RAWTOHEX(" + name + ")";
+        if (type.startsWith("NUMBER") || type.startsWith("NUMERIC") || type.startsWith("DECIMAL")
+                || type.startsWith("FLOAT") || type.startsWith("BINARY_")) {
+            return "TO_CHAR(" + name + ", 'TM9', 'NLS_NUMERIC_CHARACTERS=''.,''')";
+        }
+        return name;
+    }
+
+    private String rangeColumn() {
+        return keyColumns.get(0);
+    }
+
+    private String where(Range range, List<Object> params) {
+        List<String> predicates = new ArrayList<>();
+        if (range.lo != null) {
+            predicates.add(rangeColumn() + " > ?");
+            params.add(range.lo);
+        }
+        if (range.hi != null) {
+            predicates.add(rangeColumn() + " <= ?");
+            params.add(range.hi);
+        }
+        return predicates.isEmpty() ? "" : " WHERE " + String.join(" AND ", predicates);
+    }
+
+    // NTILE upper boundaries inside the range, from the left table (or the right one when the
+    // left cannot split it). The last part keeps the range's own upper bound.
+    private List<Range> split(Range range) throws SQLException {
+        List<Object> bounds = boundaries(leftEngine, leftTable, range);
+        if (bounds.size() <= 1) bounds = boundaries(rightEngine, rightTable, range);
+        List<Range> parts = new ArrayList<>();
+        Object lo = range.lo;
+        for (int i = 0; i < bounds.size() - 1; i++) {
+            parts.add(new Range(lo, bounds.get(i)));
+            lo = bounds.get(i);
+        }
+        parts.add(new Range(lo, range.hi));
+        return parts;
+    }
+
+    private List<Object> boundaries(SqlEngine engine, String table, Range range) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT MAX(" + rangeColumn() + ") FROM (SELECT " + rangeColumn() + ", NTILE(" + chunks + ") OVER (ORDER BY "
+                + rangeColumn() + ") CHUNK FROM " + table + where(range, params) + ") GROUP BY CHUNK ORDER BY 1";
+        List<Object> bounds = new ArrayList<>();
+        query(engine, "tableCompare.split", sql, SqlEngine.RowHandler.eachRow(values -> {
+            if (bounds.isEmpty() || !bounds.get(bounds.size() - 1).equals(values[0])) bounds.add(values[0]);
+        }), params.toArray());
+        return bounds;
+    }
+
+    private List<Digest[]> digests(ExecutorService executor, List<Range> ranges) throws SQLException {
+        List<Callable<Digest>> tasks = new ArrayList<>();
+        for (Range range : ranges) {
+            tasks.add(() -> digest(leftEngine, leftTable, range));
+            tasks.add(() -> digest(rightEngine, rightTable, range));
+        }
+        List<Digest> results = SqlEngine.invokeAll(executor, tasks);
+        List<Digest[]> pairs = new ArrayList<>();
+        for (int i = 0; i < results.size(); i += 2) pairs.add(new Digest[]{results.get(i), results.get(i + 1)});
+        return pairs;
+    }
+
+    private Digest digest(SqlEngine engine, String table, Range range) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT COUNT(*), SUM(" + rowHash + ") FROM " + table + where(range, params);
+        Digest[] digest = new Digest[1];
+        query(engine, "tableCompare.digest", sql, SqlEngine.RowHandler.eachRow(values -> digest[0] = new Digest(
+                ((Number) values[0]).longValue(), values[1] == null ? null : values[1].toString())), params.toArray());
+        return digest[0];
+    }
+
+    private void compareLeaves(ExecutorService executor, List<Range> leaves, Report report) throws SQLException {
+        List<Callable<Map<List<Object>, String>>> tasks = new ArrayList<>();
+        for (Range range : leaves) {
+            tasks.add(() -> keyHashes(leftEngine, leftTable, range));
+            tasks.add(() -> keyHashes(rightEngine, rightTable, range));
+        }
+        List<Map<List<Object>, String>> hashes = SqlEngine.invokeAll(executor, tasks);
+        Map<List<Object>, Kind> differing = new LinkedHashMap<>();
+        for (int i = 0; i < hashes.size(); i += 2) {
+            Map<List<Object>, String> left = hashes.get(i);
+            Map<List<Object>, String> right = hashes.get(i + 1);
+            for (Map.Entry<List<Object>, String> entry : left.entrySet()) {
+                String other = right.get(entry.getKey());
+                if (other == null) {
+                    differing.put(entry.getKey(), Kind.ONLY_LEFT);
+                } else if (!other.equals(entry.getValue())) {
+                    differing.put(entry.getKey(), Kind.CHANGED);
+                }
+            }
+            for (List<Object> key : right.keySet()) {
+                if (!left.containsKey(key)) differing.put(key, Kind.ONLY_RIGHT);
+            }
+        }
+        if (differing.isEmpty()) return;
+
+        List<List<Object>> leftKeys = new ArrayList<>();
+        List<List<Object>> rightKeys = new ArrayList<>();
+        for (Map.Entry<List<Object>, Kind> entry : differing.entrySet()) {
+            if (entry.getValue() != Kind.ONLY_RIGHT) leftKeys.add(entry.getKey());
+            if (entry.getValue() != Kind.ONLY_LEFT) rightKeys.add(entry.getKey());
+        }
+        Map<List<Object>, Object[]> leftRows = fetchRows(leftEngine, leftTable, leftKeys);
+        Map<List<Object>, Object[]> rightRows = fetchRows(rightEngine, rightTable, rightKeys);
+        for (Map.Entry<List<Object>, Kind> entry : differing.entrySet()) {
+            report.differences.add(new Difference(entry.getValue(), entry.getKey(),
+                    leftRows.get(entry.getKey()), rightRows.get(entry.getKey())));
+        }
+    }
+
+    private Map<List<Object>, String> keyHashes(SqlEngine engine, String table, Range range) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT " + String.join(", ", keyColumns) + ", " + rowHash + " FROM " + table + where(range, params);
+        Map<List<Object>, String> hashes = new HashMap<>();
+        query(engine, "tableCompare.keys", sql, SqlEngine.RowHandler.eachRow(values -> {
+            hashes.put(key(values, keyColumns.size()), String.valueOf(values[keyColumns.size()]));
+            keysFetched.incrementAndGet();
+        }), params.toArray());
+        return hashes;
+    }
+
+    // Full rows for just these keys, in IN-list chunks of 500.
+    private Map<List<Object>, Object[]> fetchRows(SqlEngine engine, String table, List<List<Object>> keys) throws SQLException {
+        Map<List<Object>, Object[]> rows = new HashMap<>();
+        String keyList = String.join(", ", keyColumns);
+        String tuple = "(" + String.join(", ", Collections.nCopies(keyColumns.size(), "?")) + ")";
+        int keyCount = keyColumns.size();
+        String[] columns = columnList.split(", ");
+        int[] keyIndexes = new int[keyCount];
+        for (int i = 0; i < keyCount; i++) keyIndexes[i] = Arrays.asList(columns).indexOf(keyColumns.get(i));
+        for (int from = 0; from < keys.size(); from += 500) {
+            List<List<Object>> chunk = keys.subList(from, Math.min(keys.size(), from + 500));
+            List<Object> params = new ArrayList<>();
+            for (List<Object> key : chunk) params.addAll(key);
+            String sql = "SELECT " + columnList + " FROM " + table + " WHERE (" + keyList + ") IN ("
+                    + String.join(", ", Collections.nCopies(chunk.size(), tuple)) + ")";
+            query(engine, "tableCompare.rows", sql, SqlEngine.RowHandler.eachRow(values -> {
+                List<Object> key = new ArrayList<>(keyCount);
+                for (int index : keyIndexes) key.add(normalize(values[index]));
+                rows.put(key, values);
+                rowsFetched.incrementAndGet();
+            }), params.toArray());
+        }
+        return rows;
+    }
+
+    private static List<Object> key(Object[] values, int keyCount) {
+        List<Object> key = new ArrayList<>(keyCount);
+        for (int i = 0; i < keyCount; i++) key.add(normalize(values[i]));
+        return key;
+    }
+
+    // BigDecimal equality depends on scale (1 vs 1.0); keys from either side must match.
+    private static Object normalize(Object value) {
+        if (value instanceof BigDecimal) {
+            BigDecimal decimal = ((BigDecimal) value).stripTrailingZeros();
+            return decimal.scale() < 0 ? decimal.setScale(0) : decimal;
+        }
+        return value;
+    }
+
+    // A budget trip would leave a digest or key list incomplete, so it fails the comparison
+    // instead of returning partial results.
+    private void query(SqlEngine engine, String operation, String sql, SqlEngine.RowHandler handler, Object... params) throws SQLException {
+        if (cancelled) throw new SQLException("Comparison cancelled");
+        QueryGovernor.Ticket ticket = engine.getGovernor().newTicket();
+        running.add(ticket);
+        try {
+            if (cancelled) ticket.cancel();
+            SqlEngine.ExecutionResult result = engine.query(ticket, operation, sql, handler, params);
+            if (result.trip != null) throw new SQLException("Comparison stopped: " + result.trip.describe());
+        } finally {
+            running.remove(ticket);
+        }
+    }
+}
@@ -0,0 +1,402 @@
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Multi-table TRUNCATE / DROP. Foreign keys pointing at the chosen tables are read from
+// DatabaseMetaData, the tables are grouped into dependency levels, and every statement in a
+// level runs concurrently on its own pooled connection. Levels run one after another.
+//
+// DROP: a table is dropped only after every selected table referencing it is gone. Tables
+// referenced from outside the selection (or caught in a foreign key cycle) need
+// CASCADE CONSTRAINTS, which is only used when the caller allows it.
+// TRUNCATE: Oracle refuses to truncate a parent with enabled foreign keys, even when the
+// children are empty, so foreign keys between selected tables are disabled first, the tables
+// are truncated children first, and the keys are re-enabled (which validates against empty
+// children). A parent still referenced by an unselected table, or by a selected child whose
+// truncate failed, is never truncated. A key that cannot be re-enabled with validation is
+// enabled NOVALIDATE, and either way its table gets a failed ENABLE CONSTRAINTS result naming it.
+public class TableMaintenance {
+
+    public enum Action { TRUNCATE, DROP }
+
+    // One foreign key constraint, childTable -> parentTable.
+    public static final class ForeignKey {
+        public final String name;
+        public final String childTable;
+        public final String parentTable;
+
+        public ForeignKey(String name, String childTable, String parentTable) {
+            this.name = name;
+            this.childTable = childTable;
+            this.parentTable = parentTable;
+        }
+
+        boolean selfReference() {
+            return childTable.equals(parentTable);
+        }
+    }
+
+    // Outcome of one statement (or one group of constraint changes) against one table.
+    public static final class TableResult {
+        public final String table;
+        public final String step;
+        public final int level;
+        public final boolean succeeded;
+        public final long millis;
+        public final String message;
+
+        TableResult(String table, String step, int level, boolean succeeded, long millis, String message) {
+            this.table = table;
+            this.step = step;
+            this.level = level;
+            this.succeeded = succeeded;
+            this.millis = millis;
+            this.message = message;
+        }
+    }
+
+    // What run() will do: the statements per level, plus the tables it refuses to touch.
+    public static final class Plan {
+        public final Action action;
+        public final List<List<String>> levels = new ArrayList<>();
+        public final Map<String, String> blocked = new LinkedHashMap<>();
+        final Set<String> cascade = new TreeSet<>();
+        final Map<String, List<ForeignKey>> suspended = new LinkedHashMap<>(); // child -> keys to disable
+
+        Plan(Action action) {
+            this.action = action;
+        }
+
+        public int tableCount() {
+            int count = 0;
+            for (List<String> level : levels) count += level.size();
+            return count;
+        }
+    }
+
+    private final SqlEngine engine;
+    private final int parallelism;
+
+    public TableMaintenance(SqlEngine engine) {
+        this(engine, engine.getPool().getMaxSize());
+    }
+
+    public TableMaintenance(SqlEngine engine, int parallelism) {
+        this.engine = engine;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    // Every foreign key that references one of the tables, including keys on unselected tables.
+    // One metadata call per table, spread over the pool.
+    public List<ForeignKey> foreignKeys(Collection<String> tables) throws SQLException {
+        List<Callable<List<ForeignKey>>> lookups = new ArrayList<>();
+        for (String table : tables) {
+            lookups.add(() -> engine.withConnection(connection -> referencing(connection, table)));
+        }
+        List<ForeignKey> keys = new ArrayList<>();
+        for (List<ForeignKey> tableKeys : invokeAll(lookups)) keys.addAll(tableKeys);
+        return keys;
+    }
+
+    private static List<ForeignKey> referencing(Connection connection, String table) throws SQLException {
+        DatabaseMetaData md = connection.getMetaData();
+        Map<String, ForeignKey> keys = new LinkedHashMap<>(); // multi-column keys come back once per column
+        try (ResultSet rs = md.getExportedKeys(null, connection.getSchema(), table)) {
+            while (rs.next()) {
+                String child = rs.getString("FKTABLE_NAME");
+                String name = rs.getString("FK_NAME");
+                keys.putIfAbsent(child + "." + name, new ForeignKey(name, child, rs.getString("PKTABLE_NAME")));
+            }
+        }
+        return new ArrayList<>(keys.values());
+    }
+
+    public Plan plan(Action action, Collection<String> tables, boolean cascadeConstraints) throws SQLException {
+        return plan(action, tables, foreignKeys(tables), cascadeConstraints);
+    }
+
+    public static Plan plan(Action action, Collection<String> tables, List<ForeignKey> keys, boolean cascadeConstraints) {
+        Set<String> selected = new LinkedHashSet<>(tables);
+        Plan plan = new Plan(action);
+        if (action == Action.TRUNCATE) {
+            planTruncate(plan, selected, keys);
+        } else {
+            planDrop(plan, selected, keys, cascadeConstraints);
+        }
+        return plan;
+    }
+
+    private static void planTruncate(Plan plan, Set<String> selected, List<ForeignKey> keys) {
+        // A parent keeps its rows while any child that keeps its rows still references it
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (ForeignKey key : keys) {
+                if (key.selfReference() || !selected.contains(key.parentTable) || plan.blocked.containsKey(key.parentTable)) continue;
+                if (!selected.contains(key.childTable)) {
+                    plan.blocked.put(key.parentTable, "Referenced by " + key.childTable + " (" + key.name + "), which is not selected");
+                    changed = true;
+                } else if (plan.blocked.containsKey(key.childTable)) {
+                    plan.blocked.put(key.parentTable, "Still referenced by " + key.childTable + ", which cannot be truncated");
+                    changed = true;
+                }
+            }
+        }
+        Map<String, Set<String>> children = new LinkedHashMap<>(); // parent -> selected children
+        for (ForeignKey key : keys) {
+            if (key.selfReference() || !selected.contains(key.parentTable) || plan.blocked.containsKey(key.parentTable)) continue;
+            plan.suspended.computeIfAbsent(key.childTable, t -> new ArrayList<>()).add(key);
+            children.computeIfAbsent(key.parentTable, t -> new LinkedHashSet<>()).add(key.childTable);
+        }
+
+        // Children first, so a parent can be left alone when one of its children fails
+        Set<String> remaining = new LinkedHashSet<>(selected);
+        remaining.removeAll(plan.blocked.keySet());
+        while (!remaining.isEmpty()) {
+            List<String> level = new ArrayList<>();
+            for (String table : remaining) {
+                boolean ready = true;
+                for (String child : children.getOrDefault(table, Set.of())) {
+                    if (remaining.contains(child)) {
+                        ready = false;
+                        break;
+                    }
+                }
+                if (ready) level.add(table);
+            }
+            if (level.isEmpty()) level.addAll(remaining); // Foreign key cycles: their keys are disabled, truncate together
+            plan.levels.add(level);
+            remaining.removeAll(level);
+        }
+    }
+
+    private static void planDrop(Plan plan, Set<String> selected, List<ForeignKey> keys, boolean cascadeConstraints) {
+        Map<String, Set<String>> children = new LinkedHashMap<>(); // parent -> selected children
+        for (String table : selected) children.put(table, new LinkedHashSet<>());
+        for (ForeignKey key : keys) {
+            if (key.selfReference() || !selected.contains(key.parentTable)) continue;
+            if (selected.contains(key.childTable)) {
+                children.get(key.parentTable).add(key.childTable);
+            } else if (cascadeConstraints) {
+                plan.cascade.add(key.parentTable);
+            } else {
+                plan.blocked.putIfAbsent(key.parentTable, "Referenced by " + key.childTable + " (" + key.name
+                        + "), which is not selected; use CASCADE CONSTRAINTS");
+            }
+        }
+
+        // A parent cannot go while one of its children stays behind
+        List<String> work = new ArrayList<>(plan.blocked.keySet());
+        while (!work.isEmpty()) {
+            String blockedChild = work.remove(work.size() - 1);
+            for (Map.Entry<String, Set<String>> entry : children.entrySet()) {
+                if (entry.getValue().contains(blockedChild) && !plan.blocked.containsKey(entry.getKey())) {
+                    plan.blocked.put(entry.getKey(), "Still referenced by " + blockedChild + ", which cannot be dropped");
+                    work.add(entry.getKey());
+                }
+            }
+        }
+
+        // Kahn's algorithm, children first: a level holds every table whose children are all gone
+        Set<String> remaining = new LinkedHashSet<>(selected);
+        remaining.removeAll(plan.blocked.keySet());
+        while (!remaining.isEmpty()) {
+            List<String> level = new ArrayList<>();
+            for (String table : remaining) {
+                boolean ready = true;
+                for (String child : children.get(table)) {
+                    if (remaining.contains(child)) {
+                        ready = false;
+                        break;
+                    }
+                }
+                if (ready) level.add(table);
+            }
+            if (level.isEmpty()) break; // Only foreign key cycles are left
+            plan.levels.add(level);
+            remaining.removeAll(level);
+        }
+
+        // Cycles: CASCADE CONSTRAINTS removes the keys, one table at a time to avoid dictionary lock waits
+        for (String table : remaining) {
+            if (cascadeConstraints) {
+                plan.cascade.add(table);
+                plan.levels.add(List.of(table));
+            } else {
+                plan.blocked.put(table, "Part of a foreign key cycle; use CASCADE CONSTRAINTS");
+            }
+        }
+    }
+
+    // Executes the plan. Results are passed to the listener as each statement finishes (from
+    // worker threads) and returned in completion order per level. A failing table does not stop
+    // its level, but a DROP stops before the next level so parents of failed children survive.
+    public List<TableResult> run(Plan plan, Consumer<TableResult> listener) throws SQLException {
+        List<TableResult> results = new ArrayList<>();
+        for (Map.Entry<String, String> entry : plan.blocked.entrySet()) {
+            TableResult skipped = new TableResult(entry.getKey(), "SKIPPED", -1, false, 0, entry.getValue());
+            results.add(skipped);
+            if (listener != null) listener.accept(skipped);
+        }
+
+        if (plan.action == Action.TRUNCATE) {
+            results.addAll(runStep(constraintSteps(plan, "DISABLE", 0), listener));
+            Set<String> keptRows = new HashSet<>(); // Selected tables that still have their rows
+            for (int level = 0; level < plan.levels.size(); level++) {
+                List<String> ready = new ArrayList<>();
+                for (String table : plan.levels.get(level)) {
+                    String child = childWithRows(plan, table, keptRows);
+                    if (child == null) {
+                        ready.add(table);
+                        continue;
+                    }
+                    keptRows.add(table);
+                    TableResult skipped = new TableResult(table, "SKIPPED", level + 1, false, 0,
+                            "Child " + child + " was not truncated; its rows still reference this table");
+                    results.add(skipped);
+                    if (listener != null) listener.accept(skipped);
+                }
+                for (TableResult result : runStep(statementSteps(ready, plan, level + 1), listener)) {
+                    results.add(result);
+                    if (!result.succeeded) keptRows.add(result.table);
+                }
+            }
+            results.addAll(runStep(constraintSteps(plan, "ENABLE", plan.levels.size() + 1), listener));
+            return results;
+        }
+
+        for (int level = 0; level < plan.levels.size(); level++) {
+            List<TableResult> levelResults = runStep(statementSteps(plan.levels.get(level), plan, level), listener);
+            results.addAll(levelResults);
+            for (TableResult result : levelResults) {
+                if (!result.succeeded) return abandon(plan, level + 1, results, listener);
+            }
+        }
+        return results;
+    }
+
+    private static String childWithRows(Plan plan, String parent, Set<String> keptRows) {
+        for (String child : keptRows) {
+            for (ForeignKey key : plan.suspended.getOrDefault(child, List.of())) {
+                if (key.parentTable.equals(parent)) return child;
+            }
+        }
+        return null;
+    }
+
+    private List<TableResult> abandon(Plan plan, int fromLevel, List<TableResult> results, Consumer<TableResult> listener) {
+        for (int level = fromLevel; level < plan.levels.size(); level++) {
+            for (String table : plan.levels.get(level)) {
+                TableResult skipped = new TableResult(table, "SKIPPED", level, false, 0, "An earlier level failed");
+                results.add(skipped);
+                if (listener != null) listener.accept(skipped);
+            }
+        }
+        return results;
+    }
+
+    private List<Callable<TableResult>> statementSteps(List<String> tables, Plan plan, int level) {
+        List<Callable<TableResult>> steps = new ArrayList<>();
+        for (String table : tables) {
+            String step = plan.action == Action.TRUNCATE ? "TRUNCATE"
+                    : plan.cascade.contains(table) ? "DROP CASCADE CONSTRAINTS" : "DROP";
+            String sql = plan.action == Action.TRUNCATE ? "TRUNCATE TABLE " + table
+                    : "DROP TABLE " + table + (plan.cascade.contains(table) ? " CASCADE CONSTRAINTS" : "");
+            String operation = plan.action == Action.TRUNCATE ? "maintenance.truncate" : "maintenance.drop";
+            steps.add(() -> timed(table, step, level, () -> engine.executeUpdate(operation, sql)));
+        }
+        return steps;
+    }
+
+    // One step per child table, so concurrent ALTERs never queue on the same table lock.
+    // ENABLE tries every key, even after one fails, and names each key it could not validate.
+    private List<Callable<TableResult>> constraintSteps(Plan plan, String verb, int level) {
+        List<Callable<TableResult>> steps = new ArrayList<>();
+        for (Map.Entry<String, List<ForeignKey>> entry : plan.suspended.entrySet()) {
+            String child = entry.getKey();
+            steps.add(() -> timed(child, verb + " CONSTRAINTS", level, () -> {
+                List<String> problems = new ArrayList<>();
+                for (ForeignKey key : entry.getValue()) {
+                    String alter = "ALTER TABLE " + child + " " + verb + " CONSTRAINT " + key.name;
+                    if ("DISABLE".equals(verb)) {
+                        engine.executeUpdate("maintenance.disable", alter);
+                        continue;
+                    }
+                    try {
+                        engine.executeUpdate("maintenance.enable", alter);
+                    } catch (SQLException e) {
+                        problems.add(enableNovalidate(child, key, e));
+                    }
+                }
+                if (!problems.isEmpty()) throw new SQLException(String.join("; ", problems));
+                return entry.getValue().size();
+            }));
+        }
+        return steps;
+    }
+
+    // Existing rows violate the key (ORA-02298) or validation failed otherwise: enforce it for
+    // new rows at least, and say so. The message is what the caller shows for this key.
+    private String enableNovalidate(String child, ForeignKey key, SQLException validateError) {
+        try {
+            engine.executeUpdate("maintenance.enable", "ALTER TABLE " + child + " ENABLE NOVALIDATE CONSTRAINT " + key.name);
+            return key.name + " is enabled but NOT VALIDATED (existing rows were not checked): " + validateError.getMessage();
+        } catch (SQLException e) {
+            return key.name + " is still DISABLED: " + e.getMessage();
+        }
+    }
+
+    private static TableResult timed(String table, String step, int level, Callable<Integer> work) {
+        long start = System.nanoTime();
+        try {
+            work.call();
+            return new TableResult(table, step, level, true, (System.nanoTime() - start) / 1_000_000, "");
+        } catch (Exception e) {
+            return new TableResult(table, step, level, false, (System.nanoTime() - start) / 1_000_000, e.getMessage());
+        }
+    }
+
+    private List<TableResult> runStep(List<Callable<TableResult>> steps, Consumer<TableResult> listener) throws SQLException {
+        if (steps.isEmpty()) return List.of();
+        List<Callable<TableResult>> reporting = new ArrayList<>();
+        for (Callable<TableResult> step : steps) {
+            reporting.add(() -> {
+                TableResult result = step.call();
+                if (listener != null) listener.accept(result);
+                return result;
+            });
+        }
+        return invokeAll(reporting);
+    }
+
+    // Runs the tasks on at most `parallelism` threads (one pooled connection each).
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) throws SQLException {
+        if (tasks.isEmpty()) return List.of();
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, tasks.size()), runnable -> {
+            Thread thread = new Thread(runnable, "table-maintenance-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            return SqlEngine.invokeAll(executor, tasks);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
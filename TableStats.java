@@ -0,0 +1,174 @@
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+// Per-table statistics for the dgfx8 dashboard, gathered from the Oracle data dictionary.
+// Optimizer estimates (USER_TABLES), segment sizes (USER_SEGMENTS) and DML activity
+// (USER_TAB_MODIFICATIONS) are each one query for the whole schema and run concurrently;
+// exact COUNT(*)s are optional and run one table per pooled connection, smallest first.
+// Every update is merged into an immutable Stats snapshot and passed to the listener.
+public class TableStats implements AutoCloseable {
+
+    // Snapshot of what is known about one table; null fields are not known (yet).
+    public static final class Stats {
+        public final String table;
+        public final Long estimatedRows;
+        public final Date lastAnalyzed;
+        public final Long segmentBytes;
+        public final Date lastDml;
+        public final Long modifications;
+        public final Long exactRows;
+
+        Stats(String table, Long estimatedRows, Date lastAnalyzed, Long segmentBytes, Date lastDml, Long modifications, Long exactRows) {
+            this.table = table;
+            this.estimatedRows = estimatedRows;
+            this.lastAnalyzed = lastAnalyzed;
+            this.segmentBytes = segmentBytes;
+            this.lastDml = lastDml;
+            this.modifications = modifications;
+            this.exactRows = exactRows;
+        }
+
+        public static Stats empty(String table) {
+            return new Stats(table, null, null, null, null, null, null);
+        }
+
+        // Best row count available: exact if counted, else the optimizer estimate.
+        public Long rows() {
+            return exactRows != null ? exactRows : estimatedRows;
+        }
+
+        Stats withEstimate(Long rows, Date analyzed) {
+            return new Stats(table, rows, analyzed, segmentBytes, lastDml, modifications, exactRows);
+        }
+
+        Stats withSegmentBytes(Long bytes) {
+            return new Stats(table, estimatedRows, lastAnalyzed, bytes, lastDml, modifications, exactRows);
+        }
+
+        Stats withModifications(Date timestamp, Long count) {
+            return new Stats(table, estimatedRows, lastAnalyzed, segmentBytes, timestamp, count, exactRows);
+        }
+
+        Stats withExactRows(Long rows) {
+            return new Stats(table, estimatedRows, lastAnalyzed, segmentBytes, lastDml, modifications, rows);
+        }
+    }
+
+    private static final String ESTIMATES_SQL =
+            "SELECT TABLE_NAME, NUM_ROWS, LAST_ANALYZED FROM USER_TABLES";
+    private static final String SEGMENTS_SQL =
+            "SELECT SEGMENT_NAME, SUM(BYTES) FROM USER_SEGMENTS WHERE SEGMENT_TYPE LIKE 'TABLE%' GROUP BY SEGMENT_NAME";
+    // Oracle flushes monitoring info to this view periodically, so very recent DML can be missing
+    private static final String MODIFICATIONS_SQL =
+            "SELECT TABLE_NAME, MAX(TIMESTAMP), SUM(INSERTS + UPDATES + DELETES) FROM USER_TAB_MODIFICATIONS "
+                    + "WHERE PARTITION_NAME IS NULL GROUP BY TABLE_NAME";
+    private static final String TABLE_SIZE_SQL =
+            "SELECT t.NUM_ROWS, (SELECT SUM(s.BYTES) FROM USER_SEGMENTS s WHERE s.SEGMENT_NAME = t.TABLE_NAME) "
+                    + "FROM USER_TABLES t WHERE t.TABLE_NAME = ?";
+
+    private final SqlEngine engine;
+    private final ExecutorService executor;
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    public TableStats(SqlEngine engine) {
+        this(engine, engine.getPool().getMaxSize());
+    }
+
+    public TableStats(SqlEngine engine, int parallelism) {
+        this.engine = engine;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+            Thread thread = new Thread(runnable, "table-stats-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Stats get(String table) {
+        return stats.get(table);
+    }
+
+    // Fetches estimates, sizes and DML activity for the tables. Blocks until all three sources
+    // are in; the listener sees each table once per source as results arrive.
+    public void refresh(Collection<String> tables, Consumer<Stats> listener) throws SQLException {
+        for (String table : tables) stats.put(table, Stats.empty(table));
+        List<Callable<Long>> sources = new ArrayList<>();
+        sources.add(() -> engine.query("tableStats.estimates", ESTIMATES_SQL, SqlEngine.RowHandler.eachRow(values ->
+                update(str(values[0]), s -> s.withEstimate(num(values[1]), date(values[2])), listener))));
+        sources.add(() -> engine.query("tableStats.segments", SEGMENTS_SQL, SqlEngine.RowHandler.eachRow(values ->
+                update(str(values[0]), s -> s.withSegmentBytes(num(values[1])), listener))));
+        sources.add(() -> engine.query("tableStats.modifications", MODIFICATIONS_SQL, SqlEngine.RowHandler.eachRow(values ->
+                update(str(values[0]), s -> s.withModifications(date(values[1]), num(values[2])), listener))));
+        SqlEngine.invokeAll(executor, sources);
+    }
+
+    // Runs SELECT COUNT(*) for every table, smallest (by estimate) first so the view fills fast.
+    public void countExactly(Collection<String> tables, Consumer<Stats> listener) throws SQLException {
+        List<String> ordered = new ArrayList<>(tables);
+        ordered.sort(Comparator.comparingLong(table -> {
+            Stats s = stats.get(table);
+            return s == null || s.estimatedRows == null ? Long.MAX_VALUE : s.estimatedRows;
+        }));
+        List<Callable<Long>> counts = new ArrayList<>();
+        for (String table : ordered) {
+            counts.add(() -> engine.query("tableStats.count", "SELECT COUNT(*) FROM " + table, SqlEngine.RowHandler.eachRow(values ->
+                    update(table, s -> s.withExactRows(num(values[0])), listener))));
+        }
+        SqlEngine.invokeAll(executor, counts);
+    }
+
+    // Estimated rows and segment bytes for one table, straight from the dictionary (cheap).
+    public Stats estimate(String table) throws SQLException {
+        engine.query("tableStats.estimate", TABLE_SIZE_SQL, SqlEngine.RowHandler.eachRow(values ->
+                update(table, s -> s.withEstimate(num(values[0]), s.lastAnalyzed).withSegmentBytes(num(values[1])), null)), table);
+        return stats.get(table);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void update(String table, UnaryOperator<Stats> change, Consumer<Stats> listener) {
+        if (table == null) return;
+        Stats updated = stats.compute(table, (name, current) -> change.apply(current == null ? Stats.empty(name) : current));
+        if (listener != null) listener.accept(updated);
+    }
+
+    private static String str(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    private static Long num(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : null;
+    }
+
+    private static Date date(Object value) {
+        return value instanceof Date ? (Date) value : null;
+    }
+
+    // "1.2 GB" style sizes for the dashboard.
+    public static String formatBytes(Long bytes) {
+        if (bytes == null) return "";
+        String[] units = {"B", "KB", "MB", "GB", "TB"};
+        double size = bytes;
+        int unit = 0;
+        while (size >= 1024 && unit < units.length - 1) {
+            size /= 1024;
+            unit++;
+        }
+        return unit == 0 ? bytes + " B" : String.format("%.1f %s", size, units[unit]);
+    }
+}
@@ -2,6 +2,11 @@ import java.util.*;
 
 public class cal{
 
+    // How results are computed and shown; see CalPrecision.
+    static CalPrecision.Mode precision = CalPrecision.parseMode(System.getProperty("cal.precision", "DOUBLE"));
+    // Parses and evaluates each new expression as an edit of the previous one.
+    static final CalIncremental session = new CalIncremental();
+
     static class InvalidExpressionException extends Exception {
         public InvalidExpressionException(String message) {
             super(message);
@@ -9,19 +14,26 @@ public class cal{
     }
 
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--stream")) {
+            CalStream.main(Arrays.copyOfRange(args, 1, args.length)); // Headless bulk evaluation, no menu
+            return;
+        }
         Scanner sc = new Scanner(System.in);
         System.out.println("Welcome to the Unified Calculator!");
 
         // Main continuous loop for the entire program.
         while (true) {
             List<Object> tokens = null;
-            List<Double> evenNumbers = new ArrayList<>();
-            List<Double> oddNumbers = new ArrayList<>();
+            long[] integers = null;
+            CalCompiler.Expr compiled = null;
+            double[] bindings = null;
+            List<Number> evenNumbers = new ArrayList<>();
+            List<Number> oddNumbers = new ArrayList<>();
 
             // Loop until a valid expression is entered.
             while (tokens == null) {
                 try {
-                    System.out.print("\nEnter a mathematical expression (or type 'exit' to quit): ");
+                    System.out.print("\nEnter a mathematical expression (or type 'exit' to quit, ':stats' for cache statistics): ");
                     String expr = sc.nextLine();
                     
                     if (expr.equalsIgnoreCase("exit") || expr.equalsIgnoreCase("quit")) {
@@ -29,12 +41,25 @@ public class cal{
                         sc.close();
                         return; // Terminate the main method.
                     }
+                    // Prefixed so it cannot be mistaken for an expression using a variable named 'stats'
+                    if (expr.trim().equalsIgnoreCase(":stats")) {
+                        System.out.println("Expression cache: " + CalCache.shared().stats());
+                        System.out.println("Incremental parser: " + session.stats());
+                        continue;
+                    }
                     
-                    tokens = tokenizeExpression(expr, evenNumbers, oddNumbers);
+                    // Parse once (or reuse an earlier parse), evaluate as often as needed
+                    CalCache.Entry entry = CalCache.shared().get(expr, session);
+                    compiled = entry.expr;
+                    evenNumbers = entry.even;
+                    oddNumbers = entry.odd;
+                    tokens = entry.tokens;
+                    integers = entry.integers();
                 } catch (InvalidExpressionException e) {
                     System.out.println("Error: " + e.getMessage() + ". Please try again.");
                 }
             }
+            bindings = readVariables(sc, compiled);
             
             boolean representationChosen = false;
             while(!representationChosen) {
@@ -44,7 +69,8 @@ public class cal{
                 System.out.println("3. Represent as a simple ArrayList");
                 System.out.println("4. Enter a new expression");
                 System.out.println("5. Quit");
-                System.out.print("Enter your choice (1-5): ");
+                System.out.println("6. Precision mode (current: " + precision + ")");
+                System.out.print("Enter your choice (1-6): ");
                 
                 try {
                     int mode = sc.nextInt();
@@ -52,7 +78,7 @@ public class cal{
 
                     switch (mode) {
                         case 1:
-                            handleLinkedListMode(tokens, evenNumbers, oddNumbers);
+                            handleLinkedListMode(tokens, compiled, bindings, evenNumbers, oddNumbers);
                             break;
                         case 2:
                             System.out.print("Enter capacity for input queues: ");
@@ -60,10 +86,10 @@ public class cal{
                             System.out.print("Enter capacity for even/odd queues: ");
                             int eoCap = sc.nextInt();
                             sc.nextLine(); // Consume newline
-                            handleQueueMode(tokens, evenNumbers, oddNumbers, inCap, eoCap);
+                            handleQueueMode(tokens, integers, compiled, bindings, inCap, eoCap);
                             break;
                         case 3:
-                            handleArrayListMode(tokens, evenNumbers, oddNumbers);
+                            handleArrayListMode(tokens, compiled, bindings, evenNumbers, oddNumbers);
                             break;
                         case 4:
                             representationChosen = true; // Breaks the inner loop to get a new expression.
@@ -72,8 +98,11 @@ public class cal{
                             System.out.println("Exiting the calculator.");
                             sc.close();
                             return; // Exit the program entirely.
+                        case 6:
+                            choosePrecision(sc);
+                            break;
                         default:
-                            System.out.println("Invalid choice. Please select 1-5.");
+                            System.out.println("Invalid choice. Please select 1-6.");
                     }
                     if (mode >= 1 && mode <= 3) {
                          System.out.println("----------------------------------------");
@@ -89,18 +118,18 @@ public class cal{
         }
     }
 
-    private static void handleArrayListMode(List<Object> tokens, List<Double> even, List<Double> odd) throws InvalidExpressionException, ArithmeticException {
+    private static void handleArrayListMode(List<Object> tokens, CalCompiler.Expr compiled, double[] bindings, List<Number> even, List<Number> odd) throws InvalidExpressionException, ArithmeticException {
         ArrayList<Object> expressionList = new ArrayList<>(tokens);
         System.out.println("\nRepresentation: " + expressionList);
-        double result = evaluate(expressionList);
+        String result = formatResult(compiled, bindings);
         System.out.println("Result: " + result);
         System.out.println("Even Numbers: " + even);
         System.out.println("Odd Numbers: " + odd);
     }
 
-    private static void handleLinkedListMode(List<Object> tokens, List<Double> even, List<Double> odd) throws InvalidExpressionException, ArithmeticException {
+    private static void handleLinkedListMode(List<Object> tokens, CalCompiler.Expr compiled, double[] bindings, List<Number> even, List<Number> odd) throws InvalidExpressionException, ArithmeticException {
         LinkedList<Object> expressionList = new LinkedList<>(tokens);
-        double result = evaluate(expressionList);
+        String result = formatResult(compiled, bindings);
         
         System.out.println(); // For spacing
         printAsLinks(expressionList, "Representation");
@@ -109,127 +138,146 @@ public class cal{
         printAsLinks(new ArrayList<>(odd), "Odd Numbers");
     }
     
-    private static void handleQueueMode(List<Object> tokens, List<Double> evenNumbers, List<Double> oddNumbers, int inCap, int eoCap) throws InvalidExpressionException, ArithmeticException {
+    private static void handleQueueMode(List<Object> tokens, long[] integers, CalCompiler.Expr compiled, double[] bindings, int inCap, int eoCap) throws InvalidExpressionException, ArithmeticException {
         Queue<Object> expressionQueue = new LinkedList<>(tokens);
-        LinkedList<Queue<Double>> inputQueues = new LinkedList<>();
-        LinkedList<Queue<Double>> evenQueues = new LinkedList<>();
-        LinkedList<Queue<Double>> oddQueues = new LinkedList<>();
-        
-        for (Object token : tokens) {
-            if (token instanceof Double) {
-                addToQueueList(inputQueues, (Double) token, inCap);
-            }
+        double[] numbers = tokens.stream().filter(t -> t instanceof Double).mapToDouble(t -> (Double) t).toArray();
+        CalPipeline.Partitions queues;
+        try {
+            queues = CalPipeline.partition(numbers, integers, inCap, eoCap); // Ring-buffer producer/classifier/consumer pipeline
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Queue partitioning was interrupted.");
+            return;
         }
-        evenNumbers.forEach(n -> addToQueueList(evenQueues, n, eoCap));
-        oddNumbers.forEach(n -> addToQueueList(oddQueues, n, eoCap));
 
         System.out.println("\nRepresentation: " + expressionQueue);
-        double result = evaluate(expressionQueue);
+        String result = formatResult(compiled, bindings);
         System.out.println("Result: " + result);
         System.out.println("Input Queues:");
-        printQueueList(inputQueues);
+        printQueueList(queues.input);
         System.out.println("Even Queues:");
-        printQueueList(evenQueues);
+        printQueueList(queues.even);
         System.out.println("Odd Queues:");
-        printQueueList(oddQueues);
+        printQueueList(queues.odd);
     }
 
-    private static List<Object> tokenizeExpression(String expr, Collection<Double> even, Collection<Double> odd) throws InvalidExpressionException {
-        List<Object> tokens = new ArrayList<>();
-        int balance = 0;
-        even.clear();
-        odd.clear();
-
-        for (int i = 0; i < expr.length(); i++) {
-            char c = expr.charAt(i);
-            if (Character.isWhitespace(c)) continue;
+    private static void choosePrecision(Scanner sc) {
+        System.out.println("1. DOUBLE   - fast binary floating point");
+        System.out.println("2. EXACT    - decimal arithmetic, division rounded to 34 digits");
+        System.out.println("3. ADAPTIVE - double with error bounds, exact when the bound is too wide");
+        System.out.print("Choose precision (1-3): ");
+        int choice = sc.nextInt();
+        sc.nextLine(); // Consume newline
+        if (choice >= 1 && choice <= 3) {
+            precision = CalPrecision.Mode.values()[choice - 1];
+            System.out.println("Precision mode set to " + precision + ".");
+        } else {
+            System.out.println("Invalid choice. Precision mode unchanged.");
+        }
+    }
 
-            if (Character.isDigit(c) || c == '.') {
-                StringBuilder sb = new StringBuilder();
-                while (i < expr.length() && (Character.isDigit(expr.charAt(i)) || expr.charAt(i) == '.')) {
-                    sb.append(expr.charAt(i++));
-                }
-                i--;
+    // The result line for the current precision mode, flagging values that were rounded.
+    private static String formatResult(CalCompiler.Expr compiled, double[] bindings) throws ArithmeticException {
+        if (precision == CalPrecision.Mode.DOUBLE) {
+            return String.valueOf(session.evaluate(compiled, bindings));
+        }
+        CalPrecision.Result result = CalPrecision.evaluate(compiled, bindings, precision);
+        if (result.exact) return result.toString();
+        if (result.fastPath) return result + " (verified to " + CalPrecision.DISPLAY_DIGITS + " significant digits)";
+        return result + " (rounded to " + CalPrecision.CONTEXT.getPrecision() + " significant digits)";
+    }
 
+    // Asks for a value for every variable in the expression, in order of first appearance.
+    private static double[] readVariables(Scanner sc, CalCompiler.Expr compiled) {
+        String[] names = compiled.variableNames();
+        double[] values = new double[names.length];
+        for (int i = 0; i < names.length; i++) {
+            while (true) {
+                System.out.print("Enter value for " + names[i] + ": ");
+                String input = sc.nextLine().trim();
                 try {
-                    double num = Double.parseDouble(sb.toString());
-                    tokens.add(num);
-                    if (num % 1 == 0) {
-                        if ((int) num % 2 == 0) even.add(num);
-                        else odd.add(num);
-                    }
+                    values[i] = Double.parseDouble(input);
+                    break;
                 } catch (NumberFormatException e) {
-                    throw new InvalidExpressionException("Invalid number format: " + sb.toString());
+                    System.out.println("Invalid number: " + input + ". Please try again.");
                 }
-            } else if ("+-*/()".indexOf(c) != -1) {
-                tokens.add(c);
-                if (c == '(') balance++;
-                else if (c == ')') balance--;
-                if (balance < 0) throw new InvalidExpressionException("Unbalanced parentheses: Extra ')' detected");
-            } else {
-                throw new InvalidExpressionException("Invalid character in expression: " + c);
             }
         }
+        return values;
+    }
 
-        if (balance != 0) {
-            throw new InvalidExpressionException("Unbalanced parentheses: Mismatch in '(' and ')' count");
-        }
-        return tokens;
+    static List<Object> tokenizeExpression(String expr, Collection<Number> even, Collection<Number> odd) throws InvalidExpressionException {
+        CalTokens scanned = new CalTokens();
+        scanned.tokenize(expr);
+        return toTokenList(scanned, even, odd);
     }
 
-    private static double evaluate(Iterable<Object> tokens) throws InvalidExpressionException, ArithmeticException {
-        LinkedList<Double> values = new LinkedList<>();
-        LinkedList<Character> ops = new LinkedList<>();
-        Object lastToken = null;
+    // Boxed view of the primitive tokens for the List/Queue representations, classifying
+    // integral numbers into even/odd on the way. Integer literals are classified by their
+    // exact long value; ones beyond 2^53 are listed as Long so they print exactly too.
+    static List<Object> toTokenList(CalTokens scanned, Collection<Number> even, Collection<Number> odd) {
+        List<Object> tokens = new ArrayList<>(scanned.size());
+        even.clear();
+        odd.clear();
 
-        for (Object token : tokens) {
-            if (token instanceof Double) {
-                values.push((Double) token);
-            } else if (token instanceof Character) {
-                char op = (Character) token;
-                if (op == '(') ops.push(op);
-                else if (op == ')') {
-                    while (!ops.isEmpty() && ops.peek() != '(') evaluateTop(values, ops);
-                    if (ops.isEmpty()) throw new InvalidExpressionException("Mismatched parentheses");
-                    ops.pop();
-                } else {
-                    if (op == '-' && (lastToken == null || (lastToken instanceof Character && "*/+(".indexOf((char)lastToken) != -1))) {
-                        values.push(0.0);
-                    }
-                    while (!ops.isEmpty() && ops.peek() != '(' && precedence(ops.peek()) >= precedence(op)) {
-                        evaluateTop(values, ops);
-                    }
-                    ops.push(op);
-                }
+        int numbers = 0;
+        for (int i = 0; i < scanned.size(); i++) {
+            if (scanned.kind(i) == CalTokens.NUMBER) {
+                tokens.add(scanned.value(i));
+                numbers++;
+            } else if (scanned.kind(i) == CalTokens.VARIABLE) {
+                tokens.add(scanned.variableName((int) scanned.value(i)));
+            } else {
+                tokens.add(CalTokens.symbol(scanned.kind(i)));
             }
-            lastToken = token;
         }
 
-        while (!ops.isEmpty()) {
-            if (ops.peek() == '(') throw new InvalidExpressionException("Mismatched parentheses");
-            evaluateTop(values, ops);
+        if (numbers >= CalPartitioner.PARALLEL_THRESHOLD) {
+            CalPartitioner.Result parts = CalPartitioner.partition(scanned);
+            if (parts.outOfRange.length == 0) { // Otherwise keep the serial pass's ordering
+                for (long n : parts.even) even.add(exactNumber(n));
+                for (long n : parts.odd) odd.add(exactNumber(n));
+                return tokens;
+            }
         }
-        if (values.size() != 1) {
-            throw new InvalidExpressionException("Malformed expression. Check operators and operands");
+        for (int i = 0; i < scanned.size(); i++) {
+            if (scanned.kind(i) != CalTokens.NUMBER) continue;
+            long exact = scanned.integerValue(i);
+            if (exact != CalTokens.NOT_INTEGER) {
+                if ((exact & 1) == 0) even.add(exactNumber(exact));
+                else odd.add(exactNumber(exact));
+            } else {
+                double num = scanned.value(i);
+                int parity = parity(num);
+                if (parity == 0) even.add(num);
+                else if (parity == 1) odd.add(num);
+            }
         }
-        return values.pop();
+        return tokens;
+    }
+
+    private static final long MAX_EXACT_DOUBLE = 1L << 53;
+    private static final double TWO_POW_63 = 0x1p63;
+
+    private static Number exactNumber(long n) {
+        return n >= -MAX_EXACT_DOUBLE && n <= MAX_EXACT_DOUBLE ? (Number) (double) n : (Number) n;
     }
 
-    private static void evaluateTop(LinkedList<Double> values, LinkedList<Character> ops) throws InvalidExpressionException, ArithmeticException {
-        if (values.size() < 2) throw new InvalidExpressionException("Missing operand for operator: " + ops.peek());
-        double b = values.pop();
-        double a = values.pop();
-        char op = ops.pop();
-        values.push(applyOperation(a, b, op));
+    // 0 for even, 1 for odd, -1 for numbers with a fractional part. Integral doubles of
+    // magnitude 2^63 and up do not fit a long but are all even.
+    static int parity(double num) {
+        if (num % 1 != 0) return -1;
+        if (Math.abs(num) >= TWO_POW_63) return 0;
+        return ((long) num & 1) == 0 ? 0 : 1;
     }
 
-    private static int precedence(char op) {
+    static int precedence(char op) {
         if (op == '+' || op == '-') return 1;
         if (op == '*' || op == '/') return 2;
         return 0;
     }
 
-    private static double applyOperation(double a, double b, char op) throws ArithmeticException {
+    static double applyOperation(double a, double b, char op) throws ArithmeticException {
         switch (op) {
             case '+': return a + b;
             case '-': return a - b;
@@ -241,21 +289,14 @@ public class cal{
         }
     }
 
-    private static void addToQueueList(LinkedList<Queue<Double>> list, double num, int capacity) {
-        if (list.isEmpty() || list.getLast().size() >= capacity) {
-            list.add(new LinkedList<>());
-        }
-        list.getLast().add(num);
-    }
-
-    private static void printQueueList(LinkedList<Queue<Double>> queues) {
+    private static void printQueueList(List<double[]> queues) {
         if (queues.isEmpty()) {
              System.out.println("  [None]");
              return;
         }
         int i = 1;
-        for (Queue<Double> q : queues) {
-            System.out.println("  Queue " + (i++) + ": " + q);
+        for (double[] q : queues) {
+            System.out.println("  Queue " + (i++) + ": " + Arrays.toString(q));
         }
     }
     
@@ -1,4 +1,7 @@
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
@@ -8,18 +11,27 @@ import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.paint.Color;
 import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.binding.Bindings;
+import javafx.concurrent.Task;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.util.Duration;
 
+import java.io.IOException;
 import java.sql.*;
+import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.stream.Collectors;
 
 public class dgfx8 extends Application {
 
-    // Oracle Database Connection
-    private Connection connection = null;
+    // Oracle Database access (pooled, shared with ExecuteMultiSQL through SqlEngine)
+    private SqlEngine engine = null;
+    private static final int POOL_SIZE = 4;
     private BooleanProperty isConnected = new SimpleBooleanProperty(false);
 
     // In-memory schema storage (will be populated from DB metadata or on table creation)
@@ -38,6 +50,42 @@ public class dgfx8 extends Application {
     private TextField dbUserField;
     private PasswordField dbPasswordField;
 
+    // Performance panel refresh loop (running only while the panel is shown)
+    private Timeline performanceTimeline;
+    private static final int PERFORMANCE_WINDOW_SECONDS = 60;
+
+    // Results beyond this many rows are spilled to disk and browsed through a mapping
+    private static final int SPILL_THRESHOLD_ROWS = Integer.getInteger("dgfx8.spillRows", 200_000);
+    private final List<SpillFile> openSpills = new ArrayList<>();
+    // Bumped by every sort request; a background sort that finishes out of date is discarded
+    private long spillSortGeneration;
+
+    // Dictionary statistics for the dashboard and the huge-table check before loading a view
+    private TableStats tableStats;
+    private static final long HUGE_TABLE_ROWS = Long.getLong("dgfx8.hugeTableRows", 1_000_000L);
+    private static final long HUGE_TABLE_BYTES = Long.getLong("dgfx8.hugeTableBytes", 1L << 30);
+    private final Set<String> confirmedLargeTables = new HashSet<>();
+
+    // Predicates of this session's statements (deletes, filters, edits) for index proposals
+    private IndexAdvisor indexAdvisor;
+
+    // Local columnar copy of a table that the SNAPSHOTS panel queries instead of the database
+    private ColumnarSnapshot currentSnapshot;
+
+    // GROUP BY results of the AGGREGATE panel, dropped when this session writes to their table
+    private AggregateCache aggregateCache;
+    private static final int AGGREGATE_CACHE_ENTRIES = Integer.getInteger("dgfx8.aggregateCacheEntries", 64);
+    private static final long AGGREGATE_CACHE_SECONDS = Long.getLong("dgfx8.aggregateCacheSeconds", 300L);
+    private QueryGovernor.Ticket currentAggregate; // Cancelled when the user leaves the panel
+
+    // Table view load in progress; bumping the generation discards a load that is still running
+    private QueryGovernor.Ticket currentTableLoad;
+    private long tableLoadGeneration;
+
+    // In-place edits of the current table view, written back by RowEditor on save
+    private RowEditor currentEditor;
+    private final ObservableSet<ResultRow> dirtyRows = FXCollections.observableSet(new LinkedHashSet<>());
+
     @Override
     public void start(Stage primaryStage) {
         rootLayout = new BorderPane();
@@ -50,7 +98,7 @@ public class dgfx8 extends Application {
         operationButtons.setAlignment(Pos.TOP_LEFT);
         operationButtons.setStyle("-fx-background-color: #f0f0f0; -fx-border-color: #cccccc; -fx-border-width: 0 1 0 0;");
 
-        String[] operations = {"CREATE TABLE", "INSERT RECORD", "DELETE RECORD", "DROP TABLE", "SELECT TABLE", "TRUNCATE TABLE"};
+        String[] operations = {"CREATE TABLE", "INSERT RECORD", "DELETE RECORD", "DROP TABLE", "SELECT TABLE", "TRUNCATE TABLE", "TABLE STATS", "COMPARE TABLES", "INDEX ADVISOR", "SNAPSHOTS", "AGGREGATE", "PERFORMANCE"};
         for (String op : operations) {
             Button btn = new Button(op);
             btn.setMaxWidth(Double.MAX_VALUE); // Make buttons fill width
@@ -81,6 +129,15 @@ public class dgfx8 extends Application {
         primaryStage.setTitle("Enhanced Oracle Database Client");
         primaryStage.show();
 
+        // Report slow statements in the status area as they happen
+        SlowQueryLog slowQueryLog = SlowQueryLog.install();
+        SqlMetrics.get().addListener(record -> {
+            if (slowQueryLog.isSlow(record)) {
+                Platform.runLater(() -> showMessage(String.format("Slow statement (%.0f ms, %s): %s",
+                        record.totalNanos() / 1e6, record.operation, SqlMetrics.fingerprint(record.sql)), true));
+            }
+        });
+
         // Show connection form initially
         showConnectionForm();
     }
@@ -117,6 +174,7 @@ public class dgfx8 extends Application {
 
         Button connectButton = new Button("Connect to Database");
         connectButton.getStyleClass().add("operation-button");
+        connectButton.disableProperty().bind(isConnected);
         connectButton.setOnAction(e -> connectToDatabase());
 
         Button disconnectButton = new Button("Disconnect");
@@ -145,13 +203,22 @@ public class dgfx8 extends Application {
         try {
             // Load Oracle JDBC driver (not strictly necessary for newer JDBC versions but good practice)
             Class.forName("oracle.jdbc.driver.OracleDriver");
-            connection = DriverManager.getConnection(url, user, password);
+            engine = SqlEngine.connect(url, user, password, POOL_SIZE);
+            configureGovernor(engine.getGovernor());
+            // Drop the previous session's listeners before registering new ones
+            closeTableStats();
+            closeIndexAdvisor();
+            closeAggregateCache();
+            tableStats = new TableStats(engine);
+            indexAdvisor = new IndexAdvisor(engine, "dgfx8.");
+            aggregateCache = new AggregateCache(AGGREGATE_CACHE_ENTRIES, AGGREGATE_CACHE_SECONDS * 1000);
+            confirmedLargeTables.clear();
             isConnected.set(true);
             showMessage("Successfully connected to Oracle database!", false);
             contentPane.getChildren().clear(); // Clear connection form
-            // Optionally, show a default view or first table
+            // Start on the statistics dashboard so large tables are visible before anyone opens them
             if (!getAllTableNames().isEmpty()) {
-                showSelectTableForm();
+                showTableStatsPanel();
             } else {
                 showMessage("Connected. No tables found. Create a new table.", false);
             }
@@ -165,9 +232,17 @@ public class dgfx8 extends Application {
     }
 
     private void disconnectFromDatabase() {
-        if (connection != null) {
+        stopPerformanceTimeline();
+        cancelAggregate();
+        closeSpills();
+        closeTableStats();
+        closeIndexAdvisor();
+        closeAggregateCache();
+        closeSnapshot();
+        if (engine != null) {
             try {
-                connection.close();
+                engine.close();
+                engine = null;
                 isConnected.set(false);
                 showMessage("Disconnected from database.", false);
                 contentPane.getChildren().clear();
@@ -186,6 +261,13 @@ public class dgfx8 extends Application {
             return;
         }
 
+        if (!confirmDiscardEdits()) return;
+
+        stopPerformanceTimeline();
+        cancelTableLoad();
+        cancelAggregate();
+        closeSpills(); // The table view they back is going away
+        closeSnapshot();
         contentPane.getChildren().clear(); // Clear previous content
         showMessage("", false); // Clear previous messages
 
@@ -208,9 +290,36 @@ public class dgfx8 extends Application {
             case "TRUNCATE TABLE":
                 showTruncateTableForm();
                 break;
+            case "TABLE STATS":
+                showTableStatsPanel();
+                break;
+            case "COMPARE TABLES":
+                showCompareTablesPanel();
+                break;
+            case "INDEX ADVISOR":
+                showIndexAdvisorPanel();
+                break;
+            case "SNAPSHOTS":
+                showSnapshotPanel();
+                break;
+            case "AGGREGATE":
+                showAggregatePanel();
+                break;
+            case "PERFORMANCE":
+                showPerformancePanel();
+                break;
         }
     }
 
+    // True when there are no unsaved edits or the user agrees to drop them.
+    private boolean confirmDiscardEdits() {
+        if (dirtyRows.isEmpty()) return true;
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION, "Discard " + dirtyRows.size() + " row(s) with unsaved changes?",
+                ButtonType.OK, ButtonType.CANCEL);
+        confirm.setHeaderText(null);
+        return confirm.showAndWait().orElse(ButtonType.CANCEL) == ButtonType.OK;
+    }
+
     // --- UI Forms and Logic for Operations ---
 
     private void showCreateTableForm() {
@@ -324,7 +433,7 @@ public class dgfx8 extends Application {
     }
 
     private void createTable(String tableName, Map<String, String> schema) {
-        if (connection == null) {
+        if (engine == null) {
             showAlert(Alert.AlertType.ERROR, "Database Error", "No active database connection.");
             return;
         }
@@ -342,8 +451,8 @@ public class dgfx8 extends Application {
         }
         sql.append(")");
 
-        try (Statement statement = connection.createStatement()) {
-            statement.executeUpdate(sql.toString());
+        try {
+            engine.executeUpdate("dgfx8.createTable", sql.toString());
             // Store the schema after successful creation in the actual database
             tableSchemas.put(tableName, schema);
             showMessage("Table '" + tableName + "' created successfully in Oracle.", false);
@@ -489,7 +598,7 @@ public class dgfx8 extends Application {
     }
 
     private void insertMultipleRecords(String tableName, Map<String, String> schema, List<List<TextField>> allRecordTextFields) {
-        if (connection == null) {
+        if (engine == null) {
             showAlert(Alert.AlertType.ERROR, "Database Error", "No active database connection.");
             return;
         }
@@ -519,66 +628,54 @@ public class dgfx8 extends Application {
         int failedInserts = 0;
         StringBuilder errorMessages = new StringBuilder();
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql.toString())) {
-            for (int recordIndex = 0; recordIndex < allRecordTextFields.size(); recordIndex++) {
-                List<TextField> recordTextFields = allRecordTextFields.get(recordIndex);
-                boolean rowHasError = false;
-                int fieldParamIndex = 1; // JDBC parameters are 1-indexed
-
-                int fieldListIndex = 0;
-                String currentBaseType = ""; // Initialize baseType here to ensure it's always in scope
-                for (Map.Entry<String, String> entry : schema.entrySet()) {
-                    String fieldName = entry.getKey();
-                    String fieldType = entry.getValue(); // Oracle SQL type (e.g., VARCHAR2, NUMBER)
-                    String inputValue = recordTextFields.get(fieldListIndex).getText().trim();
-
-                    try {
-                        // Determine the base type for conversion (e.g., VARCHAR from VARCHAR(255))
-                        currentBaseType = fieldType.split("\\(")[0].trim(); // Assign to the initialized variable
-                        Object convertedValue = convertType(inputValue, currentBaseType);
-
-                        if (convertedValue == null) {
-                            pstmt.setNull(fieldParamIndex, getSqlType(currentBaseType));
-                        } else {
-                            // Oracle specific type handling
-                            if (currentBaseType.equalsIgnoreCase("VARCHAR")) {
-                                pstmt.setString(fieldParamIndex, (String) convertedValue);
-                            } else if (currentBaseType.equalsIgnoreCase("NUMBER") || currentBaseType.equalsIgnoreCase("INT")) {
-                                pstmt.setInt(fieldParamIndex, (Integer) convertedValue);
-                            } else if (currentBaseType.equalsIgnoreCase("DOUBLE") || currentBaseType.equalsIgnoreCase("DOUBLE PRECISION")) {
-                                pstmt.setDouble(fieldParamIndex, (Double) convertedValue);
-                            } else if (currentBaseType.equalsIgnoreCase("CHAR")) { // For BOOLEAN represented as CHAR(1)
-                                pstmt.setString(fieldParamIndex, (String) convertedValue);
-                            } else {
-                                // Default or more specific handling if needed
-                                pstmt.setObject(fieldParamIndex, convertedValue);
-                            }
-                        }
-                    } catch (NumberFormatException ex) {
-                        errorMessages.append("Record ").append(recordIndex + 1).append(", Field '").append(fieldName).append("': Invalid number format. Expected ").append(currentBaseType).append(".\n"); // Use currentBaseType
-                        rowHasError = true;
-                        break;
-                    } catch (IllegalArgumentException ex) {
-                        errorMessages.append("Record ").append(recordIndex + 1).append(", Field '").append(fieldName)
-                                .append("': ").append(ex.getMessage()).append(".\n");
-                        rowHasError = true;
-                        break;
-                    }
-                    fieldParamIndex++;
-                    fieldListIndex++;
+        // Convert every record up front, then send the valid ones as one batch
+        List<Object[]> batchRows = new ArrayList<>();
+        List<Integer> batchRecordIndexes = new ArrayList<>();
+        for (int recordIndex = 0; recordIndex < allRecordTextFields.size(); recordIndex++) {
+            List<TextField> recordTextFields = allRecordTextFields.get(recordIndex);
+            Object[] params = new Object[schema.size()];
+            boolean rowHasError = false;
+
+            int fieldListIndex = 0;
+            String currentBaseType = ""; // Initialize baseType here to ensure it's always in scope
+            for (Map.Entry<String, String> entry : schema.entrySet()) {
+                String fieldName = entry.getKey();
+                String fieldType = entry.getValue(); // Oracle SQL type (e.g., VARCHAR2, NUMBER)
+                String inputValue = recordTextFields.get(fieldListIndex).getText().trim();
+
+                try {
+                    // Determine the base type for conversion (e.g., VARCHAR from VARCHAR(255))
+                    currentBaseType = fieldType.split("\\(")[0].trim(); // Assign to the initialized variable
+                    Object convertedValue = convertType(inputValue, currentBaseType);
+                    params[fieldListIndex] = convertedValue != null ? convertedValue : SqlEngine.nullOf(getSqlType(currentBaseType));
+                } catch (NumberFormatException ex) {
+                    errorMessages.append("Record ").append(recordIndex + 1).append(", Field '").append(fieldName).append("': Invalid number format. Expected ").append(currentBaseType).append(".\n"); // Use currentBaseType
+                    rowHasError = true;
+                    break;
+                } catch (IllegalArgumentException ex) {
+                    errorMessages.append("Record ").append(recordIndex + 1).append(", Field '").append(fieldName)
+                            .append("': ").append(ex.getMessage()).append(".\n");
+                    rowHasError = true;
+                    break;
                 }
+                fieldListIndex++;
+            }
 
-                if (!rowHasError) {
-                    try {
-                        pstmt.executeUpdate();
-                        successfulInserts++;
-                    } catch (SQLException ex) {
-                        errorMessages.append("Record ").append(recordIndex + 1).append(": Database error during insertion: ").append(ex.getMessage()).append("\n");
-                        failedInserts++;
-                    }
-                } else {
-                    failedInserts++;
-                }
+            if (!rowHasError) {
+                batchRows.add(params);
+                batchRecordIndexes.add(recordIndex);
+            } else {
+                failedInserts++;
+            }
+        }
+
+        try {
+            SqlEngine.BatchResult result = engine.executeBatch("dgfx8.insertMultipleRecords", sql.toString(), batchRows);
+            successfulInserts = result.successCount();
+            for (Map.Entry<Integer, String> error : result.errors.entrySet()) {
+                int recordIndex = batchRecordIndexes.get(error.getKey());
+                errorMessages.append("Record ").append(recordIndex + 1).append(": Database error during insertion: ").append(error.getValue()).append("\n");
+                failedInserts++;
             }
         } catch (SQLException e) {
             showAlert(Alert.AlertType.ERROR, "SQL Preparation Error", "Failed to prepare insert statement: " + e.getMessage());
@@ -667,7 +764,7 @@ public class dgfx8 extends Application {
 
         Button deleteSelectedButton = new Button("Delete Selected Records");
         deleteSelectedButton.disableProperty().bind(tableChoiceBox.valueProperty().isNull());
-        TableView<Map<String, Object>> checkboxTableView = new TableView<>(); // Will be populated dynamically
+        TableView<ResultRow> checkboxTableView = new TableView<>(); // Will be populated dynamically
         checkboxTableView.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
         checkboxTableView.setPlaceholder(new Label("Select a table to load records for checkbox deletion."));
 
@@ -709,101 +806,153 @@ public class dgfx8 extends Application {
         contentPane.getChildren().add(formContainer);
     }
 
-    private void populateCheckboxTableView(String tableName, TableView<Map<String, Object>> tableView) {
-        if (connection == null) {
+    private void populateCheckboxTableView(String tableName, TableView<ResultRow> tableView) {
+        if (engine == null) {
             showAlert(Alert.AlertType.ERROR, "Database Error", "No active database connection.");
             return;
         }
 
         tableView.getColumns().clear();
         tableView.getItems().clear();
+        if (!confirmLargeTable(tableName)) {
+            tableView.setPlaceholder(new Label("Table '" + tableName + "' was not loaded because of its size."));
+            return;
+        }
 
-        ObservableList<Map<String, Object>> tableData = FXCollections.observableArrayList();
-
-        try (Statement statement = connection.createStatement();
-             ResultSet rs = statement.executeQuery("SELECT * FROM " + tableName)) {
-
-            ResultSetMetaData rsmd = rs.getMetaData();
-            int columnCount = rsmd.getColumnCount();
+        // Loaded like createTableView: off the FX thread, cancellable, dropped if replaced
+        cancelTableLoad();
+        long generation = tableLoadGeneration;
+        SqlEngine loadEngine = engine;
+        QueryGovernor.Ticket ticket = loadEngine.getGovernor().newTicket();
+        currentTableLoad = ticket;
+        Button cancelButton = new Button("Cancel");
+        cancelButton.setOnAction(e -> ticket.cancel());
+        VBox loadingBox = new VBox(8, new Label("Loading '" + tableName + "'..."), cancelButton);
+        loadingBox.setAlignment(Pos.CENTER);
+        tableView.setPlaceholder(loadingBox);
+
+        List<ResultRow> tableData = new ArrayList<>();
+        String[][] header = new String[1][];
+        Task<SqlEngine.ExecutionResult> loadTask = new Task<SqlEngine.ExecutionResult>() {
+            @Override
+            protected SqlEngine.ExecutionResult call() throws SQLException {
+                return loadEngine.query(ticket, "dgfx8.populateCheckboxTableView", "SELECT * FROM " + tableName, new SqlEngine.RowHandler() {
+                    @Override
+                    public void columns(String[] names, String[] typeNames) {
+                        header[0] = names;
+                    }
 
-            // Add checkbox column
-            TableColumn<Map<String, Object>, Boolean> selectColumn = new TableColumn<>("Select");
-            selectColumn.setCellValueFactory(param -> {
-                // Each row needs a BooleanProperty for its checkbox state
-                // Store this BooleanProperty within the row map itself or a separate tracking map
-                // For simplicity here, let's assume we add a "selected" property to each map
-                Map<String, Object> row = param.getValue();
-                if (!row.containsKey("__SELECTED__")) {
-                    row.put("__SELECTED__", new SimpleBooleanProperty(false));
-                }
-                return (BooleanProperty) row.get("__SELECTED__");
-            });
-            selectColumn.setCellFactory(tc -> new TableCell<Map<String, Object>, Boolean>() {
-                private final CheckBox checkBox = new CheckBox();
-                {
-                    checkBox.setOnAction(event -> {
-                        Map<String, Object> row = (Map<String, Object>) getTableRow().getItem();
-                        if (row != null) {
-                            ((SimpleBooleanProperty) row.get("__SELECTED__")).set(checkBox.isSelected());
-                        }
-                    });
-                }
-                @Override
-                protected void updateItem(Boolean item, boolean empty) {
-                    super.updateItem(item, empty);
-                    if (empty) {
-                        setGraphic(null);
-                    } else {
-                        checkBox.setSelected(item != null && item);
-                        setGraphic(checkBox);
+                    @Override
+                    public boolean row(Object[] values) {
+                        // Selection state is created lazily by the select column
+                        tableData.add(new ResultRow(header[0], values));
+                        return true;
                     }
-                }
-            });
-            selectColumn.setPrefWidth(50);
-            selectColumn.setMinWidth(50);
-            selectColumn.setResizable(false);
-            tableView.getColumns().add(selectColumn);
-
-            // Add data columns
-            for (int i = 1; i <= columnCount; i++) {
-                String columnName = rsmd.getColumnName(i);
-                TableColumn<Map<String, Object>, String> column = new TableColumn<>(columnName);
-                column.setCellValueFactory(cellData -> {
-                    Object value = cellData.getValue().get(columnName);
-                    return new SimpleStringProperty(value != null ? value.toString() : "NULL");
                 });
-                tableView.getColumns().add(column);
             }
+        };
+        loadTask.setOnSucceeded(event -> {
+            if (generation != tableLoadGeneration) return; // Another table or panel replaced this one
+            currentTableLoad = null;
+            SqlEngine.ExecutionResult result = loadTask.getValue();
+            tableView.setPlaceholder(new Label("No records in this table."));
+            if (header[0] != null) addCheckboxColumns(tableView, header[0]);
+            tableView.setItems(FXCollections.observableArrayList(tableData));
+            if (!result.complete()) {
+                showMessage("Showing the first " + result.rows + " rows of '" + tableName + "': "
+                        + result.trip.describe() + " (partial result).", true);
+            }
+        });
+        loadTask.setOnFailed(event -> {
+            if (generation != tableLoadGeneration) return;
+            currentTableLoad = null;
+            tableView.setPlaceholder(new Label("Could not load '" + tableName + "'."));
+            showAlert(Alert.AlertType.ERROR, "SQL Error", "Failed to retrieve table data for checkbox deletion from '" + tableName + "': "
+                    + loadTask.getException().getMessage());
+        });
+        Thread loadThread = new Thread(loadTask, "dgfx8-checkbox-load");
+        loadThread.setDaemon(true);
+        loadThread.start();
+    }
 
-            // Populate table data
-            while (rs.next()) {
-                Map<String, Object> row = new LinkedHashMap<>();
-                for (int i = 1; i <= columnCount; i++) {
-                    String columnName = rsmd.getColumnName(i);
-                    Object value = rs.getObject(i);
-                    row.put(columnName, value);
+    private void addCheckboxColumns(TableView<ResultRow> tableView, String[] columnNames) {
+        // Add checkbox column, backed by the row's own selection property
+        TableColumn<ResultRow, Boolean> selectColumn = new TableColumn<>("Select");
+        selectColumn.setCellValueFactory(param -> param.getValue().selectedProperty());
+        selectColumn.setCellFactory(tc -> new TableCell<ResultRow, Boolean>() {
+            private final CheckBox checkBox = new CheckBox();
+            {
+                checkBox.setOnAction(event -> {
+                    ResultRow row = getTableRow().getItem();
+                    if (row != null) {
+                        row.selectedProperty().set(checkBox.isSelected());
+                    }
+                });
+            }
+            @Override
+            protected void updateItem(Boolean item, boolean empty) {
+                super.updateItem(item, empty);
+                if (empty) {
+                    setGraphic(null);
+                } else {
+                    checkBox.setSelected(item != null && item);
+                    setGraphic(checkBox);
                 }
-                // Initialize the selection property for each row
-                row.put("__SELECTED__", new SimpleBooleanProperty(false));
-                tableData.add(row);
             }
-            tableView.setItems(tableData);
+        });
+        selectColumn.setPrefWidth(50);
+        selectColumn.setMinWidth(50);
+        selectColumn.setResizable(false);
+        tableView.getColumns().add(selectColumn);
 
-        } catch (SQLException e) {
-            showAlert(Alert.AlertType.ERROR, "SQL Error", "Failed to retrieve table data for checkbox deletion from '" + tableName + "': " + e.getMessage());
+        // Add data columns
+        addTextColumns(tableView, columnNames);
+    }
+
+    // Index-based text columns sharing one display cache per table view.
+    private void addTextColumns(TableView<ResultRow> tableView, String[] columnNames) {
+        addTextColumns(tableView, columnNames, null);
+    }
+
+    // With an editor, non-key columns edit in place and edited rows are tracked in dirtyRows.
+    // The hidden ORA_ROWSCN column is never shown.
+    private void addTextColumns(TableView<ResultRow> tableView, String[] columnNames, RowEditor editor) {
+        RowCells.DisplayCache displayCache = new RowCells.DisplayCache(RowCells.DEFAULT_CACHED_ROWS);
+        RowCells.CellEditor cellEditor = editor == null ? null : new RowCells.CellEditor() {
+            @Override
+            public Object parse(int column, String text) {
+                return editor.parse(column, text);
+            }
+
+            @Override
+            public void edited(ResultRow row, int column, IllegalArgumentException rejected) {
+                if (rejected != null) {
+                    showMessage(rejected.getMessage(), true);
+                } else if (row.isDirty()) {
+                    dirtyRows.add(row);
+                } else {
+                    dirtyRows.remove(row);
+                }
+            }
+        };
+        for (int i = 0; i < columnNames.length; i++) {
+            if (RowEditor.ROWSCN_COLUMN.equals(columnNames[i])) continue;
+            tableView.getColumns().add(cellEditor != null && editor.isEditable(i)
+                    ? RowCells.editableTextColumn(columnNames[i], i, displayCache, cellEditor)
+                    : RowCells.textColumn(columnNames[i], i, displayCache));
         }
     }
 
 
-    private void deleteRecordByCheckbox(String tableName, TableView<Map<String, Object>> tableView) {
-        if (connection == null) {
+    private void deleteRecordByCheckbox(String tableName, TableView<ResultRow> tableView) {
+        if (engine == null) {
             showAlert(Alert.AlertType.ERROR, "Database Error", "No active database connection.");
             return;
         }
 
-        ObservableList<Map<String, Object>> selectedRecords = tableView.getItems().stream()
-                .filter(row -> ((SimpleBooleanProperty) row.get("__SELECTED__")).get())
-                .collect(Collectors.toCollection(FXCollections::observableArrayList));
+        List<ResultRow> selectedRecords = tableView.getItems().stream()
+                .filter(ResultRow::isSelected)
+                .collect(Collectors.toList());
 
         if (selectedRecords.isEmpty()) {
             showAlert(Alert.AlertType.WARNING, "No Selection", "No records selected for deletion. Please select at least one record.");
@@ -834,58 +983,34 @@ public class dgfx8 extends Application {
 
         int successfulDeletions = 0;
         int failedDeletions = 0;
+        int unknownDeletions = 0;
         StringBuilder errorMessages = new StringBuilder();
 
-        try (PreparedStatement pstmt = connection.prepareStatement(deleteSql)) {
-            for (Map<String, Object> record : selectedRecords) {
-                int paramIndex = 1;
-                boolean currentRecordHasError = false;
-                for (String columnName : columnNames) {
-                    String columnType = schema.get(columnName);
-                    Object value = record.get(columnName); // This value is already the Object from the ResultSet
-
-                    try {
-                        String baseType = columnType.split("\\(")[0].trim();
-                        if (value == null) {
-                            pstmt.setNull(paramIndex, getSqlType(baseType));
-                        } else {
-                            // Convert the object back to its appropriate JDBC type for PreparedStatement
-                            if (baseType.equalsIgnoreCase("VARCHAR")) {
-                                pstmt.setString(paramIndex, value.toString());
-                            } else if (baseType.equalsIgnoreCase("NUMBER") || baseType.equalsIgnoreCase("INT")) {
-                                pstmt.setInt(paramIndex, ((Number) value).intValue());
-                            } else if (baseType.equalsIgnoreCase("DOUBLE") || baseType.equalsIgnoreCase("DOUBLE PRECISION")) {
-                                pstmt.setDouble(paramIndex, ((Number) value).doubleValue());
-                            } else if (baseType.equalsIgnoreCase("CHAR")) {
-                                pstmt.setString(paramIndex, value.toString());
-                            } else {
-                                pstmt.setObject(paramIndex, value);
-                            }
-                        }
-                    } catch (SQLException e) {
-                        errorMessages.append("Failed to set parameter for column '").append(columnName)
-                                .append("': ").append(e.getMessage()).append("\n");
-                        currentRecordHasError = true;
-                        break;
-                    }
-                    paramIndex++;
-                }
+        List<Object[]> batchRows = new ArrayList<>();
+        for (ResultRow record : selectedRecords) {
+            Object[] params = new Object[columnNames.size()];
+            int paramIndex = 0;
+            for (String columnName : columnNames) {
+                String baseType = schema.get(columnName).split("\\(")[0].trim();
+                Object value = record.get(columnName); // This value is already the Object from the ResultSet
+                params[paramIndex++] = value != null ? value : SqlEngine.nullOf(getSqlType(baseType));
+            }
+            batchRows.add(params);
+        }
 
-                if (!currentRecordHasError) {
-                    try {
-                        int rowsAffected = pstmt.executeUpdate();
-                        if (rowsAffected > 0) {
-                            successfulDeletions++;
-                        } else {
-                            failedDeletions++;
-                            errorMessages.append("No record deleted for selected row (possibly not found or duplicate in table).\n");
-                        }
-                    } catch (SQLException e) {
-                        failedDeletions++;
-                        errorMessages.append("Database error during deletion for a record: ").append(e.getMessage()).append("\n");
-                    }
+        try {
+            SqlEngine.BatchResult result = engine.executeBatch("dgfx8.deleteRecordByCheckbox", deleteSql, batchRows);
+            for (int i = 0; i < batchRows.size(); i++) {
+                if (result.errors.containsKey(i)) {
+                    failedDeletions++;
+                    errorMessages.append("Database error during deletion for a record: ").append(result.errors.get(i)).append("\n");
+                } else if (result.isUnknown(i)) {
+                    unknownDeletions++; // The driver ran the row but did not say whether it matched
+                } else if (result.updateCounts[i] > 0) {
+                    successfulDeletions++;
                 } else {
                     failedDeletions++;
+                    errorMessages.append("No record deleted for selected row (possibly not found or duplicate in table).\n");
                 }
             }
         } catch (SQLException e) {
@@ -896,6 +1021,10 @@ public class dgfx8 extends Application {
         if (successfulDeletions > 0) {
             showMessage(successfulDeletions + " record(s) deleted from '" + tableName + "' successfully.", false);
         }
+        if (unknownDeletions > 0) {
+            showMessage(successfulDeletions + " record(s) deleted from '" + tableName + "'; " + unknownDeletions
+                    + " more ran but the driver did not report whether a row matched (check the refreshed table).", false);
+        }
         if (failedDeletions > 0) {
             showAlert(Alert.AlertType.WARNING, "Deletion Errors",
                     failedDeletions + " record(s) failed to delete due to:\n" + errorMessages.toString());
@@ -907,7 +1036,7 @@ public class dgfx8 extends Application {
 
 
     private void deleteRecordByCondition(String tableName, String criteria) {
-        if (connection == null) {
+        if (engine == null) {
             showAlert(Alert.AlertType.ERROR, "Database Error", "No active database connection.");
             return;
         }
@@ -948,24 +1077,9 @@ public class dgfx8 extends Application {
 
         String sql = "DELETE FROM " + tableName + " WHERE " + fieldName + " = ?";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            if (expectedValue == null) {
-                pstmt.setNull(1, getSqlType(baseType));
-            } else {
-                // Oracle specific type handling for setting parameter
-                if (baseType.equalsIgnoreCase("VARCHAR")) {
-                    pstmt.setString(1, (String) expectedValue);
-                } else if (baseType.equalsIgnoreCase("NUMBER") || baseType.equalsIgnoreCase("INT")) {
-                    pstmt.setInt(1, (Integer) expectedValue);
-                } else if (baseType.equalsIgnoreCase("DOUBLE") || baseType.equalsIgnoreCase("DOUBLE PRECISION")) {
-                    pstmt.setDouble(1, (Double) expectedValue);
-                } else if (baseType.equalsIgnoreCase("CHAR")) { // For BOOLEAN represented as CHAR(1)
-                    pstmt.setString(1, (String) expectedValue);
-                } else {
-                    pstmt.setObject(1, expectedValue);
-                }
-            }
-            int deletedRows = pstmt.executeUpdate();
+        try {
+            Object param = expectedValue != null ? expectedValue : SqlEngine.nullOf(getSqlType(baseType));
+            int deletedRows = engine.executeUpdate("dgfx8.deleteRecordByCondition", sql, param);
             if (deletedRows > 0) {
                 showMessage(deletedRows + " record(s) deleted from '" + tableName + "' matching condition '" + criteria + "'.", false);
             } else {
@@ -979,9 +1093,131 @@ public class dgfx8 extends Application {
     }
 
     private void showDropTableForm() {
+        showMaintenanceForm(TableMaintenance.Action.DROP);
+    }
+
+    private void showTruncateTableForm() {
+        showMaintenanceForm(TableMaintenance.Action.TRUNCATE);
+    }
+
+    // Multi-select TRUNCATE / DROP. Foreign keys decide the order, independent tables run in
+    // parallel on pooled connections, and every table reports its own outcome and timing.
+    private void showMaintenanceForm(TableMaintenance.Action action) {
+        boolean drop = action == TableMaintenance.Action.DROP;
+        List<String> currentTables = getAllTableNames();
+        if (currentTables.isEmpty()) {
+            showMessage("No tables available in the database to " + (drop ? "drop." : "truncate."), true);
+            return;
+        }
+
+        VBox formContainer = new VBox(10);
+        formContainer.setPadding(new Insets(20));
+        formContainer.setAlignment(Pos.TOP_LEFT);
+        formContainer.getStyleClass().add("form-panel");
+
+        Label selectTableLabel = new Label(drop ? "Select Tables to Drop:" : "Select Tables to Truncate:");
+        ListView<String> tableListView = new ListView<>(FXCollections.observableArrayList(currentTables));
+        tableListView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        tableListView.setPrefSize(300, 200);
+        Button selectAllButton = new Button("Select All");
+        selectAllButton.setOnAction(e -> tableListView.getSelectionModel().selectAll());
+        formContainer.getChildren().addAll(selectTableLabel, tableListView, selectAllButton);
+
+        CheckBox cascadeCheckBox = new CheckBox("CASCADE CONSTRAINTS (also drops foreign keys on unselected tables)");
+        if (drop) formContainer.getChildren().add(cascadeCheckBox);
+
+        BooleanProperty running = new SimpleBooleanProperty(false);
+        Button runButton = new Button(drop ? "Drop Tables" : "Truncate Tables");
+        runButton.disableProperty().bind(Bindings.isEmpty(tableListView.getSelectionModel().getSelectedItems()).or(running));
+        formContainer.getChildren().add(runButton);
+
+        TableView<TableMaintenance.TableResult> resultsView = new TableView<>();
+        resultsView.setPrefHeight(300);
+        resultsView.getColumns().add(resultColumn("Table", r -> r.table));
+        resultsView.getColumns().add(resultColumn("Step", r -> r.step));
+        resultsView.getColumns().add(resultColumn("Level", r -> r.level < 0 ? "" : String.valueOf(r.level)));
+        resultsView.getColumns().add(resultColumn("Status", r -> r.succeeded ? "OK" : "SKIPPED".equals(r.step) ? "SKIPPED" : "FAILED"));
+        resultsView.getColumns().add(resultColumn("Time (ms)", r -> String.valueOf(r.millis)));
+        resultsView.getColumns().add(resultColumn("Message", r -> r.message));
+        formContainer.getChildren().add(resultsView);
+
+        runButton.setOnAction(e -> {
+            List<String> selectedTables = new ArrayList<>(tableListView.getSelectionModel().getSelectedItems());
+            Alert confirm = new Alert(Alert.AlertType.CONFIRMATION,
+                    (drop ? "Drop " : "Truncate ") + selectedTables.size() + " table(s)? This cannot be undone.",
+                    ButtonType.OK, ButtonType.CANCEL);
+            confirm.setHeaderText(null);
+            if (confirm.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) return;
+            runMaintenance(action, selectedTables, cascadeCheckBox.isSelected(), resultsView, running, tableListView);
+        });
+        contentPane.getChildren().add(formContainer);
+    }
+
+    private static <T> TableColumn<T, String> resultColumn(String title, java.util.function.Function<T, String> value) {
+        TableColumn<T, String> column = new TableColumn<>(title);
+        column.setCellValueFactory(cellData -> new SimpleStringProperty(value.apply(cellData.getValue())));
+        return column;
+    }
+
+    private void runMaintenance(TableMaintenance.Action action, List<String> tables, boolean cascade,
+                                TableView<TableMaintenance.TableResult> resultsView, BooleanProperty running,
+                                ListView<String> tableListView) {
+        if (engine == null) {
+            showAlert(Alert.AlertType.ERROR, "Database Error", "No active database connection.");
+            return;
+        }
+        TableMaintenance maintenance = new TableMaintenance(engine);
+        resultsView.getItems().clear();
+        running.set(true);
+        long start = System.nanoTime();
+
+        Task<List<TableMaintenance.TableResult>> task = new Task<List<TableMaintenance.TableResult>>() {
+            @Override
+            protected List<TableMaintenance.TableResult> call() throws SQLException {
+                TableMaintenance.Plan plan = maintenance.plan(action, tables, cascade);
+                return maintenance.run(plan, result -> Platform.runLater(() -> resultsView.getItems().add(result)));
+            }
+        };
+        task.setOnSucceeded(event -> {
+            running.set(false);
+            long failed = 0;
+            for (TableMaintenance.TableResult result : task.getValue()) {
+                if (!result.succeeded) failed++;
+                if (result.succeeded && result.step.startsWith("DROP")) tableSchemas.remove(result.table); // Remove from cache
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            showMessage(String.format("%s %d table(s) in %d ms, %d problem(s).",
+                    action == TableMaintenance.Action.DROP ? "Dropped" : "Truncated",
+                    tables.size(), millis, failed), failed > 0);
+            if (action == TableMaintenance.Action.DROP) {
+                tableListView.getItems().setAll(getAllTableNames());
+            }
+            StringBuilder constraints = new StringBuilder();
+            for (TableMaintenance.TableResult result : task.getValue()) {
+                if (!result.succeeded && "ENABLE CONSTRAINTS".equals(result.step)) {
+                    constraints.append(result.table).append(": ").append(result.message).append("\n");
+                }
+            }
+            if (constraints.length() > 0) {
+                showAlert(Alert.AlertType.WARNING, "Foreign Keys Not Restored",
+                        "Some foreign keys could not be re-enabled with validation:\n" + constraints);
+            }
+        });
+        task.setOnFailed(event -> {
+            running.set(false);
+            showAlert(Alert.AlertType.ERROR, "SQL Error", "Table maintenance failed: " + task.getException().getMessage());
+        });
+        Thread maintenanceThread = new Thread(task, "dgfx8-maintenance");
+        maintenanceThread.setDaemon(true);
+        maintenanceThread.start();
+        showMessage((action == TableMaintenance.Action.DROP ? "Dropping " : "Truncating ") + tables.size() + " table(s)...", false);
+    }
+
+
+    private void showSelectTableForm() {
         List<String> currentTables = getAllTableNames();
         if (currentTables.isEmpty()) {
-            showMessage("No tables available in the database to drop.", true);
+            showMessage("No tables available in the database to select. Please create a table first.", true);
             return;
         }
 
@@ -990,55 +1226,183 @@ public class dgfx8 extends Application {
         formContainer.setAlignment(Pos.TOP_LEFT);
         formContainer.getStyleClass().add("form-panel");
 
-        Label selectTableLabel = new Label("Select Table to Drop:");
+        Label selectTableLabel = new Label("Select Table to View:");
         ChoiceBox<String> tableChoiceBox = new ChoiceBox<>(FXCollections.observableArrayList(currentTables));
         tableChoiceBox.setPrefWidth(200);
         formContainer.getChildren().addAll(selectTableLabel, tableChoiceBox);
 
-        Button dropTableButton = new Button("Drop Table");
-        dropTableButton.setDisable(true); // Disable until a table is selected
-        formContainer.getChildren().add(dropTableButton);
+        // Add a placeholder for the table view which will be populated dynamically
+        StackPane tableViewContainer = new StackPane();
+        tableViewContainer.setPadding(new Insets(10, 0, 0, 0));
+        formContainer.getChildren().add(tableViewContainer);
 
+        boolean[] reverting = {false};
         tableChoiceBox.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newTableName) -> {
-            dropTableButton.setDisable(newTableName == null);
-        });
-
-        dropTableButton.setOnAction(e -> {
-            String selectedTable = tableChoiceBox.getValue();
-            if (selectedTable == null) {
-                showAlert(Alert.AlertType.ERROR, "Input Error", "Please select a table to drop.");
+            if (reverting[0]) return; // Back on the table whose edits were kept
+            if (!confirmDiscardEdits()) {
+                Platform.runLater(() -> {
+                    reverting[0] = true;
+                    tableChoiceBox.getSelectionModel().select(oldVal);
+                    reverting[0] = false;
+                });
                 return;
             }
-            dropTable(selectedTable);
+            tableViewContainer.getChildren().clear(); // Clear previous table view
+            if (newTableName != null) {
+                TableView<ResultRow> tableView = createTableView(newTableName);
+                if (tableView != null) {
+                    tableViewContainer.getChildren().add(withEditBar(tableView));
+                } else {
+                    showMessage("Table '" + newTableName + "' has no schema or data. Cannot display.", true);
+                }
+            }
         });
         contentPane.getChildren().add(formContainer);
     }
 
-    private void dropTable(String tableName) {
-        if (connection == null) {
-            showAlert(Alert.AlertType.ERROR, "Database Error", "No active database connection.");
+    // Row counts, sizes and DML activity for every table, filled in as each source returns.
+    // Double-clicking a table opens it (through the huge-table check).
+    private void showTableStatsPanel() {
+        List<String> currentTables = getAllTableNames();
+        if (currentTables.isEmpty()) {
+            showMessage("No tables available in the database.", true);
             return;
         }
-        if (!getAllTableNames().contains(tableName)) {
-            showAlert(Alert.AlertType.ERROR, "Error", "Table '" + tableName + "' not found in the database.");
+
+        VBox formContainer = new VBox(10);
+        formContainer.setPadding(new Insets(20));
+        formContainer.setAlignment(Pos.TOP_LEFT);
+        formContainer.getStyleClass().add("form-panel");
+
+        ObservableList<TableStats.Stats> rows = FXCollections.observableArrayList();
+        Map<String, Integer> rowIndex = new HashMap<>();
+        for (String table : currentTables) {
+            rowIndex.put(table, rows.size());
+            rows.add(TableStats.Stats.empty(table));
+        }
+        TableView<TableStats.Stats> statsView = new TableView<>(rows);
+        statsView.setPrefHeight(400);
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        statsView.getColumns().add(resultColumn("Table", s -> s.table));
+        statsView.getColumns().add(countColumn("Est. Rows", s -> s.estimatedRows));
+        statsView.getColumns().add(countColumn("Exact Rows", s -> s.exactRows));
+        TableColumn<TableStats.Stats, Long> sizeColumn = countColumn("Size", s -> s.segmentBytes);
+        sizeColumn.setCellFactory(column -> new TableCell<TableStats.Stats, Long>() {
+            @Override
+            protected void updateItem(Long bytes, boolean empty) {
+                super.updateItem(bytes, empty);
+                setText(empty || bytes == null ? null : TableStats.formatBytes(bytes));
+            }
+        });
+        statsView.getColumns().add(sizeColumn);
+        statsView.getColumns().add(resultColumn("Last Analyzed", s -> s.lastAnalyzed == null ? "" : dateFormat.format(s.lastAnalyzed)));
+        statsView.getColumns().add(resultColumn("Last DML", s -> s.lastDml == null ? "" : dateFormat.format(s.lastDml)));
+        statsView.getColumns().add(countColumn("Modifications", s -> s.modifications));
+        statsView.setRowFactory(view -> {
+            TableRow<TableStats.Stats> row = new TableRow<>();
+            row.setOnMouseClicked(e -> {
+                if (e.getClickCount() == 2 && !row.isEmpty()) displayTable(row.getItem().table);
+            });
+            return row;
+        });
+
+        java.util.function.Consumer<TableStats.Stats> listener = stats -> Platform.runLater(() -> {
+            Integer index = rowIndex.get(stats.table);
+            if (index != null) rows.set(index, stats);
+        });
+        BooleanProperty running = new SimpleBooleanProperty(false);
+        Label progressLabel = new Label();
+        Button refreshButton = new Button("Refresh");
+        refreshButton.disableProperty().bind(running);
+        refreshButton.setOnAction(e -> runTableStats(false, currentTables, listener, running, progressLabel));
+        Button countButton = new Button("Count Rows Exactly");
+        countButton.disableProperty().bind(running);
+        countButton.setOnAction(e -> runTableStats(true, currentTables, listener, running, progressLabel));
+        HBox buttonBox = new HBox(10, refreshButton, countButton, progressLabel);
+        buttonBox.setAlignment(Pos.CENTER_LEFT);
+
+        formContainer.getChildren().addAll(buttonBox, statsView);
+        contentPane.getChildren().add(formContainer);
+        runTableStats(false, currentTables, listener, running, progressLabel);
+    }
+
+    private static <T> TableColumn<T, Long> countColumn(String title, java.util.function.Function<T, Long> value) {
+        TableColumn<T, Long> column = new TableColumn<>(title);
+        column.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(value.apply(cellData.getValue())));
+        return column;
+    }
+
+    private void runTableStats(boolean exact, List<String> tables, java.util.function.Consumer<TableStats.Stats> listener,
+                               BooleanProperty running, Label progressLabel) {
+        if (tableStats == null) {
+            showAlert(Alert.AlertType.ERROR, "Database Error", "No active database connection.");
             return;
         }
+        TableStats stats = tableStats;
+        running.set(true);
+        long start = System.nanoTime();
+        progressLabel.setText(exact ? "Counting rows in " + tables.size() + " tables..." : "Reading dictionary statistics...");
+
+        Task<Void> task = new Task<Void>() {
+            @Override
+            protected Void call() throws SQLException {
+                if (exact) {
+                    stats.countExactly(tables, listener);
+                } else {
+                    stats.refresh(tables, listener);
+                }
+                return null;
+            }
+        };
+        task.setOnSucceeded(event -> {
+            running.set(false);
+            progressLabel.setText(String.format("%s for %d tables in %d ms.", exact ? "Exact counts" : "Statistics",
+                    tables.size(), (System.nanoTime() - start) / 1_000_000));
+        });
+        task.setOnFailed(event -> {
+            running.set(false);
+            progressLabel.setText("");
+            showAlert(Alert.AlertType.ERROR, "SQL Error", "Failed to read table statistics: " + task.getException().getMessage());
+        });
+        Thread statsThread = new Thread(task, "dgfx8-table-stats");
+        statsThread.setDaemon(true);
+        statsThread.start();
+    }
 
-        String sql = "DROP TABLE " + tableName;
-        try (Statement statement = connection.createStatement()) {
-            statement.executeUpdate(sql);
-            tableSchemas.remove(tableName); // Remove from cache
-            showMessage("Table '" + tableName + "' dropped successfully from Oracle.", false);
-            contentPane.getChildren().clear(); // Clear the form after success
-        } catch (SQLException e) {
-            showAlert(Alert.AlertType.ERROR, "SQL Error", "Failed to drop table '" + tableName + "': " + e.getMessage());
+    // Asks before a view pulls a huge table (by row estimate or segment size) into the client.
+    // Answered once per table per session; without dictionary access tables load as before.
+    private boolean confirmLargeTable(String tableName) {
+        if (tableStats == null || confirmedLargeTables.contains(tableName)) return true;
+        TableStats.Stats stats = tableStats.get(tableName);
+        if (stats == null || (stats.rows() == null && stats.segmentBytes == null)) {
+            try {
+                stats = tableStats.estimate(tableName);
+            } catch (SQLException e) {
+                return true;
+            }
+            if (stats == null) return true;
         }
+        Long rows = stats.rows();
+        Long bytes = stats.segmentBytes;
+        boolean huge = (rows != null && rows >= HUGE_TABLE_ROWS) || (bytes != null && bytes >= HUGE_TABLE_BYTES);
+        if (!huge) return true;
+
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION, String.format(
+                "Table '%s' has about %s rows (%s). Loading it can take a long time; rows beyond %,d are spilled to disk.%nLoad it anyway?",
+                tableName, rows == null ? "?" : String.format("%,d", rows), bytes == null ? "size unknown" : TableStats.formatBytes(bytes),
+                SPILL_THRESHOLD_ROWS), ButtonType.OK, ButtonType.CANCEL);
+        confirm.setHeaderText(null);
+        boolean load = confirm.showAndWait().orElse(ButtonType.CANCEL) == ButtonType.OK;
+        if (load) confirmedLargeTables.add(tableName);
+        return load;
     }
 
-    private void showTruncateTableForm() {
+    // Compares a table with another table on this connection or in another database (same
+    // table name by default). Only chunk digests and the differing rows cross the network.
+    private void showCompareTablesPanel() {
         List<String> currentTables = getAllTableNames();
         if (currentTables.isEmpty()) {
-            showMessage("No tables available in the database to truncate.", true);
+            showMessage("No tables available in the database to compare.", true);
             return;
         }
 
@@ -1047,56 +1411,463 @@ public class dgfx8 extends Application {
         formContainer.setAlignment(Pos.TOP_LEFT);
         formContainer.getStyleClass().add("form-panel");
 
-        Label selectTableLabel = new Label("Select Table to Truncate:");
-        ChoiceBox<String> tableChoiceBox = new ChoiceBox<>(FXCollections.observableArrayList(currentTables));
-        tableChoiceBox.setPrefWidth(200);
-        formContainer.getChildren().addAll(selectTableLabel, tableChoiceBox);
-
-        Button truncateTableButton = new Button("Truncate Table");
-        truncateTableButton.setDisable(true); // Disable until a table is selected
-        formContainer.getChildren().add(truncateTableButton);
-
-        tableChoiceBox.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newTableName) -> {
-            truncateTableButton.setDisable(newTableName == null);
+        GridPane compareGrid = new GridPane();
+        compareGrid.setHgap(10);
+        compareGrid.setVgap(10);
+        ChoiceBox<String> leftTableChoiceBox = new ChoiceBox<>(FXCollections.observableArrayList(currentTables));
+        leftTableChoiceBox.setPrefWidth(200);
+        TextField rightTableField = new TextField();
+        rightTableField.setPromptText("Same name if empty");
+        CheckBox otherDatabaseCheckBox = new CheckBox("Right table is in another database");
+        TextField rightUrlField = new TextField(dbUrlField.getText());
+        TextField rightUserField = new TextField(dbUserField.getText());
+        PasswordField rightPasswordField = new PasswordField();
+        for (Control field : Arrays.asList(rightUrlField, rightUserField, rightPasswordField)) {
+            field.disableProperty().bind(otherDatabaseCheckBox.selectedProperty().not());
+        }
+        compareGrid.addRow(0, new Label("Left Table:"), leftTableChoiceBox);
+        compareGrid.addRow(1, new Label("Right Table:"), rightTableField);
+        compareGrid.add(otherDatabaseCheckBox, 1, 2);
+        compareGrid.addRow(3, new Label("DB URL:"), rightUrlField);
+        compareGrid.addRow(4, new Label("Username:"), rightUserField);
+        compareGrid.addRow(5, new Label("Password:"), rightPasswordField);
+
+        BooleanProperty running = new SimpleBooleanProperty(false);
+        Label progressLabel = new Label();
+        Button compareButton = new Button("Compare");
+        compareButton.disableProperty().bind(leftTableChoiceBox.valueProperty().isNull().or(running));
+        Button cancelButton = new Button("Cancel");
+        cancelButton.disableProperty().bind(running.not());
+        HBox buttonBox = new HBox(10, compareButton, cancelButton, progressLabel);
+        buttonBox.setAlignment(Pos.CENTER_LEFT);
+
+        TableView<TableCompare.Difference> differencesView = new TableView<>();
+        differencesView.setPrefHeight(350);
+        differencesView.setPlaceholder(new Label("No differences to show."));
+        formContainer.getChildren().addAll(compareGrid, buttonBox, differencesView);
+
+        TableCompare[] current = new TableCompare[1];
+        cancelButton.setOnAction(e -> {
+            if (current[0] != null) current[0].cancel();
         });
-
-        truncateTableButton.setOnAction(e -> {
-            String selectedTable = tableChoiceBox.getValue();
-            if (selectedTable == null) {
-                showAlert(Alert.AlertType.ERROR, "Input Error", "Please select a table to truncate.");
+        compareButton.setOnAction(e -> {
+            String leftTable = leftTableChoiceBox.getValue();
+            String rightTable = rightTableField.getText().trim().isEmpty() ? leftTable : rightTableField.getText().trim().toUpperCase();
+            String[] otherDatabase = otherDatabaseCheckBox.isSelected()
+                    ? new String[]{rightUrlField.getText().trim(), rightUserField.getText().trim(), rightPasswordField.getText()}
+                    : null;
+            if (otherDatabase == null && rightTable.equals(leftTable)) {
+                showAlert(Alert.AlertType.ERROR, "Input Error", "Choose a different right table, or a table in another database.");
                 return;
             }
-            truncateTable(selectedTable);
+            runTableCompare(leftTable, rightTable, otherDatabase, current, differencesView, running, progressLabel);
         });
         contentPane.getChildren().add(formContainer);
     }
 
-    private void truncateTable(String tableName) {
-        if (connection == null) {
+    private void runTableCompare(String leftTable, String rightTable, String[] otherDatabase, TableCompare[] current,
+                                 TableView<TableCompare.Difference> differencesView, BooleanProperty running, Label progressLabel) {
+        if (engine == null) {
             showAlert(Alert.AlertType.ERROR, "Database Error", "No active database connection.");
             return;
         }
-        if (!getAllTableNames().contains(tableName)) {
-            showAlert(Alert.AlertType.ERROR, "Error", "Table '" + tableName + "' not found in the database.");
+        SqlEngine leftEngine = engine;
+        differencesView.getItems().clear();
+        differencesView.getColumns().clear();
+        running.set(true);
+        progressLabel.setText("Comparing " + leftTable + " with " + rightTable + "...");
+
+        Task<TableCompare.Report> task = new Task<TableCompare.Report>() {
+            @Override
+            protected TableCompare.Report call() throws SQLException {
+                // A second database gets its own small pool for the duration of the comparison
+                SqlEngine rightEngine = otherDatabase == null ? leftEngine
+                        : SqlEngine.connect(otherDatabase[0], otherDatabase[1], otherDatabase[2], POOL_SIZE);
+                try {
+                    if (rightEngine != leftEngine) configureGovernor(rightEngine.getGovernor());
+                    TableCompare compare = new TableCompare(leftEngine, leftTable, rightEngine, rightTable);
+                    current[0] = compare;
+                    return compare.compare(message -> Platform.runLater(() -> progressLabel.setText(message)));
+                } finally {
+                    current[0] = null;
+                    if (rightEngine != leftEngine) rightEngine.close();
+                }
+            }
+        };
+        task.setOnSucceeded(event -> {
+            running.set(false);
+            TableCompare.Report report = task.getValue();
+            differencesView.getColumns().add(resultColumn("Difference", d -> d.kind.name()));
+            differencesView.getColumns().add(resultColumn("Key", d -> d.key.size() == 1 ? String.valueOf(d.key.get(0)) : d.key.toString()));
+            // One column per compared column: "left -> right" where the values differ
+            for (int i = 0; i < report.columns.size(); i++) {
+                int index = i;
+                differencesView.getColumns().add(resultColumn(report.columns.get(i), d -> {
+                    Object left = d.left == null ? null : d.left[index];
+                    Object right = d.right == null ? null : d.right[index];
+                    if (d.kind == TableCompare.Kind.ONLY_LEFT) return String.valueOf(left);
+                    if (d.kind == TableCompare.Kind.ONLY_RIGHT) return String.valueOf(right);
+                    return Objects.equals(left, right) ? "" : left + " -> " + right;
+                }));
+            }
+            differencesView.getItems().setAll(report.differences);
+            progressLabel.setText(String.format("%d chunk(s) compared, %d matched; %d key(s) and %d row(s) fetched in %d ms.",
+                    report.chunksCompared, report.chunksMatched, report.keysFetched, report.rowsFetched, report.millis));
+            String skipped = report.skippedColumns.isEmpty() ? "" : " Not compared: " + String.join(", ", report.skippedColumns) + ".";
+            showMessage(report.differences.isEmpty() ? "Tables are identical." + skipped
+                    : report.differences.size() + " row(s) differ." + skipped, !report.differences.isEmpty());
+        });
+        task.setOnFailed(event -> {
+            running.set(false);
+            progressLabel.setText("");
+            showAlert(Alert.AlertType.ERROR, "SQL Error", "Table comparison failed: " + task.getException().getMessage());
+        });
+        Thread compareThread = new Thread(task, "dgfx8-table-compare");
+        compareThread.setDaemon(true);
+        compareThread.start();
+    }
+
+    // Predicate columns and latencies recorded this session, with index proposals from
+    // EXPLAIN PLAN, existing indexes and column statistics. Creating an index reports the
+    // timing of the same lookup before and after.
+    private void showIndexAdvisorPanel() {
+        if (indexAdvisor == null) {
+            showAlert(Alert.AlertType.ERROR, "Database Error", "No active database connection.");
             return;
         }
+        IndexAdvisor advisor = indexAdvisor;
 
-        String sql = "TRUNCATE TABLE " + tableName;
-        try (Statement statement = connection.createStatement()) {
-            statement.executeUpdate(sql);
-            showMessage("Table '" + tableName + "' truncated successfully (all records removed).", false);
-            contentPane.getChildren().clear(); // Clear the form after success
-            displayTable(tableName); // Display the now empty table
-        } catch (SQLException e) {
-            showAlert(Alert.AlertType.ERROR, "SQL Error", "Failed to truncate table '" + tableName + "': " + e.getMessage());
+        VBox formContainer = new VBox(10);
+        formContainer.setPadding(new Insets(20));
+        formContainer.setAlignment(Pos.TOP_LEFT);
+        formContainer.getStyleClass().add("form-panel");
+
+        TableView<IndexAdvisor.Usage> usageView = new TableView<>(FXCollections.observableArrayList(advisor.usage()));
+        usageView.setPrefHeight(180);
+        usageView.setPlaceholder(new Label("No filtered statements recorded yet. Delete or edit some records first."));
+        usageView.getColumns().add(resultColumn("Table", u -> u.table));
+        usageView.getColumns().add(resultColumn("Predicate Columns", u -> String.join(", ", u.columns)));
+        usageView.getColumns().add(countColumn("Executions", u -> u.executions));
+        usageView.getColumns().add(resultColumn("Mean (ms)", u -> String.format("%.1f", u.meanMillis())));
+        usageView.getColumns().add(resultColumn("Max (ms)", u -> String.format("%.1f", u.maxNanos / 1e6)));
+
+        TableView<IndexAdvisor.Proposal> proposalView = new TableView<>();
+        proposalView.setPrefHeight(180);
+        proposalView.setPlaceholder(new Label("Press Analyze to check the recorded predicates."));
+        proposalView.getColumns().add(resultColumn("Table", p -> p.usage.table));
+        proposalView.getColumns().add(resultColumn("Index Columns", p -> String.join(", ", p.indexColumns)));
+        proposalView.getColumns().add(resultColumn("Full Scan", p -> p.fullScan == null ? "?" : p.fullScan ? "YES" : "NO"));
+        proposalView.getColumns().add(countColumn("Table Rows", p -> p.tableRows));
+        proposalView.getColumns().add(countColumn("Rows per Lookup", p -> p.matchingRows));
+        proposalView.getColumns().add(resultColumn("Est. Speedup", p -> p.estimatedSpeedup == null ? "" : String.format("%.0fx", p.estimatedSpeedup)));
+        proposalView.getColumns().add(resultColumn("Advice", p -> p.recommended ? p.ddl : p.reason));
+
+        TextArea reportArea = new TextArea();
+        reportArea.setEditable(false);
+        reportArea.setPrefRowCount(5);
+        reportArea.setPromptText("Before/after timings of created indexes appear here.");
+
+        BooleanProperty running = new SimpleBooleanProperty(false);
+        Button analyzeButton = new Button("Analyze");
+        analyzeButton.disableProperty().bind(running);
+        Button createButton = new Button("Create Selected Index");
+        createButton.disableProperty().bind(running.or(Bindings.createBooleanBinding(() -> {
+            IndexAdvisor.Proposal selected = proposalView.getSelectionModel().getSelectedItem();
+            return selected == null || selected.ddl == null;
+        }, proposalView.getSelectionModel().selectedItemProperty())));
+        Button resetButton = new Button("Reset");
+        resetButton.disableProperty().bind(running);
+        resetButton.setOnAction(e -> {
+            advisor.reset();
+            usageView.getItems().clear();
+            proposalView.getItems().clear();
+        });
+        HBox buttonBox = new HBox(10, analyzeButton, createButton, resetButton);
+        buttonBox.setAlignment(Pos.CENTER_LEFT);
+
+        analyzeButton.setOnAction(e -> {
+            usageView.getItems().setAll(advisor.usage());
+            runIndexAdvisor(running, "Analyzing " + usageView.getItems().size() + " predicate(s)...", advisor::analyze, proposals -> {
+                proposalView.getItems().setAll(proposals);
+                long recommended = proposals.stream().filter(p -> p.recommended).count();
+                showMessage(recommended + " index(es) proposed for " + proposals.size() + " predicate(s).", false);
+            });
+        });
+        createButton.setOnAction(e -> {
+            IndexAdvisor.Proposal proposal = proposalView.getSelectionModel().getSelectedItem();
+            Alert confirm = new Alert(Alert.AlertType.CONFIRMATION, proposal.ddl + "\n\nCreating an index locks the table against DML while it builds. Continue?",
+                    ButtonType.OK, ButtonType.CANCEL);
+            confirm.setHeaderText(null);
+            if (confirm.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) return;
+            runIndexAdvisor(running, "Creating index on " + proposal.usage.table + "...", () -> advisor.create(proposal), timing -> {
+                reportArea.appendText(String.format("%s on %s(%s): created in %d ms; lookup %s -> %s%s; full scan after: %s%n",
+                        timing.indexName, proposal.usage.table, String.join(", ", proposal.indexColumns), timing.createMillis,
+                        timing.beforeNanos == null ? "n/a" : String.format("%.2f ms", timing.beforeNanos / 1e6),
+                        timing.afterNanos == null ? "n/a" : String.format("%.2f ms", timing.afterNanos / 1e6),
+                        timing.speedup() == null ? "" : String.format(" (%.1fx)", timing.speedup()),
+                        timing.fullScanAfter == null ? "?" : timing.fullScanAfter ? "YES" : "NO"));
+                proposalView.getItems().remove(proposal);
+                usageView.getItems().setAll(advisor.usage());
+                showMessage("Index " + timing.indexName + " created.", false);
+            });
+        });
+
+        formContainer.getChildren().addAll(new Label("Recorded predicates"), usageView, buttonBox,
+                new Label("Proposals"), proposalView, reportArea);
+        contentPane.getChildren().add(formContainer);
+    }
+
+    private interface AdvisorCall<T> {
+        T call() throws SQLException;
+    }
+
+    private <T> void runIndexAdvisor(BooleanProperty running, String progress, AdvisorCall<T> call, java.util.function.Consumer<T> done) {
+        running.set(true);
+        showMessage(progress, false);
+        Task<T> task = new Task<T>() {
+            @Override
+            protected T call() throws SQLException {
+                return call.call();
+            }
+        };
+        task.setOnSucceeded(event -> {
+            running.set(false);
+            done.accept(task.getValue());
+        });
+        task.setOnFailed(event -> {
+            running.set(false);
+            showAlert(Alert.AlertType.ERROR, "SQL Error", "Index advisor failed: " + task.getException().getMessage());
+        });
+        Thread advisorThread = new Thread(task, "dgfx8-index-advisor");
+        advisorThread.setDaemon(true);
+        advisorThread.start();
+    }
+
+    // Filter, sort and aggregate a local columnar snapshot of a table; only "Refresh from
+    // Database" reads the table itself.
+    private void showSnapshotPanel() {
+        List<String> currentTables = getAllTableNames();
+        if (currentTables.isEmpty()) {
+            showMessage("No tables available in the database to snapshot.", true);
+            return;
+        }
+        String source = dbUrlField.getText().trim() + " " + dbUserField.getText().trim().toUpperCase();
+
+        VBox formContainer = new VBox(10);
+        formContainer.setPadding(new Insets(20));
+        formContainer.setAlignment(Pos.TOP_LEFT);
+        formContainer.getStyleClass().add("form-panel");
+
+        ChoiceBox<String> tableChoiceBox = new ChoiceBox<>(FXCollections.observableArrayList(currentTables));
+        tableChoiceBox.setPrefWidth(200);
+        Label infoLabel = new Label("Select a table.");
+        BooleanProperty running = new SimpleBooleanProperty(false);
+        BooleanProperty open = new SimpleBooleanProperty(false);
+        Button refreshButton = new Button("Refresh from Database");
+        refreshButton.disableProperty().bind(tableChoiceBox.valueProperty().isNull().or(running));
+        Button deleteButton = new Button("Delete Snapshot");
+        deleteButton.disableProperty().bind(open.not().or(running));
+        HBox snapshotBox = new HBox(10, new Label("Table:"), tableChoiceBox, refreshButton, deleteButton);
+        snapshotBox.setAlignment(Pos.CENTER_LEFT);
+
+        ObservableList<String> columns = FXCollections.observableArrayList();
+        VBox filterRows = new VBox(5);
+        Button addFilterButton = new Button("Add Filter");
+        addFilterButton.setOnAction(e -> filterRows.getChildren().add(snapshotFilterRow(columns, filterRows)));
+        ChoiceBox<String> sortChoiceBox = new ChoiceBox<>();
+        CheckBox descendingCheckBox = new CheckBox("Descending");
+        Button queryButton = new Button("Run Query");
+        HBox queryBox = new HBox(10, addFilterButton, new Label("Sort by:"), sortChoiceBox, descendingCheckBox, queryButton);
+        queryBox.setAlignment(Pos.CENTER_LEFT);
+        ChoiceBox<String> groupChoiceBox = new ChoiceBox<>();
+        ChoiceBox<String> valueChoiceBox = new ChoiceBox<>(columns);
+        Button aggregateButton = new Button("Aggregate");
+        aggregateButton.disableProperty().bind(valueChoiceBox.valueProperty().isNull().or(running).or(open.not()));
+        HBox aggregateBox = new HBox(10, new Label("Group by:"), groupChoiceBox, new Label("Value:"), valueChoiceBox, aggregateButton);
+        aggregateBox.setAlignment(Pos.CENTER_LEFT);
+        queryButton.disableProperty().bind(running.or(open.not()));
+        addFilterButton.disableProperty().bind(open.not());
+
+        TableView<ResultRow> resultView = new TableView<>();
+        resultView.setPrefHeight(300);
+        resultView.setPlaceholder(new Label("Run a query to see rows from the snapshot."));
+        Label statusLabel = new Label();
+
+        Runnable showInfo = () -> {
+            ColumnarSnapshot snapshot = currentSnapshot;
+            open.set(snapshot != null);
+            List<String> names = snapshot == null ? Collections.emptyList() : Arrays.asList(snapshot.columnNames());
+            columns.setAll(names);
+            List<String> optional = new ArrayList<>();
+            optional.add("(none)");
+            optional.addAll(names);
+            sortChoiceBox.setItems(FXCollections.observableArrayList(optional));
+            sortChoiceBox.setValue("(none)");
+            groupChoiceBox.setItems(FXCollections.observableArrayList(optional));
+            groupChoiceBox.setValue("(none)");
+            filterRows.getChildren().clear();
+            resultView.getItems().clear();
+            resultView.getColumns().clear();
+            infoLabel.setText(snapshot == null ? "No snapshot of " + tableChoiceBox.getValue() + " yet; refresh it from the database."
+                    : String.format("Snapshot of %s: %,d rows in %d blocks, %s on disk, taken %s.", snapshot.table(), snapshot.size(),
+                    snapshot.blockCount(), TableStats.formatBytes(snapshot.fileBytes()),
+                    new SimpleDateFormat("yyyy-MM-dd HH:mm").format(new java.util.Date(snapshot.createdMillis()))));
+        };
+        tableChoiceBox.valueProperty().addListener((obs, oldTable, table) -> {
+            closeSnapshot();
+            java.nio.file.Path path = ColumnarSnapshot.pathFor(source, table);
+            if (java.nio.file.Files.exists(path)) {
+                try {
+                    currentSnapshot = ColumnarSnapshot.open(path);
+                } catch (IOException ex) {
+                    showMessage("Snapshot of '" + table + "' could not be read (" + ex.getMessage() + "); refresh it.", true);
+                }
+            }
+            showInfo.run();
+        });
+
+        refreshButton.setOnAction(e -> {
+            String table = tableChoiceBox.getValue();
+            if (!confirmLargeTable(table)) return;
+            java.nio.file.Path path = ColumnarSnapshot.pathFor(source, table);
+            closeSnapshot(); // The file is replaced underneath
+            running.set(true);
+            statusLabel.setText("Copying " + table + "...");
+            SqlEngine refreshEngine = engine; // A disconnect clears the field while this runs
+            Task<ColumnarSnapshot> task = new Task<ColumnarSnapshot>() {
+                @Override
+                protected ColumnarSnapshot call() throws SQLException, IOException {
+                    return ColumnarSnapshot.build(refreshEngine, table, source, path, refreshEngine.getGovernor().newTicket(),
+                            rows -> Platform.runLater(() -> statusLabel.setText(String.format("Copying %s: %,d rows...", table, rows))));
+                }
+            };
+            task.setOnSucceeded(event -> {
+                running.set(false);
+                if (!table.equals(tableChoiceBox.getValue())) { // Another table was chosen meanwhile
+                    task.getValue().close();
+                    return;
+                }
+                currentSnapshot = task.getValue();
+                showInfo.run();
+                statusLabel.setText("");
+                showMessage("Snapshot of '" + table + "' refreshed.", false);
+            });
+            task.setOnFailed(event -> {
+                running.set(false);
+                statusLabel.setText("");
+                if (table.equals(tableChoiceBox.getValue()) && java.nio.file.Files.exists(path)) {
+                    try {
+                        currentSnapshot = ColumnarSnapshot.open(path); // The previous snapshot is still there
+                    } catch (IOException ex) {
+                        currentSnapshot = null;
+                    }
+                }
+                showInfo.run();
+                showAlert(Alert.AlertType.ERROR, "Snapshot Error", "Failed to snapshot '" + table + "': " + task.getException().getMessage());
+            });
+            Thread refreshThread = new Thread(task, "dgfx8-snapshot-refresh");
+            refreshThread.setDaemon(true);
+            refreshThread.start();
+        });
+        deleteButton.setOnAction(e -> {
+            java.nio.file.Path path = currentSnapshot.path();
+            closeSnapshot();
+            try {
+                java.nio.file.Files.deleteIfExists(path);
+            } catch (IOException ex) {
+                showAlert(Alert.AlertType.ERROR, "Snapshot Error", "Failed to delete " + path + ": " + ex.getMessage());
+            }
+            showInfo.run();
+        });
+
+        queryButton.setOnAction(e -> {
+            List<ColumnarSnapshot.Filter> filters = snapshotFilters(columns, filterRows);
+            int sortColumn = columns.indexOf(sortChoiceBox.getValue());
+            boolean ascending = !descendingCheckBox.isSelected();
+            runSnapshotQuery(running, resultView, statusLabel,
+                    snapshot -> snapshot.select(filters, sortColumn, ascending, SPILL_THRESHOLD_ROWS));
+        });
+        aggregateButton.setOnAction(e -> {
+            List<ColumnarSnapshot.Filter> filters = snapshotFilters(columns, filterRows);
+            int groupColumn = columns.indexOf(groupChoiceBox.getValue());
+            int valueColumn = columns.indexOf(valueChoiceBox.getValue());
+            runSnapshotQuery(running, resultView, statusLabel, snapshot -> snapshot.aggregate(filters, groupColumn, valueColumn));
+        });
+
+        formContainer.getChildren().addAll(snapshotBox, infoLabel, filterRows, queryBox, aggregateBox, statusLabel, resultView);
+        contentPane.getChildren().add(formContainer);
+    }
+
+    // column / operator / value, with a button that removes the row again.
+    private HBox snapshotFilterRow(ObservableList<String> columns, VBox filterRows) {
+        ChoiceBox<String> columnChoiceBox = new ChoiceBox<>(columns);
+        if (!columns.isEmpty()) columnChoiceBox.setValue(columns.get(0));
+        ChoiceBox<ColumnarSnapshot.Op> opChoiceBox = new ChoiceBox<>(FXCollections.observableArrayList(ColumnarSnapshot.Op.values()));
+        opChoiceBox.setValue(ColumnarSnapshot.Op.EQ);
+        TextField valueField = new TextField();
+        valueField.setPromptText("Value (dates as yyyy-mm-dd)");
+        valueField.disableProperty().bind(Bindings.createBooleanBinding(
+                () -> !opChoiceBox.getValue().takesValue(), opChoiceBox.valueProperty()));
+        Button removeButton = new Button("Remove");
+        HBox row = new HBox(10, columnChoiceBox, opChoiceBox, valueField, removeButton);
+        row.setAlignment(Pos.CENTER_LEFT);
+        removeButton.setOnAction(e -> filterRows.getChildren().remove(row));
+        return row;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ColumnarSnapshot.Filter> snapshotFilters(List<String> columns, VBox filterRows) {
+        List<ColumnarSnapshot.Filter> filters = new ArrayList<>();
+        for (javafx.scene.Node node : filterRows.getChildren()) {
+            HBox row = (HBox) node;
+            String column = ((ChoiceBox<String>) row.getChildren().get(0)).getValue();
+            ColumnarSnapshot.Op op = ((ChoiceBox<ColumnarSnapshot.Op>) row.getChildren().get(1)).getValue();
+            String value = ((TextField) row.getChildren().get(2)).getText();
+            if (column != null) filters.add(new ColumnarSnapshot.Filter(columns.indexOf(column), op, value));
         }
+        return filters;
     }
 
+    private interface SnapshotQuery {
+        ColumnarSnapshot.Result run(ColumnarSnapshot snapshot) throws IOException;
+    }
 
-    private void showSelectTableForm() {
+    private void runSnapshotQuery(BooleanProperty running, TableView<ResultRow> resultView, Label statusLabel, SnapshotQuery query) {
+        ColumnarSnapshot snapshot = currentSnapshot;
+        if (snapshot == null) return;
+        running.set(true);
+        Task<ColumnarSnapshot.Result> task = new Task<ColumnarSnapshot.Result>() {
+            @Override
+            protected ColumnarSnapshot.Result call() throws IOException {
+                return query.run(snapshot);
+            }
+        };
+        task.setOnSucceeded(event -> {
+            running.set(false);
+            ColumnarSnapshot.Result result = task.getValue();
+            List<ResultRow> rows = new ArrayList<>(result.rows.size());
+            for (Object[] values : result.rows) rows.add(new ResultRow(result.columns, values));
+            resultView.getColumns().clear();
+            addTextColumns(resultView, result.columns);
+            resultView.setItems(FXCollections.observableArrayList(rows));
+            statusLabel.setText(String.format("%,d matching row(s)%s in %d ms; %d block(s) scanned, %d skipped by zone maps.",
+                    result.matched, result.rows.size() < result.matched && result.columns.length == snapshot.columnNames().length
+                            ? String.format(", first %,d shown", result.rows.size()) : "",
+                    result.millis, result.blocksScanned, result.blocksSkipped));
+        });
+        task.setOnFailed(event -> {
+            running.set(false);
+            showAlert(Alert.AlertType.ERROR, "Snapshot Error", "Query failed: " + task.getException().getMessage());
+        });
+        Thread queryThread = new Thread(task, "dgfx8-snapshot-query");
+        queryThread.setDaemon(true);
+        queryThread.start();
+    }
+
+    private void showAggregatePanel() {
         List<String> currentTables = getAllTableNames();
         if (currentTables.isEmpty()) {
-            showMessage("No tables available in the database to select. Please create a table first.", true);
+            showMessage("No tables available in the database to aggregate.", true);
             return;
         }
 
@@ -1105,111 +1876,681 @@ public class dgfx8 extends Application {
         formContainer.setAlignment(Pos.TOP_LEFT);
         formContainer.getStyleClass().add("form-panel");
 
-        Label selectTableLabel = new Label("Select Table to View:");
         ChoiceBox<String> tableChoiceBox = new ChoiceBox<>(FXCollections.observableArrayList(currentTables));
         tableChoiceBox.setPrefWidth(200);
-        formContainer.getChildren().addAll(selectTableLabel, tableChoiceBox);
+        HBox tableBox = new HBox(10, new Label("Table:"), tableChoiceBox);
+        tableBox.setAlignment(Pos.CENTER_LEFT);
+
+        Map<String, String> columnTypes = new LinkedHashMap<>();
+        ObservableList<String> columns = FXCollections.observableArrayList();
+        ObservableList<String> measureColumns = FXCollections.observableArrayList();
+        ListView<String> groupListView = new ListView<>(columns);
+        groupListView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        groupListView.setPrefHeight(120);
+        groupListView.setPrefWidth(200);
+        VBox groupBox = new VBox(5, new Label("Group by (Ctrl-click for several):"), groupListView);
+
+        VBox measureRows = new VBox(5);
+        Button addMeasureButton = new Button("Add Aggregate");
+        addMeasureButton.setOnAction(e -> measureRows.getChildren().add(aggregateRow(measureColumns, measureRows, false)));
+        VBox havingRows = new VBox(5);
+        Button addHavingButton = new Button("Add HAVING");
+        addHavingButton.setOnAction(e -> havingRows.getChildren().add(aggregateRow(measureColumns, havingRows, true)));
+        VBox measureBox = new VBox(5, new Label("Aggregates:"), measureRows, addMeasureButton,
+                new Label("HAVING (all must hold):"), havingRows, addHavingButton);
+        HBox builderBox = new HBox(20, groupBox, measureBox);
+
+        BooleanProperty running = new SimpleBooleanProperty(false);
+        CheckBox cachedCheckBox = new CheckBox("Use cached results");
+        cachedCheckBox.setSelected(true);
+        Button runButton = new Button("Run");
+        runButton.disableProperty().bind(tableChoiceBox.valueProperty().isNull().or(running));
+        Button cancelButton = new Button("Cancel");
+        cancelButton.disableProperty().bind(running.not());
+        HBox runBox = new HBox(10, runButton, cancelButton, cachedCheckBox);
+        runBox.setAlignment(Pos.CENTER_LEFT);
+
+        Label sqlLabel = new Label();
+        sqlLabel.setWrapText(true);
+        Label statusLabel = new Label();
+        TableView<ResultRow> resultView = new TableView<>();
+        resultView.setPrefHeight(300);
+        resultView.setPlaceholder(new Label("Run an aggregate to see one row per group."));
+
+        tableChoiceBox.valueProperty().addListener((obs, oldTable, table) -> {
+            columnTypes.clear();
+            Map<String, String> schema = getSchemaFromDatabase(table);
+            if (schema != null) columnTypes.putAll(schema);
+            columns.setAll(columnTypes.keySet());
+            List<String> withStar = new ArrayList<>();
+            withStar.add("*");
+            withStar.addAll(columnTypes.keySet());
+            measureColumns.setAll(withStar);
+            measureRows.getChildren().setAll(aggregateRow(measureColumns, measureRows, false));
+            havingRows.getChildren().clear();
+            resultView.getItems().clear();
+            resultView.getColumns().clear();
+            sqlLabel.setText("");
+            statusLabel.setText("");
+        });
 
-        // Add a placeholder for the table view which will be populated dynamically
-        StackPane tableViewContainer = new StackPane();
-        tableViewContainer.setPadding(new Insets(10, 0, 0, 0));
-        formContainer.getChildren().add(tableViewContainer);
+        QueryGovernor.Ticket[] ticket = new QueryGovernor.Ticket[1];
+        cancelButton.setOnAction(e -> {
+            if (ticket[0] != null) ticket[0].cancel();
+        });
+        runButton.setOnAction(e -> {
+            AggregateQuery query;
+            try {
+                List<AggregateQuery.Measure> measures = new ArrayList<>();
+                for (javafx.scene.Node row : measureRows.getChildren()) measures.add(aggregateMeasure((HBox) row));
+                List<AggregateQuery.Having> havings = new ArrayList<>();
+                for (javafx.scene.Node row : havingRows.getChildren()) havings.add(aggregateHaving((HBox) row));
+                query = new AggregateQuery(tableChoiceBox.getValue(), columnTypes,
+                        new ArrayList<>(groupListView.getSelectionModel().getSelectedItems()), measures, havings);
+            } catch (IllegalArgumentException ex) {
+                showMessage(ex.getMessage(), true);
+                return;
+            }
+            showMessage("", false);
+            sqlLabel.setText(query.describe());
+            AggregateCache.Entry cached = cachedCheckBox.isSelected() && aggregateCache != null ? aggregateCache.get(query) : null;
+            if (cached != null) {
+                showAggregateResult(resultView, cached.columns, cached.rows);
+                statusLabel.setText(String.format("%,d group(s) from the cache (ran in %d ms, %d s ago).", cached.rows.size(),
+                        cached.millis, (System.currentTimeMillis() - cached.fetchedAtMillis) / 1000));
+                return;
+            }
+            runAggregate(running, ticket, resultView, statusLabel, query);
+        });
 
-        tableChoiceBox.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newTableName) -> {
-            tableViewContainer.getChildren().clear(); // Clear previous table view
-            if (newTableName != null) {
-                TableView<Map<String, Object>> tableView = createTableView(newTableName);
-                if (tableView != null) {
-                    tableViewContainer.getChildren().add(tableView);
-                } else {
-                    showMessage("Table '" + newTableName + "' has no schema or data. Cannot display.", true);
+        formContainer.getChildren().addAll(tableBox, builderBox, runBox, sqlLabel, statusLabel, resultView);
+        contentPane.getChildren().add(formContainer);
+    }
+
+    // function / column, plus operator / value for a HAVING row, with a button that removes the row.
+    private HBox aggregateRow(ObservableList<String> columns, VBox rows, boolean having) {
+        ChoiceBox<AggregateQuery.Function> functionChoiceBox = new ChoiceBox<>(FXCollections.observableArrayList(AggregateQuery.Function.values()));
+        functionChoiceBox.setValue(AggregateQuery.Function.COUNT);
+        ChoiceBox<String> columnChoiceBox = new ChoiceBox<>(columns);
+        columnChoiceBox.setValue("*");
+        HBox row = new HBox(10, functionChoiceBox, columnChoiceBox);
+        if (having) {
+            ChoiceBox<AggregateQuery.Comparison> comparisonChoiceBox = new ChoiceBox<>(FXCollections.observableArrayList(AggregateQuery.Comparison.values()));
+            comparisonChoiceBox.setValue(AggregateQuery.Comparison.GT);
+            TextField valueField = new TextField();
+            valueField.setPromptText("Value (dates as yyyy-mm-dd)");
+            row.getChildren().addAll(comparisonChoiceBox, valueField);
+        }
+        Button removeButton = new Button("Remove");
+        removeButton.setOnAction(e -> rows.getChildren().remove(row));
+        row.getChildren().add(removeButton);
+        row.setAlignment(Pos.CENTER_LEFT);
+        return row;
+    }
+
+    @SuppressWarnings("unchecked")
+    private AggregateQuery.Measure aggregateMeasure(HBox row) {
+        AggregateQuery.Function function = ((ChoiceBox<AggregateQuery.Function>) row.getChildren().get(0)).getValue();
+        String column = ((ChoiceBox<String>) row.getChildren().get(1)).getValue();
+        return new AggregateQuery.Measure(function, column == null || "*".equals(column) ? null : column);
+    }
+
+    @SuppressWarnings("unchecked")
+    private AggregateQuery.Having aggregateHaving(HBox row) {
+        AggregateQuery.Comparison comparison = ((ChoiceBox<AggregateQuery.Comparison>) row.getChildren().get(2)).getValue();
+        String value = ((TextField) row.getChildren().get(3)).getText();
+        return new AggregateQuery.Having(aggregateMeasure(row), comparison, value);
+    }
+
+    // Runs the GROUP BY on the database; only complete results go into the cache, and only if
+    // nothing wrote to the table while the query ran.
+    private void runAggregate(BooleanProperty running, QueryGovernor.Ticket[] ticket, TableView<ResultRow> resultView,
+                              Label statusLabel, AggregateQuery query) {
+        running.set(true);
+        SqlEngine aggregateEngine = engine; // Read once: a disconnect clears the field while this runs
+        ticket[0] = aggregateEngine.getGovernor().newTicket();
+        QueryGovernor.Ticket runTicket = ticket[0];
+        currentAggregate = runTicket;
+        AggregateCache cache = aggregateCache;
+        long generation = cache == null ? 0 : cache.generation(query.table());
+        String[][] header = new String[1][];
+        List<Object[]> rows = new ArrayList<>();
+        long[] millis = new long[1];
+        statusLabel.setText("Aggregating " + query.table() + "...");
+        Task<SqlEngine.ExecutionResult> task = new Task<SqlEngine.ExecutionResult>() {
+            @Override
+            protected SqlEngine.ExecutionResult call() throws SQLException {
+                long start = System.nanoTime();
+                SqlEngine.ExecutionResult result = aggregateEngine.query(runTicket, "dgfx8.aggregate", query.sql(), new SqlEngine.RowHandler() {
+                    @Override
+                    public void columns(String[] names, String[] typeNames) {
+                        header[0] = names;
+                    }
+
+                    @Override
+                    public boolean row(Object[] values) {
+                        rows.add(values);
+                        return true;
+                    }
+                }, query.params().toArray());
+                millis[0] = (System.nanoTime() - start) / 1_000_000;
+                return result;
+            }
+        };
+        task.setOnSucceeded(event -> {
+            running.set(false);
+            ticket[0] = null;
+            if (currentAggregate != runTicket) return; // The user moved on and the query was cancelled
+            currentAggregate = null;
+            SqlEngine.ExecutionResult result = task.getValue();
+            showAggregateResult(resultView, header[0], rows);
+            statusLabel.setText(String.format("%,d group(s) in %d ms.", rows.size(), millis[0]));
+            if (result.complete()) {
+                if (cache != null && cache.put(query, generation, header[0], rows, millis[0]) == null) {
+                    statusLabel.setText(statusLabel.getText() + " Not cached: the table was written while it ran.");
                 }
+            } else {
+                showMessage("Showing the first " + rows.size() + " groups: " + result.trip.describe()
+                        + " (partial result, not cached).", true);
             }
         });
-        contentPane.getChildren().add(formContainer);
+        task.setOnFailed(event -> {
+            running.set(false);
+            ticket[0] = null;
+            if (currentAggregate != runTicket) return;
+            currentAggregate = null;
+            statusLabel.setText("");
+            showAlert(Alert.AlertType.ERROR, "SQL Error", "Aggregate failed: " + task.getException().getMessage());
+        });
+        Thread aggregateThread = new Thread(task, "dgfx8-aggregate");
+        aggregateThread.setDaemon(true);
+        aggregateThread.start();
+    }
+
+    private void showAggregateResult(TableView<ResultRow> resultView, String[] columns, List<Object[]> values) {
+        resultView.getColumns().clear();
+        if (columns == null) {
+            resultView.getItems().clear();
+            return;
+        }
+        List<ResultRow> rows = new ArrayList<>(values.size());
+        for (Object[] row : values) rows.add(new ResultRow(columns, row));
+        addTextColumns(resultView, columns);
+        resultView.setItems(FXCollections.observableArrayList(rows));
+    }
+
+    private void showPerformancePanel() {
+        VBox formContainer = new VBox(10);
+        formContainer.setPadding(new Insets(20));
+        formContainer.setAlignment(Pos.TOP_LEFT);
+        formContainer.getStyleClass().add("form-panel");
+
+        SlowQueryLog slowQueryLog = SlowQueryLog.install();
+        Label thresholdLabel = new Label("Slow query threshold (ms):");
+        TextField thresholdField = new TextField(String.valueOf(slowQueryLog.getThresholdMillis()));
+        thresholdField.setPrefWidth(80);
+        Button applyThresholdButton = new Button("Apply");
+        applyThresholdButton.setOnAction(e -> {
+            try {
+                slowQueryLog.setThresholdMillis(Long.parseLong(thresholdField.getText().trim()));
+                showMessage("Statements over " + slowQueryLog.getThresholdMillis() + " ms are logged to " + slowQueryLog.getFile().toAbsolutePath(), false);
+            } catch (NumberFormatException ex) {
+                showAlert(Alert.AlertType.ERROR, "Input Error", "Threshold must be a whole number of milliseconds.");
+            }
+        });
+        HBox thresholdBox = new HBox(10, thresholdLabel, thresholdField, applyThresholdButton);
+        thresholdBox.setAlignment(Pos.CENTER_LEFT);
+
+        // Recent statements, newest first
+        TableView<SqlMetrics.StatementRecord> statementsView = new TableView<>();
+        statementsView.setPlaceholder(new Label("No statements executed yet."));
+        statementsView.setPrefHeight(220);
+        SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss.SSS");
+        statementsView.getColumns().add(recordColumn("Time", 90, r -> timeFormat.format(new java.util.Date(r.timestampMillis))));
+        statementsView.getColumns().add(recordColumn("Operation", 150, r -> r.operation));
+        statementsView.getColumns().add(recordColumn("Execute ms", 80, r -> String.format("%.2f", r.executeNanos / 1e6)));
+        statementsView.getColumns().add(recordColumn("Fetch ms", 80, r -> String.format("%.2f", r.fetchNanos / 1e6)));
+        statementsView.getColumns().add(recordColumn("Rows", 60, r -> String.valueOf(r.rows)));
+        statementsView.getColumns().add(recordColumn("Bytes", 70, r -> String.valueOf(r.bytes)));
+        statementsView.getColumns().add(recordColumn("Status", 60, r -> r.succeeded() ? "OK" : "ERROR"));
+        statementsView.getColumns().add(recordColumn("SQL", 300, r -> SqlMetrics.fingerprint(r.sql)));
+
+        // Rolling latency percentiles over the last PERFORMANCE_WINDOW_SECONDS
+        NumberAxis xAxis = new NumberAxis();
+        xAxis.setLabel("Seconds");
+        xAxis.setForceZeroInRange(false);
+        NumberAxis yAxis = new NumberAxis();
+        yAxis.setLabel("Latency (ms)");
+        LineChart<Number, Number> latencyChart = new LineChart<>(xAxis, yAxis);
+        latencyChart.setAnimated(false);
+        latencyChart.setCreateSymbols(false);
+        latencyChart.setPrefHeight(200);
+        XYChart.Series<Number, Number> p50 = new XYChart.Series<>();
+        p50.setName("p50");
+        XYChart.Series<Number, Number> p95 = new XYChart.Series<>();
+        p95.setName("p95");
+        XYChart.Series<Number, Number> p99 = new XYChart.Series<>();
+        p99.setName("p99");
+        latencyChart.getData().addAll(Arrays.asList(p50, p95, p99));
+
+        TextArea planArea = new TextArea();
+        planArea.setEditable(false);
+        planArea.setPrefRowCount(8);
+        planArea.setStyle("-fx-font-family: monospace;");
+        planArea.setPromptText("Select a statement and click 'Explain Plan'.");
+
+        Button explainButton = new Button("Explain Plan");
+        explainButton.disableProperty().bind(statementsView.getSelectionModel().selectedItemProperty().isNull());
+        explainButton.setOnAction(e -> {
+            SqlMetrics.StatementRecord record = statementsView.getSelectionModel().getSelectedItem();
+            if (record == null || engine == null) {
+                return;
+            }
+            try {
+                List<String> plan = engine.withConnection(c -> ExplainPlan.explain(c, record.sql));
+                planArea.setText(String.join("\n", plan));
+                slowQueryLog.appendPlan(record.sql, plan);
+            } catch (SQLException ex) {
+                showAlert(Alert.AlertType.ERROR, "Explain Plan Error", "Failed to explain statement: " + ex.getMessage());
+            }
+        });
+
+        long panelStart = System.currentTimeMillis();
+        Runnable refresh = () -> {
+            List<SqlMetrics.StatementRecord> records = SqlMetrics.get().recentStatements();
+            Collections.reverse(records);
+            SqlMetrics.StatementRecord selected = statementsView.getSelectionModel().getSelectedItem();
+            statementsView.getItems().setAll(records);
+            if (selected != null) {
+                statementsView.getSelectionModel().select(selected);
+            }
+
+            long now = System.currentTimeMillis();
+            LatencyHistogram window = new LatencyHistogram();
+            for (SqlMetrics.StatementRecord r : records) {
+                if (now - r.timestampMillis <= PERFORMANCE_WINDOW_SECONDS * 1000L) {
+                    window.record(r.totalNanos());
+                }
+            }
+            double x = (now - panelStart) / 1000.0;
+            addPoint(p50, x, window.percentile(50) / 1e6);
+            addPoint(p95, x, window.percentile(95) / 1e6);
+            addPoint(p99, x, window.percentile(99) / 1e6);
+        };
+        refresh.run();
+        performanceTimeline = new Timeline(new KeyFrame(Duration.seconds(1), e -> refresh.run()));
+        performanceTimeline.setCycleCount(Timeline.INDEFINITE);
+        performanceTimeline.play();
+
+        formContainer.getChildren().addAll(new Label("Recent Statements"), thresholdBox, statementsView,
+                latencyChart, explainButton, planArea);
+        ScrollPane scrollPane = new ScrollPane(formContainer);
+        scrollPane.setFitToWidth(true);
+        contentPane.getChildren().add(scrollPane);
+    }
+
+    private TableColumn<SqlMetrics.StatementRecord, String> recordColumn(String title, double width,
+                                                                       java.util.function.Function<SqlMetrics.StatementRecord, String> value) {
+        TableColumn<SqlMetrics.StatementRecord, String> column = new TableColumn<>(title);
+        column.setCellValueFactory(cellData -> new SimpleStringProperty(value.apply(cellData.getValue())));
+        column.setPrefWidth(width);
+        return column;
+    }
+
+    private static void addPoint(XYChart.Series<Number, Number> series, double x, double y) {
+        series.getData().add(new XYChart.Data<>(x, y));
+        if (series.getData().size() > PERFORMANCE_WINDOW_SECONDS) {
+            series.getData().remove(0);
+        }
+    }
+
+    private void stopPerformanceTimeline() {
+        if (performanceTimeline != null) {
+            performanceTimeline.stop();
+            performanceTimeline = null;
+        }
     }
 
     private void displayTable(String tableName) {
         contentPane.getChildren().clear(); // Clear current content
-        TableView<Map<String, Object>> tableView = createTableView(tableName);
+        TableView<ResultRow> tableView = createTableView(tableName);
         if (tableView != null) {
             VBox displayBox = new VBox(10);
             displayBox.setPadding(new Insets(20));
             displayBox.setAlignment(Pos.TOP_CENTER);
             Label tableTitle = new Label("Contents of Table: " + tableName);
             tableTitle.setStyle("-fx-font-weight: bold; -fx-font-size: 16px;");
-            displayBox.getChildren().addAll(tableTitle, tableView);
+            displayBox.getChildren().addAll(tableTitle, withEditBar(tableView));
             contentPane.getChildren().add(displayBox);
         } else {
             showMessage("Could not display table '" + tableName + "'. It might be empty or not exist.", true);
         }
     }
 
-    private TableView<Map<String, Object>> createTableView(String tableName) {
-        if (connection == null) {
+    private TableView<ResultRow> createTableView(String tableName) {
+        if (engine == null) {
             showAlert(Alert.AlertType.ERROR, "Database Error", "No active database connection.");
             return null;
         }
 
-        TableView<Map<String, Object>> tableView = new TableView<>();
+        TableView<ResultRow> tableView = new TableView<>();
         tableView.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
         tableView.setPlaceholder(new Label("No records in this table."));
+        if (!confirmLargeTable(tableName)) {
+            tableView.setPlaceholder(new Label("Table '" + tableName + "' was not loaded because of its size."));
+            return tableView;
+        }
+
+        closeSpills(); // Only one table view is shown at a time
+        cancelTableLoad();
+        long generation = tableLoadGeneration;
+        SqlEngine loadEngine = engine; // Read once: a disconnect clears the field while this runs
+        QueryGovernor.Ticket ticket = loadEngine.getGovernor().newTicket();
+        currentTableLoad = ticket;
+        Button cancelButton = new Button("Cancel");
+        cancelButton.setOnAction(e -> ticket.cancel());
+        VBox loadingBox = new VBox(8, new Label("Loading '" + tableName + "'..."), cancelButton);
+        loadingBox.setAlignment(Pos.CENTER);
+        tableView.setPlaceholder(loadingBox);
+
+        // Fetched off the FX thread so the cancel button stays live; the view is filled on success
+        List<ResultRow> tableData = new ArrayList<>();
+        SpillFile[] spill = new SpillFile[1];
+        Map<String, String> currentTableSchema = new LinkedHashMap<>();
+        String[][] header = new String[2][];
+        RowEditor[] editor = new RowEditor[1];
+        Task<SqlEngine.ExecutionResult> loadTask = new Task<SqlEngine.ExecutionResult>() {
+            @Override
+            protected SqlEngine.ExecutionResult call() throws SQLException, IOException {
+                // ORA_ROWSCN rides along (hidden) so in-place edits can detect concurrent changes
+                SqlEngine.ExecutionResult result = loadEngine.query(ticket, "dgfx8.createTableView",
+                        "SELECT t.*, ORA_ROWSCN FROM " + tableName + " t", new SqlEngine.RowHandler() {
+                    private String[] columnNames;
+
+                    @Override
+                    public void columns(String[] names, String[] typeNames) {
+                        columnNames = names;
+                        header[0] = names;
+                        header[1] = typeNames;
+                        // Rebuild this table's schema from the result set metadata
+                        for (int i = 0; i < names.length; i++) {
+                            if (RowEditor.ROWSCN_COLUMN.equals(names[i])) continue;
+                            currentTableSchema.put(names[i], typeNames[i]); // Oracle-specific type name
+                        }
+                    }
+
+                    @Override
+                    public boolean row(Object[] values) throws SQLException {
+                        try {
+                            if (spill[0] != null) {
+                                spill[0].append(values);
+                                return true;
+                            }
+                            tableData.add(new ResultRow(columnNames, values));
+                            if (tableData.size() >= SPILL_THRESHOLD_ROWS) {
+                                // Too big to keep on the heap: move what we have to disk and stream the rest there
+                                spill[0] = SpillFile.create(columnNames);
+                                for (ResultRow row : tableData) spill[0].append(row.values);
+                                tableData.clear();
+                            }
+                            return true;
+                        } catch (IOException e) {
+                            throw new SQLException("Could not spill rows to disk: " + e.getMessage(), e);
+                        }
+                    }
+                });
+                if (spill[0] != null) {
+                    spill[0].finish();
+                } else if (header[0] != null) {
+                    try {
+                        editor[0] = RowEditor.forTable(loadEngine, tableName, header[0], header[1]);
+                    } catch (SQLException e) {
+                        editor[0] = null; // No key metadata: the view stays read-only
+                    }
+                }
+                return result;
+            }
+        };
+        loadTask.setOnSucceeded(event -> {
+            if (generation != tableLoadGeneration) { // Another view replaced this one while loading
+                if (spill[0] != null) spill[0].close();
+                return;
+            }
+            currentTableLoad = null;
+            SqlEngine.ExecutionResult result = loadTask.getValue();
+            tableView.setPlaceholder(new Label("No records in this table."));
+            if (header[0] != null) {
+                currentEditor = result.complete() ? editor[0] : null; // Partial results are not edited
+                addTextColumns(tableView, header[0], currentEditor);
+                tableView.setEditable(currentEditor != null);
+                tableSchemas.put(tableName, currentTableSchema); // Cache the schema
+            }
+            if (spill[0] != null) {
+                openSpills.add(spill[0]);
+                tableView.setItems(new SpillList(spill[0], null));
+                tableView.setSortPolicy(this::sortSpilledTable);
+                showMessage("Table '" + tableName + "' has " + spill[0].size() + " rows; browsing them from a disk spill file.", false);
+            } else {
+                // One list change instead of one per fetched row
+                tableView.setItems(FXCollections.observableArrayList(tableData));
+            }
+            if (!result.complete()) {
+                showMessage("Showing the first " + result.rows + " rows of '" + tableName + "': "
+                        + result.trip.describe() + " (partial result).", true);
+            }
+        });
+        loadTask.setOnFailed(event -> {
+            if (spill[0] != null) spill[0].close();
+            if (generation != tableLoadGeneration) return;
+            currentTableLoad = null;
+            tableView.setPlaceholder(new Label("Could not load '" + tableName + "'."));
+            showAlert(Alert.AlertType.ERROR, "SQL Error", "Failed to retrieve table data for '" + tableName + "': "
+                    + loadTask.getException().getMessage());
+        });
+        Thread loadThread = new Thread(loadTask, "dgfx8-table-load");
+        loadThread.setDaemon(true);
+        loadThread.start();
+        return tableView;
+    }
 
-        ObservableList<Map<String, Object>> tableData = FXCollections.observableArrayList();
+    // Abandons the view load in progress (if any): its statement is cancelled and its rows dropped.
+    // Unsaved edits of the previous view are dropped with it.
+    private void cancelTableLoad() {
+        tableLoadGeneration++;
+        currentEditor = null;
+        dirtyRows.clear();
+        if (currentTableLoad != null) {
+            currentTableLoad.cancel();
+            currentTableLoad = null;
+        }
+    }
 
-        try (Statement statement = connection.createStatement();
-             ResultSet rs = statement.executeQuery("SELECT * FROM " + tableName)) {
+    // Statement budgets for this client; each can be overridden with -D<prefix>.timeoutSeconds etc.
+    private static void configureGovernor(QueryGovernor governor) {
+        governor.setDefaultBudget(QueryGovernor.Budget.fromProperties("dgfx8", new QueryGovernor.Budget(120, 0, 0, 0)));
+        governor.setBudget("dgfx8.createTableView", QueryGovernor.Budget.fromProperties("dgfx8.view",
+                new QueryGovernor.Budget(600, 10_000_000, 4L << 30, 1000)));
+        // The delete-by-checkbox view keeps every row on the heap (no spill), so it stops earlier
+        governor.setBudget("dgfx8.populateCheckboxTableView", QueryGovernor.Budget.fromProperties("dgfx8.checkboxView",
+                new QueryGovernor.Budget(600, SPILL_THRESHOLD_ROWS, 1L << 30, 1000)));
+        governor.setBudget("tableStats.count", QueryGovernor.Budget.fromProperties("dgfx8.count",
+                new QueryGovernor.Budget(300, 0, 0, 0)));
+        governor.setBudget("tableCompare", QueryGovernor.Budget.fromProperties("dgfx8.compare",
+                new QueryGovernor.Budget(900, 0, 0, 1000)));
+        governor.setBudget("snapshot.refresh", QueryGovernor.Budget.fromProperties("dgfx8.snapshot",
+                new QueryGovernor.Budget(1800, 0, 0, 5000)));
+        governor.setBudget("dgfx8.aggregate", QueryGovernor.Budget.fromProperties("dgfx8.aggregate",
+                new QueryGovernor.Budget(1800, 100_000, 0, 1000)));
+    }
 
-            ResultSetMetaData rsmd = rs.getMetaData();
-            int columnCount = rsmd.getColumnCount();
+    // Editable views get a save/discard bar: edits stay in the rows (highlighted) until saved
+    // together through RowEditor, or discarded.
+    private VBox withEditBar(TableView<ResultRow> tableView) {
+        Label editLabel = new Label();
+        editLabel.textProperty().bind(Bindings.createStringBinding(() -> tableView.isEditable()
+                ? (dirtyRows.isEmpty() ? "Double-click a cell to edit it." : dirtyRows.size() + " row(s) with unsaved changes.")
+                : "", tableView.editableProperty(), dirtyRows));
+        Button saveButton = new Button("Save Changes");
+        saveButton.disableProperty().bind(Bindings.isEmpty(dirtyRows).or(tableView.editableProperty().not()));
+        saveButton.setOnAction(e -> saveEdits(tableView));
+        Button discardButton = new Button("Discard Changes");
+        discardButton.disableProperty().bind(saveButton.disableProperty());
+        discardButton.setOnAction(e -> {
+            for (ResultRow row : dirtyRows) row.discardEdits();
+            dirtyRows.clear();
+            tableView.refresh();
+        });
+        HBox editBar = new HBox(10, saveButton, discardButton, editLabel);
+        editBar.setAlignment(Pos.CENTER_LEFT);
+        return new VBox(10, editBar, tableView);
+    }
 
-            // Clear previous schema for this table (if any) and rebuild from DB metadata
-            Map<String, String> currentTableSchema = new LinkedHashMap<>();
+    private void saveEdits(TableView<ResultRow> tableView) {
+        RowEditor editor = currentEditor;
+        if (editor == null || dirtyRows.isEmpty()) return;
+        List<ResultRow> rows = new ArrayList<>(dirtyRows);
+        tableView.setEditable(false); // Rows must not change while they are written
 
-            // Add columns based on ResultSetMetaData
-            for (int i = 1; i <= columnCount; i++) {
-                String columnName = rsmd.getColumnName(i);
-                String columnType = rsmd.getColumnTypeName(i); // Get Oracle-specific type name
+        Task<RowEditor.FlushResult> saveTask = new Task<RowEditor.FlushResult>() {
+            @Override
+            protected RowEditor.FlushResult call() throws SQLException {
+                return editor.flush(rows);
+            }
+        };
+        saveTask.setOnSucceeded(event -> {
+            RowEditor.FlushResult result = saveTask.getValue();
+            editor.apply(result);
+            dirtyRows.removeAll(result.updated);
+            tableView.setEditable(editor == currentEditor);
+            tableView.refresh();
+            StringBuilder message = new StringBuilder(String.format("Saved %d row(s) to '%s' in %d ms (%d statement(s)).",
+                    result.updated.size(), editor.getTableName(), result.millis, result.statements));
+            if (!result.conflicts.isEmpty()) {
+                message.append(' ').append(result.conflicts.size())
+                        .append(" row(s) changed in the database since they were loaded; reload the table to see them.");
+            }
+            if (!result.errors.isEmpty()) {
+                message.append(' ').append(result.errors.size()).append(" row(s) failed: ")
+                        .append(result.errors.values().iterator().next());
+            }
+            showMessage(message.toString(), !result.conflicts.isEmpty() || !result.errors.isEmpty());
+        });
+        saveTask.setOnFailed(event -> {
+            tableView.setEditable(editor == currentEditor);
+            showAlert(Alert.AlertType.ERROR, "SQL Error", "Failed to save changes (nothing was written): "
+                    + saveTask.getException().getMessage());
+        });
+        Thread saveThread = new Thread(saveTask, "dgfx8-save-edits");
+        saveThread.setDaemon(true);
+        saveThread.start();
+        showMessage("Saving " + rows.size() + " row(s)...", false);
+    }
 
-                TableColumn<Map<String, Object>, String> column = new TableColumn<>(columnName);
-                column.setCellValueFactory(cellData -> {
-                    Object value = cellData.getValue().get(columnName);
-                    return new SimpleStringProperty(value != null ? value.toString() : "NULL");
-                });
-                tableView.getColumns().add(column);
-                currentTableSchema.put(columnName, columnType);
+    // Sort policy for spilled tables: the rows are not in memory, so sorting is an external
+    // merge sort over the spill file, run in the background; the view switches to the sorted
+    // file when it is ready. Sorts by the first column in the sort order.
+    private boolean sortSpilledTable(TableView<ResultRow> tableView) {
+        if (!(tableView.getItems() instanceof SpillList)) return true;
+        SpillList current = (SpillList) tableView.getItems();
+        SpillFile original = openSpills.get(0);
+        long generation = ++spillSortGeneration; // Supersedes any sort still running
+        if (tableView.getSortOrder().isEmpty()) {
+            if (current.sortKey() != null) showSpill(tableView, new SpillList(original, null));
+            return true;
+        }
+        TableColumn<ResultRow, ?> column = tableView.getSortOrder().get(0);
+        int columnIndex = tableView.getColumns().indexOf(column);
+        boolean ascending = column.getSortType() == TableColumn.SortType.ASCENDING;
+        String sortKey = columnIndex + (ascending ? "+" : "-");
+        if (sortKey.equals(current.sortKey())) return true;
+
+        Task<SpillFile> sortTask = new Task<SpillFile>() {
+            @Override
+            protected SpillFile call() throws IOException {
+                return original.sort(SpillFile.byColumn(columnIndex, ascending));
             }
-            tableSchemas.put(tableName, currentTableSchema); // Cache the schema
-
-            // Populate table data
-            while (rs.next()) {
-                Map<String, Object> row = new LinkedHashMap<>();
-                for (int i = 1; i <= columnCount; i++) {
-                    String columnName = rsmd.getColumnName(i);
-                    Object value = rs.getObject(i);
-                    row.put(columnName, value);
-                }
-                tableData.add(row);
+        };
+        sortTask.setOnSucceeded(event -> {
+            SpillFile sorted = sortTask.getValue();
+            // View replaced, or another sort requested, while this one ran
+            if (generation != spillSortGeneration || !openSpills.contains(original)) {
+                sorted.close();
+                return;
             }
-            tableView.setItems(tableData);
-            return tableView;
+            openSpills.add(sorted);
+            showSpill(tableView, new SpillList(sorted, sortKey));
+            showMessage("Sorted " + sorted.size() + " rows by " + column.getText() + ".", false);
+        });
+        sortTask.setOnFailed(event -> {
+            if (generation != spillSortGeneration || !openSpills.contains(original)) return; // Sorting a closed view
+            showAlert(Alert.AlertType.ERROR, "Sort Error", "Failed to sort spilled rows: " + sortTask.getException().getMessage());
+        });
+        Thread sortThread = new Thread(sortTask, "dgfx8-spill-sort");
+        sortThread.setDaemon(true);
+        sortThread.start();
+        showMessage("Sorting " + original.size() + " rows on disk by " + column.getText() + "...", false);
+        return true;
+    }
 
-        } catch (SQLException e) {
-            showAlert(Alert.AlertType.ERROR, "SQL Error", "Failed to retrieve table data for '" + tableName + "': " + e.getMessage());
-            return null;
+    // Shows rows, closing the sorted copy it replaces (the original spill stays open).
+    private void showSpill(TableView<ResultRow> tableView, SpillList rows) {
+        SpillFile shown = ((SpillList) tableView.getItems()).file();
+        tableView.setItems(rows);
+        if (shown != openSpills.get(0) && shown != rows.file()) {
+            openSpills.remove(shown);
+            shown.close();
+        }
+    }
+
+    private void closeSpills() {
+        spillSortGeneration++; // A sort still running reads a file closed here
+        for (SpillFile spillFile : openSpills) spillFile.close();
+        openSpills.clear();
+    }
+
+    private void closeTableStats() {
+        if (tableStats != null) {
+            tableStats.close();
+            tableStats = null;
+        }
+    }
+
+    private void closeSnapshot() {
+        if (currentSnapshot != null) {
+            currentSnapshot.close();
+            currentSnapshot = null;
+        }
+    }
+
+    private void cancelAggregate() {
+        if (currentAggregate != null) {
+            currentAggregate.cancel();
+            currentAggregate = null;
+        }
+    }
+
+    private void closeAggregateCache() {
+        if (aggregateCache != null) {
+            aggregateCache.close();
+            aggregateCache = null;
+        }
+    }
+
+    private void closeIndexAdvisor() {
+        if (indexAdvisor != null) {
+            indexAdvisor.close();
+            indexAdvisor = null;
         }
     }
 
     // Retrieves all table names accessible to the current user
     private List<String> getAllTableNames() {
         List<String> tableNames = new ArrayList<>();
-        if (connection == null) {
+        if (engine == null) {
             return tableNames;
         }
-        try (ResultSet tables = connection.getMetaData().getTables(null, connection.getSchema(), null, new String[]{"TABLE"})) {
-            while (tables.next()) {
-                tableNames.add(tables.getString("TABLE_NAME"));
-            }
+        try {
+            tableNames.addAll(engine.tableNames());
         } catch (SQLException e) {
             System.err.println("Error fetching table names: " + e.getMessage());
             // showAlert(Alert.AlertType.ERROR, "DB Metadata Error", "Failed to retrieve table names: " + e.getMessage());
@@ -1220,15 +2561,11 @@ public class dgfx8 extends Application {
     // Fetches schema for a given table from the database
     private Map<String, String> getSchemaFromDatabase(String tableName) {
         Map<String, String> schema = new LinkedHashMap<>();
-        if (connection == null) {
+        if (engine == null) {
             return schema;
         }
-        try (Statement statement = connection.createStatement();
-             ResultSet rs = statement.executeQuery("SELECT * FROM " + tableName + " WHERE ROWNUM = 0")) { // Get metadata without data
-            ResultSetMetaData rsmd = rs.getMetaData();
-            for (int i = 1; i <= rsmd.getColumnCount(); i++) {
-                schema.put(rsmd.getColumnName(i), rsmd.getColumnTypeName(i)); // Oracle type name
-            }
+        try {
+            schema.putAll(engine.columns(tableName)); // Metadata only, no rows fetched
         } catch (SQLException e) {
             showAlert(Alert.AlertType.ERROR, "DB Schema Error", "Failed to retrieve schema for table '" + tableName + "': " + e.getMessage());
             return null;
@@ -1286,9 +2623,17 @@ public class dgfx8 extends Application {
 
     @Override
     public void stop() throws Exception {
+        stopPerformanceTimeline();
+        cancelTableLoad();
+        cancelAggregate();
+        closeSpills();
+        closeTableStats();
+        closeIndexAdvisor();
+        closeAggregateCache();
+        closeSnapshot();
         // Close database connection when the application exits
-        if (connection != null && !connection.isClosed()) {
-            connection.close();
+        if (engine != null) {
+            engine.close();
             System.out.println("Database connection closed.");
         }
         super.stop();